@@ -0,0 +1,90 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * A {@code ContentHandler} that passes every SAX event to each of several handlers (in order).
+ */
+class BroadcastContentHandler implements ContentHandler {
+
+   // Shared with the creator, so that handlers may be set after construction.
+   private final ContentHandler[] handlers;
+
+   /**
+    * Constructor
+    *
+    * @param handlers the handlers that receive the events.
+    */
+   BroadcastContentHandler(ContentHandler[] handlers) {
+      this.handlers = handlers;
+   }
+
+   public void setDocumentLocator(Locator locator) {
+      for (ContentHandler handler : handlers) {
+         handler.setDocumentLocator(locator);
+      }
+   }
+
+   public void startDocument() throws SAXException {
+      for (ContentHandler handler : handlers) {
+         handler.startDocument();
+      }
+   }
+
+   public void endDocument() throws SAXException {
+      for (ContentHandler handler : handlers) {
+         handler.endDocument();
+      }
+   }
+
+   public void startPrefixMapping(String prefix, String uri) throws SAXException {
+      for (ContentHandler handler : handlers) {
+         handler.startPrefixMapping(prefix, uri);
+      }
+   }
+
+   public void endPrefixMapping(String prefix) throws SAXException {
+      for (ContentHandler handler : handlers) {
+         handler.endPrefixMapping(prefix);
+      }
+   }
+
+   public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+      for (ContentHandler handler : handlers) {
+         handler.startElement(uri, localName, qName, atts);
+      }
+   }
+
+   public void endElement(String uri, String localName, String qName) throws SAXException {
+      for (ContentHandler handler : handlers) {
+         handler.endElement(uri, localName, qName);
+      }
+   }
+
+   public void characters(char[] ch, int start, int length) throws SAXException {
+      for (ContentHandler handler : handlers) {
+         handler.characters(ch, start, length);
+      }
+   }
+
+   public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+      for (ContentHandler handler : handlers) {
+         handler.ignorableWhitespace(ch, start, length);
+      }
+   }
+
+   public void processingInstruction(String target, String data) throws SAXException {
+      for (ContentHandler handler : handlers) {
+         handler.processingInstruction(target, data);
+      }
+   }
+
+   public void skippedEntity(String name) throws SAXException {
+      for (ContentHandler handler : handlers) {
+         handler.skippedEntity(name);
+      }
+   }
+}
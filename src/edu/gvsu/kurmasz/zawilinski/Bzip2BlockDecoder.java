@@ -0,0 +1,381 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.apache.tools.bzip2.BZip2Constants;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decodes a single bzip2 block.  Unlike a complete bzip2 decompressor, this class does not need to start reading
+ * at the beginning of a stream:  It begins immediately after a block's 48-bit magic number, which need not be
+ * byte-aligned.  This allows {@link ParallelBzip2InputStream} to decode each block of a stream independently.
+ *
+ * <p>Every problem (truncated data, an invalid Huffman table, a CRC mismatch, etc.) is reported as an
+ * {@code IOException}.  This is important because a block's magic number may, by chance, also appear in the middle
+ * of compressed data.  The caller must be able to tell when it has tried to decode something that isn't a
+ * block.</p>
+ *
+ * <p>This class is not thread-safe; however, it keeps no state between calls to {@link #decode}, so each thread
+ * may use its own instance.</p>
+ */
+class Bzip2BlockDecoder {
+
+   /**
+    * The largest number of bytes in a block after the Burrows-Wheeler transform.
+    */
+   static final int MAX_BLOCK_SIZE = 900000;
+
+   private static final int MAX_GROUPS = 6;
+   private static final int GROUP_SIZE = 50;
+   private static final int MAX_ALPHA_SIZE = 258;
+   private static final int MAX_CODE_LEN = 20;
+   // bzip2 ignores any selectors beyond this number.
+   private static final int MAX_SELECTORS = 18002;
+   private static final int RUNA = 0;
+   private static final int RUNB = 1;
+
+   private static final int[] CRC_TABLE = new int[256];
+
+   static {
+      for (int i = 0; i < 256; i++) {
+         int c = i << 24;
+         for (int j = 0; j < 8; j++) {
+            c = (c & 0x80000000) != 0 ? (c << 1) ^ 0x04c11db7 : c << 1;
+         }
+         CRC_TABLE[i] = c;
+      }
+   }
+
+   // The input
+   private byte[] data;
+   private long bitPos;
+   private long bitLimit;
+   // The low bufferBits bits of buffer are the next bits of the input.
+   private long buffer;
+   private int bufferBits;
+   private int nextByte;
+
+   // Decoding tables (kept as fields so they are allocated only once per decoder).
+   private final int[] tt = new int[MAX_BLOCK_SIZE];
+   private final byte[] seqToUnseq = new byte[256];
+   private final byte[] selectors = new byte[MAX_SELECTORS];
+   private final int[][] limit = new int[MAX_GROUPS][MAX_CODE_LEN + 2];
+   private final int[][] base = new int[MAX_GROUPS][MAX_CODE_LEN + 2];
+   private final int[][] perm = new int[MAX_GROUPS][MAX_ALPHA_SIZE];
+   private final int[] minLens = new int[MAX_GROUPS];
+   private final byte[][] lengths = new byte[MAX_GROUPS][MAX_ALPHA_SIZE];
+
+   // The output
+   private byte[] out = new byte[MAX_BLOCK_SIZE];
+   private int outLength;
+
+   /**
+    * Decode one block.
+    *
+    * @param data     the compressed data
+    * @param bitStart the position (in bits from the beginning of {@code data}) of the first bit after the block's
+    *                 magic number
+    * @param bitEnd   the position of the last bit of data available.  (Bits after the end of the block are
+    *                 ignored.)
+    * @return the decoded bytes.
+    * @throws IOException if the data is not a valid bzip2 block.
+    */
+   byte[] decode(byte[] data, long bitStart, long bitEnd) throws IOException {
+      this.data = data;
+      this.bitPos = bitStart;
+      this.bitLimit = Math.min(bitEnd, (long) data.length * 8);
+      this.buffer = 0;
+      this.bufferBits = -(int) (bitStart & 7);
+      this.nextByte = (int) (bitStart >>> 3);
+      this.outLength = 0;
+      try {
+         int storedCRC = bits(32);
+         boolean randomised = bits(1) != 0;
+         int origPtr = bits(24);
+         int blockSize = readBlock();
+         if (origPtr >= blockSize) {
+            throw new IOException("Invalid bzip2 block (origPtr out of range).");
+         }
+         int crc = inverseBWT(origPtr, blockSize, randomised);
+         if (crc != storedCRC) {
+            throw new IOException("bzip2 block CRC mismatch.");
+         }
+         return Arrays.copyOf(out, outLength);
+      } finally {
+         this.data = null;
+      }
+   }
+
+   private int bits(int n) throws IOException {
+      if (bitPos + n > bitLimit) {
+         throw new IOException("Truncated bzip2 block.");
+      }
+      while (bufferBits < n) {
+         buffer = (buffer << 8) | (data[nextByte++] & 0xff);
+         bufferBits += 8;
+      }
+      bufferBits -= n;
+      bitPos += n;
+      return (int) ((buffer >>> bufferBits) & ((1L << n) - 1));
+   }
+
+   // Read the symbol map, Huffman tables, and MTF/RLE2-encoded data into tt.
+   // Return the number of bytes in the block.
+   private int readBlock() throws IOException {
+
+      // Which byte values appear in the block
+      int inUse16 = bits(16);
+      int numInUse = 0;
+      for (int i = 0; i < 16; i++) {
+         if ((inUse16 & (0x8000 >>> i)) != 0) {
+            int inUse = bits(16);
+            for (int j = 0; j < 16; j++) {
+               if ((inUse & (0x8000 >>> j)) != 0) {
+                  seqToUnseq[numInUse++] = (byte) (i * 16 + j);
+               }
+            }
+         }
+      }
+      if (numInUse == 0) {
+         throw new IOException("Invalid bzip2 block (no symbols).");
+      }
+      int alphaSize = numInUse + 2;
+
+      int numGroups = bits(3);
+      if (numGroups < 2 || numGroups > MAX_GROUPS) {
+         throw new IOException("Invalid bzip2 block (bad number of Huffman groups).");
+      }
+      int numSelectors = bits(15);
+      if (numSelectors < 1) {
+         throw new IOException("Invalid bzip2 block (no selectors).");
+      }
+
+      // Selectors are MTF-encoded in unary
+      byte[] mtfGroups = {0, 1, 2, 3, 4, 5};
+      int kept = Math.min(numSelectors, MAX_SELECTORS);
+      for (int i = 0; i < numSelectors; i++) {
+         int j = 0;
+         while (bits(1) != 0) {
+            j++;
+            if (j >= numGroups) {
+               throw new IOException("Invalid bzip2 block (bad selector).");
+            }
+         }
+         byte value = mtfGroups[j];
+         System.arraycopy(mtfGroups, 0, mtfGroups, 1, j);
+         mtfGroups[0] = value;
+         if (i < kept) {
+            selectors[i] = value;
+         }
+      }
+
+      // Delta-encoded code lengths
+      for (int t = 0; t < numGroups; t++) {
+         int len = bits(5);
+         for (int i = 0; i < alphaSize; i++) {
+            while (true) {
+               if (len < 1 || len > MAX_CODE_LEN) {
+                  throw new IOException("Invalid bzip2 block (bad code length).");
+               }
+               if (bits(1) == 0) {
+                  break;
+               }
+               len += (bits(1) == 0) ? 1 : -1;
+            }
+            lengths[t][i] = (byte) len;
+         }
+         createDecodeTables(t, alphaSize);
+      }
+
+      // MTF / run-length decoding
+      int[] unzftab = new int[256];
+      byte[] mtf = new byte[256];
+      for (int i = 0; i < 256; i++) {
+         mtf[i] = (byte) i;
+      }
+      int eob = numInUse + 1;
+      int count = 0;
+      int groupIndex = -1;
+      int groupPos = 0;
+      int runLength = 0;
+      int runPower = 1;
+      int table = 0;
+
+      while (true) {
+         if (groupPos == 0) {
+            groupIndex++;
+            if (groupIndex >= kept) {
+               throw new IOException("Invalid bzip2 block (too few selectors).");
+            }
+            groupPos = GROUP_SIZE;
+            table = selectors[groupIndex];
+         }
+         groupPos--;
+         int sym = nextSymbol(table, alphaSize);
+
+         if (sym == RUNA || sym == RUNB) {
+            runLength += (sym + 1) * runPower;
+            runPower <<= 1;
+            if (runLength > MAX_BLOCK_SIZE) {
+               throw new IOException("Invalid bzip2 block (run too long).");
+            }
+            continue;
+         }
+
+         if (runLength > 0) {
+            if (count + runLength > MAX_BLOCK_SIZE) {
+               throw new IOException("Invalid bzip2 block (block too large).");
+            }
+            int value = seqToUnseq[mtf[0] & 0xff] & 0xff;
+            unzftab[value] += runLength;
+            Arrays.fill(tt, count, count + runLength, value);
+            count += runLength;
+            runLength = 0;
+            runPower = 1;
+         }
+
+         if (sym == eob) {
+            break;
+         }
+
+         // sym - 1 is an index into the MTF list.
+         if (count >= MAX_BLOCK_SIZE) {
+            throw new IOException("Invalid bzip2 block (block too large).");
+         }
+         int index = sym - 1;
+         byte value = mtf[index];
+         System.arraycopy(mtf, 0, mtf, 1, index);
+         mtf[0] = value;
+         int b = seqToUnseq[value & 0xff] & 0xff;
+         unzftab[b]++;
+         tt[count++] = b;
+      }
+
+      // Prepare for the inverse BWT:  The upper bits of each tt entry point to the next entry.
+      int[] cftab = new int[256];
+      int sum = 0;
+      for (int i = 0; i < 256; i++) {
+         cftab[i] = sum;
+         sum += unzftab[i];
+      }
+      for (int i = 0; i < count; i++) {
+         int b = tt[i] & 0xff;
+         tt[cftab[b]++] |= i << 8;
+      }
+      return count;
+   }
+
+   // Build the canonical Huffman decoding tables for group t
+   private void createDecodeTables(int t, int alphaSize) {
+      byte[] len = lengths[t];
+      int[] lim = limit[t];
+      int[] bas = base[t];
+      int[] per = perm[t];
+
+      int minLen = MAX_CODE_LEN;
+      int maxLen = 0;
+      for (int i = 0; i < alphaSize; i++) {
+         minLen = Math.min(minLen, len[i]);
+         maxLen = Math.max(maxLen, len[i]);
+      }
+      minLens[t] = minLen;
+
+      int pp = 0;
+      for (int i = minLen; i <= maxLen; i++) {
+         for (int j = 0; j < alphaSize; j++) {
+            if (len[j] == i) {
+               per[pp++] = j;
+            }
+         }
+      }
+
+      Arrays.fill(bas, 0);
+      for (int i = 0; i < alphaSize; i++) {
+         bas[len[i] + 1]++;
+      }
+      for (int i = 1; i < bas.length; i++) {
+         bas[i] += bas[i - 1];
+      }
+
+      Arrays.fill(lim, -1);
+      int vec = 0;
+      for (int i = minLen; i <= maxLen; i++) {
+         vec += bas[i + 1] - bas[i];
+         lim[i] = vec - 1;
+         vec <<= 1;
+      }
+      for (int i = minLen + 1; i <= maxLen; i++) {
+         bas[i] = ((lim[i - 1] + 1) << 1) - bas[i];
+      }
+   }
+
+   private int nextSymbol(int t, int alphaSize) throws IOException {
+      int[] lim = limit[t];
+      int n = minLens[t];
+      int code = bits(n);
+      while (code > lim[n]) {
+         n++;
+         if (n > MAX_CODE_LEN) {
+            throw new IOException("Invalid bzip2 block (bad Huffman code).");
+         }
+         code = (code << 1) | bits(1);
+      }
+      int index = code - base[t][n];
+      if (index < 0 || index >= alphaSize) {
+         throw new IOException("Invalid bzip2 block (bad Huffman code).");
+      }
+      return perm[t][index];
+   }
+
+   // Undo the Burrows-Wheeler transform and the initial run-length encoding.  Return the block's CRC.
+   // (Old encoders, including the one bundled with Ant, "randomise" highly repetitive blocks by
+   // flipping bits at pseudo-random positions.)
+   private int inverseBWT(int origPtr, int blockSize, boolean randomised) {
+      int[] rNums = BZip2Constants.rNums;
+      int rNToGo = 0;
+      int rTPos = 0;
+      int crc = 0xffffffff;
+      int pos = tt[origPtr] >>> 8;
+      int last = -1;
+      int repeats = 0;
+      for (int i = 0; i < blockSize; i++) {
+         pos = tt[pos];
+         int b = pos & 0xff;
+         pos >>>= 8;
+         if (randomised) {
+            if (rNToGo == 0) {
+               rNToGo = rNums[rTPos];
+               rTPos = (rTPos + 1) % rNums.length;
+            }
+            rNToGo--;
+            if (rNToGo == 1) {
+               b ^= 1;
+            }
+         }
+
+         if (repeats == 4) {
+            // b is the number of additional copies of the last byte
+            for (int j = 0; j < b; j++) {
+               crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ last) & 0xff];
+               append(last);
+            }
+            repeats = 0;
+            last = -1;
+            continue;
+         }
+
+         repeats = (b == last) ? repeats + 1 : 1;
+         last = b;
+         crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ b) & 0xff];
+         append(b);
+      }
+      return ~crc;
+   }
+
+   private void append(int b) {
+      if (outLength == out.length) {
+         out = Arrays.copyOf(out, out.length * 2);
+      }
+      out[outLength++] = (byte) b;
+   }
+}
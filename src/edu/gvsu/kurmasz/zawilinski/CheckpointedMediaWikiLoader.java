@@ -0,0 +1,676 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.SimpleLog;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLFilter;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads a dump in pieces and records a checkpoint after each piece, so that a long job that is interrupted (e.g.,
+ * by a crash or by running out of memory) can be restarted at the last checkpoint instead of at the beginning of the
+ * dump.  A checkpoint records the position in the input of the next piece (always a page boundary), the counters of
+ * the {@link PageFilterListener}, and the size of the output written so far.  When the job is restarted, the output
+ * is truncated to that size (discarding any pages written after the checkpoint), and loading continues from the
+ * recorded position.  The checkpoint file is deleted when the job finishes.
+ *
+ * <p>Uncompressed dumps are divided at {@code <page>} tags.  bzip2 dumps are divided only where one bzip2 stream
+ * ends and the next begins; so, a restarted job never decompresses the part of the dump it has already processed.
+ * This works best with "multistream" dumps (e.g., Wikimedia's {@code pages-articles-multistream} dumps), whose
+ * streams each contain a set of complete pages.  If the streams of a dump don't begin at page boundaries (or if the
+ * dump is a single stream), the remainder of the dump is loaded as one piece, without further checkpoints.</p>
+ *
+ * <p>Each piece is loaded as a complete document:  The dump's header is placed before the piece, and a closing
+ * {@code </mediawiki>} tag after it.  The {@link PageHandler} nevertheless sees a single document.</p>
+ */
+public class CheckpointedMediaWikiLoader {
+
+   /**
+    * The default number of bytes of input (compressed bytes, for bzip2 dumps) between checkpoints.
+    */
+   public static final long DEFAULT_INTERVAL = 64L << 20;
+
+   /**
+    * The suffix of the default checkpoint file.
+    */
+   public static final String SUFFIX = ".checkpoint";
+
+   private static final byte[] FOOTER = "</mediawiki>\n".getBytes(MappedDump.UTF8);
+
+   // A bzip2 stream begins with "BZh", the block size ('1' - '9'), then the magic number of its first block.
+   private static final byte[] BLOCK_MAGIC = {0x31, 0x41, 0x59, 0x26, 0x53, 0x59};
+   private static final int STREAM_SIGNATURE_LENGTH = 4 + BLOCK_MAGIC.length;
+
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private CheckpointedMediaWikiLoader() {
+   }
+
+   /**
+    * The state of a job after some number of pieces.
+    */
+   public static class Checkpoint {
+
+      static final int MAGIC = 0x5a574350; // "ZWCP"
+      static final int VERSION = 1;
+
+      private final long inputSize;
+      private final long inputOffset;
+      private final long outputPosition;
+      private final int pageCount;
+      private final int keptPageCount;
+      private final int revisionCount;
+      private final int keptRevisionCount;
+      // The (uncompressed) bytes of the dump that precede the first page.
+      private final byte[] header;
+
+      Checkpoint(long inputSize, long inputOffset, long outputPosition, int pageCount, int keptPageCount,
+                 int revisionCount, int keptRevisionCount, byte[] header) {
+         this.inputSize = inputSize;
+         this.inputOffset = inputOffset;
+         this.outputPosition = outputPosition;
+         this.pageCount = pageCount;
+         this.keptPageCount = keptPageCount;
+         this.revisionCount = revisionCount;
+         this.keptRevisionCount = keptRevisionCount;
+         this.header = header;
+      }
+
+      /**
+       * Return the size of the input file.  (A checkpoint is used only with an input file of the same size.)
+       *
+       * @return the size of the input file.
+       */
+      public long getInputSize() {
+         return inputSize;
+      }
+
+      /**
+       * Return the position in the input file of the first page not yet loaded.
+       *
+       * @return the position in the input file of the first page not yet loaded.
+       */
+      public long getInputOffset() {
+         return inputOffset;
+      }
+
+      /**
+       * Return the number of bytes of output written before the checkpoint.
+       *
+       * @return the number of bytes of output written before the checkpoint.
+       */
+      public long getOutputPosition() {
+         return outputPosition;
+      }
+
+      /**
+       * Return the number of pages read before the checkpoint.
+       *
+       * @return the number of pages read before the checkpoint.
+       */
+      public int getPageCount() {
+         return pageCount;
+      }
+
+      /**
+       * Return the number of pages kept before the checkpoint.
+       *
+       * @return the number of pages kept before the checkpoint.
+       */
+      public int getKeptPageCount() {
+         return keptPageCount;
+      }
+
+      /**
+       * Return the number of revisions read before the checkpoint.
+       *
+       * @return the number of revisions read before the checkpoint.
+       */
+      public int getRevisionCount() {
+         return revisionCount;
+      }
+
+      /**
+       * Return the number of revisions kept before the checkpoint.
+       *
+       * @return the number of revisions kept before the checkpoint.
+       */
+      public int getKeptRevisionCount() {
+         return keptRevisionCount;
+      }
+
+      /**
+       * Read a checkpoint file.
+       *
+       * @param file the checkpoint file
+       * @return the checkpoint
+       * @throws IOException if the file can't be read, or isn't a checkpoint file.
+       */
+      public static Checkpoint read(File file) throws IOException {
+         DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+         try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+               throw new IOException("\"" + file + "\" is not a checkpoint file.");
+            }
+            long inputSize = in.readLong();
+            long inputOffset = in.readLong();
+            long outputPosition = in.readLong();
+            int pageCount = in.readInt();
+            int keptPageCount = in.readInt();
+            int revisionCount = in.readInt();
+            int keptRevisionCount = in.readInt();
+            int headerLength = in.readInt();
+            if (headerLength < 0) {
+               throw new IOException("\"" + file + "\" is damaged.");
+            }
+            byte[] header = new byte[headerLength];
+            in.readFully(header);
+            return new Checkpoint(inputSize, inputOffset, outputPosition, pageCount, keptPageCount, revisionCount,
+                  keptRevisionCount, header);
+         } finally {
+            in.close();
+         }
+      }
+
+      // Write the checkpoint to a temporary file, then rename it; so, a crash while writing never leaves a
+      // damaged checkpoint file.
+      void write(File file) throws IOException {
+         File temp = new File(file.getPath() + ".tmp");
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+         try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(inputSize);
+            out.writeLong(inputOffset);
+            out.writeLong(outputPosition);
+            out.writeInt(pageCount);
+            out.writeInt(keptPageCount);
+            out.writeInt(revisionCount);
+            out.writeInt(keptRevisionCount);
+            out.writeInt(header.length);
+            out.write(header);
+         } finally {
+            out.close();
+         }
+         if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            throw new IOException("Could not replace \"" + file + "\".");
+         }
+      }
+
+      public String toString() {
+         return String.format("input offset %d, output position %d, %d/%d pages, %d/%d revisions kept",
+               inputOffset, outputPosition, keptPageCount, pageCount, keptRevisionCount, revisionCount);
+      }
+   }
+
+   /**
+    * Returns {@code true} if {@code input} names a file that can be loaded with checkpoints (i.e., an uncompressed or
+    * bzip2-compressed file).
+    *
+    * @param input a file name, as would be passed to {@code InputHelper.openMappedAndFilteredInputStream}
+    * @return {@code true} if {@code input} can be loaded by this class.
+    */
+   public static boolean canLoad(String input) {
+      return ParallelMediaWikiLoader.canLoad(input) || ParallelMediaWikiLoader.isBzip2File(input);
+   }
+
+   /**
+    * Return the name of the default checkpoint file for {@code output} (the output's name followed by
+    * {@link #SUFFIX}).
+    *
+    * @param output the output file
+    * @return the default checkpoint file for {@code output}.
+    */
+   public static File defaultCheckpointFile(File output) {
+      return new File(output.getPath() + SUFFIX);
+   }
+
+   /**
+    * Load and filter a dump, writing each kept page to {@code output} and recording a checkpoint in
+    * {@code checkpointFile} after every {@code interval} bytes of input.  If {@code checkpointFile} exists, the job
+    * continues from that checkpoint, appending to {@code output}; otherwise, {@code output} is replaced.
+    *
+    * @param input          the dump (uncompressed, or bzip2-compressed if its name ends with {@code .bz2})
+    * @param log            a {@code Log} to which to report progress
+    * @param threads        the number of threads used to decompress a bzip2 dump
+    * @param factory        creates the filters for each piece (the post-filter is created only once)
+    * @param writer         the writer that formats the output
+    * @param output         the output file
+    * @param checkpointFile the checkpoint file
+    * @param interval       the approximate number of bytes of input between checkpoints
+    * @throws JAXBException if there is a problem generating the DOM, or writing the output.
+    * @throws IOException   if the input, output, or checkpoint can't be read or written (or if the checkpoint
+    *                       doesn't match the input or output).
+    */
+   public static void load(File input, SimpleLog log, int threads, ParallelMediaWikiLoader.FilterFactory factory,
+                           WiktionaryWriter writer, File output, File checkpointFile, long interval)
+         throws JAXBException, IOException {
+      if (input == null || log == null || factory == null || writer == null || output == null
+            || checkpointFile == null) {
+         throw new IllegalArgumentException("Parameters may not be null.");
+      }
+      if (threads < 1) {
+         throw new IllegalArgumentException("Must use at least one thread.");
+      }
+      if (interval <= 0) {
+         throw new IllegalArgumentException("interval must be positive");
+      }
+
+      Checkpoint checkpoint = checkpointFile.exists() ? Checkpoint.read(checkpointFile) : null;
+      Source source = ParallelMediaWikiLoader.isBzip2File(input.getPath())
+            ? new Bzip2Source(input, threads, interval, log) : new DumpSource(input, interval);
+      try {
+         if (checkpoint != null && checkpoint.getInputSize() != source.size()) {
+            throw new IOException("\"" + checkpointFile + "\" was not made from \"" + input + "\".");
+         }
+         if (checkpoint != null && output.length() < checkpoint.getOutputPosition()) {
+            throw new IOException("\"" + output + "\" is shorter than \"" + checkpointFile + "\" expects.");
+         }
+
+         byte[] header;
+         long start;
+         FileOutputStream file;
+         BufferedOutputStream buffered;
+         PageHandler handler;
+         if (checkpoint == null) {
+            header = source.header();
+            start = source.first();
+            file = new FileOutputStream(output);
+            buffered = new BufferedOutputStream(file);
+            handler = writer.streamTo(buffered);
+         } else {
+            header = checkpoint.header;
+            start = checkpoint.getInputOffset();
+            RandomAccessFile truncate = new RandomAccessFile(output, "rw");
+            try {
+               truncate.setLength(checkpoint.getOutputPosition());
+            } finally {
+               truncate.close();
+            }
+            file = new FileOutputStream(output, true);
+            buffered = new BufferedOutputStream(file);
+            handler = writer.appendTo(buffered);
+            log.println(Zawilinski.PARSE_BEGIN_END, "Resuming at checkpoint:  " + checkpoint);
+         }
+
+         try {
+            PieceHandler pieceHandler = new PieceHandler(handler);
+            PageFilterListener listener = new PageFilterListener(factory.createPostFilter(), log, pieceHandler);
+            if (checkpoint != null) {
+               listener.restoreCounts(checkpoint.getPageCount(), checkpoint.getKeptPageCount(),
+                     checkpoint.getRevisionCount(), checkpoint.getKeptRevisionCount());
+            }
+
+            Unmarshaller unmarshaller = JAXBPool.borrowUnmarshaller();
+            try {
+               do {
+                  long end = source.next(start);
+                  pieceHandler.last = (end == source.end());
+                  loadPiece(source.open(start, end, header), log, unmarshaller, listener, factory);
+
+                  // The pages are safely written before the checkpoint claims them.
+                  buffered.flush();
+                  file.getChannel().force(false);
+                  if (end < source.end()) {
+                     Checkpoint next = new Checkpoint(source.size(), end, file.getChannel().position(),
+                           listener.getPageCount(), listener.getKeptPageCount(), listener.getRevisionCount(),
+                           listener.getKeptRevisionCount(), header);
+                     next.write(checkpointFile);
+                     log.println(Zawilinski.PARSE_BEGIN_END, "Checkpoint:  " + next);
+                  }
+                  start = end;
+               } while (start < source.end());
+            } finally {
+               JAXBPool.returnUnmarshaller(unmarshaller);
+            }
+         } finally {
+            file.close();
+         }
+         checkpointFile.delete();
+      } finally {
+         source.close();
+      }
+   }
+
+   private static void loadPiece(InputStream piece, SimpleLog log, Unmarshaller unmarshaller,
+                                 PageFilterListener listener, ParallelMediaWikiLoader.FilterFactory factory)
+         throws JAXBException, IOException {
+      XMLFilter[] filters = factory.createPrefilters();
+      listener.setResolveDuplicates(DuplicateTextPrefilter.isAmong(filters));
+      unmarshaller.setListener(listener);
+      try {
+         PreFilteredMediaWikiLoader.load(new InputSource(piece), log, unmarshaller, filters);
+      } catch (PageFilterListener.HandlerException e) {
+         throw e.getCause();
+      } finally {
+         piece.close();
+      }
+   }
+
+   /**
+    * Passes pages to the real handler, but ends the document only after the last piece.
+    */
+   private static class PieceHandler implements PageHandler {
+      private final PageHandler handler;
+      private boolean last = false;
+      private boolean ended = false;
+
+      private PieceHandler(PageHandler handler) {
+         this.handler = handler;
+      }
+
+      public void beginDocument(MediaWikiType root) throws JAXBException {
+         handler.beginDocument(root);
+      }
+
+      public void handlePage(PageType page) throws JAXBException {
+         handler.handlePage(page);
+      }
+
+      public void endDocument(MediaWikiType root) throws JAXBException {
+         if (last && !ended) {
+            ended = true;
+            handler.endDocument(root);
+         }
+      }
+   }
+
+   /**
+    * A dump divided into pieces that begin at page boundaries.
+    */
+   private static abstract class Source {
+      // The size of the input file
+      abstract long size();
+
+      // The position of the first piece
+      abstract long first();
+
+      // The position after the last piece
+      abstract long end();
+
+      // The position of the piece following the piece that begins at start (or end())
+      abstract long next(long start) throws IOException;
+
+      // The (uncompressed) bytes that precede the first page
+      abstract byte[] header() throws IOException;
+
+      // A complete document containing the pages in the piece [start, end)
+      abstract InputStream open(long start, long end, byte[] header) throws IOException;
+
+      abstract void close() throws IOException;
+   }
+
+   /**
+    * An uncompressed dump, divided at {@code <page>} tags.
+    */
+   private static class DumpSource extends Source {
+      private final MappedDump dump;
+      private final long interval;
+
+      private DumpSource(File file, long interval) throws IOException {
+         this.dump = new MappedDump(file);
+         this.interval = interval;
+      }
+
+      long size() {
+         return dump.size();
+      }
+
+      long first() {
+         return dump.getFirstPage();
+      }
+
+      long end() {
+         return dump.getFooterStart();
+      }
+
+      long next(long start) {
+         long next = start + interval < end() ? dump.indexOf(MappedDump.PAGE_START, start + interval, end()) : -1;
+         return next < 0 ? end() : next;
+      }
+
+      byte[] header() {
+         byte[] answer = new byte[(int) dump.getFirstPage()];
+         dump.get(0, answer, 0, answer.length);
+         return answer;
+      }
+
+      InputStream open(long start, long end, byte[] header) {
+         return dump.openDocument(start, end);
+      }
+
+      void close() throws IOException {
+         dump.close();
+      }
+   }
+
+   /**
+    * A bzip2 dump, divided where one bzip2 stream ends and the next begins.
+    */
+   private static class Bzip2Source extends Source {
+      private final File file;
+      private final int threads;
+      private final long interval;
+      private final SimpleLog log;
+      private final RandomAccessFile raf;
+      private final long size;
+      // false once a stream that doesn't begin at a page boundary has been found
+      private boolean aligned = true;
+
+      private Bzip2Source(File file, int threads, long interval, SimpleLog log) throws IOException {
+         this.file = file;
+         this.threads = threads;
+         this.interval = interval;
+         this.log = log;
+         this.raf = new RandomAccessFile(file, "r");
+         this.size = raf.length();
+      }
+
+      long size() {
+         return size;
+      }
+
+      long first() {
+         return 0;
+      }
+
+      long end() {
+         return size;
+      }
+
+      long next(long start) throws IOException {
+         if (!aligned || start + interval >= size) {
+            return size;
+         }
+         long stream = findStream(raf.getChannel(), start + interval, size);
+         if (stream < 0) {
+            return size;
+         }
+         if (!beginsWith(decompress(stream, size, 1), MappedDump.PAGE_START)) {
+            // A multistream dump's last stream contains only the footer.
+            if (beginsWith(decompress(stream, size, 1), MappedDump.ROOT_END)) {
+               return size;
+            }
+            aligned = false;
+            log.println(Zawilinski.PARSE_BEGIN_END, "The bzip2 streams of \"" + file
+                  + "\" don't begin at page boundaries.  No more checkpoints will be recorded.");
+            return size;
+         }
+         return stream;
+      }
+
+      byte[] header() throws IOException {
+         InputStream in = decompress(0, size, threads);
+         try {
+            ByteArrayOutputStream answer = new ByteArrayOutputStream();
+            int match = 0;
+            int b;
+            while (match < MappedDump.PAGE_START.length && (b = in.read()) >= 0) {
+               answer.write(b);
+               if (b == MappedDump.PAGE_START[match]) {
+                  match++;
+               } else {
+                  match = (b == MappedDump.PAGE_START[0]) ? 1 : 0;
+               }
+            }
+            byte[] bytes = answer.toByteArray();
+            return match == MappedDump.PAGE_START.length
+                  ? Arrays.copyOf(bytes, bytes.length - match) : bytes;
+         } finally {
+            in.close();
+         }
+      }
+
+      InputStream open(long start, long end, byte[] header) throws IOException {
+         List<InputStream> parts = new ArrayList<InputStream>();
+         if (start > 0) {
+            parts.add(new ByteArrayInputStream(header));
+         }
+         parts.add(decompress(start, end, threads));
+         if (end < size) {
+            parts.add(new ByteArrayInputStream(FOOTER));
+         }
+         return new SequenceInputStream(Collections.enumeration(parts));
+      }
+
+      private InputStream decompress(long start, long end, int decoders) throws IOException {
+         FileInputStream in = new FileInputStream(file);
+         in.getChannel().position(start);
+         return new ParallelBzip2InputStream(new BoundedInputStream(new BufferedInputStream(in, BUFFER_SIZE),
+               end - start), decoders);
+      }
+
+      void close() throws IOException {
+         raf.close();
+      }
+   }
+
+   // Return true if the first non-whitespace bytes of in are tag.  (in is closed.)
+   private static boolean beginsWith(InputStream in, byte[] tag) throws IOException {
+      try {
+         int b;
+         do {
+            b = in.read();
+         } while (b == ' ' || b == '\t' || b == '\n' || b == '\r');
+         for (int i = 0; i < tag.length; i++, b = in.read()) {
+            if (b != tag[i]) {
+               return false;
+            }
+         }
+         return true;
+      } finally {
+         in.close();
+      }
+   }
+
+   // Return the position of the first byte-aligned bzip2 stream signature in [from, end), or -1 if there is none.
+   // package scope for testing
+   static long findStream(FileChannel channel, long from, long end) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      long base = from;
+      while (base + STREAM_SIGNATURE_LENGTH <= end) {
+         buffer.clear();
+         int length = (int) Math.min(buffer.capacity(), end - base);
+         buffer.limit(length);
+         while (buffer.hasRemaining() && channel.read(buffer, base + buffer.position()) >= 0) {
+            // keep reading
+         }
+         length = buffer.position();
+         byte[] bytes = buffer.array();
+         for (int i = 0; i + STREAM_SIGNATURE_LENGTH <= length; i++) {
+            if (isStreamSignature(bytes, i)) {
+               return base + i;
+            }
+         }
+         if (base + length >= end) {
+            break;
+         }
+         // The next read overlaps this one, in case a signature spans the two.
+         base += Math.max(1, length - STREAM_SIGNATURE_LENGTH + 1);
+      }
+      return -1;
+   }
+
+   private static boolean isStreamSignature(byte[] bytes, int i) {
+      if (bytes[i] != 'B' || bytes[i + 1] != 'Z' || bytes[i + 2] != 'h' || bytes[i + 3] < '1' || bytes[i + 3] > '9') {
+         return false;
+      }
+      for (int j = 0; j < BLOCK_MAGIC.length; j++) {
+         if (bytes[i + 4 + j] != BLOCK_MAGIC[j]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Reads at most a given number of bytes from another stream.
+    */
+   private static class BoundedInputStream extends FilterInputStream {
+      private long remaining;
+
+      private BoundedInputStream(InputStream in, long limit) {
+         super(in);
+         this.remaining = limit;
+      }
+
+      public int read() throws IOException {
+         if (remaining <= 0) {
+            return -1;
+         }
+         int b = in.read();
+         if (b >= 0) {
+            remaining--;
+         }
+         return b;
+      }
+
+      public int read(byte[] b, int off, int len) throws IOException {
+         if (remaining <= 0) {
+            return -1;
+         }
+         int n = in.read(b, off, (int) Math.min(len, remaining));
+         if (n > 0) {
+            remaining -= n;
+         }
+         return n;
+      }
+
+      public long skip(long n) throws IOException {
+         long skipped = in.skip(Math.min(n, remaining));
+         remaining -= skipped;
+         return skipped;
+      }
+
+      public int available() throws IOException {
+         return (int) Math.min(in.available(), remaining);
+      }
+
+      public boolean markSupported() {
+         return false;
+      }
+   }
+}
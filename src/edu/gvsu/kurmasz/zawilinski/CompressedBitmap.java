@@ -0,0 +1,236 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A compressed set of non-negative {@code int}s (e.g., page ids).  The values are divided into blocks of 65536
+ * according to their high 16 bits.  A block that holds few values stores them as a sorted array of their low 16 bits;
+ * a block that holds many values stores a bitmap of 65536 bits.  (This is the layout used by "Roaring" bitmaps.)
+ * Thus, the set needs at most about two bytes per value, and never more than 8 KB per block.
+ *
+ * <p>Values are usually added in increasing order; so, adding to the last block is fast.</p>
+ */
+class CompressedBitmap {
+
+   // Blocks with more values than this are stored as bitmaps.
+   static final int MAX_ARRAY = 4096;
+   private static final int BITMAP_WORDS = 65536 / 64;
+
+   // The high 16 bits of the values in each block (in increasing order)
+   private int[] keys = new int[4];
+   // Each block is a char[] (the sorted low 16 bits) or a long[BITMAP_WORDS]
+   private Object[] blocks = new Object[4];
+   // The number of values in each block
+   private int[] cardinalities = new int[4];
+   private int size = 0;
+
+   /**
+    * Add {@code value} to the set.
+    *
+    * @param value the value
+    * @throws IllegalArgumentException if {@code value} is negative.
+    */
+   void add(int value) {
+      if (value < 0) {
+         throw new IllegalArgumentException("Values may not be negative.");
+      }
+      int key = value >>> 16;
+      char low = (char) (value & 0xffff);
+      int b = (size > 0 && keys[size - 1] == key) ? size - 1 : findBlock(key);
+      if (b < 0) {
+         b = -b - 1;
+         insertBlock(b, key);
+      }
+      if (blocks[b] instanceof long[]) {
+         long[] bits = (long[]) blocks[b];
+         long mask = 1L << low;
+         if ((bits[low >>> 6] & mask) == 0) {
+            bits[low >>> 6] |= mask;
+            cardinalities[b]++;
+         }
+         return;
+      }
+
+      char[] values = (char[]) blocks[b];
+      int n = cardinalities[b];
+      int pos = (n > 0 && values[n - 1] < low) ? -n - 1 : binarySearch(values, n, low);
+      if (pos >= 0) {
+         return;
+      }
+      pos = -pos - 1;
+      if (n == MAX_ARRAY) {
+         long[] bits = new long[BITMAP_WORDS];
+         for (int i = 0; i < n; i++) {
+            bits[values[i] >>> 6] |= 1L << values[i];
+         }
+         bits[low >>> 6] |= 1L << low;
+         blocks[b] = bits;
+      } else {
+         if (n == values.length) {
+            char[] bigger = new char[Math.min(MAX_ARRAY, values.length * 2)];
+            System.arraycopy(values, 0, bigger, 0, n);
+            values = bigger;
+            blocks[b] = values;
+         }
+         System.arraycopy(values, pos, values, pos + 1, n - pos);
+         values[pos] = low;
+      }
+      cardinalities[b]++;
+   }
+
+   /**
+    * Return {@code true} if {@code value} is in the set.
+    *
+    * @param value the value
+    * @return {@code true} if {@code value} is in the set.
+    */
+   boolean contains(int value) {
+      if (value < 0) {
+         return false;
+      }
+      int b = findBlock(value >>> 16);
+      if (b < 0) {
+         return false;
+      }
+      char low = (char) (value & 0xffff);
+      if (blocks[b] instanceof long[]) {
+         return (((long[]) blocks[b])[low >>> 6] & (1L << low)) != 0;
+      }
+      return binarySearch((char[]) blocks[b], cardinalities[b], low) >= 0;
+   }
+
+   /**
+    * Return the number of values in the set.
+    *
+    * @return the number of values in the set.
+    */
+   int cardinality() {
+      int answer = 0;
+      for (int i = 0; i < size; i++) {
+         answer += cardinalities[i];
+      }
+      return answer;
+   }
+
+   /**
+    * Write the set to {@code out}.
+    *
+    * @param out the destination
+    * @throws IOException if the set can't be written.
+    */
+   void write(DataOutputStream out) throws IOException {
+      out.writeInt(size);
+      for (int b = 0; b < size; b++) {
+         out.writeChar(keys[b]);
+         out.writeInt(cardinalities[b]);
+         if (blocks[b] instanceof long[]) {
+            for (long word : (long[]) blocks[b]) {
+               out.writeLong(word);
+            }
+         } else {
+            char[] values = (char[]) blocks[b];
+            for (int i = 0; i < cardinalities[b]; i++) {
+               out.writeChar(values[i]);
+            }
+         }
+      }
+   }
+
+   /**
+    * Read a set written by {@link #write(DataOutputStream)}.
+    *
+    * @param in the source
+    * @return the set
+    * @throws IOException if the set can't be read.
+    */
+   static CompressedBitmap read(DataInputStream in) throws IOException {
+      CompressedBitmap answer = new CompressedBitmap();
+      int size = in.readInt();
+      if (size < 0 || size > 65536) {
+         throw new IOException("Corrupt bitmap.");
+      }
+      answer.keys = new int[Math.max(1, size)];
+      answer.blocks = new Object[Math.max(1, size)];
+      answer.cardinalities = new int[Math.max(1, size)];
+      for (int b = 0; b < size; b++) {
+         answer.keys[b] = in.readChar();
+         int n = in.readInt();
+         if (n < 0 || n > 65536) {
+            throw new IOException("Corrupt bitmap.");
+         }
+         answer.cardinalities[b] = n;
+         if (n > MAX_ARRAY) {
+            long[] bits = new long[BITMAP_WORDS];
+            for (int i = 0; i < bits.length; i++) {
+               bits[i] = in.readLong();
+            }
+            answer.blocks[b] = bits;
+         } else {
+            char[] values = new char[Math.max(1, n)];
+            for (int i = 0; i < n; i++) {
+               values[i] = in.readChar();
+            }
+            answer.blocks[b] = values;
+         }
+      }
+      answer.size = size;
+      return answer;
+   }
+
+   // Return the index of the block with the given key, or (-(insertion point) - 1).
+   private int findBlock(int key) {
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+         int mid = (low + high) >>> 1;
+         if (keys[mid] < key) {
+            low = mid + 1;
+         } else if (keys[mid] > key) {
+            high = mid - 1;
+         } else {
+            return mid;
+         }
+      }
+      return -low - 1;
+   }
+
+   private void insertBlock(int b, int key) {
+      if (size == keys.length) {
+         int[] newKeys = new int[size * 2];
+         Object[] newBlocks = new Object[size * 2];
+         int[] newCardinalities = new int[size * 2];
+         System.arraycopy(keys, 0, newKeys, 0, size);
+         System.arraycopy(blocks, 0, newBlocks, 0, size);
+         System.arraycopy(cardinalities, 0, newCardinalities, 0, size);
+         keys = newKeys;
+         blocks = newBlocks;
+         cardinalities = newCardinalities;
+      }
+      System.arraycopy(keys, b, keys, b + 1, size - b);
+      System.arraycopy(blocks, b, blocks, b + 1, size - b);
+      System.arraycopy(cardinalities, b, cardinalities, b + 1, size - b);
+      keys[b] = key;
+      blocks[b] = new char[4];
+      cardinalities[b] = 0;
+      size++;
+   }
+
+   // Like Arrays.binarySearch for values[0, n)
+   private static int binarySearch(char[] values, int n, char key) {
+      int low = 0;
+      int high = n - 1;
+      while (low <= high) {
+         int mid = (low + high) >>> 1;
+         if (values[mid] < key) {
+            low = mid + 1;
+         } else if (values[mid] > key) {
+            high = mid - 1;
+         } else {
+            return mid;
+         }
+      }
+      return -low - 1;
+   }
+}
@@ -0,0 +1,221 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Text stored as a change to another text (usually the text of the page's previous revision).  Consecutive
+ * revisions of a page are usually nearly identical; so, a {@code DeltaText} keeps only a list of instructions for
+ * rebuilding the text from its base:  Copy these characters from the base; then, add these new characters; etc.
+ * The text is rebuilt each time {@link #toString()} is called.
+ *
+ * <p>{@link #encode(StoredText, String, int)} first finds the prefix and suffix the text shares with the base.
+ * Between them, each line of the text that also appears in the base is copied from the base; all other lines are
+ * stored.  Thus, an edit that changes several sections of a page costs about as much as the lines it changes.</p>
+ *
+ * <p>To limit the cost of rebuilding a text, {@code encode} stores a text in full (instead of as a change) when its
+ * base is already at the end of a long chain of changes, or when the change saves too little memory.</p>
+ */
+public class DeltaText extends StoredText {
+
+   /**
+    * The default maximum number of changes applied to rebuild a text.
+    */
+   public static final int DEFAULT_MAX_CHAIN = 32;
+
+   // Lines shorter than this are stored rather than copied (unless they continue a copy).
+   static final int MIN_COPIED_LINE = 8;
+
+   private final StoredText base;
+   // Pairs of (start, length):  Copy length characters from the base beginning at start, or (if start is
+   // negative) take the next length characters from added.
+   private final int[] ops;
+   // The characters that don't come from the base
+   private final String added;
+   private final int length;
+   // Number of DeltaTexts in the chain ending with this one
+   private final int chain;
+
+   private DeltaText(StoredText base, int[] ops, String added, int length, int chain) {
+      this.base = base;
+      this.ops = ops;
+      this.added = added;
+      this.length = length;
+      this.chain = chain;
+   }
+
+   // Builds the list of operations, merging adjacent operations where possible.
+   private static class Builder {
+      private int[] ops = new int[16];
+      private int size = 0;
+      private final StringBuilder added = new StringBuilder();
+
+      void copy(int start, int length) {
+         if (length == 0) {
+            return;
+         }
+         if (size > 0 && ops[size - 2] >= 0 && ops[size - 2] + ops[size - 1] == start) {
+            ops[size - 1] += length;
+         } else {
+            append(start, length);
+         }
+      }
+
+      void add(String text, int start, int end) {
+         if (start == end) {
+            return;
+         }
+         added.append(text, start, end);
+         if (size > 0 && ops[size - 2] < 0) {
+            ops[size - 1] += end - start;
+         } else {
+            append(-1, end - start);
+         }
+      }
+
+      private void append(int start, int length) {
+         if (size == ops.length) {
+            int[] bigger = new int[ops.length * 2];
+            System.arraycopy(ops, 0, bigger, 0, size);
+            ops = bigger;
+         }
+         ops[size++] = start;
+         ops[size++] = length;
+      }
+
+      // Approximate number of bytes needed to store the operations
+      int bytes() {
+         return added.length() * 2 + size * 4;
+      }
+
+      int[] ops() {
+         int[] answer = new int[size];
+         System.arraycopy(ops, 0, answer, 0, size);
+         return answer;
+      }
+   }
+
+   /**
+    * Return a {@code StoredText} that holds {@code text}, stored as a change to {@code base} when that saves memory.
+    *
+    * @param base     the text to which {@code text} is compared (may be {@code null})
+    * @param text     the text to store
+    * @param maxChain the maximum number of changes applied to rebuild {@code text}
+    * @return a {@code StoredText} that holds {@code text}, or {@code null} if {@code text} is {@code null}.
+    */
+   public static StoredText encode(StoredText base, String text, int maxChain) {
+      return encode(base, null, text, maxChain);
+   }
+
+   // baseText is base.toString() (if the caller already has it) or null.
+   static StoredText encode(StoredText base, String baseText, String text, int maxChain) {
+      if (text == null || base == null || text.length() == 0) {
+         return StoredText.of(text);
+      }
+      int chain = (base instanceof DeltaText) ? ((DeltaText) base).chain + 1 : 1;
+      if (chain > maxChain) {
+         return StoredText.of(text);
+      }
+
+      String old = (baseText == null) ? base.toString() : baseText;
+      int limit = Math.min(old.length(), text.length());
+      int prefix = 0;
+      while (prefix < limit && old.charAt(prefix) == text.charAt(prefix)) {
+         prefix++;
+      }
+      int suffix = 0;
+      while (suffix < limit - prefix
+            && old.charAt(old.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) {
+         suffix++;
+      }
+
+      Builder builder = new Builder();
+      builder.copy(0, prefix);
+      int middleEnd = text.length() - suffix;
+      if (middleEnd - prefix >= MIN_COPIED_LINE) {
+         copyLines(old, text, prefix, middleEnd, builder);
+      } else {
+         builder.add(text, prefix, middleEnd);
+      }
+      builder.copy(old.length() - suffix, suffix);
+
+      // Not worth it unless it needs at most half the memory of the text.
+      if (builder.bytes() > text.length()) {
+         return StoredText.of(text);
+      }
+      return new DeltaText(base, builder.ops(), builder.added.toString(), text.length(), chain);
+   }
+
+   // Copy the lines of text[start, end) that appear in old; add the others.
+   private static void copyLines(String old, String text, int start, int end, Builder builder) {
+      // The position of the first occurrence of each line in old
+      Map<String, Integer> lines = new HashMap<String, Integer>();
+      for (int pos = 0; pos < old.length(); ) {
+         int next = lineEnd(old, pos, old.length());
+         if (next - pos >= MIN_COPIED_LINE) {
+            String line = old.substring(pos, next);
+            if (!lines.containsKey(line)) {
+               lines.put(line, pos);
+            }
+         }
+         pos = next;
+      }
+
+      // Where in old the current copy ends (or -1)
+      int copyEnd = -1;
+      for (int pos = start; pos < end; ) {
+         int next = lineEnd(text, pos, end);
+         int length = next - pos;
+         if (copyEnd >= 0 && old.regionMatches(copyEnd, text, pos, length)) {
+            builder.copy(copyEnd, length);
+            copyEnd += length;
+         } else {
+            Integer from = (length >= MIN_COPIED_LINE) ? lines.get(text.substring(pos, next)) : null;
+            if (from != null) {
+               builder.copy(from, length);
+               copyEnd = from + length;
+            } else {
+               builder.add(text, pos, next);
+               copyEnd = -1;
+            }
+         }
+         pos = next;
+      }
+   }
+
+   // Return the position after the end of the line beginning at start (including the newline).
+   private static int lineEnd(String s, int start, int end) {
+      int newline = s.indexOf('\n', start);
+      return (newline < 0 || newline >= end) ? end : newline + 1;
+   }
+
+   /**
+    * Return the number of characters stored in this object (i.e., the characters that don't come from the base).
+    *
+    * @return the number of characters stored in this object.
+    */
+   public int getStoredLength() {
+      return added.length();
+   }
+
+   @Override
+   public int length() {
+      return length;
+   }
+
+   @Override
+   public String toString() {
+      String old = base.toString();
+      StringBuilder answer = new StringBuilder(length);
+      int next = 0;
+      for (int i = 0; i < ops.length; i += 2) {
+         if (ops[i] < 0) {
+            answer.append(added, next, next + ops[i + 1]);
+            next += ops[i + 1];
+         } else {
+            answer.append(old, ops[i], ops[i] + ops[i + 1]);
+         }
+      }
+      return answer.toString();
+   }
+}
@@ -0,0 +1,276 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link TextPrefilter} that finds revisions whose text is identical to the text of an earlier revision of the
+ * same page (e.g., reverts and edits that change only parts of the page removed by a {@link LanguagePrefilter}).
+ * The content of such a {@code <text>} element is replaced by a short reference to the earlier revision.
+ * {@link PageFilterListener} then replaces the reference with the earlier revision's {@link StoredText}; so, the text
+ * is stored only once.  (The listener also counts the revisions deduplicated and the bytes saved.)
+ * {@link PostFilteredMediaWikiLoader}, {@link StreamingMediaWikiLoader}, {@link ParallelMediaWikiLoader}, and
+ * {@link MultiLanguageMediaWikiLoader} tell their listeners to resolve references when this filter is among their
+ * pre-filters.  (When using a listener directly, call {@link PageFilterListener#setResolveDuplicates(boolean)}.)
+ *
+ * <p>The filter computes two polynomial hashes (modulo a large prime) of each text as its characters arrive, and
+ * keeps a copy of each distinct text in the current page.  A text whose length and hashes match those of an earlier
+ * text is then compared with it character by character; so, texts are shared only if they really are identical.
+ * (Hashes alone are not enough:  Anyone who can edit a page could add a revision whose hashes collide with those of
+ * a different, earlier revision.  For the same reason, a text that merely looks like a reference is escaped, and
+ * the listener removes the escape.)  The copies cost no more memory than the page's texts held by the
+ * {@link PageFilterListener}, and they are discarded at the end of each page.</p>
+ *
+ * <p>This filter should be the last filter (i.e., the one closest to the unmarshaller), because it refers to
+ * earlier revisions by the order of their {@code <text>} elements within the page.  In particular, place it after
+ * any {@link LanguagePrefilter}, so that it compares only the text that remains.</p>
+ */
+public class DuplicateTextPrefilter extends TextPrefilter {
+
+   // Marks the content that refers to an earlier revision's text.  (The rest of the content is the position of
+   // the earlier <text> element within the page.)  A text that really begins with MARKER is sent with a second
+   // MARKER in front of it; so, no text can be mistaken for a reference.
+   static final char MARKER = '\uE001';
+   private static final char[] ESCAPE = {MARKER};
+
+   // The hashes are computed modulo a prime less than 2^61, so that the products fit in a long.
+   private static final long MODULUS = (1L << 61) - 1;
+   private static final long MULTIPLIER1 = 31;
+   private static final long MULTIPLIER2 = 1000003;
+
+   // Identifies a text by its length and hashes
+   private static class Key {
+      final int length;
+      final long hash1;
+      final long hash2;
+
+      Key(int length, long hash1, long hash2) {
+         this.length = length;
+         this.hash1 = hash1;
+         this.hash2 = hash2;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (!(o instanceof Key)) {
+            return false;
+         }
+         Key other = (Key) o;
+         return length == other.length && hash1 == other.hash1 && hash2 == other.hash2;
+      }
+
+      @Override
+      public int hashCode() {
+         return (int) (hash1 ^ (hash1 >>> 32));
+      }
+   }
+
+   // A distinct text of the current page and the position of the first <text> element with that text
+   private static class Earlier {
+      final char[] text;
+      final int position;
+
+      Earlier(char[] text, int position) {
+         this.text = text;
+         this.position = position;
+      }
+   }
+
+   // The distinct texts in the current page with each length and hashes
+   private final Map<Key, List<Earlier>> seen = new HashMap<Key, List<Earlier>>();
+   // The number of <text> elements seen so far in the current page
+   private int textsInPage = 0;
+
+   // The content of the current <text> element
+   private char[] buffer = new char[1 << 12];
+   private int length;
+   private long hash1;
+   private long hash2;
+
+   private long duplicates = 0;
+
+   /**
+    * Return the number of {@code <text>} elements replaced by references so far.
+    *
+    * @return the number of {@code <text>} elements replaced by references so far.
+    */
+   public long getDuplicateCount() {
+      return duplicates;
+   }
+
+   @Override
+   public void startDocument() throws SAXException {
+      seen.clear();
+      textsInPage = 0;
+      super.startDocument();
+   }
+
+   @Override
+   public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+      if (localName.equals(PAGE_ELEMENT_NAME)) {
+         seen.clear();
+         textsInPage = 0;
+      }
+      super.startElement(uri, localName, qName, attrs);
+   }
+
+   @Override
+   protected void handleStartTextElement(String uri, String localName, String qName, Attributes attrs)
+         throws SAXException {
+      length = 0;
+      hash1 = 0;
+      hash2 = 0;
+   }
+
+   @Override
+   protected void handleTextElementCharacters(char[] ch, int start, int length) throws SAXException {
+      if (this.length + length > buffer.length) {
+         char[] bigger = new char[Math.max(buffer.length * 2, this.length + length)];
+         System.arraycopy(buffer, 0, bigger, 0, this.length);
+         buffer = bigger;
+      }
+      System.arraycopy(ch, start, buffer, this.length, length);
+      this.length += length;
+      for (int i = start; i < start + length; i++) {
+         hash1 = mulMod(hash1, MULTIPLIER1) + ch[i];
+         if (hash1 >= MODULUS) {
+            hash1 -= MODULUS;
+         }
+         hash2 = mulMod(hash2, MULTIPLIER2) + ch[i];
+         if (hash2 >= MODULUS) {
+            hash2 -= MODULUS;
+         }
+      }
+   }
+
+   // Return (a * b) mod MODULUS, for a < MODULUS and b < 2^21.  The product fits in 82 bits; so, it is split into
+   // the bits above and below bit 61 (2^61 = 1 mod MODULUS).
+   private static long mulMod(long a, long b) {
+      long low = (a & 0xffffffffL) * b;
+      long high = (a >>> 32) * b;
+      // a * b = high * 2^32 + low
+      long sum = (low & MODULUS) + (low >>> 61) + ((high << 32) & MODULUS) + (high >>> 29);
+      sum = (sum & MODULUS) + (sum >>> 61);
+      return sum >= MODULUS ? sum - MODULUS : sum;
+   }
+
+   @Override
+   protected void handleEndTextElement(String uri, String localName, String qName) throws SAXException {
+      int position = textsInPage++;
+      if (length == 0) {
+         return;
+      }
+      Key key = new Key(length, hash1, hash2);
+      List<Earlier> candidates = seen.get(key);
+      if (candidates == null) {
+         candidates = new ArrayList<Earlier>(1);
+         seen.put(key, candidates);
+      }
+      for (Earlier earlier : candidates) {
+         if (matches(earlier.text)) {
+            duplicates++;
+            char[] reference = (MARKER + Integer.toString(earlier.position)).toCharArray();
+            sendCharacters(reference, 0, reference.length);
+            return;
+         }
+      }
+      candidates.add(new Earlier(Arrays.copyOf(buffer, length), position));
+      if (buffer[0] == MARKER) {
+         sendCharacters(ESCAPE, 0, 1);
+      }
+      sendCharacters(buffer, 0, length);
+   }
+
+   // Return true if text is the same as the current text.
+   private boolean matches(char[] text) {
+      if (text.length != length) {
+         return false;
+      }
+      for (int i = 0; i < length; i++) {
+         if (text[i] != buffer[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Return {@code true} if one of the given filters is a {@code DuplicateTextPrefilter} (i.e., if the unmarshaller's
+    * {@link PageFilterListener} must resolve references).
+    *
+    * @param filters the filters
+    * @return {@code true} if one of {@code filters} is a {@code DuplicateTextPrefilter}.
+    */
+   static boolean isAmong(XMLFilter... filters) {
+      for (XMLFilter filter : filters) {
+         if (filter instanceof DuplicateTextPrefilter) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Return {@code true} if {@code ch[start, start + length)} is (the entire content of) a reference.
+    *
+    * @param ch     the characters
+    * @param start  the first character
+    * @param length the number of characters
+    * @return {@code true} if the characters are a reference.
+    */
+   static boolean isReference(char[] ch, int start, int length) {
+      if (length < 2 || length > 11 || ch[start] != MARKER) {
+         return false;
+      }
+      for (int i = start + 1; i < start + length; i++) {
+         if (ch[i] < '0' || ch[i] > '9') {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Return the position (within its page) of the {@code <text>} element to which {@code text} refers.
+    *
+    * @param text the content of a {@code <text>} element
+    * @return the position of the {@code <text>} element to which {@code text} refers, or -1 if {@code text} isn't a
+    *         reference.
+    */
+   static int getReference(StoredText text) {
+      // References are short; so, this check doesn't decode long texts stored elsewhere.
+      if (text == null || text.length() < 2 || text.length() > 11) {
+         return -1;
+      }
+      String content = text.toString();
+      if (content.charAt(0) != MARKER || content.charAt(1) < '0' || content.charAt(1) > '9') {
+         return -1;
+      }
+      try {
+         return Integer.parseInt(content.substring(1));
+      } catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+
+   /**
+    * Undo the escape this filter adds to a text that begins with the marker.
+    *
+    * @param text the content of a {@code <text>} element that isn't a reference
+    * @return the original text ({@code text} itself if it wasn't escaped).
+    */
+   static StoredText unescape(StoredText text) {
+      if (text == null || text.length() < 2 || !text.startsWith(MARKER)) {
+         return text;
+      }
+      String content = text.toString();
+      return content.charAt(1) == MARKER ? StoredText.of(content.substring(1)) : text;
+   }
+}
@@ -0,0 +1,182 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SAX filter that removes entire elements (and their content) that the application doesn't use, so that the
+ * unmarshaller never builds objects for them.  For example, language extraction never uses a revision's
+ * {@code <comment>} or {@code <contributor>}; removing them reduces the number of objects created (and retained)
+ * for every revision.
+ *
+ * <p>Elements are identified by path:  the local names of the element's ancestors and the element itself, separated
+ * by "/", beginning below the root {@code <mediawiki>} element (e.g., {@code page/revision/contributor}).  There are
+ * two ways to describe the elements to remove:</p>
+ * <ul>
+ * <li><em>Dropped</em> paths name the elements to remove.  For example, dropping {@code page/revision/comment}
+ * removes the {@code <comment>} of every revision.</li>
+ * <li><em>Kept</em> paths name the elements to keep.  Every other child of the elements along a kept path is removed.
+ * For example, keeping {@code page/title} and {@code page/revision/text} removes everything except the
+ * {@code <page>} elements, their {@code <title>}s, their {@code <revision>}s, and the revisions' {@code <text>}.
+ * (In particular, it removes {@code <siteinfo>}, because {@code <siteinfo>} is a child of the root, and the root is
+ * along a kept path.)  The content of a kept element is not examined further unless a longer kept path passes
+ * through it.</li>
+ * </ul>
+ *
+ * <p>Kept and dropped paths may be combined.  A dropped path takes precedence over a kept path.</p>
+ *
+ * <p>The unmarshaller does not validate the document; so, removing required elements (e.g., a revision's
+ * {@code <id>}) simply leaves the corresponding properties {@code null}.  Be careful not to remove elements used by
+ * the other filters.  (For example, {@link PostFilterByLanguage} uses each revision's {@code <text>}, and
+ * {@link RevisionPrefilter} uses the {@code <timestamp>}, {@code <contributor>}, and {@code <minor>} elements; so,
+ * place a {@code RevisionPrefilter} before this filter.)</p>
+ */
+public class FieldProjectionPrefilter extends XMLFilterImpl {
+
+   /**
+    * The separator between the element names in a path.
+    */
+   public static final String PATH_SEPARATOR = "/";
+
+   // One node for each element named in (or along) a kept or dropped path.
+   private static class Node {
+      final Map<String, Node> children = new HashMap<String, Node>();
+
+      // Remove this element.
+      boolean drop = false;
+
+      // This element is along a kept path:  Remove its children that aren't.
+      boolean projected = false;
+
+      // This element is named by (or along) a kept path.
+      boolean kept = false;
+
+      Node child(String name) {
+         Node answer = children.get(name);
+         if (answer == null) {
+            answer = new Node();
+            children.put(name, answer);
+         }
+         return answer;
+      }
+   }
+
+   // The node for the root element.
+   private final Node root = new Node();
+
+   // The node for each element enclosing the current position (null for elements no path passes through).
+   private final List<Node> open = new ArrayList<Node>();
+
+   // Number of elements open in the subtree being removed (0 when no subtree is being removed).
+   private int discardDepth = 0;
+
+   private long elementsDropped = 0;
+
+   /**
+    * Constructor
+    *
+    * @param keep the paths of the elements to keep (may be {@code null} or empty)
+    * @param drop the paths of the elements to remove (may be {@code null} or empty)
+    * @throws IllegalArgumentException if a path is empty or contains an empty element name.
+    */
+   public FieldProjectionPrefilter(Collection<String> keep, Collection<String> drop) {
+      if (keep != null) {
+         for (String path : keep) {
+            Node node = root;
+            for (String name : split(path)) {
+               node.projected = true;
+               node = node.child(name);
+               node.kept = true;
+            }
+         }
+      }
+      if (drop != null) {
+         for (String path : drop) {
+            Node node = root;
+            for (String name : split(path)) {
+               node = node.child(name);
+            }
+            node.drop = true;
+         }
+      }
+   }
+
+   private static String[] split(String path) {
+      String[] names = path.split(PATH_SEPARATOR, -1);
+      for (String name : names) {
+         if (name.length() == 0) {
+            throw new IllegalArgumentException("Invalid path \"" + path + "\".");
+         }
+      }
+      return names;
+   }
+
+   /**
+    * Return the number of elements removed so far.  (Elements nested inside a removed element are not counted.)
+    *
+    * @return the number of elements removed so far.
+    */
+   public long getElementsDropped() {
+      return elementsDropped;
+   }
+
+   @Override
+   public void startDocument() throws SAXException {
+      open.clear();
+      discardDepth = 0;
+      super.startDocument();
+   }
+
+   @Override
+   public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+      if (discardDepth > 0) {
+         discardDepth++;
+         return;
+      }
+      Node node;
+      if (open.isEmpty()) {
+         node = root;
+      } else {
+         Node parent = open.get(open.size() - 1);
+         node = (parent == null) ? null : parent.children.get(localName);
+         if (parent != null && ((node != null && node.drop) || (parent.projected && (node == null || !node.kept)))) {
+            elementsDropped++;
+            discardDepth = 1;
+            return;
+         }
+      }
+      open.add(node);
+      super.startElement(uri, localName, qName, atts);
+   }
+
+   @Override
+   public void endElement(String uri, String localName, String qName) throws SAXException {
+      if (discardDepth > 0) {
+         discardDepth--;
+         return;
+      }
+      open.remove(open.size() - 1);
+      super.endElement(uri, localName, qName);
+   }
+
+   @Override
+   public void characters(char[] ch, int start, int length) throws SAXException {
+      if (discardDepth == 0) {
+         super.characters(ch, start, length);
+      }
+   }
+
+   @Override
+   public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+      if (discardDepth == 0) {
+         super.ignorableWhitespace(ch, start, length);
+      }
+   }
+}
@@ -2,14 +2,16 @@ package edu.gvsu.kurmasz.zawilinski;
 
 import edu.gvsu.kurmasz.warszawa.deprecated.joswa.JoswaOption;
 import edu.gvsu.kurmasz.warszawa.deprecated.joswa.JoswaOptionParser;
-import edu.gvsu.kurmasz.warszawa.io.InputHelper;
 import edu.gvsu.kurmasz.warszawa.log.Log;
-import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLFilter;
 
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -68,8 +70,52 @@ public class FilterWiktionaryByLanguage {
 
       @JoswaOption(argName = "limit", usage = "maximum number of characters passed to unmarshaller (per revision)")
       public Integer textSizeLimit = TextSizePrefilter.UNLIMITED;
+
+      @JoswaOption(argName = "n", usage = "number of threads used to parse (or decompress) the input file")
+      public Integer threads = 1;
+
+      @JoswaOption(argName = "template", usage = "name of each language's output file (" + LANGUAGE_PLACEHOLDER
+            + " is replaced by the language)")
+      public String outputTemplate = null;
+
+      @JoswaOption(argName = "date", usage = "keep only revisions made at or after this time (e.g., 2010-02-12 or "
+            + "2010-02-12T16:25:13Z)")
+      public String since = null;
+
+      @JoswaOption(argName = "date", usage = "keep only revisions made before this time")
+      public String until = null;
+
+      @JoswaOption(usage = "discard revisions marked as minor edits")
+      public boolean skipMinor = false;
+
+      @JoswaOption(argName = "paths", usage = "comma-separated paths of the only elements passed to the unmarshaller "
+            + "(e.g., page/title,page/revision/text)")
+      public String keepFields = null;
+
+      @JoswaOption(argName = "paths", usage = "comma-separated paths of elements removed before the unmarshaller "
+            + "(e.g., page/revision/comment,page/revision/contributor)")
+      public String dropFields = null;
+
+      @JoswaOption(argName = "n", usage = "keep only the last n revisions of each page")
+      public Integer lastRevisions = null;
+
+      @JoswaOption(usage = "read, parse, and write on separate threads (and report the time each stage is busy)")
+      public boolean pipeline = false;
+
+      @JoswaOption(argName = "file", usage = "file listing the languages of each page (created if it doesn't exist; "
+            + "otherwise used to skip pages without the language)")
+      public String languageIndex = null;
+
+      @JoswaOption(argName = "file", usage = "record progress in this file so that an interrupted run can be "
+            + "resumed (by running the same command again)")
+      public String checkpoint = null;
    }
 
+   /**
+    * The part of the {@code --outputTemplate} option that is replaced by the language.
+    */
+   public static final String LANGUAGE_PLACEHOLDER = "{lang}";
+
    public static void main(String[] args) throws JAXBException {
 
       // parse the command line.  Command line options are
@@ -84,12 +130,22 @@ public class FilterWiktionaryByLanguage {
       if (leftovers.size() < 1 || options.help) {
          usage_out.println("Usage:  "
                + FilterWiktionaryByLanguage.class.getSimpleName()
-               + " <language> [file] [options]");
+               + " <language>[,<language>...] [file] [options]");
          option_parser.printHelp(usage_out);
          return;
       }
-      // The language is the first argument
+      // The language (or comma-separated list of languages) is the first argument
       options.language = leftovers.get(0);
+      String[] languages = options.language.split(",");
+      if (languages.length > 1 && (options.outputTemplate == null
+            || !options.outputTemplate.contains(LANGUAGE_PLACEHOLDER))) {
+         usage_out.println("Use --outputTemplate (containing \"" + LANGUAGE_PLACEHOLDER
+               + "\") when filtering for more than one language.");
+         return;
+      }
+      if (options.outputTemplate != null) {
+         options.outputFile = options.outputTemplate.replace(LANGUAGE_PLACEHOLDER, options.language);
+      }
 
       // if there is a second argument, it is the file name of the input.
       // default is stdin.  (The default value is defined in the MyOptions class.)
@@ -112,6 +168,58 @@ public class FilterWiktionaryByLanguage {
       }
 
 
+      // Revisions outside the time window (or minor revisions) are removed before their text is examined.
+      final RevisionPrefilter.RevisionPredicate revisionPredicate;
+      try {
+         revisionPredicate = createRevisionPredicate(options);
+      } catch (IllegalArgumentException e) {
+         usage_out.println("Invalid date:  " + e.getMessage());
+         return;
+      }
+
+      // Elements that aren't needed are removed before the unmarshaller builds objects for them.
+      final List<String> keepFields = splitPaths(options.keepFields);
+      final List<String> dropFields = splitPaths(options.dropFields);
+      try {
+         createProjection(keepFields, dropFields);
+      } catch (IllegalArgumentException e) {
+         usage_out.println(e.getMessage());
+         return;
+      }
+
+      if (options.lastRevisions != null && options.lastRevisions < 1) {
+         usage_out.println("--lastRevisions must be at least 1.");
+         return;
+      }
+
+      // Either record the languages of each page, or use a recorded list to skip the pages that don't have the
+      // language.
+      final LanguageIndex collectedIndex;
+      final PagePrefilter.PagePredicate gate;
+      File languageIndexFile = options.languageIndex == null ? null : new File(options.languageIndex);
+      // An index can't be matched to a dump read from standard input.
+      if (languageIndexFile != null && options.inputFile.equals("-")) {
+         error_out.println("Warning:  --languageIndex requires an input file.  The index will not be used.");
+         languageIndexFile = null;
+      }
+      if (languageIndexFile == null) {
+         collectedIndex = null;
+         gate = null;
+      } else if (languageIndexFile.exists()) {
+         collectedIndex = null;
+         gate = openLanguageIndex(languageIndexFile, options.inputFile, languages);
+      } else {
+         collectedIndex = new LanguageIndex();
+         gate = null;
+      }
+
+      if (languages.length > 1) {
+         filterLanguages(options, languages, revisionPredicate, keepFields, dropFields, postFilterLog, textSizeLog,
+               withLanguageIndex(collectedIndex, gate, new XMLFilter[0]));
+         saveLanguageIndex(collectedIndex, languageIndexFile, options.inputFile);
+         return;
+      }
+
       // The pre-filter and post-filter work together.  The pre-filter removes all the text
       // from an entry that is outside the subsection for the particular language.  If an entry
       // does have a section for the specified language, then the data passed to the unmarshaller
@@ -121,31 +229,287 @@ public class FilterWiktionaryByLanguage {
       // pre-filter that actually modifies the data.  The post filter simply decides which elements
       // to keep in the DOM and which to discard.
 
-      LanguagePrefilter lpf = new LanguagePrefilter(options.language);
-      edu.gvsu.kurmasz.zawilinski.PostFilterByLanguage postFilter = new edu.gvsu.kurmasz.zawilinski.PostFilterByLanguage();
+      final String language = options.language;
+      final int textSizeLimit = options.textSizeLimit;
+      final Integer lastRevisions = options.lastRevisions;
+      final Log finalTextSizeLog = textSizeLog;
 
-      // pfwl.addSAXFilter(new BugChecker("Top"));
-      // pfwl.addSAXFilter(new PerformanceFilter(new PrintStream(new
+      // Filters keep state; so, each thread needs its own set.
+      ParallelMediaWikiLoader.FilterFactory filters = new ParallelMediaWikiLoader.FilterFactory() {
+         public XMLFilter[] createPrefilters() {
+            // Some Wiktionary entries have been vandalized by adding several gigabytes of random
+            // text.  The TextSizePrefilter prevents these entries from unnecessarily slowing down (or
+            // even crashing) the filter.
+            XMLFilter[] prefilters = {new LanguagePrefilter(language),
+                  new TextSizePrefilter(textSizeLimit, finalTextSizeLog)};
+            return withLanguageIndex(collectedIndex, gate, withRevisionPrefilter(revisionPredicate,
+                  withProjection(createProjection(keepFields, dropFields), prefilters)));
+         }
 
-      // Some Wiktionary entries have been vandalized by adding several gigabytes of random
-      // text.  This filter prevents these entries from unnecessarily slowing down (or
-      // even crashing) the filter.
-      TextSizePrefilter lts = new TextSizePrefilter(options.textSizeLimit, textSizeLog);
+         public PostFilter createPostFilter() {
+            return withRevisionLimit(new PostFilterByLanguage(), lastRevisions);
+         }
+      };
 
       WiktionaryWriter writer = new WiktionaryWriter();
 
-      try {
-         JAXBElement<MediaWikiType> root = PostFilteredMediaWikiLoader.load(InputHelper
-               .openMappedAndFilteredInputStream(options.inputFile), postFilterLog, postFilter, lpf, lts);
+      if (options.checkpoint != null) {
+         if (options.outputFile.equals("-") || !CheckpointedMediaWikiLoader.canLoad(options.inputFile)) {
+            error_out.println("Warning:  --checkpoint requires an uncompressed or bzip2 input file and an output "
+                  + "file.  No checkpoints will be recorded.");
+         } else {
+            if (options.pipeline) {
+               error_out.println("Warning:  --pipeline is ignored when recording checkpoints.");
+            }
+            File checkpointFile = new File(options.checkpoint);
+            if (checkpointFile.exists()) {
+               error_out.println("Resuming from \"" + checkpointFile + "\".");
+            }
+            try {
+               CheckpointedMediaWikiLoader.load(new File(options.inputFile), postFilterLog, options.threads,
+                     filters, writer, new File(options.outputFile), checkpointFile,
+                     CheckpointedMediaWikiLoader.DEFAULT_INTERVAL);
+            } catch (IOException e) {
+               error_out.println("Could not filter \"" + options.inputFile + "\":  " + e.getMessage());
+               return;
+            }
+            saveLanguageIndex(collectedIndex, languageIndexFile, options.inputFile);
+            return;
+         }
+      }
+
+      // Only uncompressed files can be divided among several threads.  (bzip2 files can at least be
+      // decompressed by several threads.)
+      boolean parallel = options.threads > 1 && ParallelMediaWikiLoader.canLoad(options.inputFile);
+      if (options.threads > 1 && !parallel && !ParallelMediaWikiLoader.isBzip2File(options.inputFile)) {
+         error_out.println("Warning:  \"" + options.inputFile
+               + "\" is not an uncompressed or bzip2 file.  Using one thread.");
+      }
+      if (parallel && options.pipeline) {
+         error_out.println("Warning:  --pipeline is ignored when the input is parsed by several threads.");
+      }
+
+      // Each page is written as soon as the post-filter accepts it; so, the kept pages never accumulate in memory.
+      InputStream input = null;
+      if (!parallel) {
          try {
-            writer.write(root, options.outputFile);
-         } catch (FileNotFoundException fnf) {
-            error_out.println("Cannot open \"" + options.outputFile
-                  + "\" for writing.");
+            input = ParallelMediaWikiLoader.openInputStream(options.inputFile, options.threads);
+         } catch (FileNotFoundException fnfe) {
+            error_out.println("Could not open \"" + options.inputFile
+                  + "\".");
+            return;
+         }
+      }
+
+      WiktionaryWriter.FilePageHandler output;
+      try {
+         output = writer.streamTo(options.outputFile);
+      } catch (FileNotFoundException fnf) {
+         error_out.println("Cannot open \"" + options.outputFile
+               + "\" for writing.");
+         return;
+      }
+
+      try {
+         if (parallel) {
+            try {
+               ParallelMediaWikiLoader.load(new File(options.inputFile), postFilterLog, options.threads, filters,
+                     output);
+            } catch (IOException e) {
+               error_out.println("Could not read \"" + options.inputFile + "\":  " + e.getMessage());
+            }
+         } else if (options.pipeline) {
+            try {
+               printStageStats(PipelinedMediaWikiLoader.load(input, postFilterLog, filters.createPostFilter(), output,
+                     filters.createPrefilters()));
+            } catch (IOException e) {
+               error_out.println("Could not read \"" + options.inputFile + "\":  " + e.getMessage());
+            }
+         } else {
+            StreamingMediaWikiLoader.load(input, postFilterLog, filters.createPostFilter(), output,
+                  filters.createPrefilters());
          }
+      } finally {
+         closeQuietly(output);
+      }
+      saveLanguageIndex(collectedIndex, languageIndexFile, options.inputFile);
+   } // end main
+
+   // Filter for several languages in one pass.  Each language is written to its own file.
+   private static void filterLanguages(MyOptions options, String[] languages,
+                                       RevisionPrefilter.RevisionPredicate revisionPredicate,
+                                       List<String> keepFields, List<String> dropFields, Log postFilterLog,
+                                       Log textSizeLog, XMLFilter[] indexFilters) throws JAXBException {
+      if (options.threads > 1 && ParallelMediaWikiLoader.canLoad(options.inputFile)) {
+         error_out.println("Warning:  Several languages are parsed using one thread.");
+      }
+      if (options.pipeline) {
+         error_out.println("Warning:  --pipeline is ignored when filtering for several languages.");
+      }
+      if (options.checkpoint != null) {
+         error_out.println("Warning:  --checkpoint is ignored when filtering for several languages.");
+      }
+
+      InputStream input;
+      try {
+         input = ParallelMediaWikiLoader.openInputStream(options.inputFile, options.threads);
       } catch (FileNotFoundException fnfe) {
          error_out.println("Could not open \"" + options.inputFile
                + "\".");
+         return;
       }
-   } // end main
+
+      WiktionaryWriter writer = new WiktionaryWriter();
+      PostFilter[] postFilters = new PostFilter[languages.length];
+      WiktionaryWriter.FilePageHandler[] outputs = new WiktionaryWriter.FilePageHandler[languages.length];
+      try {
+         for (int i = 0; i < languages.length; i++) {
+            String outputFile = options.outputTemplate.replace(LANGUAGE_PLACEHOLDER, languages[i]);
+            try {
+               outputs[i] = writer.streamTo(outputFile);
+            } catch (FileNotFoundException fnf) {
+               error_out.println("Cannot open \"" + outputFile
+                     + "\" for writing.");
+               return;
+            }
+            postFilters[i] = withRevisionLimit(new PostFilterByLanguage(), options.lastRevisions);
+         }
+
+         // The text size limit is applied to each <text> element before it is divided among the languages.
+         MultiLanguageMediaWikiLoader.load(new InputSource(input), postFilterLog,
+               new MultiLanguagePrefilter(Arrays.asList(languages)), postFilters, outputs,
+               concat(indexFilters, withRevisionPrefilter(revisionPredicate,
+                     withProjection(createProjection(keepFields, dropFields),
+                           new XMLFilter[]{new TextSizePrefilter(options.textSizeLimit, textSizeLog)}))));
+      } finally {
+         for (WiktionaryWriter.FilePageHandler output : outputs) {
+            closeQuietly(output);
+         }
+      }
+   }
+
+   // Close an output file (if it was opened).  The files are closed normally when the document ends; so, this
+   // matters only when the filter fails part way through.
+   private static void closeQuietly(WiktionaryWriter.FilePageHandler output) {
+      if (output == null) {
+         return;
+      }
+      try {
+         output.close();
+      } catch (IOException e) {
+         error_out.println("Could not close output:  " + e.getMessage());
+      }
+   }
+
+   // Return a gate that skips the pages the language index says don't contain any of the languages (or null if the
+   // index can't be used).
+   private static PagePrefilter.PagePredicate openLanguageIndex(File indexFile, String inputFile,
+                                                               String[] languages) {
+      LanguageIndex index;
+      try {
+         index = LanguageIndex.load(indexFile);
+      } catch (IOException e) {
+         error_out.println("Warning:  Could not read \"" + indexFile + "\" (" + e.getMessage()
+               + ").  No pages will be skipped.");
+         return null;
+      }
+      if (index.getDumpSize() != new File(inputFile).length()) {
+         error_out.println("Warning:  \"" + indexFile + "\" was not made from \"" + inputFile
+               + "\".  No pages will be skipped.");
+         return null;
+      }
+      return index.gate(languages);
+   }
+
+   // Write the language index (if one was collected).
+   private static void saveLanguageIndex(LanguageIndex index, File indexFile, String inputFile) {
+      if (index == null) {
+         return;
+      }
+      try {
+         index.save(indexFile, new File(inputFile).length());
+      } catch (IOException e) {
+         error_out.println("Could not write \"" + indexFile + "\":  " + e.getMessage());
+      }
+   }
+
+   // Place the LanguageIndexPrefilter or the PagePrefilter for the language index (if any) at the beginning of the
+   // list of prefilters.  Either must see the pages before any other filter.
+   private static XMLFilter[] withLanguageIndex(LanguageIndex collectedIndex, PagePrefilter.PagePredicate gate,
+                                                XMLFilter[] prefilters) {
+      if (collectedIndex != null) {
+         return concat(new XMLFilter[]{new LanguageIndexPrefilter(collectedIndex)}, prefilters);
+      } else if (gate != null) {
+         return concat(new XMLFilter[]{new PagePrefilter(gate)}, prefilters);
+      }
+      return prefilters;
+   }
+
+   private static XMLFilter[] concat(XMLFilter[] first, XMLFilter[] second) {
+      XMLFilter[] answer = new XMLFilter[first.length + second.length];
+      System.arraycopy(first, 0, answer, 0, first.length);
+      System.arraycopy(second, 0, answer, first.length, second.length);
+      return answer;
+   }
+
+   // Report the time each stage of the pipeline spent working and waiting.
+   static void printStageStats(PipelinedMediaWikiLoader.StageStats[] stats) {
+      for (PipelinedMediaWikiLoader.StageStats stage : stats) {
+         error_out.println(stage);
+      }
+   }
+
+   // Return the predicate described by the --since, --until, and --skipMinor options (or null if there are
+   // no such options).
+   private static RevisionPrefilter.RevisionPredicate createRevisionPredicate(MyOptions options) {
+      if (options.since == null && options.until == null && !options.skipMinor) {
+         return null;
+      }
+      long since = options.since == null ? Long.MIN_VALUE : Util.parseTimestamp(options.since);
+      long until = options.until == null ? Long.MAX_VALUE : Util.parseTimestamp(options.until);
+      return new RevisionPrefilter.WindowPredicate(since, until, options.skipMinor);
+   }
+
+   // Keep only the last lastRevisions revisions of each page (if lastRevisions isn't null).
+   static PostFilter withRevisionLimit(PostFilter filter, Integer lastRevisions) {
+      return lastRevisions == null ? filter : new LastRevisionsPostFilter(filter, lastRevisions);
+   }
+
+   // Split a comma-separated list of paths (or return null if there is no list).
+   private static List<String> splitPaths(String paths) {
+      return paths == null ? null : Arrays.asList(paths.split(","));
+   }
+
+   // Return the filter described by the --keepFields and --dropFields options (or null if there are no such
+   // options).
+   private static FieldProjectionPrefilter createProjection(List<String> keepFields, List<String> dropFields) {
+      if (keepFields == null && dropFields == null) {
+         return null;
+      }
+      return new FieldProjectionPrefilter(keepFields, dropFields);
+   }
+
+   // Place the projection filter (if any) at the beginning of the list of prefilters.  (A RevisionPrefilter, if any,
+   // goes before it, because the RevisionPrefilter examines elements the projection may remove.)
+   private static XMLFilter[] withProjection(FieldProjectionPrefilter projection, XMLFilter[] prefilters) {
+      if (projection == null) {
+         return prefilters;
+      }
+      XMLFilter[] answer = new XMLFilter[prefilters.length + 1];
+      answer[0] = projection;
+      System.arraycopy(prefilters, 0, answer, 1, prefilters.length);
+      return answer;
+   }
+
+   // Place a RevisionPrefilter (if needed) at the beginning of the list of prefilters.
+   private static XMLFilter[] withRevisionPrefilter(RevisionPrefilter.RevisionPredicate predicate,
+                                                    XMLFilter[] prefilters) {
+      if (predicate == null) {
+         return prefilters;
+      }
+      XMLFilter[] answer = new XMLFilter[prefilters.length + 1];
+      answer[0] = new RevisionPrefilter(predicate);
+      System.arraycopy(prefilters, 0, answer, 1, prefilters.length);
+      return answer;
+   }
 } // end FilterWiktionaryByLanguage
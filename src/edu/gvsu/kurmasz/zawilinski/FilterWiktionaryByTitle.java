@@ -1,16 +1,24 @@
 package edu.gvsu.kurmasz.zawilinski;
 
-import edu.gvsu.kurmasz.warszawa.io.InputHelper;
+import edu.gvsu.kurmasz.warszawa.deprecated.joswa.JoswaOption;
+import edu.gvsu.kurmasz.warszawa.deprecated.joswa.JoswaOptionParser;
 import edu.gvsu.kurmasz.warszawa.log.Log;
 import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
 import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
-import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+import org.xml.sax.XMLFilter;
 
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -21,52 +29,68 @@ public class FilterWiktionaryByTitle {
     private static final PrintStream usage_out = System.err;
     private static final PrintStream error_out = System.err;
 
-    private static class TitlePostFilter implements PostFilter {
+    /**
+     * Container for command-line options.
+     */
+    public static class MyOptions {
+        @JoswaOption(shortName = 'h', usage = "display this help message")
+        public boolean help = false;
+
+        @JoswaOption(argName = "n", usage = "number of threads used to parse (or decompress) the input file")
+        public Integer threads = 1;
+
+        @JoswaOption(usage = "copy the matching pages byte-for-byte from the (uncompressed) input file")
+        public boolean passthrough = false;
+
+        @JoswaOption(argName = "n", usage = "keep only the last n revisions of each page")
+        public Integer lastRevisions = null;
+
+        @JoswaOption(usage = "read, parse, and write on separate threads (and report the time each stage is busy)")
+        public boolean pipeline = false;
+
+        @JoswaOption(argName = "file", usage = "page index of the (uncompressed) input file; built if it doesn't exist")
+        public String index = null;
+    }
+
+    private static class TitlePredicate implements PagePrefilter.PagePredicate {
 
         private Pattern[] patterns;
-        private PageType currentPage;
-        private boolean keepCurrentPage;
 
-        private TitlePostFilter(Pattern[] patterns) {
+        private TitlePredicate(Pattern[] patterns) {
             this.patterns = patterns;
         }
 
-        public boolean keepPage(PageType page) {
-
-            if (page == currentPage) {
-                return keepCurrentPage;
+        public boolean keepPage(String title, String namespace, String id) {
+            if (title == null) {
+                return false;
             }
-
-            currentPage = page;
-            String title = page.getTitle();
             for (Pattern p : patterns) {
                 if (p.matcher(title).find()) {
-                    keepCurrentPage = true;
                     return true;
                 }
             }
-            keepCurrentPage = false;
             return false;
         }
-
-        public boolean keepRevision(RevisionType revision, PageType page) {
-            return keepPage(page);
-        }
     }
 
 
     public static void main(String[] args) throws JAXBException {
 
-        if (args.length < 2) {
+        MyOptions options = new MyOptions();
+        JoswaOptionParser option_parser = new JoswaOptionParser(options);
+        List<String> leftovers = option_parser.parse(args);
+
+        if (leftovers.size() < 2 || options.help) {
             usage_out.println("Usage:  "
                     + FilterWiktionaryByTitle.class.getSimpleName()
-                    + " file regexp1 [regexp2] [regexp3] ...");
+                    + " file regexp1 [regexp2] [regexp3] ... [options]");
+            option_parser.printHelp(usage_out);
             System.exit(1);
         }
 
-        String inputFile = args[0];
+        String inputFile = leftovers.get(0);
         String logfile = "titlePrefilter.log";
-        Log log;
+        final Log log;
 
         log = new Log();
 //        try {
@@ -78,28 +102,184 @@ public class FilterWiktionaryByTitle {
 //        }
 
 
-        Pattern[] patterns = new Pattern[args.length - 1];
-        for (int i = 0; i < args.length - 1; i++) {
-            patterns[i] = Pattern.compile(args[i + 1]);
+        final Pattern[] patterns = new Pattern[leftovers.size() - 1];
+        for (int i = 0; i < leftovers.size() - 1; i++) {
+            patterns[i] = Pattern.compile(leftovers.get(i + 1));
+        }
+
+        if (options.lastRevisions != null && options.lastRevisions < 1) {
+            usage_out.println("--lastRevisions must be at least 1.");
+            System.exit(1);
         }
+        final Integer lastRevisions = options.lastRevisions;
 
-        TitlePostFilter postFilter = new TitlePostFilter(patterns);
+        // Copying the original bytes avoids unmarshalling and re-marshalling the kept pages.
+        if (options.passthrough) {
+            if (lastRevisions != null) {
+                // Passthrough copies entire pages.
+                error_out.println("Warning:  --passthrough can't be combined with --lastRevisions.  "
+                        + "Re-writing the kept pages instead.");
+            } else if (ParallelMediaWikiLoader.canLoad(inputFile)) {
+                try {
+                    passthrough(inputFile, patterns);
+                } catch (IOException e) {
+                    error_out.println("Could not copy \"" + inputFile + "\":  " + e.getMessage());
+                }
+                return;
+            } else {
+                error_out.println("Warning:  \"" + inputFile
+                        + "\" is not an uncompressed file.  Re-writing the kept pages instead.");
+            }
+        }
 
-        // Some Wiktionary entries have been vandalized by adding several gigabytes of random
-        // text.  This filter prevents these entries from unnecessarily slowing down (or
-        // even crashing) the filter.
-        TextSizePrefilter lts = new TextSizePrefilter(1000000, log);
+        // Filters keep state; so, each thread needs its own set.
+        ParallelMediaWikiLoader.FilterFactory filters = new ParallelMediaWikiLoader.FilterFactory() {
+            public XMLFilter[] createPrefilters() {
+                // Discard unwanted pages before they are unmarshalled.
+                // Some Wiktionary entries have been vandalized by adding several gigabytes of random
+                // text.  The TextSizePrefilter prevents these entries from unnecessarily slowing down (or
+                // even crashing) the filter.
+                return new XMLFilter[]{new PagePrefilter(new TitlePredicate(patterns)),
+                        new TextSizePrefilter(1000000, log)};
+            }
+
+            public PostFilter createPostFilter() {
+                return FilterWiktionaryByLanguage.withRevisionLimit(PostFilter.KEEP_ALL, lastRevisions);
+            }
+        };
 
         WiktionaryWriter writer = new WiktionaryWriter();
+        PageHandler output = writer.streamTo(new BufferedOutputStream(System.out));
+
+        // The index locates the matching pages without scanning the dump.
+        if (options.index != null) {
+            if (ParallelMediaWikiLoader.canLoad(inputFile)) {
+                try {
+                    loadIndexed(inputFile, new File(options.index), patterns, log, filters, output);
+                } catch (IOException e) {
+                    error_out.println("Could not read \"" + inputFile + "\" using \"" + options.index + "\":  "
+                            + e.getMessage());
+                }
+                return;
+            }
+            error_out.println("Warning:  \"" + inputFile
+                    + "\" is not an uncompressed file.  Scanning the entire file instead of using the index.");
+        }
+
+        // Only uncompressed files can be divided among several threads.  (bzip2 files can at least be
+        // decompressed by several threads.)
+        if (options.threads > 1) {
+            if (ParallelMediaWikiLoader.canLoad(inputFile)) {
+                if (options.pipeline) {
+                    error_out.println("Warning:  --pipeline is ignored when the input is parsed by several threads.");
+                }
+                try {
+                    ParallelMediaWikiLoader.load(new File(inputFile), log, options.threads, filters, output);
+                } catch (IOException e) {
+                    error_out.println("Could not read \"" + inputFile + "\":  " + e.getMessage());
+                }
+                return;
+            }
+            if (!ParallelMediaWikiLoader.isBzip2File(inputFile)) {
+                error_out.println("Warning:  \"" + inputFile
+                        + "\" is not an uncompressed or bzip2 file.  Using one thread.");
+            }
+        }
 
         try {
-            JAXBElement<MediaWikiType> root = PostFilteredMediaWikiLoader.load(InputHelper
-                    .openMappedAndFilteredInputStream(inputFile), log, postFilter, lts);
-            writer.write(root, System.out);
+            InputStream input = ParallelMediaWikiLoader.openInputStream(inputFile, options.threads);
+            if (options.pipeline) {
+                FilterWiktionaryByLanguage.printStageStats(PipelinedMediaWikiLoader.load(input, log,
+                        filters.createPostFilter(), output, filters.createPrefilters()));
+            } else {
+                StreamingMediaWikiLoader.load(input, log, filters.createPostFilter(), output,
+                        filters.createPrefilters());
+            }
         } catch (FileNotFoundException fnfe) {
             error_out.println("Could not open \"" + inputFile
                     + "\".");
+        } catch (IOException e) {
+            error_out.println("Could not read \"" + inputFile + "\":  " + e.getMessage());
         }
     } // end main
 
+    private static void loadIndexed(String inputFile, File indexFile, Pattern[] patterns, Log log,
+                                    ParallelMediaWikiLoader.FilterFactory filters, PageHandler output)
+            throws IOException, JAXBException {
+        MappedDump dump = new MappedDump(new File(inputFile));
+        try {
+            if (!indexFile.exists()) {
+                error_out.println("Building index \"" + indexFile + "\".");
+                PageIndex.build(dump, indexFile);
+            }
+            PageIndex index = new PageIndex(indexFile);
+            try {
+                if (index.getDumpSize() != dump.size()) {
+                    throw new IOException("The index is out of date.  Delete it to rebuild it.");
+                }
+                List<PageIndex.Entry> entries = new ArrayList<PageIndex.Entry>();
+                String[] titles = exactTitles(patterns);
+                if (titles != null) {
+                    // Each title can be found by binary search.
+                    for (String title : titles) {
+                        PageIndex.Entry entry = index.find(title);
+                        if (entry != null) {
+                            entries.add(entry);
+                        }
+                    }
+                } else {
+                    TitlePredicate predicate = new TitlePredicate(patterns);
+                    for (int i = 0; i < index.size(); i++) {
+                        PageIndex.Entry entry = index.get(i);
+                        if (predicate.keepPage(entry.getTitle(), null, null)) {
+                            entries.add(entry);
+                        }
+                    }
+                }
+
+                MediaWikiType root = index.load(dump, entries, log, filters.createPostFilter(),
+                        filters.createPrefilters()).getValue();
+                output.beginDocument(root);
+                for (PageType page : root.getPage()) {
+                    output.handlePage(page);
+                }
+                output.endDocument(root);
+            } finally {
+                index.close();
+            }
+        } finally {
+            dump.close();
+        }
+    }
+
+    // If every pattern has the form ^title$ (with no other special characters), return the titles.  Otherwise,
+    // return null.
+    private static String[] exactTitles(Pattern[] patterns) {
+        String[] titles = new String[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            String regexp = patterns[i].pattern();
+            if (regexp.length() < 2 || !regexp.startsWith("^") || !regexp.endsWith("$")) {
+                return null;
+            }
+            String title = regexp.substring(1, regexp.length() - 1);
+            for (char c : title.toCharArray()) {
+                if ("\\.[]{}()*+?^$|".indexOf(c) >= 0) {
+                    return null;
+                }
+            }
+            titles[i] = title;
+        }
+        return titles;
+    }
+
+    private static void passthrough(String inputFile, Pattern[] patterns) throws IOException {
+        MappedDump dump = new MappedDump(new File(inputFile));
+        FileChannel out = new FileOutputStream(FileDescriptor.out).getChannel();
+        try {
+            new PagePassthrough(dump, new TitlePredicate(patterns)).copyTo(out);
+        } finally {
+            dump.close();
+        }
+    }
+
 }
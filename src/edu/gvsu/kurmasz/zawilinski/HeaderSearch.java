@@ -60,10 +60,16 @@ class HeaderSearch {
 
    private Stage stage = Stage.PRE;
    private int foundInStage = 0;
-   private StringBuffer buffer = new StringBuffer();
 
-   private int openSize;
+   // The full header ("==" + content + "==") is assembled in this buffer.  The buffer is re-used
+   // (and grown as necessary) so that searching allocates no memory.  The content begins at
+   // CONTENT_OFFSET and is contentLength characters long.  The closing "==" is written
+   // only when the header is complete.
+   private char[] buffer = new char[64];
+   private int contentLength = 0;
+   private final Content content = new Content();
 
+   private int openSize;
 
    // For now, we don't anticipate these values changing.  At some point,
    // we may want to make these regular instance variables. If you do make
@@ -79,6 +85,64 @@ class HeaderSearch {
    private static final String HEADER = "==";
    private static final int DESIRED_HEADER_LEVEL = HEADER.length();
    private static final char HEADER_CHAR = HEADER.charAt(0);
+   private static final int CONTENT_OFFSET = HEADER.length();
+
+   /**
+    * Constructor
+    */
+   public HeaderSearch() {
+      HEADER.getChars(0, HEADER.length(), buffer, 0);
+   }
+
+   /**
+    * A view of the header content inside {@code buffer}.  (This allows the content to be
+    * matched against a regular expression without creating a {@code String}.)
+    */
+   private class Content implements CharSequence {
+      public int length() {
+         return contentLength;
+      }
+
+      public char charAt(int index) {
+         if (index < 0 || index >= contentLength) {
+            throw new IndexOutOfBoundsException("index " + index);
+         }
+         return buffer[CONTENT_OFFSET + index];
+      }
+
+      public CharSequence subSequence(int start, int end) {
+         return toString().subSequence(start, end);
+      }
+
+      @Override
+      public String toString() {
+         return new String(buffer, CONTENT_OFFSET, contentLength);
+      }
+   }
+
+   /**
+    * Prepare to search for a new header (e.g., at the beginning of a new {@code <text>} element,
+    * or after finding a header).
+    */
+   public void reset() {
+      setStage(Stage.PRE);
+      contentLength = 0;
+   }
+
+   private void append(char ch) {
+      // leave room for the closing header markup
+      if (CONTENT_OFFSET + contentLength + HEADER.length() >= buffer.length) {
+         char[] bigger = new char[buffer.length * 2];
+         System.arraycopy(buffer, 0, bigger, 0, CONTENT_OFFSET + contentLength);
+         buffer = bigger;
+      }
+      buffer[CONTENT_OFFSET + contentLength++] = ch;
+   }
+
+   // Write the closing markup after the content.
+   private void closeHeader() {
+      HEADER.getChars(0, HEADER.length(), buffer, CONTENT_OFFSET + contentLength);
+   }
 
    private boolean isOpen(char c) {
       return c == HEADER_CHAR;
@@ -113,9 +177,7 @@ class HeaderSearch {
          foundInStage++;
       } else if (foundInStage >= MIN_HEADER_LEVEL) {
          // Make sure we start each header section with a clean buffer
-         if (buffer.length() > 0) {
-            buffer = new StringBuffer();
-         }
+         contentLength = 0;
          openSize = foundInStage;
          setStage(Stage.IN);
          processIn(ch);
@@ -128,7 +190,7 @@ class HeaderSearch {
    private void processIn(char ch) {
       if (isHeader(ch)) {
          //foundInStage++;  At present, we don't care how many characters are in the header content.
-         buffer.append(ch);
+         append(ch);
       } else if (isClose(ch)) {
          setStage(Stage.CLOSE);
          processClose(ch);
@@ -143,11 +205,12 @@ class HeaderSearch {
          foundInStage++;
       } else if (foundInStage < MIN_HEADER_LEVEL) {
          for (int i = 0; i < foundInStage; i++) {
-            buffer.append(HEADER_CHAR);
+            append(HEADER_CHAR);
          }
          setStage(Stage.IN);
          processIn(ch);
       } else if (foundInStage == DESIRED_HEADER_LEVEL && openSize == DESIRED_HEADER_LEVEL) {
+         closeHeader();
          setStage(Stage.POST);
       } else { // foundInStage != DESIRED_HEADER_LEVEL or openSize != DESIRED_HEADER_LEVEL
          setStage(Stage.PRE);
@@ -173,39 +236,109 @@ class HeaderSearch {
       }
    }
 
-    /**
-     * Process a set of characters
-     * @param ch the set of characters
-     * @param start the index of the first character to examine
-     * @param length the number of characters to examine
-     * @return a {@link Result} object describing the results of the search.
-     */
-   public Result process(char[] ch, int start, int length) {
-      for (int i = start; i < start + length; i++) {
+   /**
+    * Search a set of characters for the end of a header.  This method allocates no memory.  When it finds a header,
+    * the header's content is available from {@link #getHeaderContent()}, and the full header from
+    * {@link #getFullHeader()}.  Call {@link #reset()} before searching for the next header.
+    *
+    * @param ch     the set of characters
+    * @param start  the index of the first character to examine
+    * @param length the number of characters to examine
+    * @return the index of the first character after the full header, or -1 if no header has been completed.
+    */
+   public int find(char[] ch, int start, int length) {
+      int end = start + length;
+      for (int i = start; i < end; i++) {
+         if (stage == Stage.PRE) {
+            // Fast path:  Almost every character is examined in the PRE stage, and only the
+            // header character can end that stage.  So, skip directly to the next one.
+            i = indexOfHeaderChar(ch, i, end);
+            if (i == end) {
+               return -1;
+            }
+         }
          processChar(ch[i]);
          if (stage == Stage.POST) {
-            return new Result(buffer.toString(), i);
+            return i;
          }
       }
-      return null;
-   }
-
-    /**
-     * Return a {@link Result} if the status of the search is simply waiting for one more character to verify that
-     * the header is balanced. This is used to check for a header at the very end of the input.
-     * @return a {@link Result} object describing the results of the search.
-     */
-    public Result getCurrentContent() {
-        if (stage == Stage.CLOSE && foundInStage == DESIRED_HEADER_LEVEL && openSize == DESIRED_HEADER_LEVEL ) {
-            return new Result(buffer.toString(), -1);
-        } else {
-            return null;
-        }
-    }
+      return -1;
+   }
+
+   // Return the index of the first header character in ch[from, end), or end if there is none.
+   // package scope for testing
+   static int indexOfHeaderChar(char[] ch, int from, int end) {
+      int i = from;
+      // Keep this loop simple:  The JIT compiles it into a tight scan.
+      while (i < end && ch[i] != HEADER_CHAR) {
+         i++;
+      }
+      return i;
+   }
 
+   /**
+    * Process a set of characters
+    *
+    * @param ch     the set of characters
+    * @param start  the index of the first character to examine
+    * @param length the number of characters to examine
+    * @return a {@link Result} object describing the results of the search.
+    */
+   public Result process(char[] ch, int start, int length) {
+      int next = find(ch, start, length);
+      return next < 0 ? null : new Result(content.toString(), next);
+   }
+
+   /**
+    * Return a {@link Result} if the status of the search is simply waiting for one more character to verify that
+    * the header is balanced. This is used to check for a header at the very end of the input.
+    *
+    * @return a {@link Result} object describing the results of the search.
+    */
+   public Result getCurrentContent() {
+      if (possiblyComplete()) {
+         return new Result(content.toString(), -1);
+      } else {
+         return null;
+      }
+   }
+
+   /**
+    * Return {@code true} if the search is simply waiting for one more character to verify that the header is
+    * balanced.
+    *
+    * @return {@code true} if the characters processed so far end with a complete header.
+    */
    public boolean possiblyComplete() {
-      return getCurrentContent() != null;
+      return stage == Stage.CLOSE && foundInStage == DESIRED_HEADER_LEVEL && openSize == DESIRED_HEADER_LEVEL;
+   }
+
+   /**
+    * Return the content of the most recently found header (e.g., the "Polish" part of "==Polish==").  The returned
+    * object is a view of an internal buffer:  It changes when the search continues.
+    *
+    * @return the content of the most recently found header.
+    */
+   public CharSequence getHeaderContent() {
+      return content;
    }
 
+   /**
+    * Return a buffer containing the full header (e.g., "==Polish==") beginning at index 0.  (Use
+    * {@link #getFullHeaderLength()} to find its length.)  The buffer is re-used when the search continues.
+    *
+    * @return a buffer containing the full header.
+    */
+   public char[] getFullHeader() {
+      return buffer;
+   }
 
+   /**
+    * Return the length of the full header in the buffer returned by {@link #getFullHeader()}.
+    *
+    * @return the length of the full header.
+    */
+   public int getFullHeaderLength() {
+      return contentLength + 2 * HEADER.length();
+   }
 }
@@ -0,0 +1,25 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+/**
+ * Binds the schema's {@code positiveInteger} and {@code nonNegativeInteger} elements (page, revision, and
+ * contributor ids, {@code <parentid>}, {@code <ns>}, etc.) to {@code Long} instead of {@code BigInteger}.  A
+ * {@code Long} is quicker to parse and much smaller, which matters when a dump contains millions of revisions.
+ * Callers that used the {@code BigInteger} (e.g., {@code revision.getId().toString()} or
+ * {@code page.getId().intValue()}) work unchanged.
+ *
+ * <p>This class is named in {@code schemas/bindings-0.10.xjb}; the schema-derived classes refer to it.</p>
+ */
+public class IdAdapter extends XmlAdapter<String, Long> {
+
+   @Override
+   public Long unmarshal(String value) {
+      return value == null ? null : Long.valueOf(value.trim());
+   }
+
+   @Override
+   public String marshal(Long value) {
+      return value == null ? null : value.toString();
+   }
+}
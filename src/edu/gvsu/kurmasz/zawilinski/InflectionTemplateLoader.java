@@ -138,7 +138,7 @@ public class InflectionTemplateLoader {
 	 * inflection data.
 	 */
   private static String getTemplate(RevisionType revision, SimpleLog progressLog) {
-    String text = revision.getText().getValue();
+    String text = Util.getText(revision);
 
     assert text.startsWith("==") : "Doesn't start with expected string!";
 
@@ -0,0 +1,181 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.zawilinski.MediaWikiLoader.XMLConfigurationException;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEventHandler;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A process-wide {@code JAXBContext} for the current MediaWiki schema, together with pools of {@code Unmarshaller}s
+ * and {@code Marshaller}s.
+ *
+ * <p>Creating a {@code JAXBContext} is expensive (it examines every schema-derived class), but a context is
+ * thread-safe; so, one context is created (the first time it is needed) and shared.  {@code Unmarshaller}s and
+ * {@code Marshaller}s are cheaper, but not thread-safe.  Code that needs one should borrow it, use it in one
+ * thread, then return it:</p>
+ * <pre>
+ *    Unmarshaller unmarshaller = JAXBPool.borrowUnmarshaller();
+ *    try {
+ *       ...
+ *    } finally {
+ *       JAXBPool.returnUnmarshaller(unmarshaller);
+ *    }
+ * </pre>
+ *
+ * <p>If a pool is empty, a new object is created.  If a pool is full, returned objects are discarded.  Thus, the
+ * pools never block.</p>
+ */
+public final class JAXBPool {
+
+   /**
+    * The maximum number of idle objects kept in each pool.
+    */
+   public static final int POOL_SIZE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+   private static final BlockingQueue<Unmarshaller> unmarshallers = new ArrayBlockingQueue<Unmarshaller>(POOL_SIZE);
+   private static final BlockingQueue<Marshaller> marshallers = new ArrayBlockingQueue<Marshaller>(POOL_SIZE);
+
+   // Created the first time getContext is called.
+   private static volatile JAXBContext context = null;
+
+   private JAXBPool() {
+   }
+
+   private static JAXBContext createContext() {
+      // The XML library has built-in limits to prevent DoS attacks from maliciously large .xml files.
+      // MediaWiki xml files are very large, but not maliciously so.  This turns off the limits so these
+      // large files can be processed.
+      System.setProperty("totalEntitySizeLimit", "0");
+      System.setProperty("jdk.xml.totalEntitySizeLimit", "0");
+      try {
+         return JAXBContext.newInstance(MediaWikiLoader.CONTEXT_PATH);
+      } catch (JAXBException e) {
+         throw new XMLConfigurationException("Problem setting up JAXB objects.", e);
+      }
+   }
+
+   /**
+    * Return the shared {@code JAXBContext} for the current MediaWiki schema.
+    *
+    * @return the shared {@code JAXBContext} for the current MediaWiki schema.
+    * @throws XMLConfigurationException if there is a problem creating the JAXB context
+    */
+   public static JAXBContext getContext() {
+      JAXBContext answer = context;
+      if (answer == null) {
+         synchronized (JAXBPool.class) {
+            answer = context;
+            if (answer == null) {
+               // If the context can't be created, the exception is thrown and the next call tries again.
+               answer = createContext();
+               context = answer;
+            }
+         }
+      }
+      return answer;
+   }
+
+   /**
+    * Return an {@code Unmarshaller} that no other thread is using.
+    *
+    * @return an {@code Unmarshaller} for the current MediaWiki schema.
+    * @throws XMLConfigurationException if there is a problem creating the {@code Unmarshaller}
+    */
+   public static Unmarshaller borrowUnmarshaller() {
+      Unmarshaller unmarshaller = unmarshallers.poll();
+      return (unmarshaller != null) ? unmarshaller : MediaWikiLoader.createUnmarshaller();
+   }
+
+   /**
+    * Return an {@code Unmarshaller} to the pool.  Its listener, schema, event handler, and {@link StoredTextAdapter}
+    * are reset first.  (Do not return an {@code Unmarshaller} whose other properties have been changed.)  The caller
+    * must not use {@code unmarshaller} afterwards.
+    *
+    * @param unmarshaller an {@code Unmarshaller} obtained from {@link #borrowUnmarshaller()}.
+    */
+   public static void returnUnmarshaller(Unmarshaller unmarshaller) {
+      if (unmarshaller == null) {
+         return;
+      }
+      unmarshaller.setListener(null);
+      unmarshaller.setSchema(null);
+      unmarshaller.setAdapter(StoredTextAdapter.class, null);
+      try {
+         // The reference implementation's default handler is the unmarshaller itself (which, unlike the JAXB
+         // default that null restores, continues after recoverable errors).
+         unmarshaller.setEventHandler((unmarshaller instanceof ValidationEventHandler)
+               ? (ValidationEventHandler) unmarshaller : null);
+      } catch (JAXBException e) {
+         // Don't reuse an unmarshaller that can't be reset.
+         return;
+      }
+      unmarshallers.offer(unmarshaller);
+   }
+
+   /**
+    * Return a {@code Marshaller} that no other thread is using.  Its output is not formatted.
+    *
+    * @return a {@code Marshaller} for the current MediaWiki schema.
+    * @throws XMLConfigurationException if there is a problem creating the {@code Marshaller}
+    */
+   public static Marshaller borrowMarshaller() {
+      Marshaller marshaller = marshallers.poll();
+      if (marshaller != null) {
+         return marshaller;
+      }
+      try {
+         return getContext().createMarshaller();
+      } catch (JAXBException e) {
+         throw new XMLConfigurationException("Problem setting up JAXB objects.", e);
+      }
+   }
+
+   /**
+    * Return a {@code Marshaller} to the pool.  Its listener, schema, and the standard properties are reset first.
+    * (Do not return a {@code Marshaller} whose event handler or other properties have been changed.)  The caller must not use
+    * {@code marshaller} afterwards.
+    *
+    * @param marshaller a {@code Marshaller} obtained from {@link #borrowMarshaller()}.
+    */
+   public static void returnMarshaller(Marshaller marshaller) {
+      if (marshaller == null) {
+         return;
+      }
+      marshaller.setListener(null);
+      marshaller.setSchema(null);
+      try {
+         marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.FALSE);
+         marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.FALSE);
+         marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+      } catch (JAXBException e) {
+         // Don't reuse a marshaller that can't be reset.
+         return;
+      }
+      marshallers.offer(marshaller);
+   }
+
+   /**
+    * Discard the shared context and the idle objects in the pools.
+    */
+   // package scope for testing
+   static synchronized void reset() {
+      context = null;
+      unmarshallers.clear();
+      marshallers.clear();
+   }
+
+   // package scope for testing
+   static int idleUnmarshallers() {
+      return unmarshallers.size();
+   }
+
+   // package scope for testing
+   static int idleMarshallers() {
+      return marshallers.size();
+   }
+}
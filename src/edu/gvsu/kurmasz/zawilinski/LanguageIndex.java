@@ -0,0 +1,305 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Records which language sections appear in each page of a dump, so that later runs that filter for one language
+ * can skip the pages that never contained it.  For each language, the index keeps a {@link CompressedBitmap} of the
+ * ids of the pages with a section for that language.  It also keeps a bitmap of every page indexed; so, a page
+ * that isn't in the index (e.g., because the dump has changed) is never skipped.
+ *
+ * <p>A {@link LanguageIndexPrefilter} fills in the index while the dump is being filtered.  The index can then be
+ * saved in a "sidecar" file next to the dump.  Later runs use either {@link #gate(String...)} (to discard unwanted
+ * pages before they reach the other pre-filters and the unmarshaller) or {@link #select(PageIndex, String...)}
+ * (to load only the wanted pages of an uncompressed dump).</p>
+ *
+ * <p>The index file contains a header (magic number, version, and size of the dump), the bitmap of indexed pages,
+ * the number of languages, then each language's name and bitmap.</p>
+ */
+public class LanguageIndex {
+
+   /**
+    * The suffix of the default index file.
+    */
+   public static final String SUFFIX = ".lang";
+
+   /**
+    * The dump size of an index that hasn't been saved or loaded.  (An index is saved only with the size of its dump;
+    * so, an index is never applied to a dump whose size isn't known.)
+    */
+   public static final long UNKNOWN_SIZE = -1;
+
+   /**
+    * Headers longer than this aren't recorded.  (They are almost certainly vandalism rather than languages.)  Pages
+    * are never skipped when looking for a longer language name.
+    */
+   public static final int MAX_LANGUAGE_LENGTH = 255;
+
+   static final int MAGIC = 0x5a574c49; // "ZWLI"
+   static final int VERSION = 1;
+
+   private final CompressedBitmap indexed;
+   private final Map<String, CompressedBitmap> languages;
+   private final long dumpSize;
+
+   /**
+    * Create an empty index.
+    */
+   public LanguageIndex() {
+      this(new CompressedBitmap(), new TreeMap<String, CompressedBitmap>(), UNKNOWN_SIZE);
+   }
+
+   private LanguageIndex(CompressedBitmap indexed, Map<String, CompressedBitmap> languages, long dumpSize) {
+      this.indexed = indexed;
+      this.languages = languages;
+      this.dumpSize = dumpSize;
+   }
+
+   /**
+    * Return the name of the default index file for {@code dump} (the dump's name followed by {@link #SUFFIX}).
+    *
+    * @param dump the dump
+    * @return the default index file for {@code dump}.
+    */
+   public static File defaultIndexFile(File dump) {
+      return new File(dump.getPath() + SUFFIX);
+   }
+
+   /**
+    * Record that the page with id {@code id} contains sections for {@code pageLanguages} (and no others).  Ids that
+    * don't fit in an {@code int} are not indexed.  (Several threads may add pages at once.)
+    *
+    * @param id            the page's id
+    * @param pageLanguages the languages whose sections appear in the page
+    */
+   public synchronized void addPage(long id, Collection<String> pageLanguages) {
+      if (id < 0 || id > Integer.MAX_VALUE) {
+         return;
+      }
+      indexed.add((int) id);
+      for (String language : pageLanguages) {
+         if (language.length() > MAX_LANGUAGE_LENGTH) {
+            continue;
+         }
+         CompressedBitmap pages = languages.get(language);
+         if (pages == null) {
+            pages = new CompressedBitmap();
+            languages.put(language, pages);
+         }
+         pages.add((int) id);
+      }
+   }
+
+   /**
+    * Return {@code true} if the page with id {@code id} has been indexed.
+    *
+    * @param id the page's id
+    * @return {@code true} if the page with id {@code id} has been indexed.
+    */
+   public synchronized boolean isIndexed(long id) {
+      return id >= 0 && id <= Integer.MAX_VALUE && indexed.contains((int) id);
+   }
+
+   /**
+    * Return {@code true} if the page with id {@code id} has been indexed and contains a section for
+    * {@code language}.
+    *
+    * @param language the language
+    * @param id       the page's id
+    * @return {@code true} if the page contains a section for {@code language}.
+    */
+   public synchronized boolean contains(String language, long id) {
+      CompressedBitmap pages = languages.get(language);
+      return pages != null && id >= 0 && id <= Integer.MAX_VALUE && pages.contains((int) id);
+   }
+
+   /**
+    * Return {@code true} if the page with id {@code id} may contain a section for one of {@code wanted} (i.e., the
+    * page either contains such a section, or hasn't been indexed).
+    *
+    * @param id     the page's id
+    * @param wanted the languages
+    * @return {@code true} if the page may contain a section for one of {@code wanted}.
+    */
+   public synchronized boolean mayContain(long id, String... wanted) {
+      if (!isIndexed(id)) {
+         return true;
+      }
+      for (String language : wanted) {
+         if (language.length() > MAX_LANGUAGE_LENGTH || contains(language, id)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Return the languages that appear in at least one page, in alphabetical order.
+    *
+    * @return the languages that appear in at least one page.
+    */
+   public synchronized Set<String> getLanguages() {
+      return Collections.unmodifiableSet(new TreeSet<String>(languages.keySet()));
+   }
+
+   /**
+    * Return the number of pages indexed.
+    *
+    * @return the number of pages indexed.
+    */
+   public synchronized int getPageCount() {
+      return indexed.cardinality();
+   }
+
+   /**
+    * Return the number of pages that contain a section for {@code language}.
+    *
+    * @param language the language
+    * @return the number of pages that contain a section for {@code language}.
+    */
+   public synchronized int getPageCount(String language) {
+      CompressedBitmap pages = languages.get(language);
+      return pages == null ? 0 : pages.cardinality();
+   }
+
+   /**
+    * Return the size of the dump when it was indexed (or {@link #UNKNOWN_SIZE}).  Use this to detect an index that
+    * doesn't belong to a dump.
+    *
+    * @return the size of the dump when it was indexed.
+    */
+   public long getDumpSize() {
+      return dumpSize;
+   }
+
+   /**
+    * Return a predicate for a {@link PagePrefilter} that keeps only the pages that may contain a section for one of
+    * {@code wanted}.  (Pages without a numeric id are kept.)
+    *
+    * @param wanted the languages
+    * @return a predicate that keeps only the pages that may contain a section for one of {@code wanted}.
+    */
+   public PagePrefilter.PagePredicate gate(final String... wanted) {
+      return new PagePrefilter.PagePredicate() {
+         public boolean keepPage(String title, String namespace, String id) {
+            if (id == null) {
+               return true;
+            }
+            try {
+               return mayContain(Long.parseLong(id.trim()), wanted);
+            } catch (NumberFormatException e) {
+               return true;
+            }
+         }
+      };
+   }
+
+   /**
+    * Return the entries of {@code index} for the pages that may contain a section for one of {@code wanted}.  Pass
+    * the result to {@link PageIndex#load(MappedDump, Collection, edu.gvsu.kurmasz.warszawa.log.SimpleLog, PostFilter,
+    * org.xml.sax.XMLFilter...)} to load only those pages.
+    *
+    * @param index  the page index of the dump
+    * @param wanted the languages
+    * @return the entries for the pages that may contain a section for one of {@code wanted}.
+    */
+   public List<PageIndex.Entry> select(PageIndex index, String... wanted) {
+      List<PageIndex.Entry> answer = new ArrayList<PageIndex.Entry>();
+      for (int i = 0; i < index.size(); i++) {
+         PageIndex.Entry entry = index.get(i);
+         if (entry.getId() < 0 || mayContain(entry.getId(), wanted)) {
+            answer.add(entry);
+         }
+      }
+      return answer;
+   }
+
+   /**
+    * Write the index to {@code file}.  The index is written to a temporary file that replaces {@code file} only when
+    * it is complete; so, an interrupted save never leaves a truncated index behind.
+    *
+    * @param file     the index file
+    * @param dumpSize the size of the dump
+    * @throws IOException if the file can't be written.
+    * @throws IllegalArgumentException if {@code dumpSize} is negative (e.g., {@link #UNKNOWN_SIZE}).
+    */
+   public synchronized void save(File file, long dumpSize) throws IOException {
+      if (dumpSize < 0) {
+         throw new IllegalArgumentException("The size of the dump must be known.");
+      }
+      File temp = new File(file.getPath() + ".tmp");
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      boolean written = false;
+      try {
+         out.writeInt(MAGIC);
+         out.writeInt(VERSION);
+         out.writeLong(dumpSize);
+         indexed.write(out);
+         out.writeInt(languages.size());
+         for (Map.Entry<String, CompressedBitmap> entry : languages.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().write(out);
+         }
+         out.close();
+         written = true;
+      } finally {
+         if (!written) {
+            try {
+               out.close();
+            } catch (IOException e) {
+               // The failure that led here is more informative.
+            }
+            temp.delete();
+         }
+      }
+      if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+         temp.delete();
+         throw new IOException("Could not replace \"" + file + "\".");
+      }
+   }
+
+   /**
+    * Read an index written by {@link #save(File, long)}.
+    *
+    * @param file the index file
+    * @return the index
+    * @throws IOException if the file can't be read, or isn't a language index.
+    */
+   public static LanguageIndex load(File file) throws IOException {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+         if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("\"" + file + "\" is not a language index.");
+         }
+         long dumpSize = in.readLong();
+         if (dumpSize < 0) {
+            throw new IOException("\"" + file + "\" does not record the size of its dump.");
+         }
+         CompressedBitmap indexed = CompressedBitmap.read(in);
+         int count = in.readInt();
+         Map<String, CompressedBitmap> languages = new TreeMap<String, CompressedBitmap>();
+         for (int i = 0; i < count; i++) {
+            String language = in.readUTF();
+            languages.put(language, CompressedBitmap.read(in));
+         }
+         return new LanguageIndex(indexed, languages, dumpSize);
+      } finally {
+         in.close();
+      }
+   }
+}
@@ -0,0 +1,144 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A pre-filter that records the language sections of each page in a {@link LanguageIndex}.  The filter passes every
+ * event along unchanged; it only watches the content of each {@code <text>} element for {@code ==Language==}
+ * headers (using the same rules as {@link LanguagePrefilter}).  At the end of each page, the page's id and the
+ * languages found in any of its revisions are added to the index.  (A page is recorded under every language any of
+ * its revisions contains because a {@link PostFilterByLanguage} keeps a page if any of its revisions has a section
+ * for the language.)
+ *
+ * <p>Place this filter first in the list of pre-filters so that it sees each {@code <text>} element before other
+ * filters remove any of it.</p>
+ */
+public class LanguageIndexPrefilter extends TextPrefilter {
+
+   // A newline used to complete a header at the end of the <text> element.
+   private static final char[] NEWLINE = {'\n'};
+
+   private final LanguageIndex index;
+   private final HeaderSearch hs = new HeaderSearch();
+
+   // The languages found in the current page
+   private final Set<String> pageLanguages = new HashSet<String>();
+
+   // Depth of the current element relative to <page> (the <page> element itself is depth 1; 0 outside pages)
+   private int depth = 0;
+   // true once the page's first <revision> (or other child following the page's <id>) has begun
+   private boolean pastHeader;
+   // Collects the content of the page's <id> element (null when not in it)
+   private StringBuilder idBuilder = null;
+   private String id;
+
+   /**
+    * Constructor
+    *
+    * @param index the index that records the languages of each page
+    */
+   public LanguageIndexPrefilter(LanguageIndex index) {
+      if (index == null) {
+         throw new IllegalArgumentException("LanguageIndex may not be null.");
+      }
+      this.index = index;
+   }
+
+   // Return the language named by the content of a header.  (This undoes the variations LanguagePrefilter accepts:
+   // spaces around the language, and the language as a link.)
+   static String normalize(CharSequence headerContent) {
+      String answer = headerContent.toString().trim();
+      if (answer.startsWith("[[")) {
+         answer = answer.substring(2);
+      }
+      if (answer.endsWith("]]")) {
+         answer = answer.substring(0, answer.length() - 2);
+      }
+      return answer;
+   }
+
+   @Override
+   public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+      if (depth == 0) {
+         if (localName.equals(PAGE_ELEMENT_NAME)) {
+            depth = 1;
+            pastHeader = false;
+            id = null;
+            pageLanguages.clear();
+         }
+      } else {
+         depth++;
+         if (depth == 2) {
+            if (!pastHeader && localName.equals(PagePrefilter.ID_ELEMENT_NAME)) {
+               idBuilder = new StringBuilder();
+            } else if (!localName.equals(TITLE_ELEMENT_NAME) && !localName.equals(PagePrefilter.NS_ELEMENT_NAME)) {
+               pastHeader = true;
+            }
+         }
+      }
+      super.startElement(uri, localName, qName, attrs);
+   }
+
+   @Override
+   public void characters(char[] ch, int start, int length) throws SAXException {
+      if (idBuilder != null) {
+         idBuilder.append(ch, start, length);
+      }
+      super.characters(ch, start, length);
+   }
+
+   @Override
+   public void endElement(String uri, String localName, String qName) throws SAXException {
+      if (depth > 0) {
+         if (depth == 2 && idBuilder != null) {
+            id = idBuilder.toString();
+            idBuilder = null;
+            pastHeader = true;
+         } else if (depth == 1) {
+            endPage();
+         }
+         depth--;
+      }
+      super.endElement(uri, localName, qName);
+   }
+
+   private void endPage() {
+      if (id == null) {
+         return;
+      }
+      try {
+         index.addPage(Long.parseLong(id.trim()), pageLanguages);
+      } catch (NumberFormatException e) {
+         // A page without a numeric id is never skipped; so, it needn't be indexed.
+      }
+   }
+
+   @Override
+   protected void handleStartTextElement(String uri, String localName, String qName, Attributes attrs)
+         throws SAXException {
+      hs.reset();
+   }
+
+   @Override
+   protected void handleTextElementCharacters(char[] ch, int start, int length) throws SAXException {
+      int end = start + length;
+      int next = start;
+      while (next < end && (next = hs.find(ch, next, end - next)) >= 0) {
+         pageLanguages.add(normalize(hs.getHeaderContent()));
+         hs.reset();
+      }
+      sendCharacters(ch, start, length);
+   }
+
+   @Override
+   protected void handleEndTextElement(String uri, String localName, String qName) throws SAXException {
+      // A header at the very end of the text isn't complete until we know the line ends.
+      if (hs.possiblyComplete() && hs.find(NEWLINE, 0, 1) >= 0) {
+         pageLanguages.add(normalize(hs.getHeaderContent()));
+      }
+   }
+}
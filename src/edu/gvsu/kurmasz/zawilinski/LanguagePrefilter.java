@@ -4,6 +4,7 @@ package edu.gvsu.kurmasz.zawilinski;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -34,9 +35,13 @@ public class LanguagePrefilter extends TextPrefilter {
 
   private enum SectionStage {PRE, IN, POST}
 
+  // A newline used to complete a header at the end of the <text> element.
+  private static final char[] NEWLINE = {'\n'};
+
   private SectionStage sectionStage;
-  private HeaderSearch hs;
-  private Pattern headerPattern;
+  // The search and matcher are re-used for every header so that filtering allocates no memory.
+  private final HeaderSearch hs = new HeaderSearch();
+  private final Matcher headerMatcher;
 
   /**
    * Constructor specifying a specific header.
@@ -48,7 +53,7 @@ public class LanguagePrefilter extends TextPrefilter {
     // The call to Pattern.quote below makes sure the parameter language is not treated as a regular expression.
     // For example, if the user passes "a.b", we want to make sure we accept only the literal header "a.b", not
     // "aab", or some other header that matches the regular expression "a.b"
-    headerPattern = Pattern.compile("\\s*(\\[\\[)?" + Pattern.quote(language) + "(\\]\\])?\\s*");
+    headerMatcher = createHeaderPattern(Pattern.quote(language)).matcher("");
   }
 
   /**
@@ -67,16 +72,22 @@ public class LanguagePrefilter extends TextPrefilter {
    * @param pattern regular expression that the header must match.
    */
   public LanguagePrefilter(Pattern pattern) {
-    headerPattern = Pattern.compile("\\s*(\\[\\[)?" + pattern.pattern() + "(\\]\\])?\\s*");
+    headerMatcher = createHeaderPattern(pattern.pattern()).matcher("");
   }
 
 
+  // Return a pattern that matches the header content for the given language regular expression.
+  // (See the class javadoc comment for use of regexp.)
+  static Pattern createHeaderPattern(String languageRegex) {
+    return Pattern.compile("\\s*(\\[\\[)?" + languageRegex + "(\\]\\])?\\s*");
+  }
+
   @Override
   protected void handleStartTextElement(String uri, String localName,
                                         String name, Attributes attrs) throws SAXException {
 
     sectionStage = SectionStage.PRE;
-    hs = new HeaderSearch();
+    hs.reset();
 
   }
 
@@ -88,59 +99,57 @@ public class LanguagePrefilter extends TextPrefilter {
     // we want to make sure we process it.  Passing null to handlePreStage
     // tells it to process an extra whitespace, but not pass it
     // through the filter.
-    if (hs != null && hs.possiblyComplete()) {
+    if (sectionStage != SectionStage.POST && hs.possiblyComplete()) {
       handlePreStage(null, -1, -1);
     }
   }
 
   private void handlePreStage(char[] ch, int start, int length) throws SAXException {
-    HeaderSearch.Result result;
+    int next;
 
     // if ch == null, then we are processing a 'dummy' character to complete the processing
     // of a possible header.
     if (ch == null) {
-      result = hs.process(new char[]{'\n'}, 0, 1);
+      next = hs.find(NEWLINE, 0, 1);
     } else {
-      result = hs.process(ch, start, length);
+      next = hs.find(ch, start, length);
     }
-    // if result is null, then there is no complete headerContent, and therefore,
+    // if next is negative, then there is no complete headerContent, and therefore,
     // nothing to pass through.
     //
-    if (result == null) {
+    if (next < 0) {
       return;
     }
-    // If result is not null, but the headerContent is not equal to language
+    // If we found a header, but the headerContent is not equal to language
     // then we found the section headerContent for a different language.
 
     // if the headerContent is the language we are filtering for, then
     // switch stages
 
-    if (headerPattern.matcher(result.headerContent).matches()) {
+    if (headerMatcher.reset(hs.getHeaderContent()).matches()) {
       sectionStage = SectionStage.IN;
-      String fullHeader = result.fullHeader();
-      sendCharacters(fullHeader.toCharArray(), 0, fullHeader.length());
-      // Now we need a new HeaderSearch to find the end of the language.
-      hs = new HeaderSearch();
+      sendCharacters(hs.getFullHeader(), 0, hs.getFullHeaderLength());
+      // Now we need to re-set the search to find the end of the language.
+      hs.reset();
       if (ch != null) {
-        handleInStage(ch, result.next, length - (result.next - start));
+        handleInStage(ch, next, length - (next - start));
       }
     } else {
       // if we have found a different header, then re-set the search
-      hs = new HeaderSearch();
+      hs.reset();
       if (ch != null) {
-        handlePreStage(ch, result.next, length - (result.next - start));
+        handlePreStage(ch, next, length - (next - start));
       }
     }
   }
 
   private void handleInStage(char[] ch, int start, int length) throws SAXException {
-    HeaderSearch.Result result = hs.process(ch, start, length);
+    int next = hs.find(ch, start, length);
 
     // We have found the start of another section
-    if (result != null) {
+    if (next >= 0) {
       sectionStage = SectionStage.POST;
-      hs = null; // to free space
-      length = (result.next - start);
+      length = (next - start);
     }
     sendCharacters(ch, start, length);
   }
@@ -0,0 +1,70 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A {@link PostFilter} that keeps only the last {@code n} revisions of each page that pass another post-filter.
+ * The kept revisions of the current page are held in a ring buffer.  When a revision passes the other filter and the
+ * buffer is full, the oldest revision in the buffer is removed from the page immediately.  Thus, while a page is being
+ * unmarshalled, it never has more than about {@code n} revisions, no matter how long its history.
+ *
+ * <p>Note:  If the text of a removed revision is the base of another revision's {@link DeltaText}, that text remains
+ * in memory.</p>
+ */
+public class LastRevisionsPostFilter implements PostFilter {
+
+   private final PostFilter filter;
+   private final int n;
+
+   // The page whose revisions are in the buffer
+   private PageType currentPage = null;
+   // The kept revisions of currentPage (oldest first)
+   private final Deque<RevisionType> kept;
+
+   /**
+    * Constructor
+    *
+    * @param filter the filter that decides which pages and revisions are kept
+    * @param n      the maximum number of revisions to keep for each page
+    * @throws IllegalArgumentException if {@code n} is less than 1.
+    */
+   public LastRevisionsPostFilter(PostFilter filter, int n) {
+      if (filter == null) {
+         throw new IllegalArgumentException("PostFilter may not be null.");
+      }
+      if (n < 1) {
+         throw new IllegalArgumentException("The number of revisions kept must be at least 1.");
+      }
+      this.filter = filter;
+      this.n = n;
+      this.kept = new ArrayDeque<RevisionType>(n);
+   }
+
+   public boolean keepPage(PageType page) {
+      if (page == currentPage) {
+         currentPage = null;
+         kept.clear();
+      }
+      return filter.keepPage(page);
+   }
+
+   public boolean keepRevision(RevisionType revision, PageType page) {
+      if (!filter.keepRevision(revision, page)) {
+         return false;
+      }
+      if (page != currentPage) {
+         currentPage = page;
+         kept.clear();
+      }
+      if (kept.size() == n) {
+         // The oldest revision was unmarshalled before this one; so, it is already in the page's list.
+         page.getRevisionOrUpload().remove(kept.removeFirst());
+      }
+      kept.addLast(revision);
+      return true;
+   }
+}
@@ -0,0 +1,310 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An uncompressed MediaWiki XML dump mapped into memory.  This class provides byte-level access to the dump so that
+ * it can be divided into pieces that begin on {@code <page>} boundaries.  Each piece can then be loaded as a
+ * complete, well-formed document (see {@link #openDocument(long, long)}) by surrounding it with the dump's own
+ * header (the {@code <mediawiki>} start tag and {@code <siteinfo>}) and footer ({@code </mediawiki>}).
+ *
+ * <p>Finding page boundaries by searching for the bytes {@code <page>} is safe because a literal {@code <}
+ * can't appear in element content.  (The dump escapes it as {@code &lt;}.)</p>
+ *
+ * <p>Files larger than 2GB are mapped as a sequence of buffers.</p>
+ */
+public class MappedDump implements Closeable {
+
+   static final Charset UTF8 = Charset.forName("UTF-8");
+   static final byte[] PAGE_START = "<page>".getBytes(UTF8);
+   static final byte[] ROOT_END = "</mediawiki>".getBytes(UTF8);
+
+   // Each buffer (except the last) maps exactly 2^CHUNK_BITS bytes.
+   private static final int CHUNK_BITS = 30;
+   private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+   private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+   private final File file;
+   private final RandomAccessFile raf;
+   private final FileChannel channel;
+   private final MappedByteBuffer[] chunks;
+   private final long size;
+
+   // Position of the first <page> (or of </mediawiki>, if there are no pages)
+   private final long firstPage;
+   // Position of the closing </mediawiki>
+   private final long footerStart;
+
+   /**
+    * Map the specified file.
+    *
+    * @param file the uncompressed dump
+    * @throws IOException if the file can't be opened or mapped, or if it doesn't end with {@code </mediawiki>}.
+    */
+   public MappedDump(File file) throws IOException {
+      this.file = file;
+      this.raf = new RandomAccessFile(file, "r");
+      this.channel = raf.getChannel();
+      this.size = channel.size();
+
+      int numChunks = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+      chunks = new MappedByteBuffer[numChunks];
+      for (int i = 0; i < numChunks; i++) {
+         long start = (long) i << CHUNK_BITS;
+         chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+      }
+
+      footerStart = lastIndexOf(ROOT_END);
+      if (footerStart < 0) {
+         close();
+         throw new IOException("\"" + file + "\" does not end with " + new String(ROOT_END, UTF8));
+      }
+      long page = indexOf(PAGE_START, 0, footerStart);
+      firstPage = (page < 0) ? footerStart : page;
+   }
+
+   /**
+    * Return the file that is mapped.
+    *
+    * @return the file that is mapped.
+    */
+   public File getFile() {
+      return file;
+   }
+
+   /**
+    * Return the open channel for the mapped file.
+    *
+    * @return the open channel for the mapped file.
+    */
+   FileChannel getChannel() {
+      return channel;
+   }
+
+   /**
+    * Return the size of the dump in bytes.
+    *
+    * @return the size of the dump in bytes.
+    */
+   public long size() {
+      return size;
+   }
+
+   /**
+    * Return the position of the first {@code <page>} tag (or the position of {@code </mediawiki>} if the dump
+    * contains no pages).  All the bytes before this position are the document's header.
+    *
+    * @return the position of the first {@code <page>} tag.
+    */
+   public long getFirstPage() {
+      return firstPage;
+   }
+
+   /**
+    * Return the position of the closing {@code </mediawiki>} tag.
+    *
+    * @return the position of the closing {@code </mediawiki>} tag.
+    */
+   public long getFooterStart() {
+      return footerStart;
+   }
+
+   /**
+    * Return the byte at the specified position.
+    *
+    * @param pos the position
+    * @return the byte at the specified position.
+    */
+   public byte get(long pos) {
+      return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
+   }
+
+   /**
+    * Copy bytes from the dump into an array.
+    *
+    * @param pos    the position of the first byte to copy
+    * @param dest   the destination array
+    * @param offset the index in {@code dest} of the first byte copied
+    * @param length the number of bytes to copy.
+    */
+   public void get(long pos, byte[] dest, int offset, int length) {
+      while (length > 0) {
+         int chunk = (int) (pos >>> CHUNK_BITS);
+         int inChunk = (int) (pos & CHUNK_MASK);
+         int n = Math.min(length, chunks[chunk].limit() - inChunk);
+         // duplicate() so that concurrent readers don't share a position.
+         ByteBuffer view = chunks[chunk].duplicate();
+         view.position(inChunk);
+         view.get(dest, offset, n);
+         pos += n;
+         offset += n;
+         length -= n;
+      }
+   }
+
+   /**
+    * Search for {@code pattern}.
+    *
+    * @param pattern the bytes to search for
+    * @param from    the first position to examine
+    * @param to      the search ends when the pattern would extend past this position
+    * @return the position of the first occurrence of {@code pattern} in {@code [from, to)}, or -1 if there is none.
+    */
+   public long indexOf(byte[] pattern, long from, long to) {
+      byte first = pattern[0];
+      long last = to - pattern.length;
+      for (long pos = from; pos <= last; pos++) {
+         if (get(pos) == first) {
+            int i = 1;
+            while (i < pattern.length && get(pos + i) == pattern[i]) {
+               i++;
+            }
+            if (i == pattern.length) {
+               return pos;
+            }
+         }
+      }
+      return -1;
+   }
+
+   // Search backward from the end of the file.
+   private long lastIndexOf(byte[] pattern) {
+      for (long pos = size - pattern.length; pos >= 0; pos--) {
+         int i = 0;
+         while (i < pattern.length && get(pos + i) == pattern[i]) {
+            i++;
+         }
+         if (i == pattern.length) {
+            return pos;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Divide the pages of the dump into pieces of (approximately) the given size.  Each piece begins with a
+    * {@code <page>} tag.  The returned array contains the boundaries between pieces:  Piece {@code i} is
+    * {@code [boundaries[i], boundaries[i + 1])}.  The first boundary is {@link #getFirstPage()} and the last is
+    * {@link #getFooterStart()}.
+    *
+    * @param targetSize the desired size of each piece, in bytes.
+    * @return the boundaries between pieces
+    */
+   public long[] split(long targetSize) {
+      if (targetSize <= 0) {
+         throw new IllegalArgumentException("targetSize must be positive");
+      }
+      List<Long> boundaries = new ArrayList<Long>();
+      boundaries.add(firstPage);
+      long pos = firstPage;
+      while (pos + targetSize < footerStart) {
+         long next = indexOf(PAGE_START, pos + targetSize, footerStart);
+         if (next < 0) {
+            break;
+         }
+         boundaries.add(next);
+         pos = next;
+      }
+      boundaries.add(footerStart);
+
+      long[] answer = new long[boundaries.size()];
+      for (int i = 0; i < answer.length; i++) {
+         answer[i] = boundaries.get(i);
+      }
+      return answer;
+   }
+
+   /**
+    * Return an {@code InputStream} that reads the bytes in {@code [start, end)}.
+    *
+    * @param start the position of the first byte
+    * @param end   the position after the last byte
+    * @return an {@code InputStream} that reads the bytes in {@code [start, end)}.
+    */
+   public InputStream openStream(long start, long end) {
+      return new RangeInputStream(start, end);
+   }
+
+   /**
+    * Return an {@code InputStream} for a complete document containing only the pages in {@code [start, end)}.
+    * The document is the dump's header, followed by the bytes in {@code [start, end)}, followed by the dump's
+    * footer.  {@code start} and {@code end} should be page boundaries (e.g., values returned by
+    * {@link #split(long)}).
+    *
+    * @param start the position of the first byte
+    * @param end   the position after the last byte
+    * @return an {@code InputStream} for a document containing the pages in {@code [start, end)}.
+    */
+   public InputStream openDocument(long start, long end) {
+      return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+            openStream(0, firstPage), openStream(start, end), openStream(footerStart, size))));
+   }
+
+   /**
+    * Close the underlying file.  (Note:  Java provides no way to explicitly unmap the buffers.  They are
+    * released when they are garbage collected.)
+    *
+    * @throws IOException if the file can't be closed.
+    */
+   public void close() throws IOException {
+      raf.close();
+   }
+
+   // Reads a range of the mapped buffers.
+   private class RangeInputStream extends InputStream {
+      private long pos;
+      private final long end;
+
+      private RangeInputStream(long start, long end) {
+         this.pos = start;
+         this.end = end;
+      }
+
+      @Override
+      public int read() {
+         if (pos >= end) {
+            return -1;
+         }
+         return get(pos++) & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+         if (len == 0) {
+            return 0;
+         }
+         if (pos >= end) {
+            return -1;
+         }
+         int n = (int) Math.min(len, end - pos);
+         get(pos, b, off, n);
+         pos += n;
+         return n;
+      }
+
+      @Override
+      public long skip(long n) {
+         long skipped = Math.max(0, Math.min(n, end - pos));
+         pos += skipped;
+         return skipped;
+      }
+
+      @Override
+      public int available() {
+         return (int) Math.min(Integer.MAX_VALUE, end - pos);
+      }
+   }
+}
@@ -0,0 +1,204 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Leaves the content of each {@code <text>} element in a {@link MappedDump} instead of copying it into a
+ * {@code String}.  For each {@code <text>} element, this SAX filter finds the element's content in the mapped file
+ * and replaces the content with a short marker that records the content's byte range.  This filter is also a
+ * {@link TextStorage}:  When the unmarshaller's {@link StoredTextAdapter} uses this filter, each marker becomes a
+ * {@link StoredText} that reads (and un-escapes) the content from the mapped file only when
+ * {@link StoredText#toString()} is called (e.g., by {@link Util#getText(edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType)}
+ * or by {@link WiktionaryWriter}).  {@link StoredText#length()} is known without reading the file.  Thus, a program
+ * that examines mostly metadata can load a large dump with very little heap.  (The operating system pages the text
+ * in and out of memory as needed.)
+ *
+ * <p>The easiest way to use this filter is
+ * {@link PostFilteredMediaWikiLoader#load(MappedDump, edu.gvsu.kurmasz.warszawa.log.SimpleLog, PostFilter,
+ * org.xml.sax.XMLFilter...)}.  Otherwise:</p>
+ * <ul>
+ * <li>The filter must read the entire dump, from the beginning (e.g., {@code dump.openStream(0, dump.size())}).</li>
+ * <li>The filter must be the first filter (i.e., the one closest to the parser), because it matches the n<sup>th</sup>
+ * {@code <text>} element reported by the parser with the n<sup>th</sup> {@code <text>} tag in the file.</li>
+ * <li>Filters after this one see the marker, not the text; so, filters that examine or modify text (e.g.,
+ * {@link LanguagePrefilter}) can't be used.</li>
+ * <li>The {@code MappedDump} must not be closed while the texts are being used.</li>
+ * </ul>
+ */
+public class MappedTextPrefilter extends XMLFilterImpl implements TextStorage {
+
+   // Marks the content that replaces each <text> element's content.  (A private-use character can't appear
+   // in a marker by accident, except in a text that begins with it.  Such texts are stored on the heap.)
+   static final char MARKER = '\uE000';
+
+   static final byte[] TEXT_START = "<text".getBytes(MappedDump.UTF8);
+   static final byte[] TEXT_END = "</text>".getBytes(MappedDump.UTF8);
+
+   // Text read (and un-escaped) from the mapped file when needed.  The text is what the parser reported:  Line ends
+   // are normalized as the parser normalizes them, and the length is the number of characters the parser reported.
+   private static class MappedText extends StoredText {
+      private final MappedDump dump;
+      private final long start;
+      private final int bytes;
+      private final int chars;
+
+      MappedText(MappedDump dump, long start, int bytes, int chars) {
+         this.dump = dump;
+         this.start = start;
+         this.bytes = bytes;
+         this.chars = chars;
+      }
+
+      @Override
+      public int length() {
+         return chars;
+      }
+
+      @Override
+      public String toString() {
+         byte[] data = new byte[bytes];
+         dump.get(start, data, 0, bytes);
+         return PagePassthrough.unescape(PagePassthrough.normalizeLineEnds(new String(data, MappedDump.UTF8)));
+      }
+   }
+
+   private final MappedDump dump;
+
+   // Where to begin searching for the next <text> tag
+   private long cursor = 0;
+
+   private boolean inText = false;
+   private long contentStart;
+   private long contentEnd;
+   private int contentChars;
+
+   private long textsMapped = 0;
+
+   /**
+    * Constructor
+    *
+    * @param dump the (uncompressed) dump being parsed
+    */
+   public MappedTextPrefilter(MappedDump dump) {
+      if (dump == null) {
+         throw new IllegalArgumentException("Dump may not be null.");
+      }
+      this.dump = dump;
+   }
+
+   /**
+    * Return the number of {@code <text>} elements whose content was left in the mapped file so far.
+    *
+    * @return the number of {@code <text>} elements whose content was left in the mapped file so far.
+    */
+   public long getTextsMapped() {
+      return textsMapped;
+   }
+
+   @Override
+   public void startDocument() throws SAXException {
+      cursor = 0;
+      inText = false;
+      super.startDocument();
+   }
+
+   @Override
+   public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+      if (localName.equals(TextPrefilter.TEXT_ELEMENT_NAME)) {
+         findContent();
+         inText = true;
+         contentChars = 0;
+      }
+      super.startElement(uri, localName, qName, atts);
+   }
+
+   @Override
+   public void characters(char[] ch, int start, int length) throws SAXException {
+      if (inText) {
+         // The parser has already decoded the content; so, only its length is needed.
+         contentChars += length;
+      } else {
+         super.characters(ch, start, length);
+      }
+   }
+
+   @Override
+   public void endElement(String uri, String localName, String qName) throws SAXException {
+      if (inText && localName.equals(TextPrefilter.TEXT_ELEMENT_NAME)) {
+         inText = false;
+         if (contentChars > 0) {
+            char[] marker = (MARKER + Long.toString(contentStart) + ":" + (contentEnd - contentStart) + ":"
+                  + contentChars).toCharArray();
+            super.characters(marker, 0, marker.length);
+            textsMapped++;
+         }
+      }
+      super.endElement(uri, localName, qName);
+   }
+
+   // Find the content of the next <text> element in the file.
+   private void findContent() throws SAXException {
+      long end = dump.size();
+      long tag = dump.indexOf(TEXT_START, cursor, end);
+      // Skip tags that merely begin with "text"
+      while (tag >= 0 && !isTagNameEnd(dump.get(tag + TEXT_START.length))) {
+         tag = dump.indexOf(TEXT_START, tag + 1, end);
+      }
+      if (tag < 0) {
+         throw new SAXException("Can't find <text> element number " + (textsMapped + 1) + " in \""
+               + dump.getFile() + "\".");
+      }
+
+      // Find the end of the start tag.  (Attribute values may contain '>'.)
+      long pos = tag + TEXT_START.length;
+      byte quote = 0;
+      byte b = dump.get(pos);
+      while (quote != 0 || b != '>') {
+         if (quote != 0) {
+            if (b == quote) {
+               quote = 0;
+            }
+         } else if (b == '"' || b == '\'') {
+            quote = b;
+         }
+         b = dump.get(++pos);
+      }
+      if (dump.get(pos - 1) == '/') {
+         // <text ... />
+         contentStart = contentEnd = pos + 1;
+      } else {
+         contentStart = pos + 1;
+         contentEnd = dump.indexOf(TEXT_END, contentStart, end);
+         if (contentEnd < 0) {
+            throw new SAXException("Unterminated <text> element at position " + tag + " of \"" + dump.getFile()
+                  + "\".");
+         }
+      }
+      cursor = contentEnd;
+   }
+
+   private static boolean isTagNameEnd(byte b) {
+      return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r';
+   }
+
+   public StoredText store(String text) {
+      if (text == null || text.length() == 0 || text.charAt(0) != MARKER) {
+         return StoredText.of(text);
+      }
+      int first = text.indexOf(':');
+      int second = text.indexOf(':', first + 1);
+      if (first < 0 || second < 0) {
+         return StoredText.of(text);
+      }
+      try {
+         long start = Long.parseLong(text.substring(1, first));
+         int bytes = Integer.parseInt(text.substring(first + 1, second));
+         int chars = Integer.parseInt(text.substring(second + 1));
+         return new MappedText(dump, start, bytes, chars);
+      } catch (NumberFormatException e) {
+         return StoredText.of(text);
+      }
+   }
+}
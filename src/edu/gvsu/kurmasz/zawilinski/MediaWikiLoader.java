@@ -5,7 +5,6 @@ import edu.gvsu.kurmasz.warszawa.log.SimpleLog;
 import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
 import org.xml.sax.InputSource;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
@@ -49,37 +48,20 @@ public class MediaWikiLoader {
   }
 
   /**
-   * Create a JAXB {@code Unmarshaller} for the specified context path.
+   * Create a JAXB {@code Unmarshaller} for documents using the current MediaWiki schema.  The {@code Unmarshaller}
+   * is created from the shared {@code JAXBContext} (see {@link JAXBPool#getContext()}).  To re-use
+   * {@code Unmarshaller}s, use {@link JAXBPool#borrowUnmarshaller()} instead.
    *
-   * @param contextPath the context path
-   * @return a JAXB {@code Unmarshaller} for the specified context path.
+   * @return a JAXB {@code Unmarshaller} for documents using the  current MediaWiki schema.
    * @throws XMLConfigurationException if there is a problem creating the JAXB context
    */
-  private static Unmarshaller createUnmarshaller(String contextPath) {
-    Unmarshaller unmarshaller;
+  public static Unmarshaller createUnmarshaller() {
     try {
-      // The XML library has built-in limits to prevent DoS attacks from maliciously large .xml files.
-      // MediaWiki xml files are very large, but not maliciously so.  This turns off the limits so these
-      // large files can be processed.
-      System.setProperty("totalEntitySizeLimit", "0");
-      System.setProperty("jdk.xml.totalEntitySizeLimit", "0");
-      JAXBContext jaxbContext = JAXBContext.newInstance(contextPath);
-      unmarshaller = jaxbContext.createUnmarshaller();
+      return JAXBPool.getContext().createUnmarshaller();
     } catch (JAXBException e) {
       throw new XMLConfigurationException(
           "Problem setting up JAXB objects.", e);
     }
-    return unmarshaller;
-  } // end constructor
-
-  /**
-   * Create a JAXB {@code Unmarshaller} for documents using the current MediaWiki schema.
-   *
-   * @return a JAXB {@code Unmarshaller} for documents using the  current MediaWiki schema.
-   * @throws XMLConfigurationException if there is a problem creating the JAXB context
-   */
-  public static Unmarshaller createUnmarshaller() {
-    return createUnmarshaller(CONTEXT_PATH);
   }
 
 
@@ -135,7 +117,12 @@ public class MediaWikiLoader {
    * @throws IllegalArgumentException  if any parameters are {@code null}
    */
   public static JAXBElement<MediaWikiType> load(Source source, Log log) throws JAXBException {
-    return load(source, log, createUnmarshaller());
+    Unmarshaller unmarshaller = JAXBPool.borrowUnmarshaller();
+    try {
+      return load(source, log, unmarshaller);
+    } finally {
+      JAXBPool.returnUnmarshaller(unmarshaller);
+    }
   }
 
   /**
@@ -0,0 +1,104 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.SimpleLog;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLFilter;
+import org.xml.sax.XMLReader;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.UnmarshalException;
+import javax.xml.bind.Unmarshaller;
+import java.io.IOException;
+
+/**
+ * Loads a MediaWiki XML document once and filters it for several languages.  The document is parsed once,
+ * passed through a chain of SAX pre-filters and a {@link MultiLanguagePrefilter}, then unmarshalled separately for
+ * each language.  Like {@link StreamingMediaWikiLoader}, each page that passes a language's post-filter is handed
+ * to that language's {@link PageHandler} and then removed from the object tree.
+ *
+ * <p>A {@link DuplicateTextPrefilter} among the pre-filters sees each complete {@code <text>} element (before it is
+ * divided among the languages).  Its references are passed to every language and resolved by each language's
+ * listener.</p>
+ */
+public class MultiLanguageMediaWikiLoader {
+
+   private MultiLanguageMediaWikiLoader() {
+   }
+
+   /**
+    * Loads and filters an XML stream, passing the kept pages for each language to that language's handler.
+    *
+    * @param source      the source of the XML data
+    * @param log         a {@code Log} to which to report progress
+    * @param languages   the filter that divides the text among the languages
+    * @param postFilters the post-filter for each language (in the same order as {@code languages.getLanguages()})
+    * @param handlers    the handler for each language (in the same order as {@code languages.getLanguages()})
+    * @param filterList  a list of SAX filters to apply before {@code languages}.
+    * @throws JAXBException if there is a problem generating the DOM, or if a handler throws an exception.
+    * @throws MediaWikiLoader.XMLConfigurationException
+    *                       if there is a problem configuring the XML filters or parser
+    */
+   public static void load(InputSource source, SimpleLog log, MultiLanguagePrefilter languages,
+                           PostFilter[] postFilters, PageHandler[] handlers, XMLFilter... filterList)
+         throws JAXBException {
+      if (source == null) {
+         throw new IllegalArgumentException("Must specify input source.");
+      }
+      if (log == null) {
+         throw new IllegalArgumentException("Log may not be null");
+      }
+      if (languages == null) {
+         throw new IllegalArgumentException("MultiLanguagePrefilter may not be null.");
+      }
+      int n = languages.getLanguages().size();
+      if (postFilters == null || postFilters.length != n || handlers == null || handlers.length != n) {
+         throw new IllegalArgumentException("Must specify one post-filter and one handler for each language.");
+      }
+
+      XMLReader tail = PreFilteredMediaWikiLoader.createSAXReader();
+      for (XMLFilter filter : filterList) {
+         if (filter == null) {
+            throw new IllegalArgumentException("No filter may not be null.");
+         }
+         filter.setParent(tail);
+         tail = filter;
+      }
+      languages.setParent(tail);
+      languages.setPassReferences(DuplicateTextPrefilter.isAmong(filterList));
+
+      for (int i = 0; i < n; i++) {
+         if (postFilters[i] == null || handlers[i] == null) {
+            throw new IllegalArgumentException("Post-filters and handlers may not be null.");
+         }
+      }
+
+      Unmarshaller[] unmarshallers = new Unmarshaller[n];
+      try {
+         for (int i = 0; i < n; i++) {
+            unmarshallers[i] = JAXBPool.borrowUnmarshaller();
+            PageFilterListener listener = new PageFilterListener(postFilters[i], log, handlers[i]);
+            listener.setResolveDuplicates(DuplicateTextPrefilter.isAmong(filterList));
+            unmarshallers[i].setListener(listener);
+            languages.setLanguageHandler(i, unmarshallers[i].getUnmarshallerHandler());
+         }
+
+         log.println(Zawilinski.PARSE_BEGIN_END, "Begin unmarshal.");
+         languages.parse(source);
+      } catch (PageFilterListener.HandlerException e) {
+         throw e.getCause();
+      } catch (SAXException e) {
+         if (e.getException() instanceof PageFilterListener.HandlerException) {
+            throw ((PageFilterListener.HandlerException) e.getException()).getCause();
+         }
+         throw new UnmarshalException(e);
+      } catch (IOException e) {
+         throw new UnmarshalException(e);
+      } finally {
+         for (Unmarshaller unmarshaller : unmarshallers) {
+            JAXBPool.returnUnmarshaller(unmarshaller);
+         }
+      }
+      log.println(Zawilinski.PARSE_BEGIN_END, "Complete unmarshal.");
+   }
+}
@@ -0,0 +1,196 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A pre-filter that extracts the sections for several languages in a single pass.  Each language has its own
+ * downstream {@code ContentHandler} (typically a JAXB {@code UnmarshallerHandler}; see
+ * {@link MultiLanguageMediaWikiLoader}).  Every event outside of {@code <text>} elements is sent to all of the
+ * handlers.  The content of each {@code <text>} element is searched for headers only once; then, each language's
+ * section is sent only to that language's handler.
+ *
+ * <p>For each language, the filtered text is exactly what {@link LanguagePrefilter} would produce (including the
+ * following language header).  Thus, the output for each language can be post-filtered by a
+ * {@link PostFilterByLanguage}.</p>
+ *
+ * <p>Because this filter has several handlers, use {@link #setLanguageHandler(int, ContentHandler)} instead of
+ * {@code setContentHandler}.</p>
+ */
+public class MultiLanguagePrefilter extends TextPrefilter {
+
+   private enum SectionStage {PRE, IN, POST}
+
+   // A newline used to complete a header at the end of the <text> element.
+   private static final char[] NEWLINE = {'\n'};
+
+   private final List<String> languages;
+   private final Matcher[] headerMatchers;
+   private final SectionStage[] sectionStages;
+   private final ContentHandler[] handlers;
+
+   // One search finds the headers for all languages.
+   private final HeaderSearch hs = new HeaderSearch();
+
+   // The number of languages whose sections may still be found or are still open in the current <text> element.
+   private int active;
+
+   // true if a DuplicateTextPrefilter precedes this filter (in which case its references go to every language)
+   private boolean passReferences = false;
+   // true until the current <text> element's first characters arrive
+   private boolean atStart;
+
+   /**
+    * Constructor
+    *
+    * @param languages the languages to search for.
+    */
+   public MultiLanguagePrefilter(List<String> languages) {
+      if (languages == null || languages.isEmpty()) {
+         throw new IllegalArgumentException("Must specify at least one language.");
+      }
+      this.languages = Collections.unmodifiableList(new ArrayList<String>(languages));
+      int n = languages.size();
+      headerMatchers = new Matcher[n];
+      sectionStages = new SectionStage[n];
+      handlers = new ContentHandler[n];
+      for (int i = 0; i < n; i++) {
+         headerMatchers[i] = LanguagePrefilter.createHeaderPattern(Pattern.quote(languages.get(i))).matcher("");
+      }
+      super.setContentHandler(new BroadcastContentHandler(handlers));
+   }
+
+   /**
+    * Return the languages this filter searches for.
+    *
+    * @return the languages this filter searches for.
+    */
+   public List<String> getLanguages() {
+      return languages;
+   }
+
+   /**
+    * Set the handler that receives the events for a language.
+    *
+    * @param index   the index of the language in the list passed to the constructor
+    * @param handler the handler for the language.
+    */
+   public void setLanguageHandler(int index, ContentHandler handler) {
+      handlers[index] = handler;
+   }
+
+   /**
+    * Specify whether a {@link DuplicateTextPrefilter} precedes this filter.  If so, each {@code <text>} element that
+    * the {@code DuplicateTextPrefilter} replaced with a reference to an earlier revision is sent, unchanged, to
+    * every language.  (The earlier revision's text was identical; so, each language's section of it was too.  Each
+    * handler sees every {@code <text>} element; so, the reference's position is correct for each language.)
+    * {@link MultiLanguageMediaWikiLoader} sets this automatically.
+    *
+    * @param passReferences {@code true} if a {@code DuplicateTextPrefilter} precedes this filter.
+    */
+   void setPassReferences(boolean passReferences) {
+      this.passReferences = passReferences;
+   }
+
+   /**
+    * Not supported:  Use {@link #setLanguageHandler(int, ContentHandler)} instead.
+    *
+    * @param handler ignored
+    * @throws UnsupportedOperationException always
+    */
+   @Override
+   public void setContentHandler(ContentHandler handler) {
+      throw new UnsupportedOperationException("Use setLanguageHandler to set the handler for each language.");
+   }
+
+   @Override
+   public void parse(InputSource input) throws SAXException, IOException {
+      for (int i = 0; i < handlers.length; i++) {
+         if (handlers[i] == null) {
+            throw new IllegalStateException("No handler for language \"" + languages.get(i) + "\".");
+         }
+      }
+      super.parse(input);
+   }
+
+   @Override
+   protected void handleStartTextElement(String uri, String localName, String qName, Attributes attrs)
+         throws SAXException {
+      for (int i = 0; i < sectionStages.length; i++) {
+         sectionStages[i] = SectionStage.PRE;
+      }
+      active = sectionStages.length;
+      atStart = true;
+      hs.reset();
+   }
+
+   @Override
+   protected void handleEndTextElement(String uri, String localName, String qName) throws SAXException {
+      // If the last text we saw could possibly be a complete header, process an extra newline
+      // (without passing it through the filter).  This matches LanguagePrefilter.
+      if (active > 0 && hs.possiblyComplete()) {
+         hs.find(NEWLINE, 0, 1);
+         for (int i = 0; i < sectionStages.length; i++) {
+            if (sectionStages[i] != SectionStage.POST && headerMatchers[i].reset(hs.getHeaderContent()).matches()) {
+               sectionStages[i] = SectionStage.IN;
+               handlers[i].characters(hs.getFullHeader(), 0, hs.getFullHeaderLength());
+            }
+         }
+      }
+   }
+
+   @Override
+   protected void handleTextElementCharacters(char[] ch, int start, int length) throws SAXException {
+      if (atStart && passReferences && DuplicateTextPrefilter.isReference(ch, start, length)) {
+         for (ContentHandler handler : handlers) {
+            handler.characters(ch, start, length);
+         }
+         active = 0;
+      }
+      atStart = false;
+      int end = start + length;
+      int pos = start;
+      while (active > 0) {
+         int next = hs.find(ch, pos, end - pos);
+
+         // Open sections receive everything up to (and including) the header just found.
+         int stop = (next < 0) ? end : next;
+         if (stop > pos) {
+            for (int i = 0; i < sectionStages.length; i++) {
+               if (sectionStages[i] == SectionStage.IN) {
+                  handlers[i].characters(ch, pos, stop - pos);
+               }
+            }
+         }
+         if (next < 0) {
+            return;
+         }
+         handleHeader();
+         hs.reset();
+         pos = next;
+      }
+   }
+
+   // A header ends every open section and may open others.
+   private void handleHeader() throws SAXException {
+      for (int i = 0; i < sectionStages.length; i++) {
+         if (sectionStages[i] == SectionStage.IN) {
+            sectionStages[i] = SectionStage.POST;
+            active--;
+         } else if (sectionStages[i] == SectionStage.PRE && headerMatchers[i].reset(hs.getHeaderContent())
+               .matches()) {
+            sectionStages[i] = SectionStage.IN;
+            handlers[i].characters(hs.getFullHeader(), 0, hs.getFullHeaderLength());
+         }
+      }
+   }
+}
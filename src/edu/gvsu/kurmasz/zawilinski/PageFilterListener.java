@@ -5,13 +5,28 @@ import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
 import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
 import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
 
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Handles events from unmarshaller. In particular, when a Wiktionary page
  * has finished loading, this code checks to see if the page is wanted. If
  * not, it removes that page, thereby freeing memory.
  *
+ * <p>If the listener is given a {@link PageHandler}, each page that is kept is passed to the handler and
+ * then removed from the tree as well.  In this "streaming" mode, at most one page is in memory at a time.</p>
+ *
+ * <p>If delta compression is enabled (see {@link #setDeltaCompression(int)}), the text of each kept revision after the
+ * first in a page is stored as a {@link DeltaText}:  a change to the text of the page's previous kept revision.
+ * {@link Util#getText(PageType, int)} rebuilds the text when it is needed.</p>
+ *
+ * <p>If duplicate resolution is enabled (see {@link #setResolveDuplicates(boolean)}) and a
+ * {@link DuplicateTextPrefilter} replaced a revision's text with a reference to an earlier revision of the page, the
+ * listener gives the revision the earlier revision's text (before the post-filter examines the revision).
+ * {@link #getDuplicateRevisionCount()} and {@link #getDuplicateBytesSaved()} report the savings.</p>
+ *
  * <p>
  *     Log data for pages:  #pages_kept #pages_total title page_size<br>
  *     Log data for revisions: #revisions_kept_total #revisions_total rev_number rev_size
@@ -39,10 +54,46 @@ public class PageFilterListener extends Unmarshaller.Listener {
    private int keptRevisionCount = 0;
    private PageType currentPage = null;
 
+   // true if references made by a DuplicateTextPrefilter are to be resolved
+   private boolean resolveDuplicates = false;
+   // The text of each revision read so far in the current page (including revisions that were removed)
+   private final List<StoredText> pageTexts = new ArrayList<StoredText>();
+   // revisions whose text was a reference to an earlier revision's text
+   private long duplicateRevisionCount = 0;
+   // characters in those texts
+   private long duplicateCharCount = 0;
+
    // The code that determines whether we want to keep a particular page.
    private PostFilter filter;
    private SimpleLog log;
 
+   // Receives the kept pages (streaming mode only; null otherwise)
+   private PageHandler handler;
+   // true once handler.beginDocument has been called.
+   private boolean documentBegun = false;
+
+   // Maximum length of a chain of DeltaTexts (0 if delta compression is disabled)
+   private int maxDeltaChain = 0;
+   // The text of the current page's most recently kept revision (as stored, and as a String)
+   private StoredText lastKeptText = null;
+   private String lastKeptString = null;
+
+   /**
+    * Thrown (unchecked) when the {@link PageHandler} fails.  The unmarshaller's listener methods can't
+    * throw checked exceptions; so, the {@code JAXBException} is wrapped here and unwrapped by
+    * {@link StreamingMediaWikiLoader}.
+    */
+   static class HandlerException extends RuntimeException {
+      HandlerException(JAXBException cause) {
+         super(cause);
+      }
+
+      @Override
+      public JAXBException getCause() {
+         return (JAXBException) super.getCause();
+      }
+   }
+
    /**
     * Constructor
     *
@@ -50,8 +101,109 @@ public class PageFilterListener extends Unmarshaller.Listener {
     * @param log the log
     */
    public PageFilterListener(PostFilter filter, SimpleLog log) {
+      this(filter, log, null);
+   }
+
+   /**
+    * Constructor for "streaming" mode:  Each page that passes the filter is handed to {@code handler}, then
+    * removed from the tree.
+    *
+    * @param filter  filter to apply
+    * @param log     the log
+    * @param handler the handler that receives each kept page (or {@code null} to keep the pages in the tree)
+    */
+   public PageFilterListener(PostFilter filter, SimpleLog log, PageHandler handler) {
       this.filter = filter;
       this.log = log;
+      this.handler = handler;
+   }
+
+   /**
+    * Store the text of each kept revision (other than the first in each page) as a change to the text of the
+    * page's previous kept revision.
+    *
+    * @param maxChain the maximum number of changes applied to rebuild a text (e.g.,
+    *                 {@link DeltaText#DEFAULT_MAX_CHAIN}), or 0 to store each text in full.
+    */
+   public void setDeltaCompression(int maxChain) {
+      if (maxChain < 0) {
+         throw new IllegalArgumentException("maxChain may not be negative.");
+      }
+      this.maxDeltaChain = maxChain;
+   }
+
+   /**
+    * Replace each reference made by a {@link DuplicateTextPrefilter} with the text to which it refers.  (The loaders
+    * in this package enable this automatically when a {@code DuplicateTextPrefilter} is among their filters.)
+    *
+    * @param resolveDuplicates {@code true} if references are to be resolved.
+    */
+   public void setResolveDuplicates(boolean resolveDuplicates) {
+      this.resolveDuplicates = resolveDuplicates;
+   }
+
+   /**
+    * Return the number of pages read so far.
+    *
+    * @return the number of pages read so far.
+    */
+   public int getPageCount() {
+      return pageCount;
+   }
+
+   /**
+    * Return the number of pages kept so far.
+    *
+    * @return the number of pages kept so far.
+    */
+   public int getKeptPageCount() {
+      return keptPageCount;
+   }
+
+   /**
+    * Return the number of revisions read so far.
+    *
+    * @return the number of revisions read so far.
+    */
+   public int getRevisionCount() {
+      return revisionCount;
+   }
+
+   /**
+    * Return the number of revisions kept so far.
+    *
+    * @return the number of revisions kept so far.
+    */
+   public int getKeptRevisionCount() {
+      return keptRevisionCount;
+   }
+
+   // Continue counting from an earlier run (see CheckpointedMediaWikiLoader).
+   void restoreCounts(int pages, int keptPages, int revisions, int keptRevisions) {
+      pageCount = pages;
+      keptPageCount = keptPages;
+      revisionCount = revisions;
+      keptRevisionCount = keptRevisions;
+   }
+
+   /**
+    * Return the number of revisions whose text was replaced by a {@link DuplicateTextPrefilter}'s reference to the
+    * text of an earlier revision.
+    *
+    * @return the number of revisions whose text was shared with an earlier revision.
+    */
+   public long getDuplicateRevisionCount() {
+      return duplicateRevisionCount;
+   }
+
+   /**
+    * Return the approximate number of bytes of heap saved by sharing the texts of duplicate revisions (i.e., two
+    * bytes for each character of each shared text).
+    *
+    * @return the approximate number of bytes saved by sharing texts.
+    */
+   public long getDuplicateBytesSaved() {
+      return duplicateCharCount * 2;
    }
 
    /**
@@ -73,16 +225,32 @@ public class PageFilterListener extends Unmarshaller.Listener {
       // new revision, see if we want to remove the previous revision.
       else if (target instanceof PageType) {
          removePage();
+         beginDocument();
          currentPage = (PageType) target;
+         pageTexts.clear();
+         lastKeptText = null;
+         lastKeptString = null;
       } else if (target instanceof RevisionType) {
          removeRevision();
       }
    } // end beforeUnmarshal
 
+   // Tell the handler (if any) that the root's attributes and siteinfo are available.
+   private void beginDocument() {
+      if (handler != null && !documentBegun) {
+         documentBegun = true;
+         try {
+            handler.beginDocument(mediawiki);
+         } catch (JAXBException e) {
+            throw new HandlerException(e);
+         }
+      }
+   }
+
    // Remove the specified page from the Mediawiki object's list of pages.
    private void removePage() {
       if (pageToDelete != null) {
-         boolean answer = mediawiki.getPage().remove(pageToDelete);
+         boolean answer = removeFromEnd(mediawiki.getPage(), pageToDelete);
          assert answer : "Couldn't delete desired page.";
          pageToDelete = null;
       }
@@ -92,13 +260,24 @@ public class PageFilterListener extends Unmarshaller.Listener {
    // Remove the specified revision from the current page's list of revisions.
    private void removeRevision() {
       if (revisionToDelete != null) {
-         boolean answer = currentPage.getRevisionOrUpload()
-               .remove(revisionToDelete);
+         boolean answer = removeFromEnd(currentPage.getRevisionOrUpload(), revisionToDelete);
          assert answer : "Couldn't delete desired revision.";
          revisionToDelete = null;
       }
    }
 
+   // Remove item from list.  The item to delete is always the most recently unmarshalled item (i.e., the last item
+   // in the list); so, checking the end of the list first avoids scanning (and shifting) the entire list.
+   // package scope for testing
+   static <T> boolean removeFromEnd(List<T> list, T item) {
+      int last = list.size() - 1;
+      if (last >= 0 && list.get(last) == item) {
+         list.remove(last);
+         return true;
+      }
+      return list.remove(item);
+   }
+
    /**
     * Called after a particular element is unmarshalled.
     *
@@ -111,6 +290,15 @@ public class PageFilterListener extends Unmarshaller.Listener {
       // case we don't want the very last entry.
       if (target instanceof MediaWikiType) {
          removePage();
+
+         if (handler != null) {
+            beginDocument();
+            try {
+               handler.endDocument(mediawiki);
+            } catch (JAXBException e) {
+               throw new HandlerException(e);
+            }
+         }
       }
 
       // If we have just finished populating a page,
@@ -133,6 +321,16 @@ public class PageFilterListener extends Unmarshaller.Listener {
                      .getTitle(), Util.getTextSize(page));
                log.println(Zawilinski.PAGE_KEPT, message);
             }
+
+            // In streaming mode, the handler gets the page; then, we discard it.
+            if (handler != null) {
+               try {
+                  handler.handlePage(page);
+               } catch (JAXBException e) {
+                  throw new HandlerException(e);
+               }
+               pageToDelete = page;
+            }
          } else {
             if (log.willLog(Zawilinski.PAGE_DUMPED)) {
                String message = String.format("%-11s %5d %7d %30s %d",
@@ -147,9 +345,15 @@ public class PageFilterListener extends Unmarshaller.Listener {
       else if (target instanceof RevisionType) {
          revisionCount++;
          RevisionType revision = (RevisionType) target;
+         if (resolveDuplicates) {
+            resolveDuplicate(revision);
+         }
          // See if we want to keep the page.
          if (filter.keepRevision(revision, currentPage)) {
             keptRevisionCount++;
+            if (maxDeltaChain > 0) {
+               compress(revision);
+            }
 
             if (log.willLog(Zawilinski.REVISION_KEPT)) {
                String message = String.format(
@@ -171,4 +375,43 @@ public class PageFilterListener extends Unmarshaller.Listener {
          } // end else
       } // end if RevisionType
    } // end afterUnmarshall
+
+   // If the revision's text refers to an earlier revision, use the earlier revision's text.
+   private void resolveDuplicate(RevisionType revision) {
+      if (revision.getText() == null) {
+         return;
+      }
+      StoredText text = revision.getText().getValue();
+      int reference = DuplicateTextPrefilter.getReference(text);
+      if (reference >= 0 && reference < pageTexts.size()) {
+         text = pageTexts.get(reference);
+         revision.getText().setValue(text);
+         duplicateRevisionCount++;
+         duplicateCharCount += text.length();
+      } else {
+         StoredText original = DuplicateTextPrefilter.unescape(text);
+         if (original != text) {
+            text = original;
+            revision.getText().setValue(text);
+         }
+      }
+      pageTexts.add(text);
+   }
+
+   // Replace the revision's text with a DeltaText (if that saves memory).
+   private void compress(RevisionType revision) {
+      if (revision.getText() == null || revision.getText().getValue() == null) {
+         return;
+      }
+      String text = Util.getText(revision);
+      StoredText stored = DeltaText.encode(lastKeptText, lastKeptString, text, maxDeltaChain);
+      if (stored instanceof DeltaText) {
+         revision.getText().setValue(stored);
+      } else {
+         // Leave the text where it was (e.g., in a TextArena).
+         stored = revision.getText().getValue();
+      }
+      lastKeptText = stored;
+      lastKeptString = text;
+   }
 }
@@ -0,0 +1,45 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+
+import javax.xml.bind.JAXBException;
+
+/**
+ * Callback that receives MediaWiki pages one at a time as they are loaded.  Classes that implement this
+ * interface allow {@link StreamingMediaWikiLoader} to process a dump without ever holding more than one
+ * page in memory.
+ *
+ * <p>The methods are called in this order:  {@link #beginDocument(MediaWikiType)} exactly once,
+ * {@link #handlePage(PageType)} once for each page that passes the post-filter, then
+ * {@link #endDocument(MediaWikiType)} exactly once.</p>
+ */
+public interface PageHandler {
+
+   /**
+    * Called once, before the first page is handled.  At this point the root's attributes and
+    * {@code <siteinfo>} element (if any) have been loaded, but its list of pages is empty.
+    *
+    * @param root the root of the document being loaded.
+    * @throws JAXBException if the handler cannot process the document.
+    */
+   public void beginDocument(MediaWikiType root) throws JAXBException;
+
+   /**
+    * Called once for each page that passes the post-filter.  The page is removed from the
+    * document tree after this method returns; therefore, implementations that need the page later
+    * must keep their own reference to it.
+    *
+    * @param page a completely loaded (and post-filtered) page.
+    * @throws JAXBException if the handler cannot process the page.
+    */
+   public void handlePage(PageType page) throws JAXBException;
+
+   /**
+    * Called once, after the last page has been handled.
+    *
+    * @param root the root of the document being loaded.
+    * @throws JAXBException if the handler cannot process the document.
+    */
+   public void endDocument(MediaWikiType root) throws JAXBException;
+}
@@ -0,0 +1,453 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.SimpleLog;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import org.xml.sax.XMLFilter;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A sorted index of the pages in an uncompressed dump, stored in a "sidecar" file next to the dump.  For each page,
+ * the index records the title, namespace, id, and the position and length of the page in the dump.  A
+ * {@code PageIndex} memory-maps the index file and finds a title by binary search; so, a few pages can be loaded
+ * from a huge dump without scanning it.
+ *
+ * <p>The index file contains a header, a table of fixed-size records sorted by the UTF-8 bytes of the titles, and
+ * the titles themselves:</p>
+ *
+ * <pre>
+ * header:  magic (int), version (int), size of the dump (long), number of pages (int)
+ * record:  page offset (long), page length (long), page id (long), namespace (int),
+ *          title offset (int), title length (int)
+ * titles:  the UTF-8 bytes of each title
+ * </pre>
+ *
+ * <p>Use {@link #build(MappedDump, File)} to create an index file.</p>
+ */
+public class PageIndex implements Closeable {
+
+   /**
+    * The suffix of the default index file (see {@link #defaultIndexFile(File)}).
+    */
+   public static final String SUFFIX = ".idx";
+
+   /**
+    * The namespace recorded for pages without a {@code <ns>} element.
+    */
+   public static final int UNKNOWN_NAMESPACE = Integer.MIN_VALUE;
+
+   static final int MAGIC = 0x5a575049; // "ZWPI"
+   static final int VERSION = 1;
+   static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+   static final int RECORD_SIZE = 8 + 8 + 8 + 4 + 4 + 4;
+
+   /**
+    * The location and identity of one page.
+    */
+   public static class Entry {
+      private final String title;
+      private final int namespace;
+      private final long id;
+      private final long offset;
+      private final long length;
+
+      Entry(String title, int namespace, long id, long offset, long length) {
+         this.title = title;
+         this.namespace = namespace;
+         this.id = id;
+         this.offset = offset;
+         this.length = length;
+      }
+
+      /**
+       * Return the page's title.
+       *
+       * @return the page's title.
+       */
+      public String getTitle() {
+         return title;
+      }
+
+      /**
+       * Return the page's namespace, or {@link #UNKNOWN_NAMESPACE}.
+       *
+       * @return the page's namespace.
+       */
+      public int getNamespace() {
+         return namespace;
+      }
+
+      /**
+       * Return the page's id, or -1 if the page has no id.
+       *
+       * @return the page's id.
+       */
+      public long getId() {
+         return id;
+      }
+
+      /**
+       * Return the position of the page's {@code <page>} tag in the dump.
+       *
+       * @return the position of the page in the dump.
+       */
+      public long getOffset() {
+         return offset;
+      }
+
+      /**
+       * Return the number of bytes from the page's {@code <page>} tag to the next page (or the end of the pages).
+       *
+       * @return the length of the page in the dump.
+       */
+      public long getLength() {
+         return length;
+      }
+
+      @Override
+      public String toString() {
+         return String.format("%s (ns %d, id %d) at %d+%d", title, namespace, id, offset, length);
+      }
+   }
+
+   // Orders entries by their position in the dump.
+   private static final Comparator<Entry> BY_OFFSET = new Comparator<Entry>() {
+      public int compare(Entry a, Entry b) {
+         return a.offset < b.offset ? -1 : (a.offset == b.offset ? 0 : 1);
+      }
+   };
+
+   private final File file;
+   private final RandomAccessFile raf;
+   private final ByteBuffer buffer;
+   private final long dumpSize;
+   private final int size;
+   private final int titlesStart;
+
+   /**
+    * Open an index file.
+    *
+    * @param file the index file
+    * @throws IOException if the file can't be mapped or isn't an index file.
+    */
+   public PageIndex(File file) throws IOException {
+      this.file = file;
+      raf = new RandomAccessFile(file, "r");
+      try {
+         FileChannel channel = raf.getChannel();
+         if (channel.size() > Integer.MAX_VALUE || channel.size() < HEADER_SIZE) {
+            throw new IOException("\"" + file + "\" is not a page index.");
+         }
+         buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("\"" + file + "\" is not a page index.");
+         }
+         dumpSize = buffer.getLong(8);
+         size = buffer.getInt(16);
+         long tableEnd = HEADER_SIZE + (long) size * RECORD_SIZE;
+         if (size < 0 || tableEnd > buffer.capacity()) {
+            throw new IOException("\"" + file + "\" is truncated.");
+         }
+         titlesStart = (int) tableEnd;
+      } catch (IOException e) {
+         raf.close();
+         throw e;
+      }
+   }
+
+   /**
+    * Return the name of the default index file for {@code dump} (the dump's name followed by {@link #SUFFIX}).
+    *
+    * @param dump the dump
+    * @return the default index file for {@code dump}.
+    */
+   public static File defaultIndexFile(File dump) {
+      return new File(dump.getPath() + SUFFIX);
+   }
+
+   /**
+    * Scan {@code dump} and write an index of its pages to {@code indexFile}.  Only the header of each page is
+    * examined (see {@link PagePassthrough}); so, this is much faster than parsing the dump.  The index is written to
+    * a temporary file that replaces {@code indexFile} only when it is complete; so, a failure never leaves a partial
+    * index behind.
+    *
+    * @param dump      the uncompressed dump
+    * @param indexFile the file to write
+    * @return the number of pages indexed
+    * @throws IOException if the index file can't be written, or if the dump has too many pages to index.
+    */
+   public static int build(MappedDump dump, File indexFile) throws IOException {
+      if (dump == null || indexFile == null) {
+         throw new IllegalArgumentException("Parameters may not be null.");
+      }
+
+      List<Entry> entries = new ArrayList<Entry>();
+      List<byte[]> titles = new ArrayList<byte[]>();
+      long footer = dump.getFooterStart();
+      for (long page = dump.getFirstPage(); page < footer; ) {
+         long next = dump.indexOf(MappedDump.PAGE_START, page + MappedDump.PAGE_START.length, footer);
+         if (next < 0) {
+            next = footer;
+         }
+         String[] header = PagePassthrough.readHeader(dump, page, next);
+         String title = header[0] == null ? "" : header[0];
+         entries.add(new Entry(title, parseInt(header[1]), parseLong(header[2]), page, next - page));
+         titles.add(title.getBytes(MappedDump.UTF8));
+         page = next;
+      }
+
+      // Sort the positions of the entries by title.
+      final byte[][] titleBytes = titles.toArray(new byte[titles.size()][]);
+      Integer[] order = new Integer[entries.size()];
+      for (int i = 0; i < order.length; i++) {
+         order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+         public int compare(Integer a, Integer b) {
+            return compareBytes(titleBytes[a], titleBytes[b]);
+         }
+      });
+
+      // The index is read using int offsets; so, make sure it fits before writing anything.
+      long titleSize = 0;
+      for (byte[] title : titleBytes) {
+         titleSize += title.length;
+      }
+      if (HEADER_SIZE + (long) order.length * RECORD_SIZE + titleSize > Integer.MAX_VALUE) {
+         throw new IOException("Too many pages to index.");
+      }
+
+      File temp = new File(indexFile.getPath() + ".tmp");
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      boolean written = false;
+      try {
+         out.writeInt(MAGIC);
+         out.writeInt(VERSION);
+         out.writeLong(dump.size());
+         out.writeInt(order.length);
+         long titleOffset = 0;
+         for (int i : order) {
+            Entry entry = entries.get(i);
+            out.writeLong(entry.offset);
+            out.writeLong(entry.length);
+            out.writeLong(entry.id);
+            out.writeInt(entry.namespace);
+            out.writeInt((int) titleOffset);
+            out.writeInt(titleBytes[i].length);
+            titleOffset += titleBytes[i].length;
+         }
+         for (int i : order) {
+            out.write(titleBytes[i]);
+         }
+         out.close();
+         written = true;
+      } finally {
+         if (!written) {
+            try {
+               out.close();
+            } catch (IOException e) {
+               // The failure that led here is more informative.
+            }
+            temp.delete();
+         }
+      }
+      if (!temp.renameTo(indexFile) && !(indexFile.delete() && temp.renameTo(indexFile))) {
+         temp.delete();
+         throw new IOException("Could not replace \"" + indexFile + "\".");
+      }
+      return order.length;
+   }
+
+   private static int parseInt(String value) {
+      try {
+         return value == null ? UNKNOWN_NAMESPACE : Integer.parseInt(value.trim());
+      } catch (NumberFormatException e) {
+         return UNKNOWN_NAMESPACE;
+      }
+   }
+
+   private static long parseLong(String value) {
+      try {
+         return value == null ? -1 : Long.parseLong(value.trim());
+      } catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+
+   // Compare as unsigned bytes (which orders UTF-8 strings by code point).
+   private static int compareBytes(byte[] a, byte[] b) {
+      int limit = Math.min(a.length, b.length);
+      for (int i = 0; i < limit; i++) {
+         int diff = (a[i] & 0xff) - (b[i] & 0xff);
+         if (diff != 0) {
+            return diff;
+         }
+      }
+      return a.length - b.length;
+   }
+
+   // Compare the title of record i with key.
+   private int compareTitle(int i, byte[] key) {
+      int record = HEADER_SIZE + i * RECORD_SIZE;
+      int start = titlesStart + buffer.getInt(record + 28);
+      int length = buffer.getInt(record + 32);
+      int limit = Math.min(length, key.length);
+      for (int j = 0; j < limit; j++) {
+         int diff = (buffer.get(start + j) & 0xff) - (key[j] & 0xff);
+         if (diff != 0) {
+            return diff;
+         }
+      }
+      return length - key.length;
+   }
+
+   /**
+    * Return the size (in bytes) of the dump described by this index.
+    *
+    * @return the size of the dump described by this index.
+    */
+   public long getDumpSize() {
+      return dumpSize;
+   }
+
+   /**
+    * Return the number of pages in the index.
+    *
+    * @return the number of pages in the index.
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Return the {@code i}th entry in title order.  (Titles are ordered by their UTF-8 bytes, i.e., by code point.)
+    *
+    * @param i the position of the entry
+    * @return the {@code i}th entry.
+    * @throws IndexOutOfBoundsException if {@code i} is not in {@code [0, size())}.
+    */
+   public Entry get(int i) {
+      if (i < 0 || i >= size) {
+         throw new IndexOutOfBoundsException("No entry " + i + " in \"" + file + "\".");
+      }
+      int record = HEADER_SIZE + i * RECORD_SIZE;
+      byte[] title = new byte[buffer.getInt(record + 32)];
+      ByteBuffer titles = buffer.duplicate();
+      titles.position(titlesStart + buffer.getInt(record + 28));
+      titles.get(title);
+      return new Entry(new String(title, MappedDump.UTF8), buffer.getInt(record + 24), buffer.getLong(record + 16),
+            buffer.getLong(record), buffer.getLong(record + 8));
+   }
+
+   /**
+    * Return the entry for the page with the given title.
+    *
+    * @param title the title
+    * @return the entry for the page with {@code title}, or {@code null} if there is no such page.
+    */
+   public Entry find(String title) {
+      if (title == null) {
+         throw new IllegalArgumentException("Title may not be null.");
+      }
+      byte[] key = title.getBytes(MappedDump.UTF8);
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+         int mid = (low + high) >>> 1;
+         int cmp = compareTitle(mid, key);
+         if (cmp < 0) {
+            low = mid + 1;
+         } else if (cmp > 0) {
+            high = mid - 1;
+         } else {
+            return get(mid);
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Load the given pages (and only those pages) from {@code dump}.  The pages appear in the order in which they
+    * appear in the dump.
+    *
+    * @param dump       the dump described by this index
+    * @param entries    the entries for the pages to load
+    * @param log        a {@code Log} to which to report progress
+    * @param postFilter the post-filter that determines which pages and revisions are kept
+    * @param filterList a list of SAX filters to apply.
+    * @return a {@code MediaWikiType} object representing the root of a document containing the given pages
+    * @throws JAXBException            if there is a problem generating the DOM
+    * @throws IllegalArgumentException if this index does not describe {@code dump}.
+    */
+   public JAXBElement<MediaWikiType> load(MappedDump dump, Collection<Entry> entries, SimpleLog log,
+                                          PostFilter postFilter, XMLFilter... filterList) throws JAXBException {
+      if (dump.size() != dumpSize) {
+         throw new IllegalArgumentException("\"" + file + "\" is not an index of \"" + dump.getFile() + "\".");
+      }
+      List<Entry> sorted = new ArrayList<Entry>(entries);
+      Collections.sort(sorted, BY_OFFSET);
+
+      List<InputStream> parts = new ArrayList<InputStream>();
+      parts.add(dump.openStream(0, dump.getFirstPage()));
+      for (Entry entry : sorted) {
+         parts.add(dump.openStream(entry.offset, entry.offset + entry.length));
+      }
+      parts.add(dump.openStream(dump.getFooterStart(), dump.size()));
+      return PostFilteredMediaWikiLoader.load(new SequenceInputStream(Collections.enumeration(parts)), log,
+            postFilter, filterList);
+   }
+
+   /**
+    * Build the index of a dump.  Usage:  {@code PageIndex <dump> [index file]}
+    *
+    * @param args the dump and (optionally) the index file (by default, the dump's name followed by
+    *             {@link #SUFFIX})
+    */
+   public static void main(String[] args) {
+      if (args.length < 1 || args.length > 2) {
+         System.err.println("Usage:  " + PageIndex.class.getSimpleName() + " <dump> [index file]");
+         return;
+      }
+      File dumpFile = new File(args[0]);
+      File indexFile = args.length > 1 ? new File(args[1]) : defaultIndexFile(dumpFile);
+      try {
+         MappedDump dump = new MappedDump(dumpFile);
+         try {
+            long start = System.currentTimeMillis();
+            int pages = build(dump, indexFile);
+            System.err.printf("Indexed %d pages in %d ms.\n", pages, System.currentTimeMillis() - start);
+         } finally {
+            dump.close();
+         }
+      } catch (IOException e) {
+         System.err.println("Could not index \"" + dumpFile + "\":  " + e.getMessage());
+      }
+   }
+
+   /**
+    * Close the index file.
+    *
+    * @throws IOException if the file can't be closed.
+    */
+   public void close() throws IOException {
+      raf.close();
+   }
+}
@@ -0,0 +1,302 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.SimpleLog;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.xml.sax.InputSource;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Iterates over the kept pages of a dump.  The pages are loaded (by a {@link StreamingMediaWikiLoader}) on a
+ * background thread that starts when the first page is requested and stays at most {@link #QUEUE_SIZE} pages ahead of
+ * the caller; so, only a few pages are in memory at once.  Use {@link WikiDumps} to create a {@code PageIterator}.
+ *
+ * <p>An iterator over an uncompressed (memory-mapped) dump can be divided before iteration begins:
+ * {@link #trySplit()} returns a new iterator over the first part of the remaining pages and leaves this iterator with
+ * the rest.  (The parts begin on {@code <page>} boundaries.)  The parts may then be iterated on different threads.
+ * Each part creates its own filters using the {@link ParallelMediaWikiLoader.FilterFactory}.</p>
+ *
+ * <p>Always {@link #close()} an iterator (and each iterator split from it), even if it isn't iterated to the end.
+ * Closing stops the background thread, and the mapping is released when the last iterator sharing it is closed.</p>
+ *
+ * <p>Because {@code Iterator} methods can't throw checked exceptions, problems loading the dump are thrown from
+ * {@link #hasNext()} and {@link #next()} as {@link LoadException}s.</p>
+ */
+public class PageIterator implements Iterator<PageType>, Closeable {
+
+   /**
+    * Thrown when the dump can't be loaded.  The cause is the original exception (usually a {@code JAXBException}).
+    */
+   public static class LoadException extends RuntimeException {
+      LoadException(Throwable cause) {
+         super(cause);
+      }
+   }
+
+   /**
+    * The maximum number of loaded pages waiting to be returned by {@link #next()}.
+    */
+   public static final int QUEUE_SIZE = 16;
+
+   // Placed in the queue after the last page
+   private static final Object END = new Object();
+
+   private static int threadCount = 0;
+
+   // A mapped dump shared by an iterator and the iterators split from it
+   private static class SharedDump {
+      private final MappedDump dump;
+      private int users = 1;
+
+      SharedDump(MappedDump dump) {
+         this.dump = dump;
+      }
+
+      synchronized void acquire() {
+         users++;
+      }
+
+      synchronized void release() throws IOException {
+         if (--users == 0) {
+            dump.close();
+         }
+      }
+   }
+
+   private final SimpleLog log;
+   private final ParallelMediaWikiLoader.FilterFactory factory;
+
+   // Exactly one of shared and input is non-null.
+   private final SharedDump shared;
+   private long start;
+   private final long end;
+   private final InputStream input;
+
+   // Holds loaded pages, followed by END or the Throwable that stopped the load.
+   private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+   private Thread producer = null;
+   private volatile boolean closed = false;
+   // The item taken from the queue but not yet returned by next() (or null)
+   private Object next = null;
+
+   private PageIterator(SimpleLog log, ParallelMediaWikiLoader.FilterFactory factory, SharedDump shared, long start,
+                        long end, InputStream input) {
+      if (log == null || factory == null) {
+         throw new IllegalArgumentException("Parameters may not be null.");
+      }
+      this.log = log;
+      this.factory = factory;
+      this.shared = shared;
+      this.start = start;
+      this.end = end;
+      this.input = input;
+   }
+
+   /**
+    * Constructor for an iterator over the pages of a memory-mapped dump.  The iterator takes ownership of
+    * {@code dump}:  Closing the iterator (and all iterators split from it) closes {@code dump}.
+    *
+    * @param dump    the dump
+    * @param log     a {@code Log} to which to report progress
+    * @param factory creates the filters for the iterator (and for each iterator split from it)
+    */
+   PageIterator(MappedDump dump, SimpleLog log, ParallelMediaWikiLoader.FilterFactory factory) {
+      this(log, factory, new SharedDump(dump), dump.getFirstPage(), dump.getFooterStart(), null);
+   }
+
+   /**
+    * Constructor for an iterator over the pages in a stream.  Such an iterator can't be split.  Closing the iterator
+    * closes {@code input}.
+    *
+    * @param input   the dump
+    * @param log     a {@code Log} to which to report progress
+    * @param factory creates the filters for the iterator
+    */
+   PageIterator(InputStream input, SimpleLog log, ParallelMediaWikiLoader.FilterFactory factory) {
+      this(log, factory, null, 0, 0, input);
+      if (input == null) {
+         throw new IllegalArgumentException("InputStream may not be null.");
+      }
+   }
+
+   /**
+    * If this iterator's pages can be divided, return a new iterator over the first part of them, and leave this
+    * iterator with the rest.  Only iterators over memory-mapped dumps can be divided, and only before iteration
+    * begins.
+    *
+    * @return a new iterator over the first part of this iterator's pages, or {@code null} if they can't be divided.
+    */
+   public synchronized PageIterator trySplit() {
+      if (shared == null || producer != null || closed) {
+         return null;
+      }
+      long boundary = shared.dump.indexOf(MappedDump.PAGE_START, start + (end - start) / 2, end);
+      if (boundary <= start) {
+         return null;
+      }
+      shared.acquire();
+      PageIterator prefix = new PageIterator(log, factory, shared, start, boundary, null);
+      start = boundary;
+      return prefix;
+   }
+
+   /**
+    * Return the number of bytes of the dump remaining to be loaded by this iterator (before iteration begins), or
+    * {@code -1} if the size isn't known (i.e., for iterators over streams).
+    *
+    * @return the number of bytes of the dump covered by this iterator, or {@code -1}.
+    */
+   public long estimateSize() {
+      return shared == null ? -1 : end - start;
+   }
+
+   public boolean hasNext() {
+      if (closed) {
+         return false;
+      }
+      if (next == null) {
+         startProducer();
+         try {
+            next = queue.take();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoadException(e);
+         }
+      }
+      if (next instanceof Throwable) {
+         Throwable cause = (Throwable) next;
+         next = END;
+         throw new LoadException(cause);
+      }
+      return next != END;
+   }
+
+   public PageType next() {
+      if (!hasNext()) {
+         throw new NoSuchElementException();
+      }
+      PageType page = (PageType) next;
+      next = null;
+      return page;
+   }
+
+   /**
+    * Not supported.
+    *
+    * @throws UnsupportedOperationException always
+    */
+   public void remove() {
+      throw new UnsupportedOperationException("Pages can't be removed from a dump.");
+   }
+
+   /**
+    * Stop loading pages and release the dump.  Further calls to {@link #hasNext()} return {@code false}.
+    *
+    * @throws IOException if the dump can't be closed.
+    */
+   public void close() throws IOException {
+      Thread thread;
+      synchronized (this) {
+         if (closed) {
+            return;
+         }
+         closed = true;
+         thread = producer;
+      }
+      if (thread != null) {
+         thread.interrupt();
+         queue.clear();
+         try {
+            thread.join();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+      queue.clear();
+      if (shared != null) {
+         shared.release();
+      } else {
+         input.close();
+      }
+   }
+
+   // package scope for testing
+   synchronized boolean isLoading() {
+      return producer != null && producer.isAlive();
+   }
+
+   private synchronized void startProducer() {
+      if (producer != null) {
+         return;
+      }
+      producer = new Thread(new Runnable() {
+         public void run() {
+            load();
+         }
+      }, "PageIterator-" + nextThreadNumber());
+      // The thread doesn't keep the JVM alive if the caller forgets to close the iterator.
+      producer.setDaemon(true);
+      producer.start();
+   }
+
+   private static synchronized int nextThreadNumber() {
+      return ++threadCount;
+   }
+
+   // Runs on the producer thread
+   private void load() {
+      // Everything that can fail (including borrowing the unmarshaller) happens inside the try; otherwise, the
+      // consumer would wait forever for a page.
+      Unmarshaller unmarshaller = null;
+      try {
+         unmarshaller = JAXBPool.borrowUnmarshaller();
+         InputStream source = (shared == null) ? input : shared.dump.openDocument(start, end);
+         StreamingMediaWikiLoader.load(new InputSource(source), log, unmarshaller, factory.createPostFilter(),
+               new PageHandler() {
+                  public void beginDocument(MediaWikiType root) {
+                  }
+
+                  public void handlePage(PageType page) throws JAXBException {
+                     put(page);
+                  }
+
+                  public void endDocument(MediaWikiType root) {
+                  }
+               }, factory.createPrefilters());
+         put(END);
+      } catch (Throwable t) {
+         if (!closed) {
+            try {
+               put(t);
+            } catch (JAXBException e) {
+               // closed while waiting
+            }
+         }
+      } finally {
+         if (unmarshaller != null) {
+            JAXBPool.returnUnmarshaller(unmarshaller);
+         }
+      }
+   }
+
+   // Throwing from the PageHandler is how the load is stopped when the iterator is closed.
+   private void put(Object item) throws JAXBException {
+      if (closed) {
+         throw new JAXBException("PageIterator closed.");
+      }
+      try {
+         queue.put(item);
+      } catch (InterruptedException e) {
+         throw new JAXBException("PageIterator closed.", e);
+      }
+   }
+}
@@ -0,0 +1,245 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Copies selected pages of an uncompressed dump to the output byte-for-byte, without parsing or unmarshalling
+ * them.  Only the beginning of each page (its {@code <title>}, {@code <ns>}, and {@code <id>}) is examined; the
+ * {@link PagePrefilter.PagePredicate} decides whether the page is copied.  The output is the dump's original header
+ * (the {@code <mediawiki>} start tag and {@code <siteinfo>}), the original bytes of each kept page, and the
+ * original footer.  Consecutive kept pages are copied with a single channel transfer.
+ *
+ * <p>Because the pages are not re-marshalled, their formatting is exactly that of the input (unlike the output of
+ * {@link WiktionaryWriter}).</p>
+ */
+public class PagePassthrough {
+
+   static final byte[] TITLE_START = "<title>".getBytes(MappedDump.UTF8);
+   static final byte[] TITLE_END = "</title>".getBytes(MappedDump.UTF8);
+   static final byte[] NS_START = "<ns>".getBytes(MappedDump.UTF8);
+   static final byte[] NS_END = "</ns>".getBytes(MappedDump.UTF8);
+   static final byte[] ID_START = "<id>".getBytes(MappedDump.UTF8);
+   static final byte[] ID_END = "</id>".getBytes(MappedDump.UTF8);
+   static final byte[] REVISION_START = "<revision>".getBytes(MappedDump.UTF8);
+   static final byte[] UPLOAD_START = "<upload>".getBytes(MappedDump.UTF8);
+
+   private final MappedDump dump;
+   private final PagePrefilter.PagePredicate predicate;
+
+   private long pagesKept = 0;
+   private long pagesDiscarded = 0;
+
+   /**
+    * Constructor
+    *
+    * @param dump      the uncompressed dump
+    * @param predicate decides which pages to copy
+    */
+   public PagePassthrough(MappedDump dump, PagePrefilter.PagePredicate predicate) {
+      if (dump == null || predicate == null) {
+         throw new IllegalArgumentException("Dump and predicate may not be null.");
+      }
+      this.dump = dump;
+      this.predicate = predicate;
+   }
+
+   /**
+    * Return the number of pages copied so far.
+    *
+    * @return the number of pages copied so far.
+    */
+   public long getPagesKept() {
+      return pagesKept;
+   }
+
+   /**
+    * Return the number of pages skipped so far.
+    *
+    * @return the number of pages skipped so far.
+    */
+   public long getPagesDiscarded() {
+      return pagesDiscarded;
+   }
+
+   /**
+    * Write the header, the kept pages, and the footer to {@code out}.
+    *
+    * @param out the destination
+    * @throws IOException if the data can't be written.
+    */
+   public void copyTo(WritableByteChannel out) throws IOException {
+      long footer = dump.getFooterStart();
+      // [runStart, runEnd) is a sequence of bytes to copy that hasn't been written yet.
+      long runStart = 0;
+      long runEnd = lineStart(dump.getFirstPage());
+
+      long page = dump.getFirstPage();
+      while (page < footer) {
+         long next = dump.indexOf(MappedDump.PAGE_START, page + MappedDump.PAGE_START.length, footer);
+         if (next < 0) {
+            next = footer;
+         }
+         // Each page includes the indentation before its <page> tag (and ends at the next page's indentation).
+         long start = lineStart(page);
+         long end = lineStart(next);
+         if (keepPage(page, next)) {
+            pagesKept++;
+            if (start != runEnd) {
+               transfer(runStart, runEnd, out);
+               runStart = start;
+            }
+            runEnd = end;
+         } else {
+            pagesDiscarded++;
+         }
+         page = next;
+      }
+      long footerLine = lineStart(footer);
+      if (footerLine != runEnd) {
+         transfer(runStart, runEnd, out);
+         runStart = footerLine;
+      }
+      transfer(runStart, dump.size(), out);
+   }
+
+   // Return the position of the spaces and tabs (if any) immediately before pos.
+   private long lineStart(long pos) {
+      while (pos > 0 && (dump.get(pos - 1) == ' ' || dump.get(pos - 1) == '\t')) {
+         pos--;
+      }
+      return pos;
+   }
+
+   // Ask the predicate about the page in [start, end)
+   private boolean keepPage(long start, long end) {
+      String[] header = readHeader(dump, start, end);
+      return predicate.keepPage(header[0], header[1], header[2]);
+   }
+
+   /**
+    * Return the (unescaped) title, namespace, and id of the page in {@code [start, end)} of {@code dump}.  Only the
+    * page's header (the part before its first revision or upload) is examined.
+    *
+    * @param dump  the dump
+    * @param start the position of the page's {@code <page>} tag
+    * @param end   the position after the end of the page
+    * @return an array containing the title, namespace, and id (each {@code null} if the page has no such element).
+    */
+   static String[] readHeader(MappedDump dump, long start, long end) {
+      // The page's header ends where its first revision (or upload) begins.
+      long headerEnd = dump.indexOf(REVISION_START, start, end);
+      if (headerEnd < 0) {
+         headerEnd = dump.indexOf(UPLOAD_START, start, end);
+      }
+      if (headerEnd < 0) {
+         headerEnd = end;
+      }
+      return new String[]{element(dump, TITLE_START, TITLE_END, start, headerEnd),
+            element(dump, NS_START, NS_END, start, headerEnd), element(dump, ID_START, ID_END, start, headerEnd)};
+   }
+
+   // Return the (unescaped) content of the first element in [from, to) with the given tags, or null if there is
+   // no such element.
+   private static String element(MappedDump dump, byte[] startTag, byte[] endTag, long from, long to) {
+      long start = dump.indexOf(startTag, from, to);
+      if (start < 0) {
+         return null;
+      }
+      start += startTag.length;
+      long end = dump.indexOf(endTag, start, to);
+      if (end < 0) {
+         return null;
+      }
+      byte[] bytes = new byte[(int) (end - start)];
+      dump.get(start, bytes, 0, bytes.length);
+      return unescape(normalizeLineEnds(new String(bytes, MappedDump.UTF8)));
+   }
+
+   /**
+    * Replace each CR LF pair, and each CR not followed by LF, in {@code text} with a single LF.  An XML parser does
+    * this to the document before parsing it; so, apply this to raw content before {@link #unescape(String)}.  (A
+    * CR written as a character reference is not replaced.)
+    *
+    * @param text the raw text
+    * @return the text with normalized line ends
+    */
+   // package scope for testing
+   static String normalizeLineEnds(String text) {
+      int cr = text.indexOf('\r');
+      if (cr < 0) {
+         return text;
+      }
+      StringBuilder answer = new StringBuilder(text.length());
+      int pos = 0;
+      while (cr >= 0) {
+         answer.append(text, pos, cr).append('\n');
+         pos = cr + 1;
+         if (pos < text.length() && text.charAt(pos) == '\n') {
+            pos++;
+         }
+         cr = text.indexOf('\r', pos);
+      }
+      answer.append(text, pos, text.length());
+      return answer.toString();
+   }
+
+   /**
+    * Replace the XML character and entity references in {@code text} ({@code &amp;}, {@code &lt;}, {@code &gt;},
+    * {@code &quot;}, {@code &apos;}, and numeric references) with the characters they represent.
+    *
+    * @param text the escaped text
+    * @return the unescaped text
+    */
+   // package scope for testing
+   static String unescape(String text) {
+      int amp = text.indexOf('&');
+      if (amp < 0) {
+         return text;
+      }
+      StringBuilder answer = new StringBuilder(text.length());
+      int pos = 0;
+      while (amp >= 0) {
+         int semi = text.indexOf(';', amp);
+         if (semi < 0) {
+            break;
+         }
+         answer.append(text, pos, amp);
+         String name = text.substring(amp + 1, semi);
+         if (name.equals("amp")) {
+            answer.append('&');
+         } else if (name.equals("lt")) {
+            answer.append('<');
+         } else if (name.equals("gt")) {
+            answer.append('>');
+         } else if (name.equals("quot")) {
+            answer.append('"');
+         } else if (name.equals("apos")) {
+            answer.append('\'');
+         } else if (name.startsWith("#x")) {
+            answer.appendCodePoint(Integer.parseInt(name.substring(2), 16));
+         } else if (name.startsWith("#")) {
+            answer.appendCodePoint(Integer.parseInt(name.substring(1)));
+         } else {
+            answer.append(text, amp, semi + 1);
+         }
+         pos = semi + 1;
+         amp = text.indexOf('&', pos);
+      }
+      answer.append(text, pos, text.length());
+      return answer.toString();
+   }
+
+   // Copy [start, end) of the dump to out.
+   private void transfer(long start, long end, WritableByteChannel out) throws IOException {
+      FileChannel channel = dump.getChannel();
+      while (start < end) {
+         long n = channel.transferTo(start, end - start, out);
+         if (n <= 0) {
+            throw new IOException("Unable to copy data from \"" + dump.getFile() + "\".");
+         }
+         start += n;
+      }
+   }
+}
@@ -0,0 +1,232 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * A SAX filter that removes entire {@code <page>} elements before they reach the unmarshaller.  The filter holds
+ * back the beginning of each page only until the page's {@code <title>}, {@code <ns>}, and {@code <id>} are known
+ * (or until some other child of {@code <page>} begins).  It then asks a {@link PagePredicate} whether to keep the
+ * page.  If so, the held events are sent along followed by the rest of the page; otherwise, the entire page is
+ * discarded.
+ *
+ * <p>Unlike a {@link PostFilter}, which rejects pages only after JAXB has built the objects for every revision,
+ * this filter prevents JAXB from ever seeing the unwanted pages.  Place it first in the list of pre-filters so that
+ * the other filters don't examine discarded pages either.</p>
+ */
+public class PagePrefilter extends XMLFilterImpl {
+
+   /**
+    * Decides which pages to keep.
+    */
+   public interface PagePredicate {
+      /**
+       * Return {@code true} if the page should be kept.
+       *
+       * @param title     the content of the page's {@code <title>} element, or {@code null} if there is none
+       * @param namespace the content of the page's {@code <ns>} element, or {@code null} if there is none
+       * @param id        the content of the page's {@code <id>} element, or {@code null} if there is none
+       * @return {@code true} if the page should be kept.
+       */
+      boolean keepPage(String title, String namespace, String id);
+   }
+
+   // package scope for testing
+   static final String NS_ELEMENT_NAME = "ns";
+   static final String ID_ELEMENT_NAME = "id";
+
+   private enum Stage {OUTSIDE, HOLDING, PASSING, DISCARDING}
+
+   private final PagePredicate predicate;
+
+   private Stage stage = Stage.OUTSIDE;
+
+   // Depth of the current element relative to <page> (the <page> element itself is depth 1)
+   private int depth;
+
+   private String title;
+   private String namespace;
+   private String id;
+
+   // Collects the content of the <title>, <ns>, or <id> element being read (null when not in one of them)
+   private StringBuilder field = null;
+   private final StringBuilder[] fields = {new StringBuilder(), new StringBuilder(), new StringBuilder()};
+
+   // The events held back while the predicate can't yet be evaluated.  The buffer is reused for every page.
+   private final SaxEventBuffer held = new SaxEventBuffer();
+
+   private long pagesKept = 0;
+   private long pagesDiscarded = 0;
+
+   /**
+    * Constructor
+    *
+    * @param predicate decides which pages to keep.
+    */
+   public PagePrefilter(PagePredicate predicate) {
+      if (predicate == null) {
+         throw new IllegalArgumentException("PagePredicate may not be null.");
+      }
+      this.predicate = predicate;
+   }
+
+   /**
+    * Return the number of pages kept so far.
+    *
+    * @return the number of pages kept so far.
+    */
+   public long getPagesKept() {
+      return pagesKept;
+   }
+
+   /**
+    * Return the number of pages discarded so far.
+    *
+    * @return the number of pages discarded so far.
+    */
+   public long getPagesDiscarded() {
+      return pagesDiscarded;
+   }
+
+   @Override
+   public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+      switch (stage) {
+         case OUTSIDE:
+            if (localName.equals(TextPrefilter.PAGE_ELEMENT_NAME)) {
+               beginPage();
+               held.startElement(uri, localName, qName, atts);
+            } else {
+               super.startElement(uri, localName, qName, atts);
+            }
+            return;
+         case HOLDING:
+            depth++;
+            if (depth == 2) {
+               field = fieldFor(localName);
+               if (field == null) {
+                  // Some other child of <page> (e.g., <revision>):  No more header information is coming.
+                  depth--;
+                  decide();
+                  startElement(uri, localName, qName, atts);
+                  return;
+               }
+               field.setLength(0);
+            }
+            held.startElement(uri, localName, qName, atts);
+            return;
+         case PASSING:
+            depth++;
+            super.startElement(uri, localName, qName, atts);
+            return;
+         case DISCARDING:
+            depth++;
+      }
+   }
+
+   @Override
+   public void endElement(String uri, String localName, String qName) throws SAXException {
+      switch (stage) {
+         case OUTSIDE:
+            super.endElement(uri, localName, qName);
+            return;
+         case HOLDING:
+            held.endElement(uri, localName, qName);
+            depth--;
+            if (depth == 1 && field != null) {
+               endField(localName);
+               if (title != null && namespace != null && id != null) {
+                  decide();
+               }
+            } else if (depth == 0) {
+               // A page with nothing but a header
+               decide();
+               stage = Stage.OUTSIDE;
+            }
+            return;
+         case PASSING:
+            super.endElement(uri, localName, qName);
+            break;
+         case DISCARDING:
+            break;
+      }
+      depth--;
+      if (depth == 0) {
+         stage = Stage.OUTSIDE;
+      }
+   }
+
+   @Override
+   public void characters(char[] ch, int start, int length) throws SAXException {
+      switch (stage) {
+         case OUTSIDE:
+         case PASSING:
+            super.characters(ch, start, length);
+            return;
+         case HOLDING:
+            if (field != null && depth == 2) {
+               field.append(ch, start, length);
+            }
+            held.characters(ch, start, length);
+      }
+   }
+
+   @Override
+   public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+      switch (stage) {
+         case OUTSIDE:
+         case PASSING:
+            super.ignorableWhitespace(ch, start, length);
+            return;
+         case HOLDING:
+            held.ignorableWhitespace(ch, start, length);
+      }
+   }
+
+   private void beginPage() {
+      stage = Stage.HOLDING;
+      depth = 1;
+      title = null;
+      namespace = null;
+      id = null;
+      field = null;
+      held.clear();
+   }
+
+   // Return the StringBuilder that collects the content of the given child of <page>, or null
+   // if the child isn't part of the page's header.
+   private StringBuilder fieldFor(String localName) {
+      if (localName.equals(TextPrefilter.TITLE_ELEMENT_NAME)) {
+         return fields[0];
+      } else if (localName.equals(NS_ELEMENT_NAME)) {
+         return fields[1];
+      } else if (localName.equals(ID_ELEMENT_NAME)) {
+         return fields[2];
+      }
+      return null;
+   }
+
+   private void endField(String localName) {
+      if (localName.equals(TextPrefilter.TITLE_ELEMENT_NAME)) {
+         title = field.toString();
+      } else if (localName.equals(NS_ELEMENT_NAME)) {
+         namespace = field.toString();
+      } else {
+         id = field.toString();
+      }
+      field = null;
+   }
+
+   // Ask the predicate about the current page, then either send or drop the held events.
+   private void decide() throws SAXException {
+      field = null;
+      if (!predicate.keepPage(title, namespace, id)) {
+         pagesDiscarded++;
+         stage = Stage.DISCARDING;
+         return;
+      }
+      pagesKept++;
+      stage = Stage.PASSING;
+      held.replay(getContentHandler());
+   }
+}
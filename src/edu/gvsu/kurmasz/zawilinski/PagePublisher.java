@@ -0,0 +1,251 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.SimpleLog;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.xml.sax.XMLFilter;
+
+import javax.xml.bind.JAXBException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Publishes the kept pages of a dump to one or more subscribers, with back-pressure.  Each subscriber requests pages
+ * through its {@link Subscription}.  The thread that calls {@link #publish} parses the dump; before passing a page
+ * on, it waits until every subscriber has requested at least one more page.  Thus, the parse never gets ahead of the
+ * slowest subscriber, and only one page is held by the publisher at a time, no matter how fast the subscribers are.
+ *
+ * <p>The interfaces follow the contract of the reactive-streams {@code Publisher} / {@code Subscriber}:  A subscriber
+ * receives {@link Subscriber#onSubscribe}, then at most as many {@link Subscriber#onNext} calls as it requested,
+ * then either {@link Subscriber#onComplete} or {@link Subscriber#onError}, unless it cancels its subscription first.
+ * All calls other than {@code onSubscribe} are made by the thread that called {@code publish}.  A subscriber may
+ * call {@link Subscription#request} from any thread (including from {@code onNext}).</p>
+ *
+ * <p>Every subscriber receives the same {@code PageType} objects; so, subscribers must not modify the pages.  When
+ * every subscriber has cancelled (or if there are no subscribers), the parse stops.</p>
+ */
+public class PagePublisher {
+
+   /**
+    * Receives pages from a {@code PagePublisher}.
+    */
+   public interface Subscriber {
+
+      /**
+       * Called when the subscriber subscribes.  No pages are delivered until the subscriber calls
+       * {@link Subscription#request(long)}.
+       *
+       * @param subscription the subscriber's subscription
+       */
+      public void onSubscribe(Subscription subscription);
+
+      /**
+       * Called with each kept page that the subscriber requested.
+       *
+       * @param page the next kept page
+       */
+      public void onNext(PageType page);
+
+      /**
+       * Called if the dump can't be loaded, or if {@link #onNext} throws an exception.  No further calls are made.
+       *
+       * @param problem the problem
+       */
+      public void onError(Throwable problem);
+
+      /**
+       * Called after the last page has been delivered.  No further calls are made.
+       */
+      public void onComplete();
+   }
+
+   /**
+    * The link between a {@code PagePublisher} and one {@link Subscriber}.
+    */
+   public interface Subscription {
+
+      /**
+       * Add {@code n} pages to the number of pages the subscriber is ready to receive.
+       *
+       * @param n the number of additional pages requested ({@code Long.MAX_VALUE} for all pages)
+       * @throws IllegalArgumentException if {@code n} is not positive
+       */
+      public void request(long n);
+
+      /**
+       * Stop delivering pages to the subscriber.
+       */
+      public void cancel();
+   }
+
+   private class PageSubscription implements Subscription {
+      private final Subscriber subscriber;
+      // Guarded by PagePublisher.this
+      private long demand = 0;
+      private volatile boolean cancelled = false;
+
+      PageSubscription(Subscriber subscriber) {
+         this.subscriber = subscriber;
+      }
+
+      public void request(long n) {
+         if (n <= 0) {
+            throw new IllegalArgumentException("Must request at least one page.");
+         }
+         synchronized (PagePublisher.this) {
+            demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+            PagePublisher.this.notifyAll();
+         }
+      }
+
+      public void cancel() {
+         synchronized (PagePublisher.this) {
+            cancelled = true;
+            PagePublisher.this.notifyAll();
+         }
+      }
+   }
+
+   // Thrown from the PageHandler to stop the parse when every subscriber has cancelled.
+   private static class AllCancelled extends JAXBException {
+      AllCancelled() {
+         super("All subscriptions cancelled.");
+      }
+   }
+
+   private final List<PageSubscription> subscriptions = new ArrayList<PageSubscription>();
+   private boolean started = false;
+
+   /**
+    * Add a subscriber.  All subscribers must subscribe before {@link #publish} is called.
+    *
+    * @param subscriber the subscriber
+    * @throws IllegalStateException if publishing has begun.
+    */
+   public void subscribe(Subscriber subscriber) {
+      if (subscriber == null) {
+         throw new IllegalArgumentException("Subscriber may not be null.");
+      }
+      PageSubscription subscription = new PageSubscription(subscriber);
+      synchronized (this) {
+         if (started) {
+            throw new IllegalStateException("Subscribers must subscribe before publishing begins.");
+         }
+         subscriptions.add(subscription);
+      }
+      subscriber.onSubscribe(subscription);
+   }
+
+   /**
+    * Load and filter a dump on the calling thread, passing each kept page to the subscribers as they request it.
+    * This method returns when the dump has been loaded, or when every subscriber has cancelled.  A publisher can
+    * publish only one dump.
+    *
+    * @param input      the dump
+    * @param log        a {@code Log} to which to report progress
+    * @param postFilter the post-filter that determines which pages and revisions are published
+    * @param filterList a list of SAX filters to apply.
+    * @throws JAXBException         if there is a problem generating the DOM (the subscribers receive the exception
+    *                               through {@link Subscriber#onError}).
+    * @throws IllegalStateException if this publisher has already published a dump.
+    */
+   public void publish(InputStream input, SimpleLog log, PostFilter postFilter, XMLFilter... filterList)
+         throws JAXBException {
+      synchronized (this) {
+         if (started) {
+            throw new IllegalStateException("A PagePublisher can publish only one dump.");
+         }
+         started = true;
+      }
+      try {
+         StreamingMediaWikiLoader.load(input, log, postFilter, new PageHandler() {
+            public void beginDocument(MediaWikiType root) {
+            }
+
+            public void handlePage(PageType page) throws JAXBException {
+               deliver(page);
+            }
+
+            public void endDocument(MediaWikiType root) {
+            }
+         }, filterList);
+      } catch (AllCancelled e) {
+         return;
+      } catch (JAXBException e) {
+         fail(e);
+         throw e;
+      } catch (RuntimeException e) {
+         fail(e);
+         throw e;
+      }
+      for (PageSubscription subscription : active()) {
+         subscription.subscriber.onComplete();
+      }
+   }
+
+   private void fail(Throwable problem) {
+      for (PageSubscription subscription : active()) {
+         subscription.subscriber.onError(problem);
+      }
+   }
+
+   private void deliver(PageType page) throws JAXBException {
+      for (PageSubscription subscription : awaitDemand()) {
+         // Skip subscribers that cancelled while earlier subscribers handled the page.
+         if (subscription.cancelled) {
+            continue;
+         }
+         try {
+            subscription.subscriber.onNext(page);
+         } catch (RuntimeException e) {
+            subscription.cancel();
+            subscription.subscriber.onError(e);
+         }
+      }
+   }
+
+   // Wait until every active subscriber has requested a page; then, use up one page of each one's demand.
+   private synchronized List<PageSubscription> awaitDemand() throws JAXBException {
+      while (true) {
+         boolean ready = true;
+         for (Iterator<PageSubscription> it = subscriptions.iterator(); it.hasNext(); ) {
+            PageSubscription subscription = it.next();
+            if (subscription.cancelled) {
+               it.remove();
+            } else if (subscription.demand == 0) {
+               ready = false;
+            }
+         }
+         if (subscriptions.isEmpty()) {
+            throw new AllCancelled();
+         }
+         if (ready) {
+            break;
+         }
+         try {
+            wait();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JAXBException("Interrupted while waiting for subscribers.", e);
+         }
+      }
+      for (PageSubscription subscription : subscriptions) {
+         if (subscription.demand != Long.MAX_VALUE) {
+            subscription.demand--;
+         }
+      }
+      return new ArrayList<PageSubscription>(subscriptions);
+   }
+
+   private synchronized List<PageSubscription> active() {
+      List<PageSubscription> answer = new ArrayList<PageSubscription>();
+      for (PageSubscription subscription : subscriptions) {
+         if (!subscription.cancelled) {
+            answer.add(subscription);
+         }
+      }
+      return answer;
+   }
+}
@@ -0,0 +1,321 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decompresses bzip2 data using several threads.  bzip2 compresses data in independent blocks of (at most) 900k.
+ * Each block begins with a 48-bit magic number.  This stream reads the compressed data, locates the magic numbers
+ * (which need not be byte-aligned), and decodes the blocks concurrently on a thread pool.  The decoded blocks are
+ * returned in their original order.
+ *
+ * <p>This stream handles both ordinary bzip2 files and "multistream" files (i.e., several complete bzip2 streams
+ * concatenated together, as in Wikimedia's {@code pages-articles-multistream} dumps).  Unlike the decompressor used
+ * by {@code InputHelper}, it expects the input to begin with the {@code BZh} signature.</p>
+ *
+ * <p>The block magic number can, by chance, also appear inside compressed data.  When that happens, the block
+ * containing the false magic number fails to decode (every block carries a CRC); so, it is merged with the
+ * following piece and decoded again.</p>
+ *
+ * <p>This class is written in pure Java.  It needs no native libraries.</p>
+ */
+public class ParallelBzip2InputStream extends InputStream {
+
+   private static final long BLOCK_MAGIC = 0x314159265359L;
+   private static final long MAGIC_MASK = 0xffffffffffffL;
+   private static final int MAGIC_BITS = 48;
+
+   // The largest compressed block is slightly larger than the largest uncompressed block.
+   // Give up merging pieces once they are this large.
+   private static final int MAX_MERGED_SIZE = 2 * Bzip2BlockDecoder.MAX_BLOCK_SIZE;
+
+   // Each thread has this many blocks waiting in the queue.
+   private static final int BLOCKS_PER_THREAD = 2;
+
+   private static final int READ_SIZE = 64 * 1024;
+
+   /**
+    * The compressed bits between two block magic numbers.
+    */
+   // package scope for testing
+   static class Segment {
+      // The position of data[0] in the compressed input.
+      final long firstByte;
+      final byte[] data;
+      // The first bit after the magic number (relative to data[0])
+      final int bitStart;
+      // The first bit after the next magic number (or the end of the input)
+      final long bitEnd;
+
+      Segment(long firstByte, byte[] data, int bitStart, long bitEnd) {
+         this.firstByte = firstByte;
+         this.data = data;
+         this.bitStart = bitStart;
+         this.bitEnd = bitEnd;
+      }
+
+      // Return a segment containing the bits of this segment followed by the bits of next.
+      Segment merge(Segment next) {
+         int keep = (int) (next.firstByte - firstByte);
+         byte[] merged = Arrays.copyOf(data, keep + next.data.length);
+         System.arraycopy(next.data, 0, merged, keep, next.data.length);
+         return new Segment(firstByte, merged, bitStart, (long) keep * 8 + next.bitEnd);
+      }
+
+      byte[] decode(Bzip2BlockDecoder decoder) throws IOException {
+         return decoder.decode(data, bitStart, bitEnd);
+      }
+   }
+
+   // Each worker thread keeps its own decoder (and, therefore, its own large tables).
+   private static final ThreadLocal<Bzip2BlockDecoder> decoders = new ThreadLocal<Bzip2BlockDecoder>() {
+      @Override
+      protected Bzip2BlockDecoder initialValue() {
+         return new Bzip2BlockDecoder();
+      }
+   };
+
+   private final InputStream in;
+   private final ExecutorService pool;
+   private final int maxPending;
+
+   // Blocks being decoded (in order)
+   private final LinkedList<Segment> pendingSegments = new LinkedList<Segment>();
+   private final LinkedList<Future<byte[]>> pendingBlocks = new LinkedList<Future<byte[]>>();
+
+   // State of the scanner that locates magic numbers.
+   private byte[] scanBuffer = new byte[READ_SIZE];
+   private final byte[] readBuffer = new byte[READ_SIZE];
+   // The compressed input position of scanBuffer[0]
+   private long scanBase = 0;
+   // The number of valid bytes in scanBuffer
+   private int scanLength = 0;
+   // The next byte in scanBuffer to examine
+   private int scanPos = 0;
+   // The position (in bits relative to scanBuffer[0]) of the start of the current segment, or -1 before the
+   // first magic number is found.
+   private long segmentStart = -1;
+   private long window = 0;
+   private long bitsScanned = 0;
+   private boolean signatureChecked = false;
+   private boolean inputDone = false;
+
+   // The block currently being returned
+   private byte[] current = new byte[0];
+   private int currentPos = 0;
+   private boolean closed = false;
+
+   /**
+    * Constructor
+    *
+    * @param in      the compressed data (beginning with the {@code BZh} signature)
+    * @param threads the number of decoding threads.
+    */
+   public ParallelBzip2InputStream(InputStream in, int threads) {
+      if (threads < 1) {
+         throw new IllegalArgumentException("Must use at least one thread.");
+      }
+      this.in = in;
+      this.maxPending = threads * BLOCKS_PER_THREAD;
+      this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+         private int count = 0;
+
+         public synchronized Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ParallelBzip2InputStream-" + (++count));
+            t.setDaemon(true);
+            return t;
+         }
+      });
+   }
+
+   @Override
+   public int read() throws IOException {
+      if (!fillCurrent()) {
+         return -1;
+      }
+      return current[currentPos++] & 0xff;
+   }
+
+   @Override
+   public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+         return 0;
+      }
+      if (!fillCurrent()) {
+         return -1;
+      }
+      int n = Math.min(len, current.length - currentPos);
+      System.arraycopy(current, currentPos, b, off, n);
+      currentPos += n;
+      return n;
+   }
+
+   @Override
+   public int available() {
+      return current.length - currentPos;
+   }
+
+   @Override
+   public void close() throws IOException {
+      if (!closed) {
+         closed = true;
+         pool.shutdownNow();
+         in.close();
+      }
+   }
+
+   // Make sure current has unread bytes.  Return false at the end of the input.
+   private boolean fillCurrent() throws IOException {
+      if (closed) {
+         throw new IOException("Stream closed.");
+      }
+      while (currentPos == current.length) {
+         fillQueue(1);
+         if (pendingBlocks.isEmpty()) {
+            return false;
+         }
+         current = nextBlock();
+         currentPos = 0;
+      }
+      return true;
+   }
+
+   // Remove the first block from the queue and return its decoded bytes.
+   private byte[] nextBlock() throws IOException {
+      Segment segment = pendingSegments.removeFirst();
+      try {
+         return getResult(pendingBlocks.removeFirst());
+      } catch (IOException e) {
+         // Assume the next magic number was a false match:  Merge the following segments until the
+         // block decodes.
+         while (true) {
+            fillQueue(1);
+            if (pendingSegments.isEmpty() || segment.data.length > MAX_MERGED_SIZE) {
+               throw e;
+            }
+            pendingBlocks.removeFirst().cancel(true);
+            segment = segment.merge(pendingSegments.removeFirst());
+            try {
+               return segment.decode(decoders.get());
+            } catch (IOException ignored) {
+               // keep merging
+            }
+         }
+      }
+   }
+
+   private static byte[] getResult(Future<byte[]> future) throws IOException {
+      try {
+         return future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         InterruptedIOException ioe = new InterruptedIOException("Interrupted while decompressing.");
+         ioe.initCause(e);
+         throw ioe;
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof IOException) {
+            throw (IOException) cause;
+         } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         } else if (cause instanceof Error) {
+            throw (Error) cause;
+         }
+         throw new IOException("Unexpected exception while decompressing.", cause);
+      }
+   }
+
+   // Scan the input until there are maxPending segments in the queue, or at least minimum segments
+   // in the queue and no more input is immediately available (or until the input ends).
+   private void fillQueue(int minimum) throws IOException {
+      while (!inputDone && pendingSegments.size() < maxPending) {
+         if (pendingSegments.size() >= minimum && in.available() <= 0) {
+            return;
+         }
+         int n = in.read(readBuffer, 0, readBuffer.length);
+         if (n < 0) {
+            inputDone = true;
+            if (!signatureChecked && scanLength > 0) {
+               throw new IOException("Not a bzip2 stream.");
+            }
+            if (segmentStart >= 0) {
+               submit((long) scanLength * 8);
+            }
+         } else {
+            scan(readBuffer, n);
+         }
+      }
+   }
+
+   // Look for magic numbers in the newly read bytes.
+   private void scan(byte[] bytes, int length) throws IOException {
+      append(bytes, 0, length);
+      if (!signatureChecked) {
+         if (scanLength < 3) {
+            return;
+         }
+         if (scanBuffer[0] != 'B' || scanBuffer[1] != 'Z' || scanBuffer[2] != 'h') {
+            throw new IOException("Not a bzip2 stream.");
+         }
+         signatureChecked = true;
+      }
+
+      while (scanPos < scanLength) {
+         int b = scanBuffer[scanPos++] & 0xff;
+         for (int bit = 7; bit >= 0; bit--) {
+            window = (window << 1) | ((b >>> bit) & 1);
+            bitsScanned++;
+            if ((window & MAGIC_MASK) == BLOCK_MAGIC && bitsScanned >= MAGIC_BITS) {
+               // bit position (relative to scanBuffer[0]) just after the magic number
+               long magicEnd = (long) scanPos * 8 - bit;
+               if (segmentStart >= 0) {
+                  submit(magicEnd);
+               }
+               startSegment(magicEnd);
+            }
+         }
+      }
+   }
+
+   private void append(byte[] bytes, int offset, int length) {
+      if (scanLength + length > scanBuffer.length) {
+         scanBuffer = Arrays.copyOf(scanBuffer, Math.max(scanBuffer.length * 2, scanLength + length));
+      }
+      System.arraycopy(bytes, offset, scanBuffer, scanLength, length);
+      scanLength += length;
+   }
+
+   // Queue the segment that begins at segmentStart and ends at bitEnd.
+   private void submit(long bitEnd) {
+      int byteEnd = (int) ((bitEnd + 7) >>> 3);
+      int byteStart = (int) (segmentStart >>> 3);
+      final Segment segment = new Segment(scanBase + byteStart,
+            Arrays.copyOfRange(scanBuffer, byteStart, byteEnd),
+            (int) (segmentStart & 7), bitEnd - (long) byteStart * 8);
+      pendingSegments.add(segment);
+      pendingBlocks.add(pool.submit(new Callable<byte[]>() {
+         public byte[] call() throws IOException {
+            return segment.decode(decoders.get());
+         }
+      }));
+   }
+
+   // Discard the bytes before the new segment.
+   private void startSegment(long bitStart) {
+      int byteStart = (int) (bitStart >>> 3);
+      System.arraycopy(scanBuffer, byteStart, scanBuffer, 0, scanLength - byteStart);
+      scanLength -= byteStart;
+      scanBase += byteStart;
+      scanPos -= byteStart;
+      segmentStart = bitStart - (long) byteStart * 8;
+   }
+}
@@ -0,0 +1,263 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.io.InputHelper;
+import edu.gvsu.kurmasz.warszawa.log.SimpleLog;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLFilter;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Loads an uncompressed MediaWiki dump using several threads.  The dump is memory-mapped and divided into pieces
+ * that begin on {@code <page>} boundaries (see {@link MappedDump}).  Each piece is loaded on a worker thread by its
+ * own SAX parser, pre-filter chain, JAXB unmarshaller, and {@link PageFilterListener}.  The kept pages are then
+ * delivered in their original order.
+ *
+ * <p>Pre-filters and post-filters keep state; so, they can't be shared between threads.  Instead, users provide a
+ * {@link FilterFactory} that creates a new set of filters for each piece.</p>
+ *
+ * <p>This class can only load uncompressed files.  (Compressed streams can't be divided without decompressing
+ * them first.)  Use {@link #canLoad(String)} to check whether a given input can be loaded in parallel.  For
+ * bzip2-compressed files, use {@link #openInputStream(String, int)} to at least decompress the input in
+ * parallel.</p>
+ */
+public class ParallelMediaWikiLoader {
+
+   /**
+    * Creates the filters for one piece of the dump.  Each call must return new objects.
+    */
+   public interface FilterFactory {
+
+      /**
+       * Create the SAX pre-filters for one piece of the dump.
+       *
+       * @return a new list of SAX filters (in the order expected by {@link PreFilteredMediaWikiLoader}).
+       */
+      public XMLFilter[] createPrefilters();
+
+      /**
+       * Create the post-filter for one piece of the dump.
+       *
+       * @return a new {@code PostFilter}
+       */
+      public PostFilter createPostFilter();
+   }
+
+   /**
+    * The largest piece (in bytes) loaded by one worker.  Smaller pieces balance the load better; larger pieces
+    * reduce the overhead of repeating the header for each piece.
+    */
+   public static final long MAX_PIECE_SIZE = 32L << 20;
+
+   private static final String BZIP2_SUFFIX = "bz2";
+
+   // Each thread has this many pieces waiting in the queue.  This bounds the number of
+   // loaded (but not yet delivered) pieces that are in memory at once.
+   private static final int PIECES_PER_THREAD = 2;
+
+   private ParallelMediaWikiLoader() {
+   }
+
+   /**
+    * Returns {@code true} if {@code input} names an uncompressed file that can be divided into pieces.
+    *
+    * @param input a file name, as would be passed to {@code InputHelper.openMappedAndFilteredInputStream}
+    * @return {@code true} if {@code input} can be loaded by this class.
+    */
+   public static boolean canLoad(String input) {
+      if (InputHelper.DEFAULT_INPUT_STREAM_MAP.containsKey(input) || !new File(input).isFile()) {
+         return false;
+      }
+      int dot = input.lastIndexOf('.');
+      return dot < 0 || !InputHelper.DEFAULT_FILTER_FACTORY_MAP.containsKey(input.substring(dot + 1));
+   }
+
+   // Returns true if input names a bzip2-compressed file.
+   static boolean isBzip2File(String input) {
+      return input.endsWith("." + BZIP2_SUFFIX) && new File(input).isFile();
+   }
+
+   /**
+    * Open an input stream for a sequential loader.  If {@code input} names a bzip2-compressed file and
+    * {@code threads} is more than one, the file is decompressed by a {@link ParallelBzip2InputStream}.
+    * Otherwise, this method behaves like {@code InputHelper.openMappedAndFilteredInputStream}.
+    *
+    * @param input   the name of the input file (or "-" for standard input)
+    * @param threads the number of threads that may be used to decompress the input
+    * @return an {@code InputStream} containing the uncompressed input
+    * @throws FileNotFoundException if the input can't be opened.
+    */
+   public static InputStream openInputStream(String input, int threads) throws FileNotFoundException {
+      if (threads > 1 && isBzip2File(input)) {
+         return new ParallelBzip2InputStream(new FileInputStream(input), threads);
+      }
+      return InputHelper.openMappedAndFilteredInputStream(input);
+   }
+
+   // Worker threads don't keep the JVM alive if the main thread fails.
+   private static ExecutorService createPool(int threads) {
+      return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+         private int count = 0;
+
+         public synchronized Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "ParallelMediaWikiLoader-" + (++count));
+            t.setDaemon(true);
+            return t;
+         }
+      });
+   }
+
+   // Load the pages in [start, end)
+   private static Callable<JAXBElement<MediaWikiType>> createTask(final MappedDump dump, final long start,
+                                                                 final long end, final SimpleLog log,
+                                                                 final FilterFactory factory) {
+      return new Callable<JAXBElement<MediaWikiType>>() {
+         public JAXBElement<MediaWikiType> call() throws JAXBException {
+            Unmarshaller unmarshaller = JAXBPool.borrowUnmarshaller();
+            try {
+               XMLFilter[] prefilters = factory.createPrefilters();
+               PageFilterListener listener = new PageFilterListener(factory.createPostFilter(), log);
+               listener.setResolveDuplicates(DuplicateTextPrefilter.isAmong(prefilters));
+               unmarshaller.setListener(listener);
+               return PreFilteredMediaWikiLoader.load(new InputSource(dump.openDocument(start, end)), log,
+                     unmarshaller, prefilters);
+            } finally {
+               JAXBPool.returnUnmarshaller(unmarshaller);
+            }
+         }
+      };
+   }
+
+   /**
+    * Loads and filters a dump using several threads, then passes each kept page to {@code handler} (in the order
+    * the pages appear in the dump).
+    *
+    * @param file    the uncompressed dump
+    * @param log     a {@code Log} to which to report progress
+    * @param threads the number of worker threads
+    * @param factory creates the filters for each piece
+    * @param handler the handler that receives each kept page
+    * @throws JAXBException if there is a problem generating the DOM, or if {@code handler} throws an exception.
+    * @throws IOException   if the file can't be mapped
+    */
+   public static void load(File file, SimpleLog log, int threads, FilterFactory factory, PageHandler handler)
+         throws JAXBException, IOException {
+      if (threads < 1) {
+         throw new IllegalArgumentException("Must use at least one thread.");
+      }
+      if (factory == null || handler == null || log == null) {
+         throw new IllegalArgumentException("Parameters may not be null.");
+      }
+
+      MappedDump dump = new MappedDump(file);
+      ExecutorService pool = createPool(threads);
+      try {
+         long pageBytes = dump.getFooterStart() - dump.getFirstPage();
+         long pieceSize = Math.max(1, Math.min(MAX_PIECE_SIZE, pageBytes / (threads * PIECES_PER_THREAD * 2) + 1));
+         long[] boundaries = dump.split(pieceSize);
+         log.println(Zawilinski.PARSE_BEGIN_END, String.format("Loading %d pieces on %d threads.",
+               boundaries.length - 1, threads));
+
+         LinkedList<Future<JAXBElement<MediaWikiType>>> pending =
+               new LinkedList<Future<JAXBElement<MediaWikiType>>>();
+         int next = 0;
+         MediaWikiType firstRoot = null;
+         while (next < boundaries.length - 1 || !pending.isEmpty()) {
+            // keep the queue full
+            while (next < boundaries.length - 1 && pending.size() < threads * PIECES_PER_THREAD) {
+               pending.add(pool.submit(createTask(dump, boundaries[next], boundaries[next + 1], log, factory)));
+               next++;
+            }
+
+            MediaWikiType root = getResult(pending.removeFirst()).getValue();
+            List<PageType> pages = new ArrayList<PageType>(root.getPage());
+            root.getPage().clear();
+            if (firstRoot == null) {
+               firstRoot = root;
+               handler.beginDocument(firstRoot);
+            }
+            for (PageType page : pages) {
+               handler.handlePage(page);
+            }
+         }
+         handler.endDocument(firstRoot);
+      } finally {
+         pool.shutdownNow();
+         dump.close();
+      }
+   }
+
+   /**
+    * Loads and filters a dump using several threads, then returns a {@code JAXBElement<MediaWikiType>} object
+    * representing the root.  The pages appear in the same order as they do in the dump.
+    *
+    * @param file    the uncompressed dump
+    * @param log     a {@code Log} to which to report progress
+    * @param threads the number of worker threads
+    * @param factory creates the filters for each piece
+    * @return a {@code MediaWikiType} object representing the root of the filtered dump.
+    * @throws JAXBException if there is a problem generating the DOM
+    * @throws IOException   if the file can't be mapped
+    */
+   public static JAXBElement<MediaWikiType> load(File file, SimpleLog log, int threads, FilterFactory factory)
+         throws JAXBException, IOException {
+      final List<PageType> pages = new ArrayList<PageType>();
+      final MediaWikiType[] root = new MediaWikiType[1];
+      load(file, log, threads, factory, new PageHandler() {
+         public void beginDocument(MediaWikiType r) {
+            root[0] = r;
+         }
+
+         public void handlePage(PageType page) {
+            pages.add(page);
+         }
+
+         public void endDocument(MediaWikiType r) {
+            r.getPage().addAll(pages);
+         }
+      });
+      return new edu.gvsu.kurmasz.zawilinski.mw.current.ObjectFactory().createMediawiki(root[0]);
+   }
+
+   // Wait for a piece to finish and re-throw any exceptions it threw.
+   private static JAXBElement<MediaWikiType> getResult(Future<JAXBElement<MediaWikiType>> future)
+         throws JAXBException, IOException {
+      try {
+         return future.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         InterruptedIOException ioe = new InterruptedIOException("Interrupted while loading dump.");
+         ioe.initCause(e);
+         throw ioe;
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof JAXBException) {
+            throw (JAXBException) cause;
+         } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+         } else if (cause instanceof Error) {
+            throw (Error) cause;
+         }
+         throw new JAXBException("Unexpected exception while loading dump.", cause);
+      }
+   }
+}
@@ -0,0 +1,371 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.SimpleLog;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.xml.sax.XMLFilter;
+
+import javax.xml.bind.JAXBException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads a dump in three stages, each on its own thread, so that reading (and decompressing) the input, parsing and
+ * filtering it, and handling the kept pages overlap:
+ *
+ * <ol>
+ * <li>The <em>read</em> stage reads the input stream (which does the decompression, if any) in chunks of
+ * {@link #CHUNK_SIZE} bytes.</li>
+ * <li>The <em>parse</em> stage runs the pre-filters, the unmarshaller, and the post-filter (as
+ * {@link StreamingMediaWikiLoader} does) and groups the kept pages into small batches.</li>
+ * <li>The <em>write</em> stage (the calling thread) passes each batch of pages to the {@link PageHandler}.</li>
+ * </ol>
+ *
+ * <p>The stages are connected by bounded {@link RingBuffer}s; so, at most a few chunks and batches are in memory at
+ * once.  The post-filter must remain in the parse stage, because it decides which parts of each page are kept while
+ * the page is unmarshalled.</p>
+ *
+ * <p>{@code load} returns the time each stage spent working and waiting.  The stage that is almost never idle is the
+ * bottleneck.</p>
+ */
+public class PipelinedMediaWikiLoader {
+
+   /**
+    * The number of bytes read from the input at a time.
+    */
+   public static final int CHUNK_SIZE = 1 << 16;
+
+   // Capacities of the ring buffers (must be powers of two)
+   private static final int CHUNKS_BUFFERED = 16;
+   private static final int BATCHES_BUFFERED = 4;
+   private static final int PAGES_PER_BATCH = 8;
+
+   // Placed in the chunk buffer after the last chunk
+   private static final ByteBuffer END_OF_INPUT = ByteBuffer.allocate(0);
+
+   /**
+    * The time one stage of the pipeline spent working and waiting.
+    */
+   public static class StageStats {
+      private final String name;
+      private final String unit;
+      private long start;
+      private long end;
+      private long idle = 0;
+      private long items = 0;
+
+      StageStats(String name, String unit) {
+         this.name = name;
+         this.unit = unit;
+      }
+
+      void begin() {
+         start = System.nanoTime();
+      }
+
+      void finish() {
+         end = System.nanoTime();
+      }
+
+      void addIdleTime(long nanos) {
+         idle += nanos;
+      }
+
+      void addItems(long count) {
+         items += count;
+      }
+
+      /**
+       * Return the name of the stage ({@code read}, {@code parse}, or {@code write}).
+       *
+       * @return the name of the stage.
+       */
+      public String getName() {
+         return name;
+      }
+
+      /**
+       * Return the time (in nanoseconds) the stage spent waiting for input or for room for its output.
+       *
+       * @return the time the stage spent waiting.
+       */
+      public long getIdleNanos() {
+         return idle;
+      }
+
+      /**
+       * Return the time (in nanoseconds) the stage spent working.
+       *
+       * @return the time the stage spent working.
+       */
+      public long getBusyNanos() {
+         return Math.max(0, end - start - idle);
+      }
+
+      /**
+       * Return the number of items (chunks or pages) the stage produced.
+       *
+       * @return the number of items the stage produced.
+       */
+      public long getItems() {
+         return items;
+      }
+
+      @Override
+      public String toString() {
+         long busy = getBusyNanos();
+         return String.format("%-6s busy %9.1f ms, idle %9.1f ms (%3.0f%% busy), %d %s", name, busy / 1e6,
+               idle / 1e6, 100.0 * busy / Math.max(1, busy + idle), items, unit);
+      }
+   }
+
+   // A group of events passed from the parse stage to the write stage
+   private static class Batch {
+      static final int BEGIN = 0;
+      static final int PAGES = 1;
+      static final int END = 2;
+      // Follows the last batch, whether or not the handler's endDocument was called
+      static final int DONE = 3;
+
+      final int kind;
+      final MediaWikiType root;
+      final List<PageType> pages;
+
+      Batch(int kind, MediaWikiType root, List<PageType> pages) {
+         this.kind = kind;
+         this.root = root;
+         this.pages = pages;
+      }
+   }
+
+   // Presents the chunks in the ring buffer as one stream (read by the parse stage).
+   private static class ChunkInputStream extends InputStream {
+      private final RingBuffer<ByteBuffer> chunks;
+      private final StageStats stage;
+      private ByteBuffer current = null;
+
+      ChunkInputStream(RingBuffer<ByteBuffer> chunks, StageStats stage) {
+         this.chunks = chunks;
+         this.stage = stage;
+      }
+
+      // Return false at the end of the input.
+      private boolean fill() throws InterruptedIOException {
+         while (current != END_OF_INPUT && (current == null || !current.hasRemaining())) {
+            current = chunks.take(stage);
+         }
+         return current != END_OF_INPUT;
+      }
+
+      @Override
+      public int read() throws IOException {
+         return fill() ? current.get() & 0xff : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         if (len == 0) {
+            return 0;
+         }
+         if (!fill()) {
+            return -1;
+         }
+         int n = Math.min(len, current.remaining());
+         current.get(b, off, n);
+         return n;
+      }
+   }
+
+   private PipelinedMediaWikiLoader() {
+   }
+
+   /**
+    * Loads and filters an XML stream using three threads, passing each kept page to {@code handler} (on the calling
+    * thread).
+    *
+    * @param input      the source of the XML data
+    * @param log        a {@code Log} to which to report progress
+    * @param postFilter the post-filter that determines which pages and revisions are passed to {@code handler}
+    * @param handler    the handler that receives each kept page
+    * @param filterList a list of SAX filters to apply.
+    * @return the statistics for the read, parse, and write stages (in that order).
+    * @throws JAXBException if there is a problem generating the DOM, or if {@code handler} throws an exception.
+    * @throws IOException   if the input can't be read
+    */
+   public static StageStats[] load(final InputStream input, final SimpleLog log, final PostFilter postFilter,
+                                   PageHandler handler, final XMLFilter... filterList)
+         throws JAXBException, IOException {
+      if (input == null || log == null || postFilter == null || handler == null) {
+         throw new IllegalArgumentException("Parameters may not be null.");
+      }
+
+      final RingBuffer<ByteBuffer> chunks = new RingBuffer<ByteBuffer>(CHUNKS_BUFFERED);
+      final RingBuffer<Batch> batches = new RingBuffer<Batch>(BATCHES_BUFFERED);
+      final StageStats read = new StageStats("read", "chunks");
+      final StageStats parse = new StageStats("parse", "pages");
+      final StageStats write = new StageStats("write", "pages");
+      // The first problem in any stage.  It stops the other stages.
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+      Thread reader = startStage("read", new Runnable() {
+         public void run() {
+            read.begin();
+            try {
+               while (true) {
+                  byte[] chunk = new byte[CHUNK_SIZE];
+                  int length = fill(input, chunk);
+                  if (length > 0) {
+                     chunks.put(ByteBuffer.wrap(chunk, 0, length), read);
+                     read.addItems(1);
+                  }
+                  if (length < CHUNK_SIZE) {
+                     break;
+                  }
+               }
+               chunks.put(END_OF_INPUT, read);
+            } catch (Throwable t) {
+               fail(failure, t, chunks, batches);
+            } finally {
+               read.finish();
+            }
+         }
+      });
+
+      Thread parser = startStage("parse", new Runnable() {
+         public void run() {
+            parse.begin();
+            try {
+               StreamingMediaWikiLoader.load(new ChunkInputStream(chunks, parse), log, postFilter,
+                     new BatchingHandler(batches, parse), filterList);
+               batches.put(new Batch(Batch.DONE, null, null), parse);
+            } catch (Throwable t) {
+               fail(failure, t, chunks, batches);
+            } finally {
+               parse.finish();
+            }
+         }
+      });
+
+      write.begin();
+      try {
+         for (Batch batch = batches.take(write); batch.kind != Batch.DONE; batch = batches.take(write)) {
+            if (batch.kind == Batch.BEGIN) {
+               handler.beginDocument(batch.root);
+            } else if (batch.kind == Batch.PAGES) {
+               for (PageType page : batch.pages) {
+                  handler.handlePage(page);
+               }
+               write.addItems(batch.pages.size());
+            } else {
+               handler.endDocument(batch.root);
+            }
+         }
+      } catch (Throwable t) {
+         fail(failure, t, chunks, batches);
+      } finally {
+         write.finish();
+      }
+
+      try {
+         parser.join();
+         if (failure.get() == null) {
+            reader.join();
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         fail(failure, e, chunks, batches);
+      }
+
+      Throwable problem = failure.get();
+      if (problem instanceof JAXBException) {
+         throw (JAXBException) problem;
+      } else if (problem instanceof IOException) {
+         throw (IOException) problem;
+      } else if (problem instanceof RuntimeException) {
+         throw (RuntimeException) problem;
+      } else if (problem instanceof Error) {
+         throw (Error) problem;
+      } else if (problem != null) {
+         throw new JAXBException("Unexpected exception while loading dump.", problem);
+      }
+      return new StageStats[]{read, parse, write};
+   }
+
+   // Runs in the parse stage
+   private static class BatchingHandler implements PageHandler {
+      private final RingBuffer<Batch> batches;
+      private final StageStats stage;
+      private List<PageType> pages = new ArrayList<PageType>(PAGES_PER_BATCH);
+
+      BatchingHandler(RingBuffer<Batch> batches, StageStats stage) {
+         this.batches = batches;
+         this.stage = stage;
+      }
+
+      private void put(Batch batch) throws JAXBException {
+         try {
+            batches.put(batch, stage);
+         } catch (InterruptedIOException e) {
+            throw new JAXBException(e);
+         }
+      }
+
+      private void flush() throws JAXBException {
+         if (!pages.isEmpty()) {
+            put(new Batch(Batch.PAGES, null, pages));
+            pages = new ArrayList<PageType>(PAGES_PER_BATCH);
+         }
+      }
+
+      public void beginDocument(MediaWikiType root) throws JAXBException {
+         put(new Batch(Batch.BEGIN, root, null));
+      }
+
+      public void handlePage(PageType page) throws JAXBException {
+         pages.add(page);
+         stage.addItems(1);
+         if (pages.size() == PAGES_PER_BATCH) {
+            flush();
+         }
+      }
+
+      public void endDocument(MediaWikiType root) throws JAXBException {
+         flush();
+         put(new Batch(Batch.END, root, null));
+      }
+   }
+
+   // Read until chunk is full or the input ends; return the number of bytes read.
+   private static int fill(InputStream input, byte[] chunk) throws IOException {
+      int length = 0;
+      while (length < chunk.length) {
+         int n = input.read(chunk, length, chunk.length - length);
+         if (n < 0) {
+            break;
+         }
+         length += n;
+      }
+      return length;
+   }
+
+   // Record the first problem and stop the other stages.
+   private static void fail(AtomicReference<Throwable> failure, Throwable problem, RingBuffer<?>... buffers) {
+      failure.compareAndSet(null, problem);
+      for (RingBuffer<?> buffer : buffers) {
+         buffer.abort();
+      }
+   }
+
+   // Stage threads don't keep the JVM alive if the main thread fails.
+   private static Thread startStage(String name, Runnable stage) {
+      Thread thread = new Thread(stage, "PipelinedMediaWikiLoader-" + name);
+      thread.setDaemon(true);
+      thread.start();
+      return thread;
+   }
+}
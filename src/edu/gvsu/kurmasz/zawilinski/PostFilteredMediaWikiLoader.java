@@ -41,9 +41,82 @@ public class PostFilteredMediaWikiLoader {
     public static JAXBElement<MediaWikiType> load(InputStream source, SimpleLog log,
                                                   PostFilter postFilter,
                                                   XMLFilter... filterList) throws JAXBException {
-      Unmarshaller unmarshaller = MediaWikiLoader.createUnmarshaller();
-      unmarshaller.setListener(new PageFilterListener(postFilter, log));
-      return PreFilteredMediaWikiLoader.load(new InputSource(source), log, unmarshaller, filterList);
+      return load(source, log, TextStorage.HEAP, postFilter, filterList);
+   }
+
+   /**
+    * Loads and filters an XML stream, keeping the text of each revision in the given {@code TextStorage} (e.g., a
+    * {@link TextArena}).
+    *
+    * @param source      the source of the XML data
+    * @param log         a {@code Log} to which to report progress
+    * @param textStorage where to keep the content of the {@code <text>} elements
+    * @param postFilter  the post filter
+    * @param filterList  a list of SAX filters to apply
+    * @return a {@code MediaWikiType} object representing the root of the filtered XML stream.
+    * @throws JAXBException if there is a problem generating the DOM
+    */
+   public static JAXBElement<MediaWikiType> load(InputStream source, SimpleLog log, TextStorage textStorage,
+                                                 PostFilter postFilter,
+                                                 XMLFilter... filterList) throws JAXBException {
+      return load(source, log, textStorage, 0, postFilter, filterList);
+   }
+
+   /**
+    * Loads and filters an XML stream, storing the text of each kept revision (other than the first in each page)
+    * as a {@link DeltaText}:  a change to the text of the page's previous kept revision.  This greatly reduces the
+    * memory needed to hold the complete history of a page.  {@link Util#getText(edu.gvsu.kurmasz.zawilinski.mw.current.PageType, int)}
+    * rebuilds the text when it is needed.
+    *
+    * @param source     the source of the XML data
+    * @param log        a {@code Log} to which to report progress
+    * @param postFilter the post filter
+    * @param filterList a list of SAX filters to apply
+    * @return a {@code MediaWikiType} object representing the root of the filtered XML stream.
+    * @throws JAXBException if there is a problem generating the DOM
+    */
+   public static JAXBElement<MediaWikiType> loadDeltaCompressed(InputStream source, SimpleLog log,
+                                                                PostFilter postFilter,
+                                                                XMLFilter... filterList) throws JAXBException {
+      return load(source, log, TextStorage.HEAP, DeltaText.DEFAULT_MAX_CHAIN, postFilter, filterList);
+   }
+
+   private static JAXBElement<MediaWikiType> load(InputStream source, SimpleLog log, TextStorage textStorage,
+                                                  int maxDeltaChain, PostFilter postFilter,
+                                                  XMLFilter... filterList) throws JAXBException {
+      Unmarshaller unmarshaller = JAXBPool.borrowUnmarshaller();
+      try {
+         StoredTextAdapter.install(unmarshaller, textStorage);
+         PageFilterListener listener = new PageFilterListener(postFilter, log);
+         listener.setDeltaCompression(maxDeltaChain);
+         listener.setResolveDuplicates(DuplicateTextPrefilter.isAmong(filterList));
+         unmarshaller.setListener(listener);
+         return PreFilteredMediaWikiLoader.load(new InputSource(source), log, unmarshaller, filterList);
+      } finally {
+         JAXBPool.returnUnmarshaller(unmarshaller);
+      }
+   }
+
+   /**
+    * Loads and filters a memory-mapped dump, leaving the text of each revision in the mapped file until it is
+    * used.  (See {@link MappedTextPrefilter}.)  The dump must remain open while the revisions' text is used.  The
+    * SAX filters in {@code filterList} see a short marker instead of each revision's text; so, they must not examine
+    * or modify the text.
+    *
+    * @param dump       the dump
+    * @param log        a {@code Log} to which to report progress
+    * @param postFilter the post filter
+    * @param filterList a list of SAX filters to apply
+    * @return a {@code MediaWikiType} object representing the root of the filtered XML stream.
+    * @throws JAXBException if there is a problem generating the DOM
+    */
+   public static JAXBElement<MediaWikiType> load(MappedDump dump, SimpleLog log, PostFilter postFilter,
+                                                 XMLFilter... filterList) throws JAXBException {
+      MappedTextPrefilter mapped = new MappedTextPrefilter(dump);
+      XMLFilter[] filters = new XMLFilter[filterList.length + 1];
+      filters[0] = mapped;
+      System.arraycopy(filterList, 0, filters, 1, filterList.length);
+      return load(dump.openStream(0, dump.size()), log, mapped, postFilter, filters);
    }
 
    public static void main(String[] args) throws JAXBException {
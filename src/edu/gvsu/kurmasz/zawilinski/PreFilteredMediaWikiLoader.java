@@ -106,7 +106,12 @@ public class PreFilteredMediaWikiLoader {
     */
    public static JAXBElement<MediaWikiType> load(InputStream source, SimpleLog log,
                                                  XMLFilter... filterList) throws JAXBException {
-      return load(new InputSource(source), log, MediaWikiLoader.createUnmarshaller(), filterList);
+      Unmarshaller unmarshaller = JAXBPool.borrowUnmarshaller();
+      try {
+         return load(new InputSource(source), log, unmarshaller, filterList);
+      } finally {
+         JAXBPool.returnUnmarshaller(unmarshaller);
+      }
    }
 
 
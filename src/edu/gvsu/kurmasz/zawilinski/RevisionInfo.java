@@ -0,0 +1,125 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+/**
+ * The metadata of a {@code <revision>} that precedes its {@code <text>}:  the revision id, timestamp,
+ * contributor, and minor flag.  {@link RevisionPrefilter} collects this information from SAX events and
+ * passes it to a {@link RevisionPrefilter.RevisionPredicate}.
+ *
+ * <p>A {@code RevisionPrefilter} reuses one {@code RevisionInfo} object for every revision; so, a predicate
+ * should not keep a reference to it.</p>
+ */
+public class RevisionInfo {
+
+   private String id;
+   private String timestamp;
+   private String username;
+   private String contributorId;
+   private String ip;
+   private boolean minor;
+
+   // package scope:  Only the filter creates and fills these objects.
+   RevisionInfo() {
+      clear();
+   }
+
+   void clear() {
+      id = null;
+      timestamp = null;
+      username = null;
+      contributorId = null;
+      ip = null;
+      minor = false;
+   }
+
+   void setId(String id) {
+      this.id = id;
+   }
+
+   void setTimestamp(String timestamp) {
+      this.timestamp = timestamp;
+   }
+
+   void setUsername(String username) {
+      this.username = username;
+   }
+
+   void setContributorId(String contributorId) {
+      this.contributorId = contributorId;
+   }
+
+   void setIp(String ip) {
+      this.ip = ip;
+   }
+
+   void setMinor(boolean minor) {
+      this.minor = minor;
+   }
+
+   /**
+    * Return the revision's id.
+    *
+    * @return the content of the revision's {@code <id>} element, or {@code null} if there is none.
+    */
+   public String getId() {
+      return id;
+   }
+
+   /**
+    * Return the revision's timestamp.
+    *
+    * @return the content of the revision's {@code <timestamp>} element, or {@code null} if there is none.
+    */
+   public String getTimestamp() {
+      return timestamp;
+   }
+
+   /**
+    * Return the revision's timestamp in milliseconds since the epoch.
+    *
+    * @return the revision's timestamp in milliseconds since the epoch.
+    * @throws IllegalArgumentException if the revision has no timestamp, or the timestamp is not valid.
+    * @see Util#parseTimestamp(String)
+    */
+   public long getTimestampMillis() {
+      if (timestamp == null) {
+         throw new IllegalArgumentException("Revision " + id + " has no timestamp.");
+      }
+      return Util.parseTimestamp(timestamp);
+   }
+
+   /**
+    * Return the name of the registered user who made the revision.
+    *
+    * @return the contributor's {@code <username>}, or {@code null} if there is none.
+    */
+   public String getUsername() {
+      return username;
+   }
+
+   /**
+    * Return the id of the registered user who made the revision.
+    *
+    * @return the contributor's {@code <id>}, or {@code null} if there is none.
+    */
+   public String getContributorId() {
+      return contributorId;
+   }
+
+   /**
+    * Return the IP address of the anonymous user who made the revision.
+    *
+    * @return the contributor's {@code <ip>}, or {@code null} if there is none.
+    */
+   public String getIp() {
+      return ip;
+   }
+
+   /**
+    * Return whether the revision is marked as a minor edit.
+    *
+    * @return {@code true} if the revision has a {@code <minor>} element.
+    */
+   public boolean isMinor() {
+      return minor;
+   }
+}
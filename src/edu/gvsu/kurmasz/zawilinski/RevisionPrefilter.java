@@ -0,0 +1,279 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * A SAX filter that removes entire {@code <revision>} elements before they reach the unmarshaller (or any
+ * later filter).  The filter holds back the beginning of each revision until its {@code <text>} begins, collecting
+ * the revision's id, timestamp, contributor, and minor flag into a {@link RevisionInfo}.  It then asks a
+ * {@link RevisionPredicate} whether to keep the revision.  If so, the held events are sent along followed by the
+ * rest of the revision; otherwise, the entire revision (including its text) is discarded.
+ *
+ * <p>Unlike {@link PostFilter#keepRevision(edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType,
+ * edu.gvsu.kurmasz.zawilinski.mw.current.PageType)}, which is called only after JAXB has built the revision and its
+ * (possibly very large) text, this filter keeps the unwanted text out of the unmarshaller entirely.  Place it before
+ * any {@link TextPrefilter}s so that they don't examine the text of discarded revisions.</p>
+ *
+ * <p>Pages whose revisions are all discarded remain in the document with no revisions.  (A post-filter such as
+ * {@link PostFilterByLanguage} removes them.)</p>
+ */
+public class RevisionPrefilter extends XMLFilterImpl {
+
+   /**
+    * Decides which revisions to keep.
+    */
+   public interface RevisionPredicate {
+      /**
+       * Return {@code true} if the revision should be kept.
+       *
+       * @param revision the revision's metadata (valid only for the duration of this call).
+       * @return {@code true} if the revision should be kept.
+       */
+      boolean keepRevision(RevisionInfo revision);
+   }
+
+   /**
+    * Keeps the revisions made during a given time window, optionally skipping minor edits.
+    */
+   public static class WindowPredicate implements RevisionPredicate {
+      private final long since;
+      private final long until;
+      private final boolean skipMinor;
+
+      /**
+       * Constructor
+       *
+       * @param since     the earliest timestamp kept (in milliseconds since the epoch), or {@code Long.MIN_VALUE}
+       * @param until     the first timestamp no longer kept (in milliseconds since the epoch), or
+       *                  {@code Long.MAX_VALUE}
+       * @param skipMinor whether to discard minor edits
+       */
+      public WindowPredicate(long since, long until, boolean skipMinor) {
+         this.since = since;
+         this.until = until;
+         this.skipMinor = skipMinor;
+      }
+
+      public boolean keepRevision(RevisionInfo revision) {
+         if (skipMinor && revision.isMinor()) {
+            return false;
+         }
+         if (since == Long.MIN_VALUE && until == Long.MAX_VALUE) {
+            return true;
+         }
+         long time = revision.getTimestampMillis();
+         return time >= since && time < until;
+      }
+   }
+
+   // package scope for testing
+   static final String REVISION_ELEMENT_NAME = "revision";
+   static final String TIMESTAMP_ELEMENT_NAME = "timestamp";
+   static final String CONTRIBUTOR_ELEMENT_NAME = "contributor";
+   static final String MINOR_ELEMENT_NAME = "minor";
+   static final String USERNAME_ELEMENT_NAME = "username";
+   static final String IP_ELEMENT_NAME = "ip";
+
+   private enum Stage {OUTSIDE, HOLDING, PASSING, DISCARDING}
+
+   private final RevisionPredicate predicate;
+
+   private Stage stage = Stage.OUTSIDE;
+
+   // Depth of the current element relative to <revision> (the <revision> element itself is depth 1)
+   private int depth;
+
+   // true while inside the revision's <contributor>
+   private boolean inContributor;
+
+   // Collects the content of the metadata element being read (null when not in one of them)
+   private StringBuilder field = null;
+   private final StringBuilder fieldContent = new StringBuilder();
+
+   private final RevisionInfo info = new RevisionInfo();
+
+   // The events held back while the predicate can't yet be evaluated.  The buffer is reused for every revision.
+   private final SaxEventBuffer held = new SaxEventBuffer();
+
+   private long revisionsKept = 0;
+   private long revisionsDiscarded = 0;
+
+   /**
+    * Constructor
+    *
+    * @param predicate decides which revisions to keep.
+    */
+   public RevisionPrefilter(RevisionPredicate predicate) {
+      if (predicate == null) {
+         throw new IllegalArgumentException("RevisionPredicate may not be null.");
+      }
+      this.predicate = predicate;
+   }
+
+   /**
+    * Return the number of revisions kept so far.
+    *
+    * @return the number of revisions kept so far.
+    */
+   public long getRevisionsKept() {
+      return revisionsKept;
+   }
+
+   /**
+    * Return the number of revisions discarded so far.
+    *
+    * @return the number of revisions discarded so far.
+    */
+   public long getRevisionsDiscarded() {
+      return revisionsDiscarded;
+   }
+
+   @Override
+   public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+      switch (stage) {
+         case OUTSIDE:
+            if (localName.equals(REVISION_ELEMENT_NAME)) {
+               beginRevision();
+               held.startElement(uri, localName, qName, atts);
+            } else {
+               super.startElement(uri, localName, qName, atts);
+            }
+            return;
+         case HOLDING:
+            if (depth == 1 && localName.equals(TextPrefilter.TEXT_ELEMENT_NAME)) {
+               // All of the metadata precedes the text.
+               decide();
+               startElement(uri, localName, qName, atts);
+               return;
+            }
+            depth++;
+            if (depth == 2) {
+               if (localName.equals(CONTRIBUTOR_ELEMENT_NAME)) {
+                  inContributor = true;
+               } else if (localName.equals(MINOR_ELEMENT_NAME)) {
+                  info.setMinor(true);
+               } else if (localName.equals(PagePrefilter.ID_ELEMENT_NAME)
+                     || localName.equals(TIMESTAMP_ELEMENT_NAME)) {
+                  beginField();
+               }
+            } else if (depth == 3 && inContributor) {
+               beginField();
+            }
+            held.startElement(uri, localName, qName, atts);
+            return;
+         case PASSING:
+            depth++;
+            super.startElement(uri, localName, qName, atts);
+            return;
+         case DISCARDING:
+            depth++;
+      }
+   }
+
+   @Override
+   public void endElement(String uri, String localName, String qName) throws SAXException {
+      switch (stage) {
+         case OUTSIDE:
+            super.endElement(uri, localName, qName);
+            return;
+         case HOLDING:
+            held.endElement(uri, localName, qName);
+            if (field != null) {
+               endField(localName);
+            } else if (depth == 2 && localName.equals(CONTRIBUTOR_ELEMENT_NAME)) {
+               inContributor = false;
+            }
+            depth--;
+            if (depth == 0) {
+               // A revision without text
+               decide();
+               stage = Stage.OUTSIDE;
+            }
+            return;
+         case PASSING:
+            super.endElement(uri, localName, qName);
+            break;
+         case DISCARDING:
+            break;
+      }
+      depth--;
+      if (depth == 0) {
+         stage = Stage.OUTSIDE;
+      }
+   }
+
+   @Override
+   public void characters(char[] ch, int start, int length) throws SAXException {
+      switch (stage) {
+         case OUTSIDE:
+         case PASSING:
+            super.characters(ch, start, length);
+            return;
+         case HOLDING:
+            if (field != null) {
+               field.append(ch, start, length);
+            }
+            held.characters(ch, start, length);
+      }
+   }
+
+   @Override
+   public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+      switch (stage) {
+         case OUTSIDE:
+         case PASSING:
+            super.ignorableWhitespace(ch, start, length);
+            return;
+         case HOLDING:
+            held.ignorableWhitespace(ch, start, length);
+      }
+   }
+
+   private void beginRevision() {
+      stage = Stage.HOLDING;
+      depth = 1;
+      inContributor = false;
+      field = null;
+      info.clear();
+      held.clear();
+   }
+
+   private void beginField() {
+      field = fieldContent;
+      field.setLength(0);
+   }
+
+   // Store the content of the metadata element that just ended.
+   private void endField(String localName) {
+      String value = field.toString();
+      if (inContributor) {
+         if (localName.equals(USERNAME_ELEMENT_NAME)) {
+            info.setUsername(value);
+         } else if (localName.equals(PagePrefilter.ID_ELEMENT_NAME)) {
+            info.setContributorId(value);
+         } else if (localName.equals(IP_ELEMENT_NAME)) {
+            info.setIp(value);
+         }
+      } else if (localName.equals(TIMESTAMP_ELEMENT_NAME)) {
+         info.setTimestamp(value);
+      } else {
+         info.setId(value);
+      }
+      field = null;
+   }
+
+   // Ask the predicate about the current revision, then either send or drop the held events.
+   private void decide() throws SAXException {
+      field = null;
+      if (!predicate.keepRevision(info)) {
+         revisionsDiscarded++;
+         stage = Stage.DISCARDING;
+         return;
+      }
+      revisionsKept++;
+      stage = Stage.PASSING;
+      held.replay(getContentHandler());
+   }
+}
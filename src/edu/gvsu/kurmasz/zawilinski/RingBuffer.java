@@ -0,0 +1,138 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue shared by exactly one producer thread and one consumer thread.  Each index is written by only one
+ * thread; so, the queue needs no locks.  A thread that must wait (because the queue is full or empty) first yields
+ * (on multiprocessors), then parks for increasingly long intervals (so that idle stages don't take processor time
+ * from busy ones), and adds the time spent waiting to its stage's idle time.
+ *
+ * <p>Either thread may {@link #abort()} the queue (e.g., because its stage failed).  Then, any thread waiting on the
+ * queue (and any thread that later tries to wait) gets an {@code InterruptedIOException}.</p>
+ *
+ * @param <T> the type of the items in the queue
+ */
+class RingBuffer<T> {
+
+   // Number of times a waiting thread yields before it begins to park.  (Yielding only helps if the other thread
+   // is running on another processor.)
+   private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 100 : 0;
+   private static final long MIN_PARK_NANOS = 10000;
+   private static final long MAX_PARK_NANOS = 1000000;
+
+   private final Object[] items;
+   private final int mask;
+   // The number of items taken so far (written only by the consumer)
+   private final AtomicLong head = new AtomicLong();
+   // The number of items put so far (written only by the producer)
+   private final AtomicLong tail = new AtomicLong();
+   private volatile boolean aborted = false;
+
+   /**
+    * Constructor
+    *
+    * @param capacity the maximum number of items in the queue (must be a power of two)
+    */
+   RingBuffer(int capacity) {
+      if (capacity < 1 || (capacity & (capacity - 1)) != 0) {
+         throw new IllegalArgumentException("Capacity must be a power of two.");
+      }
+      items = new Object[capacity];
+      mask = capacity - 1;
+   }
+
+   /**
+    * Add {@code item} if the queue isn't full.  (Called only by the producer.)
+    *
+    * @param item the item
+    * @return {@code true} if {@code item} was added.
+    */
+   boolean offer(T item) {
+      long t = tail.get();
+      if (t - head.get() == items.length) {
+         return false;
+      }
+      items[(int) t & mask] = item;
+      // The item must be visible before the new tail.
+      tail.lazySet(t + 1);
+      return true;
+   }
+
+   /**
+    * Remove and return the oldest item, if any.  (Called only by the consumer.)
+    *
+    * @return the oldest item, or {@code null} if the queue is empty.
+    */
+   @SuppressWarnings("unchecked")
+   T poll() {
+      long h = head.get();
+      if (h == tail.get()) {
+         return null;
+      }
+      int index = (int) h & mask;
+      T item = (T) items[index];
+      items[index] = null;
+      head.lazySet(h + 1);
+      return item;
+   }
+
+   /**
+    * Add {@code item}, waiting until the queue has room.
+    *
+    * @param item  the item
+    * @param stage the stage whose idle time includes the time spent waiting
+    * @throws InterruptedIOException if the queue is aborted or the thread is interrupted.
+    */
+   void put(T item, PipelinedMediaWikiLoader.StageStats stage) throws InterruptedIOException {
+      if (offer(item)) {
+         return;
+      }
+      long start = System.nanoTime();
+      for (int attempt = 0; !offer(item); attempt++) {
+         pause(attempt);
+      }
+      stage.addIdleTime(System.nanoTime() - start);
+   }
+
+   /**
+    * Remove and return the oldest item, waiting until there is one.
+    *
+    * @param stage the stage whose idle time includes the time spent waiting
+    * @return the oldest item
+    * @throws InterruptedIOException if the queue is aborted or the thread is interrupted.
+    */
+   T take(PipelinedMediaWikiLoader.StageStats stage) throws InterruptedIOException {
+      T item = poll();
+      if (item != null) {
+         return item;
+      }
+      long start = System.nanoTime();
+      for (int attempt = 0; (item = poll()) == null; attempt++) {
+         pause(attempt);
+      }
+      stage.addIdleTime(System.nanoTime() - start);
+      return item;
+   }
+
+   /**
+    * Wake (with an exception) any thread waiting on this queue.
+    */
+   void abort() {
+      aborted = true;
+   }
+
+   private void pause(int attempt) throws InterruptedIOException {
+      if (aborted || Thread.interrupted()) {
+         throw new InterruptedIOException("Pipeline stopped.");
+      }
+      if (attempt < SPINS) {
+         Thread.yield();
+      } else {
+         int doublings = Math.min(attempt - SPINS, 10);
+         LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, MIN_PARK_NANOS << doublings));
+      }
+   }
+}
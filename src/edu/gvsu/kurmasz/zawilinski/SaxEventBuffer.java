@@ -0,0 +1,102 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds a sequence of element and character events so that a filter can send them along later (or drop them).
+ * The buffer can be reused after {@link #clear()}.
+ */
+class SaxEventBuffer {
+
+   // The kinds of events that are held.
+   private static final int START = 0;
+   private static final int END = 1;
+   private static final int CHARACTERS = 2;
+   private static final int WHITESPACE = 3;
+
+   private final List<Integer> types = new ArrayList<Integer>();
+   private final List<String[]> names = new ArrayList<String[]>();
+   private final List<Attributes> attributes = new ArrayList<Attributes>();
+   private final StringBuilder characters = new StringBuilder();
+   private final List<Integer> characterEnds = new ArrayList<Integer>();
+
+   /**
+    * Discard all held events.
+    */
+   void clear() {
+      types.clear();
+      names.clear();
+      attributes.clear();
+      characters.setLength(0);
+      characterEnds.clear();
+   }
+
+   void startElement(String uri, String localName, String qName, Attributes atts) {
+      types.add(START);
+      names.add(new String[]{uri, localName, qName});
+      // The parser may reuse atts.
+      attributes.add(new AttributesImpl(atts));
+   }
+
+   void endElement(String uri, String localName, String qName) {
+      types.add(END);
+      names.add(new String[]{uri, localName, qName});
+      attributes.add(null);
+   }
+
+   void characters(char[] ch, int start, int length) {
+      holdCharacters(CHARACTERS, ch, start, length);
+   }
+
+   void ignorableWhitespace(char[] ch, int start, int length) {
+      holdCharacters(WHITESPACE, ch, start, length);
+   }
+
+   private void holdCharacters(int type, char[] ch, int start, int length) {
+      types.add(type);
+      characters.append(ch, start, length);
+      characterEnds.add(characters.length());
+   }
+
+   /**
+    * Send the held events (in order) to {@code handler}.
+    *
+    * @param handler the handler that receives the events (may be {@code null}, in which case nothing happens).
+    * @throws SAXException if {@code handler} throws an exception.
+    */
+   void replay(ContentHandler handler) throws SAXException {
+      if (handler == null) {
+         return;
+      }
+      char[] ch = new char[characters.length()];
+      characters.getChars(0, ch.length, ch, 0);
+      int element = 0;
+      int chars = 0;
+      for (int type : types) {
+         if (type == START) {
+            String[] n = names.get(element);
+            handler.startElement(n[0], n[1], n[2], attributes.get(element));
+            element++;
+         } else if (type == END) {
+            String[] n = names.get(element);
+            handler.endElement(n[0], n[1], n[2]);
+            element++;
+         } else {
+            int begin = chars == 0 ? 0 : characterEnds.get(chars - 1);
+            int end = characterEnds.get(chars);
+            if (type == CHARACTERS) {
+               handler.characters(ch, begin, end - begin);
+            } else {
+               handler.ignorableWhitespace(ch, begin, end - begin);
+            }
+            chars++;
+         }
+      }
+   }
+}
@@ -0,0 +1,95 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+/**
+ * The content of a revision's {@code <text>} element.  The schema-derived {@code TextType} holds a
+ * {@code StoredText} instead of a {@code String} (see {@code schemas/bindings-0.10.xjb}) so that the text may be
+ * kept somewhere other than the Java heap (e.g., in a {@link TextArena}) and decoded only when it is needed.
+ *
+ * <p>Use {@link Util#getText(edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType)} to get the text as a
+ * {@code String}, and {@link Util#getTextSize(edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType)} to get its
+ * length.  {@link #length()} never decodes the text; {@link #toString()} may decode it every time it is called.</p>
+ *
+ * <p>Two {@code StoredText}s are equal if they contain the same characters.</p>
+ */
+public abstract class StoredText {
+
+   // Text kept in an ordinary String
+   private static class HeapText extends StoredText {
+      private final String text;
+
+      HeapText(String text) {
+         this.text = text;
+      }
+
+      @Override
+      public int length() {
+         return text.length();
+      }
+
+      @Override
+      public String toString() {
+         return text;
+      }
+   }
+
+   /**
+    * Text with no characters.
+    */
+   public static final StoredText EMPTY = new HeapText("");
+
+   /**
+    * Return a {@code StoredText} that holds {@code text} on the heap.
+    *
+    * @param text the text
+    * @return a {@code StoredText} that holds {@code text}, or {@code null} if {@code text} is {@code null}.
+    */
+   public static StoredText of(String text) {
+      if (text == null) {
+         return null;
+      }
+      return text.length() == 0 ? EMPTY : new HeapText(text);
+   }
+
+   /**
+    * Return the number of characters (i.e., {@code char}s) in the text.
+    *
+    * @return the number of characters in the text.
+    */
+   public abstract int length();
+
+   /**
+    * Return the text.
+    *
+    * @return the text.
+    */
+   @Override
+   public abstract String toString();
+
+   /**
+    * Return {@code true} if the text begins with {@code c}.  Subclasses that decode their text override this to
+    * examine only the beginning of it.
+    *
+    * @param c the character
+    * @return {@code true} if the text begins with {@code c}.
+    */
+   boolean startsWith(char c) {
+      return length() > 0 && toString().charAt(0) == c;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      }
+      if (!(o instanceof StoredText)) {
+         return false;
+      }
+      StoredText other = (StoredText) o;
+      return length() == other.length() && toString().equals(other.toString());
+   }
+
+   @Override
+   public int hashCode() {
+      return toString().hashCode();
+   }
+}
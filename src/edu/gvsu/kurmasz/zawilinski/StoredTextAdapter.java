@@ -0,0 +1,58 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+/**
+ * Binds the content of the schema's {@code <text>} elements to a {@link StoredText}.  By default, each text is kept
+ * on the heap.  To keep the texts elsewhere, give the {@code Unmarshaller} an adapter that uses a different
+ * {@link TextStorage}:
+ * <pre>
+ *    StoredTextAdapter.install(unmarshaller, new TextArena());
+ * </pre>
+ *
+ * <p>This class is named in {@code schemas/bindings-0.10.xjb}; the schema-derived classes refer to it.</p>
+ */
+public class StoredTextAdapter extends XmlAdapter<String, StoredText> {
+
+   private final TextStorage storage;
+
+   /**
+    * Constructor (keeps each text on the heap)
+    */
+   public StoredTextAdapter() {
+      this(TextStorage.HEAP);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param storage where to keep the texts
+    */
+   public StoredTextAdapter(TextStorage storage) {
+      if (storage == null) {
+         throw new IllegalArgumentException("TextStorage may not be null.");
+      }
+      this.storage = storage;
+   }
+
+   /**
+    * Configure {@code unmarshaller} to keep texts in {@code storage}.
+    *
+    * @param unmarshaller the {@code Unmarshaller}
+    * @param storage      where to keep the texts
+    */
+   public static void install(Unmarshaller unmarshaller, TextStorage storage) {
+      unmarshaller.setAdapter(StoredTextAdapter.class, new StoredTextAdapter(storage));
+   }
+
+   @Override
+   public StoredText unmarshal(String value) {
+      return value == null ? null : storage.store(value);
+   }
+
+   @Override
+   public String marshal(StoredText value) {
+      return value == null ? null : value.toString();
+   }
+}
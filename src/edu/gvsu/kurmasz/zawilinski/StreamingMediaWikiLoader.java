@@ -0,0 +1,88 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.SimpleLog;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLFilter;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import java.io.InputStream;
+
+/**
+ * Loads a MediaWiki XML document one page at a time.  Like {@link PostFilteredMediaWikiLoader}, this class
+ * (1) applies a chain of SAX pre-filters to an XML data stream, (2) uses JAXB to unmarshal the filtered stream, and
+ * (3) applies a {@link PostFilter} to each page as it is completed.  The difference is that each page that passes the
+ * post-filter is handed to a {@link PageHandler} and then immediately removed from the object tree.  Thus,
+ * the memory needed to process a dump depends on the size of the largest page, not on the size of the dump.
+ *
+ * <p>The {@code JAXBElement} returned by the {@code load} methods contains the document's root attributes and
+ * {@code <siteinfo>}, but no pages.</p>
+ */
+public class StreamingMediaWikiLoader {
+
+   private StreamingMediaWikiLoader() {
+   }
+
+   /**
+    * Loads and filters an XML stream, passing each kept page to {@code handler}.
+    *
+    * @param source       the source of the XML data
+    * @param log          a {@code Log} to which to report progress
+    * @param unmarshaller the JAXB unmarshaller to use (this method replaces its listener)
+    * @param postFilter   the post-filter that determines which pages and revisions are passed to {@code handler}
+    * @param handler      the handler that receives each kept page
+    * @param filterList   a list of SAX filters to apply.
+    * @return a {@code MediaWikiType} object representing the root of the document (with an empty list of pages).
+    * @throws JAXBException if there is a problem generating the DOM, or if {@code handler} throws an exception.
+    * @throws MediaWikiLoader.XMLConfigurationException
+    *                       if there is a problem configuring the XML filters or parser
+    */
+   public static JAXBElement<MediaWikiType> load(InputSource source, SimpleLog log, Unmarshaller unmarshaller,
+                                                 PostFilter postFilter, PageHandler handler,
+                                                 XMLFilter... filterList) throws JAXBException {
+      if (postFilter == null) {
+         throw new IllegalArgumentException("PostFilter may not be null.");
+      }
+      if (handler == null) {
+         throw new IllegalArgumentException("PageHandler may not be null.");
+      }
+      if (unmarshaller == null) {
+         throw new IllegalArgumentException("Unmarshaller may not be null.");
+      }
+
+      PageFilterListener listener = new PageFilterListener(postFilter, log, handler);
+      listener.setResolveDuplicates(DuplicateTextPrefilter.isAmong(filterList));
+      unmarshaller.setListener(listener);
+      try {
+         return PreFilteredMediaWikiLoader.load(source, log, unmarshaller, filterList);
+      } catch (PageFilterListener.HandlerException e) {
+         throw e.getCause();
+      }
+   }
+
+   /**
+    * Loads and filters an XML stream, passing each kept page to {@code handler}.
+    *
+    * @param source     the source of the XML data
+    * @param log        a {@code Log} to which to report progress
+    * @param postFilter the post-filter that determines which pages and revisions are passed to {@code handler}
+    * @param handler    the handler that receives each kept page
+    * @param filterList a list of SAX filters to apply.
+    * @return a {@code MediaWikiType} object representing the root of the document (with an empty list of pages).
+    * @throws JAXBException if there is a problem generating the DOM, or if {@code handler} throws an exception.
+    * @throws MediaWikiLoader.XMLConfigurationException
+    *                       if there is a problem configuring the XML filters or parser
+    */
+   public static JAXBElement<MediaWikiType> load(InputStream source, SimpleLog log, PostFilter postFilter,
+                                                 PageHandler handler, XMLFilter... filterList)
+         throws JAXBException {
+      Unmarshaller unmarshaller = JAXBPool.borrowUnmarshaller();
+      try {
+         return load(new InputSource(source), log, unmarshaller, postFilter, handler, filterList);
+      } finally {
+         JAXBPool.returnUnmarshaller(unmarshaller);
+      }
+   }
+}
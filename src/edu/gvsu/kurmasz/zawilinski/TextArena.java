@@ -0,0 +1,182 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps texts outside the Java heap.  Each text is encoded as UTF-8 and appended to a direct {@code ByteBuffer}
+ * (a new buffer is allocated whenever the current one is full); the {@code TextType} object keeps only a small
+ * handle (the buffer, offset, and length).  Wiktionary text is mostly ASCII; so, the arena needs about half the
+ * memory of the equivalent {@code String}s, and none of it is examined by the garbage collector.  The text is
+ * decoded each time {@link StoredText#toString()} is called; {@link StoredText#length()} does not decode it.
+ *
+ * <p>The arena only grows:  its memory is released when the arena and every {@code StoredText} it created are no
+ * longer reachable.  So, an arena is meant for loading a (filtered) document into memory, not for streaming a dump
+ * with {@link StreamingMediaWikiLoader}.  Direct buffers are limited by the JVM's {@code -XX:MaxDirectMemorySize}
+ * (which defaults to the maximum heap size).</p>
+ *
+ * <p>A {@code TextArena} may be shared by several threads.</p>
+ */
+public class TextArena implements TextStorage {
+
+   /**
+    * The default size of each buffer.
+    */
+   public static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+
+   static final Charset UTF8 = Charset.forName("UTF-8");
+
+   // A text in one of the arena's buffers
+   private static class ArenaText extends StoredText {
+      private final ByteBuffer chunk;
+      private final int offset;
+      private final int bytes;
+      private final int chars;
+
+      ArenaText(ByteBuffer chunk, int offset, int bytes, int chars) {
+         this.chunk = chunk;
+         this.offset = offset;
+         this.bytes = bytes;
+         this.chars = chars;
+      }
+
+      @Override
+      public int length() {
+         return chars;
+      }
+
+      @Override
+      public String toString() {
+         byte[] data = new byte[bytes];
+         ByteBuffer view = chunk.duplicate();
+         view.position(offset);
+         view.get(data);
+         return new String(data, UTF8);
+      }
+
+      @Override
+      boolean startsWith(char c) {
+         // Decode only as many bytes as encode c.
+         byte[] prefix = String.valueOf(c).getBytes(UTF8);
+         if (chars == 0 || bytes < prefix.length) {
+            return false;
+         }
+         for (int i = 0; i < prefix.length; i++) {
+            if (chunk.get(offset + i) != prefix[i]) {
+               return false;
+            }
+         }
+         return true;
+      }
+   }
+
+   private final int chunkSize;
+   private final CharsetEncoder encoder = UTF8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+         .onUnmappableCharacter(CodingErrorAction.REPLACE);
+   private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+   private ByteBuffer current = null;
+
+   private long bytesStored = 0;
+   private long textsStored = 0;
+
+   /**
+    * Constructor
+    */
+   public TextArena() {
+      this(DEFAULT_CHUNK_SIZE);
+   }
+
+   /**
+    * Constructor
+    *
+    * @param chunkSize the size of each buffer.  (Texts larger than {@code chunkSize} get a buffer of their own.)
+    */
+   public TextArena(int chunkSize) {
+      if (chunkSize <= 0) {
+         throw new IllegalArgumentException("Chunk size must be positive.");
+      }
+      this.chunkSize = chunkSize;
+   }
+
+   public synchronized StoredText store(String text) {
+      if (text == null) {
+         return null;
+      }
+      if (text.length() == 0) {
+         return StoredText.EMPTY;
+      }
+      // The text is encoded directly into the buffer (instead of into a temporary byte[]).
+      int length = encodedLength(text);
+      if (current == null || current.remaining() < length) {
+         current = ByteBuffer.allocateDirect(Math.max(chunkSize, length));
+         chunks.add(current);
+      }
+      int offset = current.position();
+      encoder.reset();
+      encoder.encode(CharBuffer.wrap(text), current, true);
+      encoder.flush(current);
+      assert current.position() - offset == length : "Wrong encoded length";
+      bytesStored += length;
+      textsStored++;
+      return new ArenaText(current, offset, length, text.length());
+   }
+
+   // Return the number of bytes in the UTF-8 encoding of text.  (Unpaired surrogates are replaced by one byte.)
+   // package scope for testing
+   static int encodedLength(String text) {
+      int answer = 0;
+      int length = text.length();
+      for (int i = 0; i < length; i++) {
+         char c = text.charAt(i);
+         if (c < 0x80) {
+            answer++;
+         } else if (c < 0x800) {
+            answer += 2;
+         } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+            answer += 4;
+            i++;
+         } else if (Character.isSurrogate(c)) {
+            answer++;
+         } else {
+            answer += 3;
+         }
+      }
+      return answer;
+   }
+
+   /**
+    * Return the number of texts stored so far.  (Empty texts are not counted.)
+    *
+    * @return the number of texts stored so far.
+    */
+   public synchronized long getTextsStored() {
+      return textsStored;
+   }
+
+   /**
+    * Return the number of bytes of (UTF-8 encoded) text stored so far.
+    *
+    * @return the number of bytes of text stored so far.
+    */
+   public synchronized long getBytesStored() {
+      return bytesStored;
+   }
+
+   /**
+    * Return the number of bytes allocated outside the heap so far.
+    *
+    * @return the number of bytes allocated outside the heap so far.
+    */
+   public synchronized long getBytesAllocated() {
+      long answer = 0;
+      for (ByteBuffer chunk : chunks) {
+         answer += chunk.capacity();
+      }
+      return answer;
+   }
+}
@@ -0,0 +1,25 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+/**
+ * Decides where the unmarshaller keeps the content of each {@code <text>} element.  (See
+ * {@link StoredTextAdapter}.)
+ */
+public interface TextStorage {
+
+   /**
+    * Keeps each text in an ordinary {@code String} (the default).
+    */
+   TextStorage HEAP = new TextStorage() {
+      public StoredText store(String text) {
+         return StoredText.of(text);
+      }
+   };
+
+   /**
+    * Store {@code text}.
+    *
+    * @param text the content of a {@code <text>} element
+    * @return a {@code StoredText} from which {@code text} can be recovered
+    */
+   StoredText store(String text);
+}
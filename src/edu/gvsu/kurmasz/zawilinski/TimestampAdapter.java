@@ -0,0 +1,24 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+
+/**
+ * Binds the schema's {@code dateTime} elements (e.g., a revision's {@code <timestamp>}) to the number of
+ * milliseconds since the epoch instead of to an {@code XMLGregorianCalendar}.  Timestamps are parsed with
+ * {@link Util#parseTimestamp(String)} and written back in MediaWiki's usual form with
+ * {@link Util#printTimestamp(long)}; so, a timestamp given in a time zone other than UTC is written in UTC.
+ *
+ * <p>This class is named in {@code schemas/bindings-0.10.xjb}; the schema-derived classes refer to it.</p>
+ */
+public class TimestampAdapter extends XmlAdapter<String, Long> {
+
+   @Override
+   public Long unmarshal(String value) {
+      return value == null ? null : Util.parseTimestamp(value.trim());
+   }
+
+   @Override
+   public String marshal(Long value) {
+      return value == null ? null : Util.printTimestamp(value);
+   }
+}
@@ -3,6 +3,7 @@ package edu.gvsu.kurmasz.zawilinski;
 import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
 import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
 
+import javax.xml.bind.DatatypeConverter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -46,24 +47,25 @@ public class Util {
     }
 
     /**
-     * Returns this revision's text.
+     * Returns this revision's text.  (If the text is stored outside the heap, it is decoded.)
      *
      * @param revision the revision
      * @return this revision's text.
      */
     public static String getText(RevisionType revision) {
-        return revision.getText().getValue();
+        StoredText text = revision.getText().getValue();
+        return text == null ? null : text.toString();
     }
 
 
     /**
-     * Return the length of the revision's text element.
+     * Return the length of the revision's text element.  (The text is not decoded.)
      *
      * @param revision the revision
      * @return the length of the revision's text element.
      */
     public static int getTextSize(RevisionType revision) {
-        return getText(revision).length();
+        return revision.getText().getValue().length();
     }
 
     /**
@@ -103,7 +105,116 @@ public class Util {
      * @param text     the text
      */
     public static void setText(RevisionType revision, String text) {
-        revision.getText().setValue(text);
+        revision.getText().setValue(StoredText.of(text));
+    }
+
+    /**
+     * Convert an XML Schema {@code dateTime} (e.g., a revision's {@code <timestamp>}) into milliseconds
+     * since the epoch.  Timestamps in MediaWiki's usual format ({@code 2010-02-12T16:25:13Z}) are converted
+     * directly; any other form is handed to {@code DatatypeConverter} (which uses the default time zone when
+     * none is given).
+     *
+     * @param timestamp the timestamp
+     * @return the number of milliseconds since 1970-01-01T00:00:00Z
+     * @throws IllegalArgumentException if {@code timestamp} is not a valid {@code dateTime}
+     */
+    public static long parseTimestamp(String timestamp) {
+        if (timestamp.length() == 20 && timestamp.charAt(4) == '-' && timestamp.charAt(7) == '-'
+                && timestamp.charAt(10) == 'T' && timestamp.charAt(13) == ':' && timestamp.charAt(16) == ':'
+                && timestamp.charAt(19) == 'Z') {
+            int year = digits(timestamp, 0, 4);
+            int month = digits(timestamp, 5, 2);
+            int day = digits(timestamp, 8, 2);
+            int hour = digits(timestamp, 11, 2);
+            int minute = digits(timestamp, 14, 2);
+            int second = digits(timestamp, 17, 2);
+            if (year >= 1 && month >= 1 && month <= 12 && day >= 1 && day <= 31 && hour >= 0 && hour < 24
+                    && minute >= 0 && minute < 60 && second >= 0 && second < 60) {
+                return ((daysSinceEpoch(year, month, day) * 24 + hour) * 60 + minute) * 60000L + second * 1000L;
+            }
+        }
+        return DatatypeConverter.parseDateTime(timestamp).getTimeInMillis();
+    }
+
+    /**
+     * Convert milliseconds since the epoch into an XML Schema {@code dateTime} in MediaWiki's usual format
+     * ({@code 2010-02-12T16:25:13Z}).  Fractional seconds are included only if {@code millis} isn't a whole
+     * number of seconds.  (This is the inverse of {@link #parseTimestamp(String)}.)
+     *
+     * @param millis the number of milliseconds since 1970-01-01T00:00:00Z
+     * @return the timestamp
+     */
+    public static String printTimestamp(long millis) {
+        long days = millis / 86400000L;
+        long msOfDay = millis % 86400000L;
+        if (msOfDay < 0) {
+            days--;
+            msOfDay += 86400000L;
+        }
+        // Convert days since the epoch into a date (the inverse of daysSinceEpoch).
+        long z = days + 719468;
+        long era = z / 146097;
+        if (z < era * 146097) {
+            era--;
+        }
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp + 3;
+        if (month > 12) {
+            month -= 12;
+        }
+        long year = yearOfEra + era * 400;
+        if (month <= 2) {
+            year++;
+        }
+
+        int ms = (int) msOfDay;
+        StringBuilder answer = new StringBuilder(24);
+        pad(answer, year, 4).append('-');
+        pad(answer, month, 2).append('-');
+        pad(answer, day, 2).append('T');
+        pad(answer, ms / 3600000, 2).append(':');
+        pad(answer, ms / 60000 % 60, 2).append(':');
+        pad(answer, ms / 1000 % 60, 2);
+        if (ms % 1000 != 0) {
+            pad(answer.append('.'), ms % 1000, 3);
+        }
+        return answer.append('Z').toString();
+    }
+
+    // Append value to sb with at least the given number of digits.
+    private static StringBuilder pad(StringBuilder sb, long value, int width) {
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            sb.append('0');
+        }
+        return sb.append(digits);
+    }
+
+    // Return the value of the given decimal digits, or -1 if they aren't all digits.
+    private static int digits(String s, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Days from 1970-01-01 to the given date in the proleptic Gregorian calendar.
+    private static long daysSinceEpoch(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
     }
 
 //   static void print(MediaWikiType root) {
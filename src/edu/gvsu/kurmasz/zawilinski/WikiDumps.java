@@ -0,0 +1,98 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.SimpleLog;
+import org.xml.sax.XMLFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Creates {@link PageIterator}s that pull the kept pages of a dump one at a time.  For example,
+ *
+ * <pre>
+ * PageIterator pages = WikiDumps.pages(new File("enwiktionary.xml"), log, factory);
+ * try {
+ *    while (pages.hasNext()) {
+ *       process(pages.next());
+ *    }
+ * } finally {
+ *    pages.close();
+ * }
+ * </pre>
+ *
+ * <p>An iterator over an uncompressed file can be divided with {@link PageIterator#trySplit()} so that the parts
+ * are loaded in parallel (e.g., by wrapping it in a {@code java.util.Spliterator}).</p>
+ */
+public final class WikiDumps {
+
+   private WikiDumps() {
+   }
+
+   /**
+    * Return an iterator over the kept pages of a dump file.  If the file is uncompressed (see
+    * {@link ParallelMediaWikiLoader#canLoad(String)}), it is memory-mapped and the iterator can be split.  Otherwise,
+    * the file is decompressed as it is read (see {@link ParallelMediaWikiLoader#openInputStream(String, int)}).
+    *
+    * @param file    the dump
+    * @param log     a {@code Log} to which to report progress
+    * @param factory creates the filters for the iterator (and for each iterator split from it)
+    * @return a {@code PageIterator} over the kept pages.
+    * @throws IOException if the file can't be opened or mapped.
+    */
+   public static PageIterator pages(File file, SimpleLog log, ParallelMediaWikiLoader.FilterFactory factory)
+         throws IOException {
+      if (file == null) {
+         throw new IllegalArgumentException("File may not be null.");
+      }
+      if (ParallelMediaWikiLoader.canLoad(file.getPath())) {
+         return new PageIterator(new MappedDump(file), log, factory);
+      }
+      return new PageIterator(ParallelMediaWikiLoader.openInputStream(file.getPath(), 1), log, factory);
+   }
+
+   /**
+    * Return an iterator over the kept pages of a dump file.  The iterator (and each iterator split from it) uses the
+    * same {@code postFilter} and no pre-filters; so, {@code postFilter} must be thread-safe if the parts are iterated
+    * on different threads.
+    *
+    * @param file       the dump
+    * @param log        a {@code Log} to which to report progress
+    * @param postFilter the post-filter that determines which pages and revisions are returned
+    * @return a {@code PageIterator} over the kept pages.
+    * @throws IOException if the file can't be opened or mapped.
+    */
+   public static PageIterator pages(File file, SimpleLog log, PostFilter postFilter) throws IOException {
+      return pages(file, log, factoryFor(postFilter));
+   }
+
+   /**
+    * Return an iterator over the kept pages in a stream.  The iterator can't be split.
+    *
+    * @param input      the dump
+    * @param log        a {@code Log} to which to report progress
+    * @param postFilter the post-filter that determines which pages and revisions are returned
+    * @param prefilters the SAX filters to apply
+    * @return a {@code PageIterator} over the kept pages.
+    */
+   public static PageIterator pages(InputStream input, SimpleLog log, PostFilter postFilter,
+                                    XMLFilter... prefilters) {
+      return new PageIterator(input, log, factoryFor(postFilter, prefilters));
+   }
+
+   private static ParallelMediaWikiLoader.FilterFactory factoryFor(final PostFilter postFilter,
+                                                                   final XMLFilter... prefilters) {
+      if (postFilter == null) {
+         throw new IllegalArgumentException("PostFilter may not be null.");
+      }
+      return new ParallelMediaWikiLoader.FilterFactory() {
+         public XMLFilter[] createPrefilters() {
+            return prefilters;
+         }
+
+         public PostFilter createPostFilter() {
+            return postFilter;
+         }
+      };
+   }
+}
@@ -2,14 +2,29 @@ package edu.gvsu.kurmasz.zawilinski;
 
 import edu.gvsu.kurmasz.warszawa.io.OutputHelper;
 import edu.gvsu.kurmasz.zawilinski.MediaWikiLoader.XMLConfigurationException;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.ObjectFactory;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
 
 import javax.xml.bind.*;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * Writes an XML object tree as an XML file.
  *
+ * <p>The {@code write} methods marshal an entire tree at once.  The {@code streamTo} methods instead return a
+ * {@link PageHandler} that writes the document incrementally:  The root element and {@code <siteinfo>} are written
+ * when the document begins, each page is written as soon as it is handed to the handler, and the root element
+ * is closed when the document ends.  (Use it with {@link StreamingMediaWikiLoader}.)  Both modes produce the same
+ * bytes for the same document.</p>
+ *
  * @author Zachary Kurmas
  */
 // (C) 2010 Zachary Kurmas
@@ -18,20 +33,19 @@ public class WiktionaryWriter {
 
    protected Marshaller marshaller;
 
+   // true if setProperty has been called (in which case the marshaller can't be safely returned to the pool)
+   private boolean customized = false;
+
    /**
-    * Constructor
+    * Constructor.  The writer borrows a {@code Marshaller} from the {@link JAXBPool}.  Call {@link #close()} to
+    * return it when the writer is no longer needed.
     *
     * @throws XMLConfigurationException if there are any problems with configuring the XML parsing
     *                                   classes
     */
    public WiktionaryWriter() {
-      //
-      // Setup JAXB objects
-      //
+      marshaller = JAXBPool.borrowMarshaller();
       try {
-         JAXBContext jaxbContext = JAXBContext.newInstance(MediaWikiLoader.CONTEXT_PATH);
-         marshaller = jaxbContext.createMarshaller();
-
          // make pretty
          marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT,
                Boolean.TRUE);
@@ -42,6 +56,17 @@ public class WiktionaryWriter {
       }
    } // end constructor
 
+   /**
+    * Return this writer's {@code Marshaller} to the {@link JAXBPool}.  (If {@link #setProperty(String, Object)} has
+    * been called, the {@code Marshaller} is simply discarded.)  The writer may not be used after it is closed.
+    */
+   public void close() {
+      if (marshaller != null && !customized) {
+         JAXBPool.returnMarshaller(marshaller);
+      }
+      marshaller = null;
+   }
+
 
    /**
     * Specify whether the resulting XML file should be formatted nicely (with
@@ -68,6 +93,7 @@ public class WiktionaryWriter {
     * @throws PropertyException when there is an error processing the given property.
     */
    public void setProperty(String name, Object value) throws PropertyException {
+      customized = true;
       marshaller.setProperty(name, value);
    }
 
@@ -96,4 +122,232 @@ public class WiktionaryWriter {
       // TODO: Double check that we want an output Stream and not a Writer
       write(root, OutputHelper.getOutputStream(file, OutputHelper.DEFAULT_OUTPUT_STREAM_MAP));
    } // end write
+
+   /**
+    * Return a {@link PageHandler} that writes the document to {@code output} one page at a time.
+    * The handler flushes, but does not close, {@code output} when the document ends.
+    *
+    * @param output where to write output
+    * @return a {@code PageHandler} that writes each page it receives to {@code output}
+    */
+   public PageHandler streamTo(OutputStream output) {
+      return new PageStreamWriter(output, true, false);
+   }
+
+   /**
+    * Return a {@link PageHandler} that writes the document to the specified file one page at a time.
+    * The handler closes the file when the document ends, or when a page can't be written.  If the load fails for
+    * some other reason, call the handler's {@code close} method to release the file.  (The handler never closes
+    * STDOUT.)
+    *
+    * @param file file to write to (or "-" for STDOUT)
+    * @return a {@code PageHandler} that writes each page it receives to {@code file}
+    * @throws FileNotFoundException if {@code file} can't be written
+    */
+   public FilePageHandler streamTo(String file) throws FileNotFoundException {
+      OutputStream raw = OutputHelper.getOutputStream(file, OutputHelper.DEFAULT_OUTPUT_STREAM_MAP);
+      return streamTo(new BufferedOutputStream(raw), raw != System.out && raw != System.err);
+   }
+
+   // Return a handler that closes output when the document ends (if closeOutput is true)
+   // package scope for testing
+   FilePageHandler streamTo(OutputStream output, boolean closeOutput) {
+      return new PageStreamWriter(output, true, closeOutput);
+   }
+
+   /**
+    * Return a {@link PageHandler} that continues a document whose header (and, perhaps, some pages) an earlier
+    * handler wrote to the same output.  The handler writes each page it receives and the footer, but not the
+    * header.  The handler flushes, but does not close, {@code output} when the document ends.
+    *
+    * @param output where to write output (positioned just after the last page already written)
+    * @return a {@code PageHandler} that writes each page it receives to {@code output}
+    */
+   public PageHandler appendTo(OutputStream output) {
+      return new PageStreamWriter(output, false, false);
+   }
+
+   /**
+    * A {@link PageHandler} that writes to a file it opened.  The file is closed when the document ends;
+    * {@link #close()} closes it early (e.g., when the load fails before the document ends).
+    */
+   public interface FilePageHandler extends PageHandler, Closeable {
+   }
+
+   /**
+    * Writes a document one page at a time.
+    *
+    * <p>The marshaller can only produce complete documents.  (In fragment mode, it re-declares the MediaWiki
+    * namespace on every page and loses the indentation.)  So, this class marshals each page inside an otherwise
+    * empty copy of the root, then writes only the bytes between the copy's start and end tags.  The
+    * boundaries are found once, in {@link #beginDocument(MediaWikiType)}, by marshalling the root around an empty
+    * placeholder {@code <page/>}.  The boundaries are byte offsets in the marshaller's encoding (which
+    * {@link #setProperty(String, Object)} may change).</p>
+    */
+   private class PageStreamWriter implements FilePageHandler {
+
+      private final String PLACEHOLDER = "<page/>";
+
+      private OutputStream output;
+      // false if an earlier handler wrote the header
+      private boolean writeHeader;
+      // true if this handler opened output (and, therefore, must close it)
+      private boolean closeOutput;
+      private ObjectFactory factory = new ObjectFactory();
+
+      // An empty copy of the root (same attributes, no siteinfo) used to marshal each page
+      private MediaWikiType pageShell;
+      // Reused buffer that holds the most recently marshalled page
+      private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+      // Number of bytes that precede the page inside the marshalled pageShell.
+      private int pagePrefixLength;
+      // The bytes that close the root element.
+      private byte[] footer;
+
+      private PageStreamWriter(OutputStream output, boolean writeHeader, boolean closeOutput) {
+         this.output = output;
+         this.writeHeader = writeHeader;
+         this.closeOutput = closeOutput;
+      }
+
+      // The charset the marshaller writes
+      private Charset encoding() throws JAXBException {
+         Object name = marshaller.getProperty(Marshaller.JAXB_ENCODING);
+         try {
+            return Charset.forName(name == null ? "UTF-8" : name.toString());
+         } catch (IllegalArgumentException e) {
+            throw new MarshalException("Unsupported encoding " + name, e);
+         }
+      }
+
+      // Return the number of bytes that encode text[0, end) at the beginning of bytes.
+      private int byteOffset(String text, int end, Charset charset, byte[] bytes) throws JAXBException {
+         byte[] prefix = text.substring(0, end).getBytes(charset);
+         for (int i = 0; i < prefix.length; i++) {
+            if (i >= bytes.length || prefix[i] != bytes[i]) {
+               throw new MarshalException("Can't stream output in encoding " + charset.name());
+            }
+         }
+         return prefix.length;
+      }
+
+      // Marshal root around a placeholder page and split the result into the parts before and after the
+      // placeholder.  Leading indentation belongs to the page, so it is not included in the first part.
+      private byte[][] split(MediaWikiType root) throws JAXBException {
+         PageType placeholder = factory.createPageType();
+         root.getPage().add(placeholder);
+         buffer.reset();
+         marshaller.marshal(factory.createMediawiki(root), buffer);
+         root.getPage().clear();
+
+         // Find the placeholder in the decoded text, then find the corresponding byte offsets.  The parts are
+         // copied from the marshalled bytes, not re-encoded; so, they are exactly what the marshaller wrote.
+         Charset charset = encoding();
+         byte[] bytes = buffer.toByteArray();
+         String text = new String(bytes, charset);
+         int mark = text.indexOf(PLACEHOLDER);
+         if (mark < 0) {
+            throw new MarshalException("Can't stream output in encoding " + charset.name());
+         }
+         int before = mark;
+         while (before > 0 && (text.charAt(before - 1) == ' ' || text.charAt(before - 1) == '\t')) {
+            before--;
+         }
+         int after = mark + PLACEHOLDER.length();
+         if (after < text.length() && text.charAt(after) == '\n') {
+            after++;
+         }
+         int beforeBytes = byteOffset(text, before, charset, bytes);
+         int afterBytes = byteOffset(text, after, charset, bytes);
+         return new byte[][]{Arrays.copyOfRange(bytes, 0, beforeBytes),
+               Arrays.copyOfRange(bytes, afterBytes, bytes.length)};
+      }
+
+      private MediaWikiType copyRoot(MediaWikiType root) {
+         MediaWikiType copy = factory.createMediaWikiType();
+         copy.setVersion(root.getVersion());
+         copy.setLang(root.getLang());
+         return copy;
+      }
+
+      private void write(byte[] data, int offset, int length) throws JAXBException {
+         try {
+            output.write(data, offset, length);
+         } catch (IOException e) {
+            throw new MarshalException(e);
+         }
+      }
+
+      public void close() throws IOException {
+         if (closeOutput) {
+            closeOutput = false;
+            output.close();
+         }
+      }
+
+      // Close the output (if this handler owns it) after a failure.  The original exception is the one reported.
+      private void closeQuietly() {
+         try {
+            close();
+         } catch (IOException e) {
+            // The failure that led here is more informative.
+         }
+      }
+
+      public void beginDocument(MediaWikiType root) throws JAXBException {
+         boolean done = false;
+         try {
+            begin(root);
+            done = true;
+         } finally {
+            if (!done) {
+               closeQuietly();
+            }
+         }
+      }
+
+      private void begin(MediaWikiType root) throws JAXBException {
+         MediaWikiType header = copyRoot(root);
+         header.setSiteinfo(root.getSiteinfo());
+         byte[][] parts = split(header);
+         footer = parts[1];
+
+         pageShell = copyRoot(root);
+         pagePrefixLength = split(pageShell)[0].length;
+
+         if (writeHeader) {
+            write(parts[0], 0, parts[0].length);
+         }
+      }
+
+      public void handlePage(PageType page) throws JAXBException {
+         boolean done = false;
+         pageShell.getPage().add(page);
+         buffer.reset();
+         try {
+            marshaller.marshal(factory.createMediawiki(pageShell), buffer);
+            byte[] bytes = buffer.toByteArray();
+            write(bytes, pagePrefixLength, bytes.length - pagePrefixLength - footer.length);
+            done = true;
+         } finally {
+            pageShell.getPage().clear();
+            if (!done) {
+               closeQuietly();
+            }
+         }
+      }
+
+      public void endDocument(MediaWikiType root) throws JAXBException {
+         try {
+            write(footer, 0, footer.length);
+            output.flush();
+            close();
+         } catch (IOException e) {
+            throw new MarshalException(e);
+         } finally {
+            closeQuietly();
+         }
+      }
+   }
 } // end WiktionaryWriter
@@ -62,6 +62,8 @@ public class Zawilinski {
             FilterWiktionaryByLanguage.main(otherArgs);
         } else if (program.equals("Title") || program.equals(FilterWiktionaryByTitle.class.getSimpleName())) {
             FilterWiktionaryByTitle.main(otherArgs);
+        } else if (program.equals("Index") || program.equals(PageIndex.class.getSimpleName())) {
+            PageIndex.main(otherArgs);
         } else {
             System.err.printf("Program \"%s\" not recognized\n", program);
         }
@@ -165,6 +165,11 @@
  *    <dt><b>Analyze remaining entries</b>:</dt>
  *    <dd>
  *       Zawilinski produces a object tree that can then be examined as desired.
+ *       If even the filtered object tree is too large, use {@link edu.gvsu.kurmasz.zawilinski.StreamingMediaWikiLoader}
+ *       instead:  It hands each page to a {@link edu.gvsu.kurmasz.zawilinski.PageHandler} as soon as the page
+ *       passes the post-filter, then discards it.
+ *       {@link edu.gvsu.kurmasz.zawilinski.ParallelMediaWikiLoader} does the same work on several threads by
+ *       dividing an uncompressed dump into pieces that begin on {@code <page>} boundaries.
  *    </dd>
  * </dl>
  *
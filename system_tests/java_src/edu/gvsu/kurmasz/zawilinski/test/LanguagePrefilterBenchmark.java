@@ -0,0 +1,112 @@
+package edu.gvsu.kurmasz.zawilinski.test;
+
+import edu.gvsu.kurmasz.warszawa.io.InputHelper;
+import edu.gvsu.kurmasz.zawilinski.LanguagePrefilter;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measure the time and memory allocated by {@link LanguagePrefilter} when filtering the {@code <text>} content of
+ * a dump.  The content is loaded into memory first, so that the measurement doesn't include the SAX parser.
+ * The text is fed to the filter in chunks of the given size (8192 characters by default), roughly the way a SAX
+ * parser would.
+ */
+public class LanguagePrefilterBenchmark {
+
+   // Collects the content of every <text> element.
+   private static class TextCollector extends DefaultHandler {
+      private List<char[]> texts = new ArrayList<char[]>();
+      private StringBuilder current = null;
+
+      @Override
+      public void startElement(String uri, String localName, String qName, Attributes attributes) {
+         if (qName.equals("text")) {
+            current = new StringBuilder();
+         }
+      }
+
+      @Override
+      public void characters(char[] ch, int start, int length) {
+         if (current != null) {
+            current.append(ch, start, length);
+         }
+      }
+
+      @Override
+      public void endElement(String uri, String localName, String qName) {
+         if (qName.equals("text")) {
+            texts.add(current.toString().toCharArray());
+            current = null;
+         }
+      }
+   }
+
+   private static long allocatedBytes() {
+      return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(
+            Thread.currentThread().getId());
+   }
+
+   // Feed each text through the filter in chunks.  Return the number of chunks processed.
+   private static long run(LanguagePrefilter filter, List<char[]> texts, int chunkSize) throws Exception {
+      Attributes empty = new AttributesImpl();
+      long chunks = 0;
+      for (char[] text : texts) {
+         filter.startElement("", "text", "text", empty);
+         for (int start = 0; start < text.length; start += chunkSize) {
+            filter.characters(text, start, Math.min(chunkSize, text.length - start));
+            chunks++;
+         }
+         filter.endElement("", "text", "text");
+      }
+      return chunks;
+   }
+
+   public static void main(String[] args) throws Exception {
+      if (args.length < 2) {
+         System.err.println("Usage:  LanguagePrefilterBenchmark file language [iterations] [chunkSize]");
+         System.exit(1);
+      }
+      int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+      int chunkSize = args.length > 3 ? Integer.parseInt(args[3]) : 8192;
+
+      TextCollector collector = new TextCollector();
+      InputStream input = InputHelper.openMappedAndFilteredInputStreamOrQuit(args[0]);
+      SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+      parser.parse(input, collector);
+      long totalChars = 0;
+      for (char[] text : collector.texts) {
+         totalChars += text.length;
+      }
+      System.out.printf("%d texts, %d characters\n", collector.texts.size(), totalChars);
+
+      LanguagePrefilter filter = new LanguagePrefilter(args[1]);
+      filter.setContentHandler(new DefaultHandler());
+
+      // warm up
+      for (int i = 0; i < 3; i++) {
+         run(filter, collector.texts, chunkSize);
+      }
+
+      long chunks = 0;
+      long bytesBefore = allocatedBytes();
+      long timeBefore = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+         chunks += run(filter, collector.texts, chunkSize);
+      }
+      long nanos = System.nanoTime() - timeBefore;
+      long bytes = allocatedBytes() - bytesBefore;
+
+      System.out.printf("%d iterations, %d chunks\n", iterations, chunks);
+      System.out.printf("%.1f MB/s\n", totalChars * (double) iterations / (nanos / 1e9) / (1 << 20));
+      System.out.printf("%.2f bytes allocated per chunk\n", bytes / (double) chunks);
+      System.out.printf("%.2f bytes allocated per <text>\n", bytes / (double) (iterations * collector.texts.size()));
+   }
+}
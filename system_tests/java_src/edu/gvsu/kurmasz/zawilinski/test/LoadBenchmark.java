@@ -0,0 +1,165 @@
+package edu.gvsu.kurmasz.zawilinski.test;
+
+import edu.gvsu.kurmasz.warszawa.io.InputHelper;
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.DeltaText;
+import edu.gvsu.kurmasz.zawilinski.FieldProjectionPrefilter;
+import edu.gvsu.kurmasz.zawilinski.MappedDump;
+import edu.gvsu.kurmasz.zawilinski.MediaWikiLoader;
+import edu.gvsu.kurmasz.zawilinski.JAXBPool;
+import edu.gvsu.kurmasz.zawilinski.PostFilter;
+import edu.gvsu.kurmasz.zawilinski.PostFilteredMediaWikiLoader;
+import edu.gvsu.kurmasz.zawilinski.PreFilteredMediaWikiLoader;
+import edu.gvsu.kurmasz.zawilinski.StoredTextAdapter;
+import edu.gvsu.kurmasz.zawilinski.TextArena;
+import edu.gvsu.kurmasz.zawilinski.Util;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+
+import org.xml.sax.InputSource;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Unmarshaller;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measure the time, allocation, and retained heap of unmarshalling an entire dump with {@link MediaWikiLoader}.
+ * The dump is read into memory first, so that the measurement doesn't include reading (or decompressing) the file.
+ * The retained heap is the growth in the used heap (after garbage collection) for each additional loaded document
+ * kept reachable.  (It is measured over several documents because a pooled {@code Unmarshaller} may itself still
+ * refer to the most recently loaded document.)
+ *
+ * <p>If a comma-separated list of paths is given, those elements are removed by a {@link FieldProjectionPrefilter}
+ * before they reach the unmarshaller.  If the last argument is {@code arena}, each document's text is kept in a
+ * {@link TextArena}; the arena's (off-heap) size is reported separately.  If the last argument is {@code mapped},
+ * the (uncompressed) file is loaded from a {@link MappedDump}, and each revision's text is left in the file.  If the
+ * last argument is {@code delta}, each revision's text is stored as a {@link DeltaText} where possible.</p>
+ */
+public class LoadBenchmark {
+
+   private static long allocatedBytes() {
+      return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(
+            Thread.currentThread().getId());
+   }
+
+   private static long usedHeap() {
+      Runtime runtime = Runtime.getRuntime();
+      for (int i = 0; i < 4; i++) {
+         System.gc();
+      }
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+
+   // The arena used by the most recent load (if any)
+   private static TextArena arena = null;
+
+   // The dump used in "mapped" mode (if any)
+   private static MappedDump dump = null;
+
+   // true in "delta" mode
+   private static boolean useDeltas = false;
+
+   private static MediaWikiType load(byte[] data, Log log, List<String> drop, boolean useArena) throws Exception {
+      JAXBElement<MediaWikiType> root;
+      if (useDeltas) {
+         FieldProjectionPrefilter[] filters = drop == null ? new FieldProjectionPrefilter[0]
+               : new FieldProjectionPrefilter[]{new FieldProjectionPrefilter(null, drop)};
+         root = PostFilteredMediaWikiLoader.loadDeltaCompressed(new ByteArrayInputStream(data), log,
+               PostFilter.KEEP_ALL, filters);
+      } else if (dump != null) {
+         FieldProjectionPrefilter[] filters = drop == null ? new FieldProjectionPrefilter[0]
+               : new FieldProjectionPrefilter[]{new FieldProjectionPrefilter(null, drop)};
+         root = PostFilteredMediaWikiLoader.load(dump, log, PostFilter.KEEP_ALL, filters);
+      } else if (useArena) {
+         arena = new TextArena();
+         FieldProjectionPrefilter[] filters = drop == null ? new FieldProjectionPrefilter[0]
+               : new FieldProjectionPrefilter[]{new FieldProjectionPrefilter(null, drop)};
+         Unmarshaller unmarshaller = JAXBPool.borrowUnmarshaller();
+         try {
+            StoredTextAdapter.install(unmarshaller, arena);
+            root = PreFilteredMediaWikiLoader.load(new InputSource(new ByteArrayInputStream(data)), log,
+                  unmarshaller, filters);
+         } finally {
+            JAXBPool.returnUnmarshaller(unmarshaller);
+         }
+      } else if (drop == null) {
+         root = MediaWikiLoader.load(new ByteArrayInputStream(data), log);
+      } else {
+         root = PreFilteredMediaWikiLoader.load(new ByteArrayInputStream(data), log,
+               new FieldProjectionPrefilter(null, drop));
+      }
+      return root.getValue();
+   }
+
+   public static void main(String[] args) throws Exception {
+      if (args.length < 1) {
+         System.err.println("Usage:  LoadBenchmark file [iterations] [dropPaths|-] [arena|mapped|delta]");
+         System.exit(1);
+      }
+      int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+      List<String> drop = args.length > 2 && !args[2].equals("-") ? Arrays.asList(args[2].split(",")) : null;
+      boolean useArena = args.length > 3 && args[3].equals("arena");
+      useDeltas = args.length > 3 && args[3].equals("delta");
+      if (args.length > 3 && args[3].equals("mapped")) {
+         dump = new MappedDump(new File(args[0]));
+      }
+
+      InputStream input = InputHelper.openMappedAndFilteredInputStreamOrQuit(args[0]);
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      byte[] chunk = new byte[1 << 16];
+      int n;
+      while ((n = input.read(chunk)) > 0) {
+         buffer.write(chunk, 0, n);
+      }
+      input.close();
+      byte[] data = buffer.toByteArray();
+      buffer = null;
+
+      Log log = new Log();
+
+      // warm up
+      for (int i = 0; i < 3; i++) {
+         load(data, log, drop, useArena);
+      }
+
+      long bytesBefore = allocatedBytes();
+      long timeBefore = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+         load(data, log, drop, useArena);
+      }
+      long nanos = System.nanoTime() - timeBefore;
+      long bytes = allocatedBytes() - bytesBefore;
+
+      int kept = 4;
+      MediaWikiType[] documents = new MediaWikiType[kept + 1];
+      documents[0] = load(data, log, drop, useArena);
+      long heapBefore = usedHeap();
+      for (int i = 1; i <= kept; i++) {
+         documents[i] = load(data, log, drop, useArena);
+      }
+      long retained = (usedHeap() - heapBefore) / kept;
+      MediaWikiType mw = documents[kept];
+
+      long revisions = 0;
+      for (PageType page : mw.getPage()) {
+         revisions += Util.getRevisions(page).size();
+      }
+
+      System.out.printf("%d bytes, %d pages, %d revisions\n", data.length, mw.getPage().size(), revisions);
+      System.out.printf("%.1f ms per load\n", nanos / 1e6 / iterations);
+      System.out.printf("%.1f MB/s\n", data.length * (double) iterations / (nanos / 1e9) / (1 << 20));
+      System.out.printf("%.1f bytes allocated per revision\n", bytes / (double) (iterations * revisions));
+      System.out.printf("%.1f MB retained per document (%.1f bytes per revision)\n", retained / (double) (1 << 20),
+            retained / (double) revisions);
+      if (useArena) {
+         System.out.printf("%.1f MB stored in text arena (%.1f MB allocated)\n",
+               arena.getBytesStored() / (double) (1 << 20), arena.getBytesAllocated() / (double) (1 << 20));
+      }
+   }
+}
@@ -0,0 +1,87 @@
+package edu.gvsu.kurmasz.zawilinski.test;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.PageFilterListener;
+import edu.gvsu.kurmasz.zawilinski.PostFilter;
+import edu.gvsu.kurmasz.zawilinski.PostFilteredMediaWikiLoader;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Measure how the time to unmarshal a dump grows with the number of revisions (or pages) removed by
+ * {@link PageFilterListener}.  Each synthetic dump keeps every other revision (or page); so, each removed item follows
+ * a growing list of kept items.  If removal is constant time, the time per item stays the same as the dump grows.
+ */
+public class RemovalBenchmark {
+
+   private static final String HEADER = "<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\" "
+         + "version=\"0.10\" xml:lang=\"en\">\n";
+
+   private static String revision(int id) {
+      return "<revision><id>" + id + "</id><timestamp>2010-02-12T16:25:13Z</timestamp>"
+            + "<contributor><username>u</username><id>1</id></contributor><model>wikitext</model>"
+            + "<format>text/x-wiki</format><text xml:space=\"preserve\">r" + id + "</text><sha1>x</sha1>"
+            + "</revision>\n";
+   }
+
+   // One page with n revisions
+   private static byte[] longPage(int n) throws Exception {
+      StringBuilder sb = new StringBuilder(HEADER).append("<page><title>Long</title><ns>0</ns><id>1</id>\n");
+      for (int i = 1; i <= n; i++) {
+         sb.append(revision(i));
+      }
+      return sb.append("</page>\n</mediawiki>\n").toString().getBytes("UTF-8");
+   }
+
+   // n pages with one revision each
+   private static byte[] manyPages(int n) throws Exception {
+      StringBuilder sb = new StringBuilder(HEADER);
+      for (int i = 1; i <= n; i++) {
+         sb.append("<page><title>P").append(i).append("</title><ns>0</ns><id>").append(i).append("</id>\n");
+         sb.append(revision(i)).append("</page>\n");
+      }
+      return sb.append("</mediawiki>\n").toString().getBytes("UTF-8");
+   }
+
+   // Keep the pages and revisions with odd ids.
+   private static final PostFilter KEEP_ODD = new PostFilter() {
+      public boolean keepPage(PageType page) {
+         return page.getId() % 2 == 1;
+      }
+
+      public boolean keepRevision(RevisionType revision, PageType page) {
+         return revision.getId() % 2 == 1;
+      }
+   };
+
+   // Return the shortest of three times (in ms) to load data.
+   private static double time(byte[] data) throws Exception {
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < 3; i++) {
+         long start = System.nanoTime();
+         PostFilteredMediaWikiLoader.load(new ByteArrayInputStream(data), new Log(), KEEP_ODD);
+         best = Math.min(best, System.nanoTime() - start);
+      }
+      return best / 1e6;
+   }
+
+   public static void main(String[] args) throws Exception {
+      int max = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+
+      // warm up
+      for (int i = 0; i < 3; i++) {
+         time(longPage(max / 8));
+         time(manyPages(max / 8));
+      }
+
+      System.out.printf("%8s %12s %10s %12s %10s\n", "items", "1 page (ms)", "us/rev", "pages (ms)", "us/page");
+      for (int n = max / 8; n <= max; n *= 2) {
+         double revisions = time(longPage(n));
+         double pages = time(manyPages(n));
+         System.out.printf("%8d %12.1f %10.2f %12.1f %10.2f\n", n, revisions, revisions * 1000 / n, pages,
+               pages * 1000 / n);
+      }
+   }
+}
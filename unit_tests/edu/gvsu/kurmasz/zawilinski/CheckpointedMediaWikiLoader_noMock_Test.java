@@ -0,0 +1,237 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+import org.apache.tools.bzip2.CBZip2OutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.XMLFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class CheckpointedMediaWikiLoader_noMock_Test {
+
+   private static final int PAGES = 30;
+
+   private File input;
+   private File output;
+   private File checkpointFile;
+
+   @Before
+   public void setUp() throws Throwable {
+      output = File.createTempFile("CheckpointTest", ".xml");
+      output.deleteOnExit();
+      checkpointFile = CheckpointedMediaWikiLoader.defaultCheckpointFile(output);
+   }
+
+   @After
+   public void tearDown() throws Throwable {
+      if (input != null) {
+         input.delete();
+      }
+      output.delete();
+      checkpointFile.delete();
+   }
+
+   private static String page(int i) {
+      String text = (i % 3 == 0) ? "==English==\ncat " + i : "==Polish==\nkot " + i + "\n==English==\ncat";
+      return SampleDumps.page("page " + i, i, text);
+   }
+
+   private static String pages(int from, int to) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = from; i < to; i++) {
+         sb.append(page(i));
+      }
+      return sb.toString();
+   }
+
+   private static final String DUMP = SampleDumps.dump(pages(0, PAGES));
+
+   // Filters for Polish, and (optionally) fails when it reaches the page with the given title.
+   private static ParallelMediaWikiLoader.FilterFactory factory(final String failAt) {
+      return new ParallelMediaWikiLoader.FilterFactory() {
+         public XMLFilter[] createPrefilters() {
+            return new XMLFilter[]{new LanguagePrefilter("Polish")};
+         }
+
+         public PostFilter createPostFilter() {
+            final PostFilter filter = new PostFilterByLanguage();
+            return new PostFilter() {
+               public boolean keepPage(PageType page) {
+                  if (page.getTitle().equals(failAt)) {
+                     throw new IllegalStateException("Simulated crash");
+                  }
+                  return filter.keepPage(page);
+               }
+
+               public boolean keepRevision(RevisionType revision, PageType page) {
+                  return filter.keepRevision(revision, page);
+               }
+            };
+         }
+      };
+   }
+
+   private static byte[] expected() throws Throwable {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ParallelMediaWikiLoader.FilterFactory filters = factory(null);
+      StreamingMediaWikiLoader.load(SampleDumps.stream(DUMP), new Log(),
+            filters.createPostFilter(), new WiktionaryWriter().streamTo(out), filters.createPrefilters());
+      return out.toByteArray();
+   }
+
+   private static byte[] readFile(File file) throws IOException {
+      byte[] answer = new byte[(int) file.length()];
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+         raf.readFully(answer);
+      } finally {
+         raf.close();
+      }
+      return answer;
+   }
+
+   private void load(String failAt, long interval) throws Throwable {
+      CheckpointedMediaWikiLoader.load(input, new Log(), 2, factory(failAt), new WiktionaryWriter(), output,
+            checkpointFile, interval);
+   }
+
+   // Load the input, failing at "page 17"; then resume and verify that the output is complete.
+   private void verifyResume(long interval) throws Throwable {
+      try {
+         load("page 17", interval);
+         fail("Expected the simulated crash");
+      } catch (IllegalStateException e) {
+         // expected
+      }
+      CheckpointedMediaWikiLoader.Checkpoint checkpoint = CheckpointedMediaWikiLoader.Checkpoint.read(checkpointFile);
+      assertEquals(input.length(), checkpoint.getInputSize());
+      assertTrue(checkpoint.getInputOffset() > 0);
+      assertTrue(checkpoint.getPageCount() > 0);
+      assertTrue(checkpoint.getPageCount() <= 17);
+      assertTrue(checkpoint.getKeptPageCount() < checkpoint.getPageCount());
+      assertTrue(output.length() >= checkpoint.getOutputPosition());
+
+      load(null, interval);
+      assertArrayEquals(expected(), readFile(output));
+      assertFalse(checkpointFile.exists());
+   }
+
+   private static byte[] compress(String data) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.write('B');
+      out.write('Z');
+      CBZip2OutputStream bz = new CBZip2OutputStream(out, 1);
+      bz.write(data.getBytes("UTF-8"));
+      bz.close();
+      return out.toByteArray();
+   }
+
+   // Write the parts as separate bzip2 streams.
+   private static File writeBzip2(String... parts) throws IOException {
+      File file = File.createTempFile("CheckpointTest", ".xml.bz2");
+      file.deleteOnExit();
+      FileOutputStream out = new FileOutputStream(file);
+      for (String part : parts) {
+         out.write(compress(part));
+      }
+      out.close();
+      return file;
+   }
+
+   // Divide the pages as a multistream dump is divided:  The header, groups of pages, then the footer.
+   private static File writeMultistream() throws IOException {
+      return writeBzip2(SampleDumps.HEADER, pages(0, 5), pages(5, 10), pages(10, 15), pages(15, 20), pages(20, 25),
+            pages(25, PAGES), SampleDumps.FOOTER);
+   }
+
+   @Test
+   public void piecesFormOneDocument() throws Throwable {
+      input = MappedDump_noMock_Test.writeTempFile(DUMP);
+      load(null, 100);
+      assertArrayEquals(expected(), readFile(output));
+      assertFalse(checkpointFile.exists());
+   }
+
+   @Test
+   public void resumesUncompressedDump() throws Throwable {
+      input = MappedDump_noMock_Test.writeTempFile(DUMP);
+      verifyResume(500);
+   }
+
+   @Test
+   public void resumesMultistreamDump() throws Throwable {
+      input = writeMultistream();
+      verifyResume(1);
+      // Checkpoints are at stream boundaries.
+      input.delete();
+      input = writeMultistream();
+      try {
+         load("page 17", 1);
+         fail("Expected the simulated crash");
+      } catch (IllegalStateException e) {
+         // expected
+      }
+      long offset = CheckpointedMediaWikiLoader.Checkpoint.read(checkpointFile).getInputOffset();
+      RandomAccessFile raf = new RandomAccessFile(input, "r");
+      try {
+         assertEquals(offset, CheckpointedMediaWikiLoader.findStream(raf.getChannel(), offset, raf.length()));
+      } finally {
+         raf.close();
+      }
+   }
+
+   @Test
+   public void loadsSingleStreamDump() throws Throwable {
+      input = writeBzip2(DUMP);
+      load(null, 1);
+      assertArrayEquals(expected(), readFile(output));
+      assertFalse(checkpointFile.exists());
+   }
+
+   @Test
+   public void loadsStreamsThatSplitPages() throws Throwable {
+      int middle = DUMP.indexOf("page 12");
+      input = writeBzip2(DUMP.substring(0, 100), DUMP.substring(100, middle), DUMP.substring(middle));
+      load(null, 1);
+      assertArrayEquals(expected(), readFile(output));
+      assertFalse(checkpointFile.exists());
+   }
+
+   @Test
+   public void findsStreamSignatures() throws Throwable {
+      input = writeMultistream();
+      byte[] first = compress(SampleDumps.HEADER);
+      FileInputStream in = new FileInputStream(input);
+      try {
+         assertEquals(0, CheckpointedMediaWikiLoader.findStream(in.getChannel(), 0, input.length()));
+         assertEquals(first.length, CheckpointedMediaWikiLoader.findStream(in.getChannel(), 1, input.length()));
+         assertEquals(-1, CheckpointedMediaWikiLoader.findStream(in.getChannel(), 1, first.length + 9));
+      } finally {
+         in.close();
+      }
+   }
+
+   @Test(expected = IOException.class)
+   public void checkpointMustMatchInput() throws Throwable {
+      input = MappedDump_noMock_Test.writeTempFile(DUMP);
+      try {
+         load("page 17", 500);
+      } catch (IllegalStateException e) {
+         // expected
+      }
+      input.delete();
+      input = MappedDump_noMock_Test.writeTempFile(DUMP + " ");
+      load(null, 500);
+   }
+}
@@ -0,0 +1,78 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class CompressedBitmapTest {
+
+   private static CompressedBitmap copy(CompressedBitmap bitmap) throws Throwable {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      bitmap.write(out);
+      out.close();
+      return CompressedBitmap.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+   }
+
+   private static void verify(TreeSet<Integer> expected, CompressedBitmap bitmap, int limit) {
+      assertEquals(expected.size(), bitmap.cardinality());
+      for (int i = 0; i < limit; i++) {
+         assertEquals("" + i, expected.contains(i), bitmap.contains(i));
+      }
+   }
+
+   @Test
+   public void emptySetContainsNothing() throws Throwable {
+      CompressedBitmap bitmap = new CompressedBitmap();
+      assertEquals(0, bitmap.cardinality());
+      assertFalse(bitmap.contains(0));
+      assertFalse(bitmap.contains(-1));
+      assertEquals(0, copy(bitmap).cardinality());
+   }
+
+   @Test
+   public void containsValuesAddedInAnyOrder() throws Throwable {
+      Random random = new Random(24);
+      TreeSet<Integer> expected = new TreeSet<Integer>();
+      CompressedBitmap bitmap = new CompressedBitmap();
+      for (int i = 0; i < 20000; i++) {
+         int value = random.nextInt(400000);
+         expected.add(value);
+         bitmap.add(value);
+      }
+      bitmap.add(Integer.MAX_VALUE);
+      expected.add(Integer.MAX_VALUE);
+      verify(expected, bitmap, 400000);
+      verify(expected, copy(bitmap), 400000);
+      assertTrue(copy(bitmap).contains(Integer.MAX_VALUE));
+   }
+
+   @Test
+   public void denseBlocksBecomeBitmaps() throws Throwable {
+      TreeSet<Integer> expected = new TreeSet<Integer>();
+      CompressedBitmap bitmap = new CompressedBitmap();
+      // Every other value in the second block, added twice (more than MAX_ARRAY values)
+      for (int round = 0; round < 2; round++) {
+         for (int i = 65536; i < 2 * 65536; i += 2) {
+            expected.add(i);
+            bitmap.add(i);
+         }
+      }
+      bitmap.add(3);
+      expected.add(3);
+      verify(expected, bitmap, 3 * 65536);
+      verify(expected, copy(bitmap), 3 * 65536);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void negativeValuesAreRejected() throws Throwable {
+      new CompressedBitmap().add(-5);
+   }
+}
@@ -0,0 +1,112 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class DeltaText_noMock_Test {
+
+   private static final String BASE = "==English==\n===Noun===\n# A small green vegetable.\n[[pl:ogórek]]";
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   @Test
+   public void smallChangesAreStoredAsDeltas() throws Throwable {
+      String text = BASE.replace("small", "tiny");
+      StoredText stored = DeltaText.encode(StoredText.of(BASE), text, DeltaText.DEFAULT_MAX_CHAIN);
+      assertTrue(stored instanceof DeltaText);
+      assertEquals(4, ((DeltaText) stored).getStoredLength());
+      assertEquals(text, stored.toString());
+      assertEquals(text.length(), stored.length());
+   }
+
+   @Test
+   public void insertionsAndDeletionsAreRebuilt() throws Throwable {
+      StoredText base = StoredText.of(BASE);
+      String[] texts = {BASE + "\n[[fr:cornichon]]", "Intro\n" + BASE, BASE.substring(12), BASE.substring(0, 40),
+            BASE, BASE + BASE};
+      for (String text : texts) {
+         StoredText stored = DeltaText.encode(base, text, DeltaText.DEFAULT_MAX_CHAIN);
+         assertTrue(text, stored instanceof DeltaText);
+         assertEquals(text, stored.toString());
+         assertEquals(text.length(), stored.length());
+      }
+   }
+
+   @Test
+   public void separateChangesCopyTheLinesBetweenThem() throws Throwable {
+      StringBuilder base = new StringBuilder();
+      for (int i = 0; i < 50; i++) {
+         base.append("# Definition number ").append(i).append(" of the word.\n");
+      }
+      String text = "New first line\n" + base.toString().replace("number 17 ", "number seventeen ")
+            .replace("# Definition number 30 of the word.\n", "") + "New last line\n";
+      StoredText stored = DeltaText.encode(StoredText.of(base.toString()), text, DeltaText.DEFAULT_MAX_CHAIN);
+      assertTrue(stored instanceof DeltaText);
+      assertTrue(((DeltaText) stored).getStoredLength() < 100);
+      assertEquals(text, stored.toString());
+      assertEquals(text.length(), stored.length());
+   }
+
+   @Test
+   public void unrelatedTextsAreStoredInFull() throws Throwable {
+      StoredText stored = DeltaText.encode(StoredText.of(BASE), "Something completely different",
+            DeltaText.DEFAULT_MAX_CHAIN);
+      assertFalse(stored instanceof DeltaText);
+      assertEquals("Something completely different", stored.toString());
+   }
+
+   @Test
+   public void missingTextsAreNotDeltas() throws Throwable {
+      assertNull(DeltaText.encode(StoredText.of(BASE), null, DeltaText.DEFAULT_MAX_CHAIN));
+      assertSame(StoredText.EMPTY, DeltaText.encode(StoredText.of(BASE), "", DeltaText.DEFAULT_MAX_CHAIN));
+      assertFalse(DeltaText.encode(null, BASE, DeltaText.DEFAULT_MAX_CHAIN) instanceof DeltaText);
+   }
+
+   @Test
+   public void chainsAreLimited() throws Throwable {
+      StoredText previous = StoredText.of(BASE);
+      String text = BASE;
+      for (int i = 0; i < 10; i++) {
+         text = text + i;
+         StoredText stored = DeltaText.encode(previous, text, 3);
+         assertEquals(i % 4 != 3, stored instanceof DeltaText);
+         assertEquals(text, stored.toString());
+         previous = stored;
+      }
+   }
+
+   @Test
+   public void loadedRevisionsAreDeltaCompressed() throws Throwable {
+      MediaWikiType root = PostFilteredMediaWikiLoader.loadDeltaCompressed(getSample(), new Log(),
+            PostFilter.KEEP_ALL).getValue();
+      // The sample's texts are too short to be worth compressing.
+      SampleContentCheck.verifyMWSampleContent(root);
+
+      String sample = MappedDump_noMock_Test.read(getSample()).replace("Content for", BASE + "\nContent for");
+      root = PostFilteredMediaWikiLoader.loadDeltaCompressed(new ByteArrayInputStream(sample.getBytes("UTF-8")),
+            new Log(), PostFilter.KEEP_ALL).getValue();
+      String[][] expected = {{"Content for rev 1", "Content for rev 2 (pickles)"},
+            {"Content for rev 1 of page 2 (blueberries)", "Content for rev 2 of page 2",
+                  "Content for rev 3 of page 2 (carrots)"}};
+      for (int i = 0; i < expected.length; i++) {
+         PageType page = root.getPage().get(i);
+         assertFalse(Util.getRevisions(page).get(0).getText().getValue() instanceof DeltaText);
+         for (int j = 0; j < expected[i].length; j++) {
+            assertEquals(BASE + "\n" + expected[i][j], Util.getText(page, j));
+            assertEquals(j > 0, Util.getRevisions(page).get(j).getText().getValue() instanceof DeltaText);
+         }
+      }
+   }
+}
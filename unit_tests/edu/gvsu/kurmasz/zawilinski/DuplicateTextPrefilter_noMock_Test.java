@@ -0,0 +1,158 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import javax.xml.bind.Unmarshaller;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DuplicateTextPrefilter_noMock_Test {
+
+   private String getSample() throws Throwable {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return MappedDump_noMock_Test.read(input);
+   }
+
+   // The sample, with page 1's second revision and page 2's third revision reverted to the page's first revision.
+   private InputStream getRevertedSample() throws Throwable {
+      String sample = getSample().replace("Content for rev 2 (pickles)", "Content for rev 1")
+            .replace("Content for rev 3 of page 2 (carrots)", "Content for rev 1 of page 2 (blueberries)");
+      return new ByteArrayInputStream(sample.getBytes("UTF-8"));
+   }
+
+   @Test
+   public void uniqueTextsPassUnchanged() throws Throwable {
+      DuplicateTextPrefilter filter = new DuplicateTextPrefilter();
+      MediaWikiType root = PostFilteredMediaWikiLoader.load(this.getClass().getResourceAsStream(
+            "/mw_sample_current.xml"), new Log(), PostFilter.KEEP_ALL, filter).getValue();
+      SampleContentCheck.verifyMWSampleContent(root);
+      assertEquals(0, filter.getDuplicateCount());
+   }
+
+   @Test
+   public void duplicateTextsAreShared() throws Throwable {
+      DuplicateTextPrefilter filter = new DuplicateTextPrefilter();
+      MediaWikiType root = PostFilteredMediaWikiLoader.load(getRevertedSample(), new Log(), PostFilter.KEEP_ALL,
+            filter).getValue();
+      assertEquals(2, filter.getDuplicateCount());
+
+      List<RevisionType> page1 = Util.getRevisions(root.getPage().get(0));
+      assertEquals("Content for rev 1", Util.getText(page1.get(1)));
+      assertSame(page1.get(0).getText().getValue(), page1.get(1).getText().getValue());
+
+      List<RevisionType> page2 = Util.getRevisions(root.getPage().get(1));
+      assertEquals("Content for rev 2 of page 2", Util.getText(page2.get(1)));
+      assertEquals("Content for rev 1 of page 2 (blueberries)", Util.getText(page2.get(2)));
+      assertSame(page2.get(0).getText().getValue(), page2.get(2).getText().getValue());
+   }
+
+   // The Thue-Morse sequence of the given length, written with the given two characters.
+   private static String thueMorse(int length, char zero, char one) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < length; i++) {
+         sb.append(Integer.bitCount(i) % 2 == 0 ? zero : one);
+      }
+      return sb.toString();
+   }
+
+   // These two texts have the same length and the same polynomial hashes modulo 2^64 (for any odd multiplier).
+   @Test
+   public void differentTextsWithCollidingHashesAreNotShared() throws Throwable {
+      String ab = thueMorse(2048, 'a', 'b');
+      String ba = thueMorse(2048, 'b', 'a');
+      String sample = getSample().replace("Content for rev 2 (pickles)", ba).replace("Content for rev 1", ab);
+      DuplicateTextPrefilter filter = new DuplicateTextPrefilter();
+      MediaWikiType root = PostFilteredMediaWikiLoader.load(new ByteArrayInputStream(sample.getBytes("UTF-8")),
+            new Log(), PostFilter.KEEP_ALL, filter).getValue();
+      assertEquals(0, filter.getDuplicateCount());
+      assertEquals(ab, Util.getText(root.getPage().get(0), 0));
+      assertEquals(ba, Util.getText(root.getPage().get(0), 1));
+   }
+
+   // Texts that look like references (or like escaped references) are not mistaken for them.
+   @Test
+   public void textsThatLookLikeReferencesAreKept() throws Throwable {
+      String sample = getSample().replace("Content for rev 2 (pickles)", "\uE0010")
+            .replace("Content for rev 2 of page 2", "\uE001\uE0010")
+            .replace("Content for rev 3 of page 2 (carrots)", "\uE001");
+      for (TextStorage storage : new TextStorage[]{null, new TextArena(1024)}) {
+         DuplicateTextPrefilter filter = new DuplicateTextPrefilter();
+         InputStream input = new ByteArrayInputStream(sample.getBytes("UTF-8"));
+         MediaWikiType root = (storage == null)
+               ? PostFilteredMediaWikiLoader.load(input, new Log(), PostFilter.KEEP_ALL, filter).getValue()
+               : PostFilteredMediaWikiLoader.load(input, new Log(), storage, PostFilter.KEEP_ALL, filter).getValue();
+         assertEquals(0, filter.getDuplicateCount());
+         assertEquals("Content for rev 1", Util.getText(root.getPage().get(0), 0));
+         assertEquals("\uE0010", Util.getText(root.getPage().get(0), 1));
+         assertEquals("\uE001\uE0010", Util.getText(root.getPage().get(1), 1));
+         assertEquals("\uE001", Util.getText(root.getPage().get(1), 2));
+      }
+   }
+
+   @Test
+   public void textsAreNotSharedAcrossPages() throws Throwable {
+      String sample = getSample().replace("Content for rev 2 of page 2", "Content for rev 1");
+      DuplicateTextPrefilter filter = new DuplicateTextPrefilter();
+      MediaWikiType root = PostFilteredMediaWikiLoader.load(new ByteArrayInputStream(sample.getBytes("UTF-8")),
+            new Log(), PostFilter.KEEP_ALL, filter).getValue();
+      assertEquals(0, filter.getDuplicateCount());
+      assertEquals("Content for rev 1", Util.getText(root.getPage().get(1), 1));
+   }
+
+   @Test
+   public void referencesToDiscardedRevisionsAreResolved() throws Throwable {
+      PostFilter dropFirst = new PostFilter() {
+         public boolean keepPage(PageType page) {
+            return true;
+         }
+
+         public boolean keepRevision(RevisionType revision, PageType page) {
+            return !revision.getId().equals(3L);
+         }
+      };
+      MediaWikiType root = PostFilteredMediaWikiLoader.load(getRevertedSample(), new Log(), dropFirst,
+            new DuplicateTextPrefilter()).getValue();
+      List<RevisionType> page1 = Util.getRevisions(root.getPage().get(0));
+      assertEquals(1, page1.size());
+      assertEquals("Content for rev 1", Util.getText(page1.get(0)));
+   }
+
+   @Test
+   public void listenerCountsDuplicates() throws Throwable {
+      Unmarshaller unmarshaller = MediaWikiLoader.createUnmarshaller();
+      PageFilterListener listener = new PageFilterListener(PostFilter.KEEP_ALL, new Log());
+      listener.setResolveDuplicates(true);
+      unmarshaller.setListener(listener);
+      PreFilteredMediaWikiLoader.load(new InputSource(getRevertedSample()), new Log(), unmarshaller,
+            new DuplicateTextPrefilter());
+      assertEquals(2, listener.getDuplicateRevisionCount());
+      assertEquals(2 * ("Content for rev 1".length() + "Content for rev 1 of page 2 (blueberries)".length()),
+            listener.getDuplicateBytesSaved());
+   }
+
+   @Test
+   public void textsLongerThanTheBufferAreHandled() throws Throwable {
+      StringBuilder big = new StringBuilder();
+      for (int i = 0; i < 2000; i++) {
+         big.append("line ").append(i).append('\n');
+      }
+      String sample = getSample().replace("Content for rev 1<", big + "<")
+            .replace("Content for rev 2 (pickles)", big.toString());
+      DuplicateTextPrefilter filter = new DuplicateTextPrefilter();
+      MediaWikiType root = PostFilteredMediaWikiLoader.load(new ByteArrayInputStream(sample.getBytes("UTF-8")),
+            new Log(), PostFilter.KEEP_ALL, filter).getValue();
+      assertEquals(1, filter.getDuplicateCount());
+      assertEquals(big.toString(), Util.getText(root.getPage().get(0), 0));
+      assertEquals(big.toString(), Util.getText(root.getPage().get(0), 1));
+   }
+}
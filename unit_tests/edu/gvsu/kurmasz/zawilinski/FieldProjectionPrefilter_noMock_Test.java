@@ -0,0 +1,131 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import javax.xml.bind.JAXBElement;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FieldProjectionPrefilter_noMock_Test {
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   private static MediaWikiType load(InputStream input, FieldProjectionPrefilter filter) throws Throwable {
+      JAXBElement<MediaWikiType> observed = PreFilteredMediaWikiLoader.load(new InputSource(input), new Log(),
+            MediaWikiLoader.createUnmarshaller(), filter);
+      return observed.getValue();
+   }
+
+   private MediaWikiType load(List<String> keep, List<String> drop) throws Throwable {
+      return load(getSample(), new FieldProjectionPrefilter(keep, drop));
+   }
+
+   @Test
+   public void noPathsChangeNothing() throws Throwable {
+      FieldProjectionPrefilter filter = new FieldProjectionPrefilter(null, null);
+      SampleContentCheck.verifyMWSampleContent(load(getSample(), filter));
+      assertEquals(0, filter.getElementsDropped());
+   }
+
+   @Test
+   public void unknownPathsChangeNothing() throws Throwable {
+      FieldProjectionPrefilter filter = new FieldProjectionPrefilter(null,
+            Arrays.asList("page/revision/nothing", "nothing/revision"));
+      SampleContentCheck.verifyMWSampleContent(load(getSample(), filter));
+      assertEquals(0, filter.getElementsDropped());
+   }
+
+   @Test
+   public void droppedElementsAreRemoved() throws Throwable {
+      FieldProjectionPrefilter filter = new FieldProjectionPrefilter(null,
+            Arrays.asList("page/revision/contributor", "page/revision/comment"));
+      MediaWikiType root = load(getSample(), filter);
+      // 5 revisions, each with a <contributor> and a <comment>
+      assertEquals(10, filter.getElementsDropped());
+      assertEquals(2, root.getPage().size());
+      for (PageType page : root.getPage()) {
+         for (RevisionType revision : Util.getRevisions(page)) {
+            assertNull(revision.getContributor());
+            assertNull(revision.getComment());
+            assertNotNull(revision.getId());
+            assertNotNull(revision.getTimestamp());
+         }
+      }
+      assertEquals("Content for rev 2 (pickles)", Util.getText(root.getPage().get(0), 1));
+      assertEquals("Content for rev 3 of page 2 (carrots)", Util.getText(root.getPage().get(1), 2));
+      assertEquals("wikitext", Util.getRevisions(root.getPage().get(0)).get(0).getModel());
+      assertNotNull(root.getSiteinfo());
+   }
+
+   @Test
+   public void onlyKeptElementsRemain() throws Throwable {
+      MediaWikiType root = load(Arrays.asList("page/title", "page/revision/text"), null);
+      assertNull(root.getSiteinfo());
+      assertEquals(2, root.getPage().size());
+      PageType page1 = root.getPage().get(0);
+      assertEquals("Sample page 1", page1.getTitle());
+      assertNull(page1.getId());
+      assertNull(page1.getNs());
+      assertNull(page1.getRestrictions());
+      assertEquals(2, page1.getRevisionOrUpload().size());
+      for (RevisionType revision : Util.getRevisions(page1)) {
+         assertNull(revision.getId());
+         assertNull(revision.getTimestamp());
+         assertNull(revision.getContributor());
+         assertNull(revision.getModel());
+         assertNull(revision.getSha1());
+      }
+      assertEquals("Content for rev 1", Util.getText(page1, 0));
+      assertEquals("Content for rev 2 (pickles)", Util.getText(page1, 1));
+      assertEquals(3, root.getPage().get(1).getRevisionOrUpload().size());
+   }
+
+   @Test
+   public void contentOfKeptElementsIsKept() throws Throwable {
+      MediaWikiType root = load(Arrays.asList("siteinfo", "page/revision/contributor"), null);
+      assertEquals("Wiktionary", root.getSiteinfo().getSitename());
+      assertEquals(8, root.getSiteinfo().getNamespaces().getNamespace().size());
+      RevisionType revision = Util.getRevisions(root.getPage().get(1)).get(0);
+      assertEquals("Ivan Štambuk", revision.getContributor().getUsername());
+      assertEquals(42855, revision.getContributor().getId().intValue());
+      assertNull(revision.getText());
+      assertNull(root.getPage().get(1).getTitle());
+   }
+
+   @Test
+   public void droppedPathsTakePrecedence() throws Throwable {
+      MediaWikiType root = load(Arrays.asList("page/title", "page/revision/contributor"),
+            Arrays.asList("page/revision/contributor/id"));
+      RevisionType revision = Util.getRevisions(root.getPage().get(0)).get(1);
+      assertEquals("Zachary Kurmas", revision.getContributor().getUsername());
+      assertNull(revision.getContributor().getId());
+   }
+
+   @Test
+   public void filterCanBeReused() throws Throwable {
+      FieldProjectionPrefilter filter = new FieldProjectionPrefilter(null, Arrays.asList("page/revision/comment"));
+      load(getSample(), filter);
+      MediaWikiType root = load(getSample(), filter);
+      assertEquals(10, filter.getElementsDropped());
+      assertNull(Util.getRevisions(root.getPage().get(0)).get(0).getComment());
+      assertEquals("Content for rev 1", Util.getText(root.getPage().get(0), 0));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void emptyNamesAreRejected() throws Throwable {
+      new FieldProjectionPrefilter(Arrays.asList("page//text"), null);
+   }
+}
@@ -705,7 +705,78 @@ public class HeaderSearchTest {
         assertEquals("Next", -1, result.next);
     }
 
-}
+    /////////////////////////////////////////////////////////////////////////////////////
+    //
+    // allocation-free interface
+    //
+    /////////////////////////////////////////////////////////////////////////////////////
 
+    @Test
+    public void findReturnsIndexAfterHeader() throws Throwable {
+        String s = "word==Polish== More words";
+        assertEquals(14, hs.find(s.toCharArray(), 0, s.length()));
+        assertEquals("Polish", hs.getHeaderContent().toString());
+        assertEquals("==Polish==", new String(hs.getFullHeader(), 0, hs.getFullHeaderLength()));
+    }
 
+    @Test
+    public void findReturnsNegativeIfNoHeader() throws Throwable {
+        String s = "word==Polish";
+        assertEquals(-1, hs.find(s.toCharArray(), 0, s.length()));
+    }
+
+    @Test
+    public void headerContentIsACharSequence() throws Throwable {
+        String s = "==Polish==\n";
+        hs.find(s.toCharArray(), 0, s.length());
+        CharSequence content = hs.getHeaderContent();
+        assertEquals(6, content.length());
+        assertEquals('P', content.charAt(0));
+        assertEquals('h', content.charAt(5));
+        assertEquals("lis", content.subSequence(2, 5).toString());
+        assertTrue(java.util.regex.Pattern.compile("Pol.sh").matcher(content).matches());
+    }
 
+    @Test
+    public void resetAllowsSearchForNextHeader() throws Throwable {
+        char[] s = "==Polish== content ==Spanish== more".toCharArray();
+        int next = hs.find(s, 0, s.length);
+        assertEquals(10, next);
+        hs.reset();
+        assertEquals(30, hs.find(s, next, s.length - next));
+        assertEquals("Spanish", hs.getHeaderContent().toString());
+        assertEquals("==Spanish==", new String(hs.getFullHeader(), 0, hs.getFullHeaderLength()));
+    }
+
+    @Test
+    public void resetDiscardsPartialHeader() throws Throwable {
+        String s1 = "==Pol";
+        String s2 = "ish ==Czech== more";
+        hs.find(s1.toCharArray(), 0, s1.length());
+        hs.reset();
+        hs.find(s2.toCharArray(), 0, s2.length());
+        assertEquals("Czech", hs.getHeaderContent().toString());
+    }
+
+    @Test
+    public void longHeadersGrowTheBuffer() throws Throwable {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append((char) ('a' + i % 26));
+        }
+        String s = "==" + content + "== after";
+        assertEquals(content.length() + 4, hs.find(s.toCharArray(), 0, s.length()));
+        assertEquals(content.toString(), hs.getHeaderContent().toString());
+        assertEquals("==" + content + "==", new String(hs.getFullHeader(), 0, hs.getFullHeaderLength()));
+    }
+
+    @Test
+    public void indexOfHeaderCharFindsFirstHeaderChar() throws Throwable {
+        char[] s = "abc\ndef=gh=".toCharArray();
+        assertEquals(7, HeaderSearch.indexOfHeaderChar(s, 0, s.length));
+        assertEquals(7, HeaderSearch.indexOfHeaderChar(s, 7, s.length));
+        assertEquals(10, HeaderSearch.indexOfHeaderChar(s, 8, s.length));
+        assertEquals(7, HeaderSearch.indexOfHeaderChar(s, 2, 7));
+        assertEquals(3, HeaderSearch.indexOfHeaderChar(s, 3, 3));
+    }
+}
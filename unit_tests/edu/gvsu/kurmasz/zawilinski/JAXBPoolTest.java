@@ -0,0 +1,139 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEvent;
+import javax.xml.bind.ValidationEventHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class JAXBPoolTest {
+
+   @Before
+   public void resetPool() {
+      JAXBPool.reset();
+   }
+
+   @Test
+   public void contextIsShared() throws Throwable {
+      assertSame(JAXBPool.getContext(), JAXBPool.getContext());
+   }
+
+   @Test
+   public void contextIsSharedAmongThreads() throws Throwable {
+      ExecutorService pool = Executors.newFixedThreadPool(4);
+      List<Future<Object>> contexts = new ArrayList<Future<Object>>();
+      for (int i = 0; i < 8; i++) {
+         contexts.add(pool.submit(new Callable<Object>() {
+            public Object call() {
+               return JAXBPool.getContext();
+            }
+         }));
+      }
+      for (Future<Object> context : contexts) {
+         assertSame(JAXBPool.getContext(), context.get());
+      }
+      pool.shutdown();
+   }
+
+   @Test
+   public void returnedUnmarshallerIsReused() throws Throwable {
+      Unmarshaller first = JAXBPool.borrowUnmarshaller();
+      Unmarshaller second = JAXBPool.borrowUnmarshaller();
+      assertNotSame(first, second);
+      JAXBPool.returnUnmarshaller(first);
+      assertEquals(1, JAXBPool.idleUnmarshallers());
+      assertSame(first, JAXBPool.borrowUnmarshaller());
+      assertEquals(0, JAXBPool.idleUnmarshallers());
+   }
+
+   @Test
+   public void returnedUnmarshallerIsReset() throws Throwable {
+      Unmarshaller unmarshaller = JAXBPool.borrowUnmarshaller();
+      unmarshaller.setListener(new PageFilterListener(PostFilter.KEEP_ALL, new Log()));
+      StoredTextAdapter.install(unmarshaller, new TextArena());
+      ValidationEventHandler defaultHandler = MediaWikiLoader.createUnmarshaller().getEventHandler();
+      unmarshaller.setEventHandler(new ValidationEventHandler() {
+         public boolean handleEvent(ValidationEvent event) {
+            return true;
+         }
+      });
+      JAXBPool.returnUnmarshaller(unmarshaller);
+
+      Unmarshaller again = JAXBPool.borrowUnmarshaller();
+      assertSame(unmarshaller, again);
+      assertNull(again.getListener());
+      assertNull(again.getSchema());
+      assertNull(again.getAdapter(StoredTextAdapter.class));
+      assertSame(defaultHandler.getClass(), again.getEventHandler().getClass());
+   }
+
+   @Test
+   public void returnedMarshallerIsReset() throws Throwable {
+      Marshaller marshaller = JAXBPool.borrowMarshaller();
+      marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+      JAXBPool.returnMarshaller(marshaller);
+      assertEquals(1, JAXBPool.idleMarshallers());
+
+      Marshaller again = JAXBPool.borrowMarshaller();
+      assertSame(marshaller, again);
+      assertEquals(Boolean.FALSE, again.getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+   }
+
+   @Test
+   public void poolsAreBounded() throws Throwable {
+      List<Unmarshaller> unmarshallers = new ArrayList<Unmarshaller>();
+      List<Marshaller> marshallers = new ArrayList<Marshaller>();
+      for (int i = 0; i < JAXBPool.POOL_SIZE + 3; i++) {
+         unmarshallers.add(JAXBPool.borrowUnmarshaller());
+         marshallers.add(JAXBPool.borrowMarshaller());
+      }
+      for (int i = 0; i < unmarshallers.size(); i++) {
+         JAXBPool.returnUnmarshaller(unmarshallers.get(i));
+         JAXBPool.returnMarshaller(marshallers.get(i));
+      }
+      assertEquals(JAXBPool.POOL_SIZE, JAXBPool.idleUnmarshallers());
+      assertEquals(JAXBPool.POOL_SIZE, JAXBPool.idleMarshallers());
+   }
+
+   @Test
+   public void returningNullIsIgnored() throws Throwable {
+      JAXBPool.returnUnmarshaller(null);
+      JAXBPool.returnMarshaller(null);
+      assertEquals(0, JAXBPool.idleUnmarshallers());
+      assertEquals(0, JAXBPool.idleMarshallers());
+   }
+
+   @Test
+   public void loadersReturnTheirUnmarshallers() throws Throwable {
+      PreFilteredMediaWikiLoader.load(this.getClass().getResourceAsStream("/mw_sample_current.xml"),
+            new Log());
+      assertEquals(1, JAXBPool.idleUnmarshallers());
+      PostFilteredMediaWikiLoader.load(this.getClass().getResourceAsStream("/mw_sample_current.xml"),
+            new Log(), PostFilter.KEEP_ALL);
+      assertEquals(1, JAXBPool.idleUnmarshallers());
+   }
+
+   @Test
+   public void writerReturnsMarshallerWhenClosed() throws Throwable {
+      WiktionaryWriter writer = new WiktionaryWriter();
+      assertEquals(0, JAXBPool.idleMarshallers());
+      writer.close();
+      assertEquals(1, JAXBPool.idleMarshallers());
+
+      WiktionaryWriter custom = new WiktionaryWriter();
+      custom.setProperty(Marshaller.JAXB_ENCODING, "ISO-8859-1");
+      custom.close();
+      assertEquals(0, JAXBPool.idleMarshallers());
+   }
+}
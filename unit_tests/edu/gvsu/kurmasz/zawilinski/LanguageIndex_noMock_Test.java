@@ -0,0 +1,178 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.XMLFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LanguageIndex_noMock_Test {
+
+   private File indexFile;
+
+   @Before
+   public void setUp() throws Throwable {
+      indexFile = File.createTempFile("languageIndex", LanguageIndex.SUFFIX);
+      indexFile.delete();
+   }
+
+   @After
+   public void tearDown() throws Throwable {
+      indexFile.delete();
+   }
+
+   private static final String DUMP = SampleDumps.dump(
+         SampleDumps.page("both", 1, "==Polish==\nkot\n==English==\ncat\n"),
+         SampleDumps.page("link", 2, "== [[English]] ==\ndog\n"),
+         SampleDumps.page("history", 3, "==Polish==\nstary\n", "==German==\nneu\n"),
+         SampleDumps.page("none", 4, "#REDIRECT [[both]]"),
+         SampleDumps.page("last", 5, "intro\n==Czech=="));
+
+   private static List<String> titles(String dump, PostFilter postFilter, XMLFilter... filters) throws Throwable {
+      MediaWikiType root = PostFilteredMediaWikiLoader.load(new ByteArrayInputStream(dump.getBytes("UTF-8")),
+            new Log(), postFilter, filters).getValue();
+      List<String> answer = new ArrayList<String>();
+      for (PageType page : root.getPage()) {
+         answer.add(page.getTitle());
+      }
+      return answer;
+   }
+
+   private static LanguageIndex collect(String dump) throws Throwable {
+      LanguageIndex index = new LanguageIndex();
+      // The collector must not change the pages.
+      assertEquals(Arrays.asList("both", "link", "history", "none", "last"),
+            titles(dump, PostFilter.KEEP_ALL, new LanguageIndexPrefilter(index)));
+      return index;
+   }
+
+   @Test
+   public void collectorRecordsLanguagesOfEachPage() throws Throwable {
+      LanguageIndex index = collect(DUMP);
+      assertEquals(5, index.getPageCount());
+      assertEquals(Arrays.asList("Czech", "English", "German", "Polish"),
+            new ArrayList<String>(index.getLanguages()));
+      assertTrue(index.contains("Polish", 1));
+      assertTrue(index.contains("English", 1));
+      assertTrue(index.contains("English", 2));
+      assertTrue(index.contains("Polish", 3));
+      assertTrue(index.contains("German", 3));
+      assertTrue(index.contains("Czech", 5));
+      assertFalse(index.contains("Polish", 2));
+      assertFalse(index.contains("Polish", 4));
+      assertEquals(2, index.getPageCount("Polish"));
+      assertEquals(0, index.getPageCount("French"));
+   }
+
+   @Test
+   public void indexSurvivesRoundTrip() throws Throwable {
+      collect(DUMP).save(indexFile, 1234);
+      LanguageIndex index = LanguageIndex.load(indexFile);
+      assertEquals(1234, index.getDumpSize());
+      assertEquals(5, index.getPageCount());
+      assertEquals(2, index.getPageCount("English"));
+      assertTrue(index.contains("German", 3));
+      assertFalse(index.contains("German", 1));
+   }
+
+   @Test
+   public void failedSaveLeavesExistingIndex() throws Throwable {
+      collect(DUMP).save(indexFile, 1234);
+      File temp = new File(indexFile.getPath() + ".tmp");
+      assertFalse(temp.exists());
+
+      // The temporary file can't be written while a directory has its name.
+      assertTrue(temp.mkdir());
+      try {
+         new LanguageIndex().save(indexFile, 5678);
+         fail("Expected an IOException");
+      } catch (IOException e) {
+         // expected
+      } finally {
+         temp.delete();
+      }
+      assertEquals(5, LanguageIndex.load(indexFile).getPageCount());
+
+      // A later save replaces the index.
+      new LanguageIndex().save(indexFile, 5678);
+      assertFalse(temp.exists());
+      assertEquals(5678, LanguageIndex.load(indexFile).getDumpSize());
+      assertEquals(0, LanguageIndex.load(indexFile).getPageCount());
+   }
+
+   // An index that can't be matched to its dump must not be saved.
+   @Test(expected = IllegalArgumentException.class)
+   public void indexOfUnknownDumpIsNotSaved() throws Throwable {
+      collect(DUMP).save(indexFile, LanguageIndex.UNKNOWN_SIZE);
+   }
+
+   @Test
+   public void gateSkipsOnlyPagesWithoutTheLanguage() throws Throwable {
+      LanguageIndex index = collect(DUMP);
+      for (String language : new String[]{"Polish", "English", "German", "Czech", "French"}) {
+         List<String> expected = titles(DUMP, new PostFilterByLanguage(), new LanguagePrefilter(language));
+         PagePrefilter gate = new PagePrefilter(index.gate(language));
+         assertEquals(language, expected, titles(DUMP, new PostFilterByLanguage(), gate,
+               new LanguagePrefilter(language)));
+         assertEquals(language, expected.size(), gate.getPagesKept());
+      }
+   }
+
+   @Test
+   public void pagesMissingFromIndexAreKept() throws Throwable {
+      LanguageIndex index = new LanguageIndex();
+      index.addPage(1, Arrays.asList("Polish"));
+      PagePrefilter.PagePredicate gate = index.gate("English");
+      assertFalse(gate.keepPage("both", "0", "1"));
+      assertTrue(gate.keepPage("other", "0", "2"));
+      assertTrue(gate.keepPage("other", "0", null));
+      assertTrue(gate.keepPage("other", "0", "abc"));
+      assertTrue(index.gate("English", "Polish").keepPage("both", "0", "1"));
+   }
+
+   @Test
+   public void selectsEntriesOfPageIndex() throws Throwable {
+      File dumpFile = MappedDump_noMock_Test.writeTempFile(DUMP);
+      File pageIndexFile = PageIndex.defaultIndexFile(dumpFile);
+      MappedDump dump = new MappedDump(dumpFile);
+      try {
+         PageIndex.build(dump, pageIndexFile);
+         PageIndex pageIndex = new PageIndex(pageIndexFile);
+         try {
+            List<PageIndex.Entry> entries = collect(DUMP).select(pageIndex, "Polish");
+            assertEquals(2, entries.size());
+            MediaWikiType root = pageIndex.load(dump, entries, new Log(), new PostFilterByLanguage(),
+                  new LanguagePrefilter("Polish")).getValue();
+            assertEquals("both", root.getPage().get(0).getTitle());
+            assertEquals("history", root.getPage().get(1).getTitle());
+         } finally {
+            pageIndex.close();
+         }
+      } finally {
+         dump.close();
+         dumpFile.delete();
+         pageIndexFile.delete();
+      }
+   }
+
+   @Test(expected = IOException.class)
+   public void otherFilesAreRejected() throws Throwable {
+      File file = MappedDump_noMock_Test.writeTempFile(DUMP);
+      try {
+         LanguageIndex.load(file);
+      } finally {
+         file.delete();
+      }
+   }
+}
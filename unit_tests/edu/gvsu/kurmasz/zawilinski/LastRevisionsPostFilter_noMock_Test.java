@@ -0,0 +1,97 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LastRevisionsPostFilter_noMock_Test {
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   private MediaWikiType load(PostFilter filter) throws Throwable {
+      return PostFilteredMediaWikiLoader.load(getSample(), new Log(), filter).getValue();
+   }
+
+   private static void assertTexts(PageType page, String... expected) {
+      List<RevisionType> revisions = Util.getRevisions(page);
+      assertEquals(expected.length, revisions.size());
+      for (int i = 0; i < expected.length; i++) {
+         assertEquals(expected[i], Util.getText(revisions.get(i)));
+      }
+   }
+
+   @Test
+   public void keepsOnlyTheLastRevision() throws Throwable {
+      MediaWikiType root = load(new LastRevisionsPostFilter(PostFilter.KEEP_ALL, 1));
+      assertEquals(2, root.getPage().size());
+      assertTexts(root.getPage().get(0), "Content for rev 2 (pickles)");
+      assertTexts(root.getPage().get(1), "Content for rev 3 of page 2 (carrots)");
+   }
+
+   @Test
+   public void keepsTheLastNRevisionsInOrder() throws Throwable {
+      MediaWikiType root = load(new LastRevisionsPostFilter(PostFilter.KEEP_ALL, 2));
+      assertTexts(root.getPage().get(0), "Content for rev 1", "Content for rev 2 (pickles)");
+      assertTexts(root.getPage().get(1), "Content for rev 2 of page 2", "Content for rev 3 of page 2 (carrots)");
+   }
+
+   @Test
+   public void largeLimitsKeepEverything() throws Throwable {
+      SampleContentCheck.verifyMWSampleContent(load(new LastRevisionsPostFilter(PostFilter.KEEP_ALL, 100)));
+   }
+
+   @Test
+   public void countsOnlyRevisionsTheOtherFilterKeeps() throws Throwable {
+      PostFilter skipCarrots = new PostFilter() {
+         public boolean keepPage(PageType page) {
+            return true;
+         }
+
+         public boolean keepRevision(RevisionType revision, PageType page) {
+            return !Util.getText(revision).contains("carrots");
+         }
+      };
+      MediaWikiType root = load(new LastRevisionsPostFilter(skipCarrots, 1));
+      assertTexts(root.getPage().get(1), "Content for rev 2 of page 2");
+   }
+
+   @Test
+   public void pagesNeverHoldMoreThanNPlusOneRevisions() throws Throwable {
+      final int[] largest = {0};
+      PostFilter watcher = new PostFilter() {
+         public boolean keepPage(PageType page) {
+            return true;
+         }
+
+         public boolean keepRevision(RevisionType revision, PageType page) {
+            largest[0] = Math.max(largest[0], page.getRevisionOrUpload().size());
+            return true;
+         }
+      };
+      load(new LastRevisionsPostFilter(watcher, 1));
+      // The revision being examined may not be in the list yet.
+      assertTrue(largest[0] <= 2);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void zeroRevisionsIsRejected() throws Throwable {
+      new LastRevisionsPostFilter(PostFilter.KEEP_ALL, 0);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void nullFilterIsRejected() throws Throwable {
+      new LastRevisionsPostFilter(null, 1);
+   }
+}
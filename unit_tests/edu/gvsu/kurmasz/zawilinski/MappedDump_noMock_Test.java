@@ -0,0 +1,118 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class MappedDump_noMock_Test {
+
+   private static final String HEADER = "<mediawiki version=\"0.10\">\n  <siteinfo>x</siteinfo>\n  ";
+   private static final String PAGE1 = "<page>one</page>\n  ";
+   private static final String PAGE2 = "<page>two &lt;page&gt;</page>\n  ";
+   private static final String PAGE3 = "<page>three</page>\n";
+   private static final String FOOTER = "</mediawiki>\n";
+
+   private File file;
+   private MappedDump dump;
+
+   static File writeTempFile(String content) throws IOException {
+      File file = File.createTempFile("MappedDumpTest", ".xml");
+      file.deleteOnExit();
+      FileOutputStream out = new FileOutputStream(file);
+      out.write(content.getBytes("UTF-8"));
+      out.close();
+      return file;
+   }
+
+   static String read(InputStream in) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[7];
+      int n;
+      while ((n = in.read(buffer, 0, buffer.length)) > 0) {
+         out.write(buffer, 0, n);
+      }
+      return out.toString("UTF-8");
+   }
+
+   @Before
+   public void setUp() throws IOException {
+      file = writeTempFile(HEADER + PAGE1 + PAGE2 + PAGE3 + FOOTER);
+      dump = new MappedDump(file);
+   }
+
+   @After
+   public void tearDown() throws IOException {
+      dump.close();
+      file.delete();
+   }
+
+   @Test
+   public void findsHeaderAndFooter() throws Throwable {
+      assertEquals(HEADER.length(), dump.getFirstPage());
+      assertEquals((HEADER + PAGE1 + PAGE2 + PAGE3).length(), dump.getFooterStart());
+      assertEquals(file.length(), dump.size());
+   }
+
+   @Test
+   public void indexOfFindsPattern() throws Throwable {
+      long second = HEADER.length() + PAGE1.length();
+      assertEquals(second, dump.indexOf(MappedDump.PAGE_START, HEADER.length() + 1, dump.size()));
+      assertEquals(-1, dump.indexOf(MappedDump.PAGE_START, HEADER.length() + 1, second + 5));
+   }
+
+   @Test
+   public void splitWithLargeTargetReturnsOnePiece() throws Throwable {
+      long[] boundaries = dump.split(dump.size());
+      assertArrayEquals(new long[]{dump.getFirstPage(), dump.getFooterStart()}, boundaries);
+   }
+
+   @Test
+   public void splitWithSmallTargetReturnsEachPage() throws Throwable {
+      long[] boundaries = dump.split(1);
+      long p1 = HEADER.length();
+      long p2 = p1 + PAGE1.length();
+      long p3 = p2 + PAGE2.length();
+      assertArrayEquals(new long[]{p1, p2, p3, dump.getFooterStart()}, boundaries);
+   }
+
+   @Test
+   public void openStreamReadsRange() throws Throwable {
+      long p1 = HEADER.length();
+      assertEquals(PAGE1, read(dump.openStream(p1, p1 + PAGE1.length())));
+   }
+
+   @Test
+   public void openDocumentAddsHeaderAndFooter() throws Throwable {
+      long[] boundaries = dump.split(1);
+      assertEquals(HEADER + PAGE2 + FOOTER, read(dump.openDocument(boundaries[1], boundaries[2])));
+   }
+
+   @Test
+   public void dumpWithNoPages() throws Throwable {
+      File empty = writeTempFile(HEADER + FOOTER);
+      MappedDump emptyDump = new MappedDump(empty);
+      assertEquals(HEADER.length(), emptyDump.getFirstPage());
+      assertEquals(HEADER.length(), emptyDump.getFooterStart());
+      assertArrayEquals(new long[]{HEADER.length(), HEADER.length()}, emptyDump.split(1));
+      emptyDump.close();
+      empty.delete();
+   }
+
+   @Test(expected = IOException.class)
+   public void throwsExceptionIfNoRootEnd() throws Throwable {
+      File broken = writeTempFile(HEADER + PAGE1);
+      try {
+         new MappedDump(broken);
+      } finally {
+         broken.delete();
+      }
+   }
+}
@@ -0,0 +1,122 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MappedTextPrefilter_noMock_Test {
+
+   private final List<MappedDump> dumps = new ArrayList<MappedDump>();
+
+   private String getSample() throws Throwable {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return MappedDump_noMock_Test.read(input);
+   }
+
+   private MediaWikiType load(String content) throws Throwable {
+      File file = MappedDump_noMock_Test.writeTempFile(content);
+      MappedDump dump = new MappedDump(file);
+      dumps.add(dump);
+      return PostFilteredMediaWikiLoader.load(dump, new Log(), PostFilter.KEEP_ALL).getValue();
+   }
+
+   @After
+   public void tearDown() throws Throwable {
+      for (MappedDump dump : dumps) {
+         dump.close();
+         dump.getFile().delete();
+      }
+   }
+
+   @Test
+   public void loadsSampleContent() throws Throwable {
+      SampleContentCheck.verifyMWSampleContent(load(getSample()));
+   }
+
+   @Test
+   public void filterCanBeUsedDirectly() throws Throwable {
+      MappedDump dump = dumpOf(getSample());
+      MappedTextPrefilter filter = new MappedTextPrefilter(dump);
+      MediaWikiType root = PostFilteredMediaWikiLoader.load(dump.openStream(0, dump.size()), new Log(), filter,
+            PostFilter.KEEP_ALL, filter).getValue();
+      SampleContentCheck.verifyMWSampleContent(root);
+      assertEquals(5, filter.getTextsMapped());
+   }
+
+   @Test
+   public void entitiesAndMultibyteCharactersAreDecoded() throws Throwable {
+      String text = "a &amp; b &lt;c&gt; żółw";
+      MediaWikiType root = load(getSample().replace("Content for rev 1<", text + "<"));
+      RevisionType revision = Util.getRevisions(root.getPage().get(0)).get(0);
+      assertEquals("a & b <c> żółw", Util.getText(revision));
+      assertEquals(14, Util.getTextSize(revision));
+      assertEquals("Content for rev 2 (pickles)", Util.getText(root.getPage().get(0), 1));
+   }
+
+   // The parser turns CR LF and bare CR into LF (but not a CR written as a character reference).
+   @Test
+   public void lineEndsAreNormalizedAsByTheParser() throws Throwable {
+      String content = getSample().replace("\n", "\r\n").replace("Content for rev 1<",
+            "line 1\r\nline 2\rline 3\n&#13;&#10;line 4\r\n<");
+      MediaWikiType mapped = load(content);
+      MediaWikiType heap = PostFilteredMediaWikiLoader.load(new ByteArrayInputStream(content.getBytes("UTF-8")),
+            new Log(), PostFilter.KEEP_ALL).getValue();
+
+      RevisionType revision = Util.getRevisions(mapped.getPage().get(0)).get(0);
+      String expected = "line 1\nline 2\nline 3\n\r\nline 4\n";
+      assertEquals(expected, Util.getText(heap.getPage().get(0), 0));
+      assertEquals(expected, Util.getText(revision));
+      assertEquals(expected.length(), Util.getTextSize(revision));
+      assertEquals(expected.length(), revision.getText().getValue().length());
+      assertEquals("Content for rev 2 (pickles)", Util.getText(mapped.getPage().get(0), 1));
+   }
+
+   @Test
+   public void emptyTextElementsAreHandled() throws Throwable {
+      MediaWikiType root = load(getSample()
+            .replace("<text xml:space=\"preserve\">Content for rev 1</text>", "<text xml:space=\"preserve\" />")
+            .replace("Content for rev 2 (pickles)", ""));
+      assertEquals(0, Util.getTextSize(Util.getRevisions(root.getPage().get(0)).get(0)));
+      assertEquals(0, Util.getTextSize(Util.getRevisions(root.getPage().get(0)).get(1)));
+      assertEquals("Content for rev 1 of page 2 (blueberries)", Util.getText(root.getPage().get(1), 0));
+   }
+
+   @Test
+   public void quotedGreaterThanInAttributesIsSkipped() throws Throwable {
+      MediaWikiType root = load(getSample().replace("<text xml:space=\"preserve\">Content for rev 1<",
+            "<text xml:space=\"preserve\" bytes='a>b'>Content for rev 1<"));
+      assertEquals("Content for rev 1", Util.getText(root.getPage().get(0), 0));
+   }
+
+   @Test
+   public void otherTextIsStoredOnTheHeap() throws Throwable {
+      MappedTextPrefilter filter = new MappedTextPrefilter(dumpOf(getSample()));
+      assertEquals("plain", filter.store("plain").toString());
+      assertEquals("\uE000x", filter.store("\uE000x").toString());
+      assertEquals("\uE0001:2:x", filter.store("\uE0001:2:x").toString());
+   }
+
+   private MappedDump dumpOf(String content) throws Throwable {
+      MappedDump dump = new MappedDump(MappedDump_noMock_Test.writeTempFile(content));
+      dumps.add(dump);
+      return dump;
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void nullDumpIsRejected() throws Throwable {
+      new MappedTextPrefilter(null);
+   }
+}
@@ -3,6 +3,7 @@ package edu.gvsu.kurmasz.zawilinski;
 import edu.gvsu.kurmasz.warszawa.log.Log;
 import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
@@ -38,6 +39,12 @@ import static org.powermock.api.mockito.PowerMockito.spy;
 @PrepareForTest({MediaWikiLoader.class, JAXBContext.class})
 public class MediaWikiLoaderTest {
 
+   // The loaders share a JAXBContext and pool Unmarshallers.  Start each test without any.
+   @Before
+   public void resetPool() {
+      JAXBPool.reset();
+   }
+
    //
    // createUnmarshaller
    //
@@ -0,0 +1,272 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.xml.bind.JAXBException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MultiLanguagePrefilter_noMock_Test {
+
+   private static final List<String> LANGUAGES = Arrays.asList("Polish", "Spanish", "English", "Russian");
+
+   // Records the characters sent to it.
+   private static class Recorder extends DefaultHandler {
+      private StringBuilder text = new StringBuilder();
+
+      @Override
+      public void characters(char[] ch, int start, int length) {
+         text.append(ch, start, length);
+      }
+   }
+
+   // Collects the text of each revision of each handled page.
+   private static class TextCollector implements PageHandler {
+      private List<String> texts = new ArrayList<String>();
+      private boolean ended = false;
+
+      public void beginDocument(MediaWikiType root) {
+      }
+
+      public void handlePage(PageType page) {
+         texts.add("Page:  " + page.getTitle());
+         for (Object item : page.getRevisionOrUpload()) {
+            texts.add(Util.getText((RevisionType) item));
+         }
+      }
+
+      public void endDocument(MediaWikiType root) {
+         ended = true;
+      }
+   }
+
+   // Send a <text> element in the given chunks through a filter
+   private static void sendText(XMLFilterImpl filter, String... chunks) throws Throwable {
+      filter.startElement("", "text", "text", new AttributesImpl());
+      for (String chunk : chunks) {
+         // surround the chunk with other characters to make sure the offsets are respected
+         char[] ch = ("xx" + chunk + "yy").toCharArray();
+         filter.characters(ch, 2, chunk.length());
+      }
+      filter.endElement("", "text", "text");
+   }
+
+   // Verify that each language receives the same text that a LanguagePrefilter would pass.
+   private static void verifyText(String... chunks) throws Throwable {
+      MultiLanguagePrefilter multi = new MultiLanguagePrefilter(LANGUAGES);
+      Recorder[] observed = new Recorder[LANGUAGES.size()];
+      for (int i = 0; i < observed.length; i++) {
+         observed[i] = new Recorder();
+         multi.setLanguageHandler(i, observed[i]);
+      }
+      sendText(multi, chunks);
+
+      for (int i = 0; i < observed.length; i++) {
+         LanguagePrefilter single = new LanguagePrefilter(LANGUAGES.get(i));
+         Recorder expected = new Recorder();
+         single.setContentHandler(expected);
+         sendText(single, chunks);
+         assertEquals(LANGUAGES.get(i) + " for " + Arrays.toString(chunks), expected.text.toString(),
+               observed[i].text.toString());
+      }
+   }
+
+   @Test
+   public void eachLanguageReceivesItsSection() throws Throwable {
+      verifyText("Intro\n==English==\nEnglish text\n==Polish==\nPolish text\n==Spanish==\nSpanish text\n" +
+            "==Czech==\nCzech text\n");
+   }
+
+   @Test
+   public void noMatchingSections() throws Throwable {
+      verifyText("Intro\n==French==\nFrench text\n==German==\nGerman text\n");
+      verifyText("No headers at all");
+      verifyText("");
+   }
+
+   @Test
+   public void headersSplitAcrossChunks() throws Throwable {
+      verifyText("Intro\n=", "=Pol", "ish=", "=\nPolish text\n==Spa", "nish==\nSpanish ", "text\n=", "=Rus",
+            "sian==", "\nRussian text");
+   }
+
+   @Test
+   public void headerAtEndOfText() throws Throwable {
+      verifyText("Intro\n==English==\nEnglish text\n==Polish==");
+      verifyText("Intro\n==English==\nEnglish text\n==Polish=", "=");
+   }
+
+   @Test
+   public void headerVariants() throws Throwable {
+      verifyText("==[[Polish]]==\nPolish\n== Spanish ==\nSpanish\n===Polish===\nL3\n==English==\nEnglish");
+   }
+
+   @Test
+   public void sameLanguageTwice() throws Throwable {
+      verifyText("==Polish==\nFirst\n==Polish==\nSecond\n==Spanish==\nSpanish");
+   }
+
+   @Test
+   public void stateIsResetForEachText() throws Throwable {
+      MultiLanguagePrefilter multi = new MultiLanguagePrefilter(LANGUAGES);
+      Recorder[] observed = new Recorder[LANGUAGES.size()];
+      for (int i = 0; i < observed.length; i++) {
+         observed[i] = new Recorder();
+         multi.setLanguageHandler(i, observed[i]);
+      }
+      sendText(multi, "==Polish==\nOne\n==Spanish==\nTwo");
+      sendText(multi, "==Spanish==\nThree\n==Polish==\nFour");
+      assertEquals("==Polish==\nOne\n==Spanish====Polish==\nFour", observed[0].text.toString());
+      assertEquals("==Spanish==\nTwo==Spanish==\nThree\n==Polish==", observed[1].text.toString());
+   }
+
+   @Test
+   public void nonTextEventsGoToAllLanguages() throws Throwable {
+      MultiLanguagePrefilter multi = new MultiLanguagePrefilter(LANGUAGES);
+      Recorder[] observed = new Recorder[LANGUAGES.size()];
+      for (int i = 0; i < observed.length; i++) {
+         observed[i] = new Recorder();
+         multi.setLanguageHandler(i, observed[i]);
+      }
+      multi.startElement("", "title", "title", new AttributesImpl());
+      multi.characters("Title".toCharArray(), 0, 5);
+      multi.endElement("", "title", "title");
+      for (Recorder r : observed) {
+         assertEquals("Title", r.text.toString());
+      }
+   }
+
+   @Test(expected = UnsupportedOperationException.class)
+   public void setContentHandlerNotSupported() throws Throwable {
+      new MultiLanguagePrefilter(LANGUAGES).setContentHandler(new DefaultHandler());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void requiresALanguage() throws Throwable {
+      new MultiLanguagePrefilter(new ArrayList<String>());
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void parseRequiresAllHandlers() throws Throwable {
+      MultiLanguagePrefilter multi = new MultiLanguagePrefilter(LANGUAGES);
+      multi.setLanguageHandler(0, new DefaultHandler());
+      multi.parse(new InputSource(getSample()));
+   }
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/testLanguageFilter_current.xml");
+      assertNotNull(input);
+      return input;
+   }
+
+   @Test
+   public void loaderMatchesOneLanguageAtATime() throws Throwable {
+      int n = LANGUAGES.size();
+      TextCollector[] observed = new TextCollector[n];
+      PostFilter[] postFilters = new PostFilter[n];
+      for (int i = 0; i < n; i++) {
+         observed[i] = new TextCollector();
+         postFilters[i] = new PostFilterByLanguage();
+      }
+      MultiLanguageMediaWikiLoader.load(new InputSource(getSample()), new Log(),
+            new MultiLanguagePrefilter(LANGUAGES), postFilters, observed);
+
+      for (int i = 0; i < n; i++) {
+         TextCollector expected = new TextCollector();
+         StreamingMediaWikiLoader.load(getSample(), new Log(), new PostFilterByLanguage(), expected,
+               new LanguagePrefilter(LANGUAGES.get(i)));
+         assertTrue(observed[i].ended);
+         assertEquals(LANGUAGES.get(i), expected.texts, observed[i].texts);
+      }
+      // Make sure the test data is interesting
+      assertFalse(observed[0].texts.isEmpty());
+      assertFalse(observed[1].texts.isEmpty());
+   }
+
+   @Test
+   public void handlerExceptionIsThrownAsJAXBException() throws Throwable {
+      final JAXBException problem = new JAXBException("Expected");
+      PageHandler failing = new TextCollector() {
+         @Override
+         public void handlePage(PageType page) {
+            throw new PageFilterListener.HandlerException(problem);
+         }
+      };
+      try {
+         MultiLanguageMediaWikiLoader.load(new InputSource(getSample()), new Log(),
+               new MultiLanguagePrefilter(Arrays.asList("Polish")), new PostFilter[]{PostFilter.KEEP_ALL},
+               new PageHandler[]{failing});
+         fail("Should have thrown an exception");
+      } catch (JAXBException e) {
+         assertSame(problem, e);
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void loaderRequiresHandlerForEachLanguage() throws Throwable {
+      MultiLanguageMediaWikiLoader.load(new InputSource(getSample()), new Log(),
+            new MultiLanguagePrefilter(LANGUAGES), new PostFilter[]{PostFilter.KEEP_ALL},
+            new PageHandler[]{new TextCollector()});
+   }
+
+   // One page whose third revision reverts to the first.
+   private static final String REVERTED = SampleDumps.dump(SampleDumps.page("kot", 1,
+         "Intro\n==Polish==\nkot\n==English==\ncat", "==English==\ndog", "Intro\n==Polish==\nkot\n==English==\ncat",
+         "==Polish==\npies"));
+
+   private static InputStream getReverted() {
+      return SampleDumps.stream(REVERTED);
+   }
+
+   // Keeps the handled pages.
+   private static class PageCollector extends TextCollector {
+      private List<PageType> pages = new ArrayList<PageType>();
+
+      @Override
+      public void handlePage(PageType page) {
+         super.handlePage(page);
+         pages.add(page);
+      }
+   }
+
+   @Test
+   public void loaderResolvesDuplicateTexts() throws Throwable {
+      List<String> languages = Arrays.asList("Polish", "English", "Spanish");
+      int n = languages.size();
+      PageCollector[] observed = new PageCollector[n];
+      PostFilter[] postFilters = new PostFilter[n];
+      for (int i = 0; i < n; i++) {
+         observed[i] = new PageCollector();
+         postFilters[i] = PostFilter.KEEP_ALL;
+      }
+      DuplicateTextPrefilter duplicates = new DuplicateTextPrefilter();
+      MultiLanguageMediaWikiLoader.load(new InputSource(getReverted()), new Log(),
+            new MultiLanguagePrefilter(languages), postFilters, observed, duplicates);
+      assertEquals(1, duplicates.getDuplicateCount());
+
+      for (int i = 0; i < n; i++) {
+         // Each language gets the same text it would without the DuplicateTextPrefilter ...
+         TextCollector expected = new TextCollector();
+         StreamingMediaWikiLoader.load(getReverted(), new Log(), PostFilter.KEEP_ALL, expected,
+               new LanguagePrefilter(languages.get(i)));
+         assertEquals(languages.get(i), expected.texts, ((TextCollector) observed[i]).texts);
+
+         // ... but the reverted revision shares the text of the first revision.
+         List<RevisionType> revisions = Util.getRevisions(observed[i].pages.get(0));
+         assertEquals(4, revisions.size());
+         assertSame(languages.get(i), revisions.get(0).getText().getValue(), revisions.get(2).getText().getValue());
+      }
+   }
+}
@@ -5,14 +5,22 @@ import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
 import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
 import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 
+import javax.xml.bind.JAXBException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 /**
@@ -269,4 +277,133 @@ public class PageFilterListenerTest {
       verify(pf, never()).keepRevision(Matchers.<RevisionType>any(), Matchers.<PageType>any());
 
    }
+
+   //
+   // Streaming mode (i.e., with a PageHandler)
+   //
+
+   @Test
+   public void handlerReceivesKeptPagesOnly() throws Throwable {
+      MediaWikiType mw = mock(MediaWikiType.class);
+      PageType firstPage = mock(PageType.class);
+      PageType secondPage = mock(PageType.class);
+      PageHandler handler = mock(PageHandler.class);
+
+      @SuppressWarnings("unchecked")
+      List<PageType> pages = mock(List.class);
+      stub(mw.getPage()).toReturn(pages);
+
+      CustomPostFilter cps = new CustomPostFilter(secondPage);
+      PageFilterListener pfl = new PageFilterListener(cps, mock(Log.class), handler);
+      pfl.beforeUnmarshal(mw, null);
+      pfl.beforeUnmarshal(firstPage, null);
+      pfl.afterUnmarshal(firstPage, null);
+      pfl.beforeUnmarshal(secondPage, null);
+      pfl.afterUnmarshal(secondPage, null);
+      pfl.afterUnmarshal(mw, null);
+
+      verify(handler, never()).handlePage(firstPage);
+      verify(handler).handlePage(secondPage);
+   }
+
+   @Test
+   public void handlerModeRemovesKeptPages() throws Throwable {
+      MediaWikiType mw = mock(MediaWikiType.class);
+      PageType firstPage = mock(PageType.class);
+
+      @SuppressWarnings("unchecked")
+      List<PageType> pages = mock(List.class);
+      stub(mw.getPage()).toReturn(pages);
+
+      PageFilterListener pfl = new PageFilterListener(PostFilter.KEEP_ALL, mock(Log.class),
+            mock(PageHandler.class));
+      pfl.beforeUnmarshal(mw, null);
+      pfl.beforeUnmarshal(firstPage, null);
+      pfl.afterUnmarshal(firstPage, null);
+      pfl.beforeUnmarshal(mock(PageType.class), null);
+      verify(pages).remove(firstPage);
+   }
+
+   @Test
+   public void handlerBeginAndEndCalledOnceInOrder() throws Throwable {
+      MediaWikiType mw = mock(MediaWikiType.class);
+      PageType firstPage = mock(PageType.class);
+      PageType secondPage = mock(PageType.class);
+      PageHandler handler = mock(PageHandler.class);
+
+      @SuppressWarnings("unchecked")
+      List<PageType> pages = mock(List.class);
+      stub(mw.getPage()).toReturn(pages);
+
+      PageFilterListener pfl = new PageFilterListener(PostFilter.KEEP_ALL, mock(Log.class), handler);
+      pfl.beforeUnmarshal(mw, null);
+      pfl.beforeUnmarshal(firstPage, null);
+      pfl.afterUnmarshal(firstPage, null);
+      pfl.beforeUnmarshal(secondPage, null);
+      pfl.afterUnmarshal(secondPage, null);
+      pfl.afterUnmarshal(mw, null);
+
+      InOrder inOrder = inOrder(handler);
+      inOrder.verify(handler).beginDocument(mw);
+      inOrder.verify(handler).handlePage(firstPage);
+      inOrder.verify(handler).handlePage(secondPage);
+      inOrder.verify(handler).endDocument(mw);
+      verify(handler, times(1)).beginDocument(mw);
+   }
+
+   @Test
+   public void handlerBeginCalledEvenIfThereAreNoPages() throws Throwable {
+      MediaWikiType mw = mock(MediaWikiType.class);
+      PageHandler handler = mock(PageHandler.class);
+
+      PageFilterListener pfl = new PageFilterListener(PostFilter.KEEP_ALL, mock(Log.class), handler);
+      pfl.beforeUnmarshal(mw, null);
+      pfl.afterUnmarshal(mw, null);
+
+      InOrder inOrder = inOrder(handler);
+      inOrder.verify(handler).beginDocument(mw);
+      inOrder.verify(handler).endDocument(mw);
+   }
+
+   @Test
+   public void handlerExceptionsAreWrapped() throws Throwable {
+      MediaWikiType mw = mock(MediaWikiType.class);
+      PageType firstPage = mock(PageType.class);
+      PageHandler handler = mock(PageHandler.class);
+      JAXBException problem = new JAXBException("Expected");
+      doThrow(problem).when(handler).handlePage(firstPage);
+
+      PageFilterListener pfl = new PageFilterListener(PostFilter.KEEP_ALL, mock(Log.class), handler);
+      pfl.beforeUnmarshal(mw, null);
+      pfl.beforeUnmarshal(firstPage, null);
+      try {
+         pfl.afterUnmarshal(firstPage, null);
+         fail("Should have thrown exception");
+      } catch (PageFilterListener.HandlerException e) {
+         assertSame(problem, e.getCause());
+      }
+   }
+
+   @Test
+   public void removeFromEndRemovesLastItemByIndex() throws Throwable {
+      Object first = new Object();
+      Object last = new Object();
+      @SuppressWarnings("unchecked")
+      List<Object> list = spy(new ArrayList<Object>(Arrays.asList(first, last)));
+      assertTrue(PageFilterListener.removeFromEnd(list, last));
+      verify(list).remove(1);
+      verify(list, never()).remove(last);
+      assertEquals(Arrays.asList(first), list);
+   }
+
+   @Test
+   public void removeFromEndFindsOtherItems() throws Throwable {
+      Object first = new Object();
+      Object last = new Object();
+      List<Object> list = new ArrayList<Object>(Arrays.asList(first, last));
+      assertTrue(PageFilterListener.removeFromEnd(list, first));
+      assertEquals(Arrays.asList(last), list);
+      assertFalse(PageFilterListener.removeFromEnd(list, first));
+      assertFalse(PageFilterListener.removeFromEnd(new ArrayList<Object>(), first));
+   }
 }
@@ -0,0 +1,173 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PageIndex_noMock_Test {
+
+   private File sample;
+   private File indexFile;
+   private MappedDump dump;
+
+   @Before
+   public void setUp() throws Throwable {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      sample = MappedDump_noMock_Test.writeTempFile(MappedDump_noMock_Test.read(input));
+      indexFile = PageIndex.defaultIndexFile(sample);
+      indexFile.deleteOnExit();
+      dump = new MappedDump(sample);
+   }
+
+   @After
+   public void tearDown() throws Throwable {
+      dump.close();
+      sample.delete();
+      indexFile.delete();
+   }
+
+   @Test
+   public void indexDescribesEachPage() throws Throwable {
+      assertEquals(2, PageIndex.build(dump, indexFile));
+      PageIndex index = new PageIndex(indexFile);
+      try {
+         assertEquals(2, index.size());
+         assertEquals(dump.size(), index.getDumpSize());
+
+         PageIndex.Entry first = index.find("Sample page 1");
+         assertEquals("Sample page 1", first.getTitle());
+         assertEquals(4, first.getNamespace());
+         assertEquals(6, first.getId());
+         assertEquals(dump.getFirstPage(), first.getOffset());
+
+         PageIndex.Entry second = index.find("Sample page 2");
+         assertEquals(PageIndex.UNKNOWN_NAMESPACE, second.getNamespace());
+         assertEquals(61, second.getId());
+         assertEquals(first.getOffset() + first.getLength(), second.getOffset());
+         assertEquals(dump.getFooterStart(), second.getOffset() + second.getLength());
+
+         assertNull(index.find("Sample page"));
+         assertNull(index.find("Sample page 3"));
+         assertNull(index.find(""));
+      } finally {
+         index.close();
+      }
+   }
+
+   @Test
+   public void entriesAreSortedByTitle() throws Throwable {
+      String[] titles = {"zebra", "apple", "Zebra", "żółw", "apples", "&amp; more", "mango", "app"};
+      String[] pages = new String[titles.length];
+      for (int i = 0; i < titles.length; i++) {
+         pages[i] = SampleDumps.page(titles[i], i + 1);
+      }
+      File file = MappedDump_noMock_Test.writeTempFile(SampleDumps.dump(pages));
+      File fileIndex = PageIndex.defaultIndexFile(file);
+      MappedDump other = new MappedDump(file);
+      try {
+         PageIndex.build(other, fileIndex);
+         PageIndex index = new PageIndex(fileIndex);
+         try {
+            List<String> expected = new ArrayList<String>(Arrays.asList(titles));
+            expected.set(5, "& more");
+            Collections.sort(expected);
+            for (int i = 0; i < index.size(); i++) {
+               assertEquals(expected.get(i), index.get(i).getTitle());
+               assertEquals(expected.get(i), index.find(expected.get(i)).getTitle());
+            }
+            assertEquals(4, index.find("żółw").getId());
+         } finally {
+            index.close();
+         }
+      } finally {
+         other.close();
+         file.delete();
+         fileIndex.delete();
+      }
+   }
+
+   @Test
+   public void loadsOnlyRequestedPages() throws Throwable {
+      PageIndex.build(dump, indexFile);
+      PageIndex index = new PageIndex(indexFile);
+      try {
+         MediaWikiType root = index.load(dump, Arrays.asList(index.find("Sample page 2")), new Log(),
+               PostFilter.KEEP_ALL).getValue();
+         assertEquals(1, root.getPage().size());
+         assertEquals("Sample page 2", root.getPage().get(0).getTitle());
+         assertEquals("Content for rev 1 of page 2 (blueberries)", Util.getText(root.getPage().get(0), 0));
+
+         // Pages are loaded in dump order.
+         root = index.load(dump, Arrays.asList(index.get(1), index.get(0)), new Log(), PostFilter.KEEP_ALL)
+               .getValue();
+         SampleContentCheck.verifyMWSampleContent(root);
+      } finally {
+         index.close();
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void indexMustMatchDump() throws Throwable {
+      File file = MappedDump_noMock_Test.writeTempFile(SampleDumps.dump());
+      MappedDump other = new MappedDump(file);
+      PageIndex.build(other, indexFile);
+      other.close();
+      file.delete();
+      PageIndex index = new PageIndex(indexFile);
+      try {
+         index.load(dump, new ArrayList<PageIndex.Entry>(), new Log(), PostFilter.KEEP_ALL);
+      } finally {
+         index.close();
+      }
+   }
+
+   @Test(expected = IOException.class)
+   public void otherFilesAreRejected() throws Throwable {
+      new PageIndex(sample);
+   }
+
+   @Test
+   public void failedBuildLeavesExistingIndex() throws Throwable {
+      PageIndex.build(dump, indexFile);
+      long size = indexFile.length();
+      File temp = new File(indexFile.getPath() + ".tmp");
+      assertFalse(temp.exists());
+
+      // The temporary file can't be written while a directory has its name.
+      assertTrue(temp.mkdir());
+      try {
+         PageIndex.build(dump, indexFile);
+         fail("Expected an IOException");
+      } catch (IOException e) {
+         // expected
+      } finally {
+         temp.delete();
+      }
+      assertEquals(size, indexFile.length());
+      PageIndex index = new PageIndex(indexFile);
+      try {
+         assertEquals(2, index.size());
+      } finally {
+         index.close();
+      }
+
+      // A rebuild replaces the index.
+      assertEquals(2, PageIndex.build(dump, indexFile));
+      assertFalse(temp.exists());
+      assertEquals(size, indexFile.length());
+   }
+}
@@ -0,0 +1,216 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.XMLFilter;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+public class PageIterator_noMock_Test {
+
+   private File sample;
+
+   // Creates a new CharSubPrefilter for each part
+   private static class Filters implements ParallelMediaWikiLoader.FilterFactory {
+      private int created = 0;
+
+      public XMLFilter[] createPrefilters() {
+         created++;
+         return new XMLFilter[]{new PreFilteredMediaWikiLoader_noMock_Test.CharSubPrefilter('e', '8')};
+      }
+
+      public PostFilter createPostFilter() {
+         return PostFilter.KEEP_ALL;
+      }
+   }
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   @Before
+   public void setUp() throws Throwable {
+      sample = MappedDump_noMock_Test.writeTempFile(MappedDump_noMock_Test.read(getSample()));
+   }
+
+   @After
+   public void tearDown() {
+      sample.delete();
+   }
+
+   private static List<String> titles(PageIterator pages) throws Throwable {
+      List<String> answer = new ArrayList<String>();
+      try {
+         while (pages.hasNext()) {
+            answer.add(pages.next().getTitle());
+         }
+      } finally {
+         pages.close();
+      }
+      return answer;
+   }
+
+   @Test
+   public void iteratesOverPagesInStream() throws Throwable {
+      PageIterator pages = WikiDumps.pages(getSample(), new Log(), PostFilter.KEEP_ALL);
+      assertNull(pages.trySplit());
+      assertEquals(-1, pages.estimateSize());
+      assertTrue(pages.hasNext());
+      assertTrue(pages.hasNext());
+      PageType page = pages.next();
+      assertEquals("Sample page 1", page.getTitle());
+      assertEquals("Content for rev 2 (pickles)", Util.getText(page, 1));
+      assertEquals("Sample page 2", pages.next().getTitle());
+      assertFalse(pages.hasNext());
+      pages.close();
+      assertFalse(pages.isLoading());
+   }
+
+   @Test(expected = NoSuchElementException.class)
+   public void nextThrowsExceptionAtEnd() throws Throwable {
+      PageIterator pages = WikiDumps.pages(sample, new Log(), PostFilter.KEEP_NONE);
+      try {
+         pages.next();
+      } finally {
+         pages.close();
+      }
+   }
+
+   @Test
+   public void iteratesOverPagesInFile() throws Throwable {
+      PageIterator pages = WikiDumps.pages(sample, new Log(), PostFilter.KEEP_ALL);
+      assertEquals(2, titles(pages).size());
+   }
+
+   @Test
+   public void splitsAtPageBoundaries() throws Throwable {
+      Filters filters = new Filters();
+      PageIterator second = WikiDumps.pages(sample, new Log(), filters);
+      long size = second.estimateSize();
+      PageIterator first = second.trySplit();
+      assertNotNull(first);
+      assertEquals(size, first.estimateSize() + second.estimateSize());
+      assertNull(first.trySplit());
+      assertNull(second.trySplit());
+
+      PageType page = first.next();
+      assertEquals("Sample page 1", page.getTitle());
+      assertEquals("Cont8nt for r8v 1", Util.getText(page, 0));
+      assertFalse(first.hasNext());
+      first.close();
+
+      page = second.next();
+      assertEquals("Sample page 2", page.getTitle());
+      assertEquals("Cont8nt for r8v 3 of pag8 2 (carrots)", Util.getText(page, 2));
+      assertFalse(second.hasNext());
+      second.close();
+      assertEquals(2, filters.created);
+   }
+
+   @Test
+   public void partsMayBeIteratedConcurrently() throws Throwable {
+      File file = MappedDump_noMock_Test.writeTempFile(SampleDumps.dump(SampleDumps.numberedPages(100)));
+      try {
+         PageIterator whole = WikiDumps.pages(file, new Log(), PostFilter.KEEP_ALL);
+         final List<PageIterator> parts = new ArrayList<PageIterator>();
+         parts.add(whole);
+         for (int round = 0; round < 2; round++) {
+            for (int i = parts.size() - 1; i >= 0; i--) {
+               parts.add(i, parts.get(i).trySplit());
+            }
+         }
+         assertEquals(4, parts.size());
+
+         final List<List<String>> results = new ArrayList<List<String>>();
+         Thread[] threads = new Thread[parts.size()];
+         for (int i = 0; i < parts.size(); i++) {
+            results.add(null);
+            final int index = i;
+            threads[i] = new Thread() {
+               public void run() {
+                  try {
+                     results.set(index, titles(parts.get(index)));
+                  } catch (Throwable t) {
+                     // leave the result null
+                  }
+               }
+            };
+            threads[i].start();
+         }
+         List<String> all = new ArrayList<String>();
+         for (int i = 0; i < parts.size(); i++) {
+            threads[i].join();
+            assertNotNull(results.get(i));
+            all.addAll(results.get(i));
+         }
+         assertEquals(100, all.size());
+         for (int i = 1; i <= 100; i++) {
+            assertEquals("P" + i, all.get(i - 1));
+         }
+      } finally {
+         file.delete();
+      }
+   }
+
+   @Test
+   public void closeStopsLoading() throws Throwable {
+      PageIterator pages = WikiDumps.pages(SampleDumps.stream(SampleDumps.dump(
+            SampleDumps.numberedPages(10 * PageIterator.QUEUE_SIZE))), new Log(), PostFilter.KEEP_ALL);
+      assertEquals("P1", pages.next().getTitle());
+      assertTrue(pages.isLoading());
+      pages.close();
+      assertFalse(pages.isLoading());
+      assertFalse(pages.hasNext());
+      pages.close();
+   }
+
+   @Test
+   public void problemsAreThrownByHasNext() throws Throwable {
+      PageIterator pages = WikiDumps.pages(SampleDumps.stream(SampleDumps.HEADER + "<page><title>Bad</title></pag>"),
+            new Log(), PostFilter.KEEP_ALL);
+      try {
+         pages.hasNext();
+         fail("Expected LoadException");
+      } catch (PageIterator.LoadException e) {
+         assertNotNull(e.getCause());
+      }
+      assertFalse(pages.hasNext());
+      pages.close();
+   }
+
+   // The load fails before the first page is loaded (here, while the filters are created).
+   @Test(timeout = 10000)
+   public void problemsBeforeFirstPageAreThrownByHasNext() throws Throwable {
+      final IllegalStateException problem = new IllegalStateException("Expected");
+      PageIterator pages = WikiDumps.pages(sample, new Log(), new ParallelMediaWikiLoader.FilterFactory() {
+         public XMLFilter[] createPrefilters() {
+            throw problem;
+         }
+
+         public PostFilter createPostFilter() {
+            return PostFilter.KEEP_ALL;
+         }
+      });
+      try {
+         pages.hasNext();
+         fail("Expected LoadException");
+      } catch (PageIterator.LoadException e) {
+         assertSame(problem, e.getCause());
+      }
+      assertFalse(pages.hasNext());
+      pages.close();
+      assertFalse(pages.isLoading());
+   }
+}
@@ -0,0 +1,122 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PagePassthrough_noMock_Test {
+
+   private static final String HEADER = "<mediawiki version=\"0.10\">\n  <siteinfo>x</siteinfo>\n";
+   private static final String PAGE1 = "  <page>\n    <title>One</title>\n    <ns>0</ns>\n    <id>1</id>\n" +
+         "    <revision>\n      <id>10</id>\n      <text>one</text>\n    </revision>\n  </page>\n";
+   private static final String PAGE2 = "  <page>\n    <title>Two &amp; &lt;b&gt; &#233;</title>\n    <id>2</id>\n" +
+         "    <revision>\n      <id>20</id>\n      <text>two &lt;page&gt;</text>\n    </revision>\n  </page>\n";
+   private static final String PAGE3 = "  <page>\n    <title>Three</title>\n    <ns>4</ns>\n    <id>3</id>\n" +
+         "  </page>\n";
+   private static final String FOOTER = "</mediawiki>\n";
+
+   // Records the arguments to keepPage and keeps the pages with the given titles.
+   private static class RecordingPredicate implements PagePrefilter.PagePredicate {
+      private List<String> calls = new ArrayList<String>();
+      private List<String> keep = new ArrayList<String>();
+
+      private RecordingPredicate(String... keep) {
+         for (String title : keep) {
+            this.keep.add(title);
+         }
+      }
+
+      public boolean keepPage(String title, String namespace, String id) {
+         calls.add(title + "|" + namespace + "|" + id);
+         return keep.contains(title);
+      }
+   }
+
+   private File file;
+
+   @After
+   public void tearDown() {
+      if (file != null) {
+         file.delete();
+      }
+   }
+
+   private String copy(String content, PagePrefilter.PagePredicate predicate) throws IOException {
+      file = MappedDump_noMock_Test.writeTempFile(content);
+      MappedDump dump = new MappedDump(file);
+      try {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         new PagePassthrough(dump, predicate).copyTo(Channels.newChannel(out));
+         return out.toString("UTF-8");
+      } finally {
+         dump.close();
+      }
+   }
+
+   @Test
+   public void predicateReceivesUnescapedHeader() throws Throwable {
+      RecordingPredicate predicate = new RecordingPredicate();
+      copy(HEADER + PAGE1 + PAGE2 + PAGE3 + FOOTER, predicate);
+      assertEquals(3, predicate.calls.size());
+      assertEquals("One|0|1", predicate.calls.get(0));
+      assertEquals("Two & <b> é|null|2", predicate.calls.get(1));
+      assertEquals("Three|4|3", predicate.calls.get(2));
+   }
+
+   @Test
+   public void copiesAllPages() throws Throwable {
+      String content = HEADER + PAGE1 + PAGE2 + PAGE3 + FOOTER;
+      assertEquals(content, copy(content, new RecordingPredicate("One", "Two & <b> é", "Three")));
+   }
+
+   @Test
+   public void copiesNoPages() throws Throwable {
+      assertEquals(HEADER + FOOTER, copy(HEADER + PAGE1 + PAGE2 + PAGE3 + FOOTER, new RecordingPredicate()));
+   }
+
+   @Test
+   public void copiesSelectedPagesVerbatim() throws Throwable {
+      String content = HEADER + PAGE1 + PAGE2 + PAGE3 + FOOTER;
+      assertEquals(HEADER + PAGE2 + FOOTER, copy(content, new RecordingPredicate("Two & <b> é")));
+      assertEquals(HEADER + PAGE1 + PAGE3 + FOOTER, copy(content, new RecordingPredicate("One", "Three")));
+   }
+
+   @Test
+   public void countsPages() throws Throwable {
+      file = MappedDump_noMock_Test.writeTempFile(HEADER + PAGE1 + PAGE2 + PAGE3 + FOOTER);
+      MappedDump dump = new MappedDump(file);
+      PagePassthrough passthrough = new PagePassthrough(dump, new RecordingPredicate("One"));
+      passthrough.copyTo(Channels.newChannel(new ByteArrayOutputStream()));
+      dump.close();
+      assertEquals(1, passthrough.getPagesKept());
+      assertEquals(2, passthrough.getPagesDiscarded());
+   }
+
+   @Test
+   public void emptyDump() throws Throwable {
+      assertEquals(HEADER + FOOTER, copy(HEADER + FOOTER, new RecordingPredicate()));
+   }
+
+   @Test
+   public void unescape() throws Throwable {
+      assertEquals("plain", PagePassthrough.unescape("plain"));
+      assertEquals("a&b<c>d\"e'f", PagePassthrough.unescape("a&amp;b&lt;c&gt;d&quot;e&apos;f"));
+      assertEquals("éé", PagePassthrough.unescape("&#233;&#xe9;"));
+      assertEquals("&unknown; & alone", PagePassthrough.unescape("&unknown; & alone"));
+   }
+   @Test
+   public void normalizeLineEnds() throws Throwable {
+      assertEquals("plain\n", PagePassthrough.normalizeLineEnds("plain\n"));
+      assertEquals("a\nb\nc\n\nd\n", PagePassthrough.normalizeLineEnds("a\r\nb\rc\r\r\nd\r"));
+      assertEquals("&#13;\n", PagePassthrough.normalizeLineEnds("&#13;\r\n"));
+   }
+
+}
@@ -0,0 +1,116 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import javax.xml.bind.JAXBElement;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PagePrefilter_noMock_Test {
+
+   // Records the arguments to keepPage and keeps the pages with the given title.
+   private static class RecordingPredicate implements PagePrefilter.PagePredicate {
+      private List<String> calls = new ArrayList<String>();
+      private String keep;
+
+      private RecordingPredicate(String keep) {
+         this.keep = keep;
+      }
+
+      public boolean keepPage(String title, String namespace, String id) {
+         calls.add(title + "|" + namespace + "|" + id);
+         return keep == null || keep.equals(title);
+      }
+   }
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   private static MediaWikiType load(InputStream input, PagePrefilter filter) throws Throwable {
+      JAXBElement<MediaWikiType> observed = PreFilteredMediaWikiLoader.load(new InputSource(input), new Log(),
+            MediaWikiLoader.createUnmarshaller(), filter);
+      return observed.getValue();
+   }
+
+   @Test
+   public void keptPagesAreUnchanged() throws Throwable {
+      RecordingPredicate predicate = new RecordingPredicate(null);
+      PagePrefilter filter = new PagePrefilter(predicate);
+      SampleContentCheck.verifyMWSampleContent(load(getSample(), filter));
+      assertEquals(2, filter.getPagesKept());
+      assertEquals(0, filter.getPagesDiscarded());
+   }
+
+   @Test
+   public void predicateReceivesHeader() throws Throwable {
+      RecordingPredicate predicate = new RecordingPredicate(null);
+      load(getSample(), new PagePrefilter(predicate));
+      // The second page has no <ns>:  The decision is made when <revision> begins.
+      assertEquals(2, predicate.calls.size());
+      assertEquals("Sample page 1|4|6", predicate.calls.get(0));
+      assertEquals("Sample page 2|null|61", predicate.calls.get(1));
+   }
+
+   @Test
+   public void rejectedPagesAreRemoved() throws Throwable {
+      PagePrefilter filter = new PagePrefilter(new RecordingPredicate("Sample page 2"));
+      MediaWikiType root = load(getSample(), filter);
+      assertEquals(1, root.getPage().size());
+      PageType page = root.getPage().get(0);
+      assertEquals("Sample page 2", page.getTitle());
+      assertEquals(3, page.getRevisionOrUpload().size());
+      assertEquals("Content for rev 1 of page 2 (blueberries)", Util.getText(page, 0));
+      assertEquals(1, filter.getPagesKept());
+      assertEquals(1, filter.getPagesDiscarded());
+   }
+
+   @Test
+   public void allPagesRejected() throws Throwable {
+      PagePrefilter filter = new PagePrefilter(new RecordingPredicate("No such page"));
+      MediaWikiType root = load(getSample(), filter);
+      assertEquals(0, root.getPage().size());
+      assertNotNull(root.getSiteinfo());
+      assertEquals(2, filter.getPagesDiscarded());
+   }
+
+   @Test
+   public void pagesWithOnlyAHeader() throws Throwable {
+      String xml = "<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\" version=\"0.10\">\n" +
+            "<page><title>One</title><ns>0</ns><id>1</id></page>\n" +
+            "<page><title>Two</title></page>\n" +
+            "<page><title>Three</title><ns>0</ns><id>3</id><redirect title=\"One\"/></page>\n" +
+            "</mediawiki>";
+      RecordingPredicate predicate = new RecordingPredicate(null) {
+         @Override
+         public boolean keepPage(String title, String namespace, String id) {
+            super.keepPage(title, namespace, id);
+            return !title.equals("One");
+         }
+      };
+      PagePrefilter filter = new PagePrefilter(predicate);
+      MediaWikiType root = load(new ByteArrayInputStream(xml.getBytes("UTF-8")), filter);
+      assertEquals(3, predicate.calls.size());
+      assertEquals("Two|null|null", predicate.calls.get(1));
+      assertEquals(2, root.getPage().size());
+      assertEquals("Two", root.getPage().get(0).getTitle());
+      assertEquals("Three", root.getPage().get(1).getTitle());
+      assertEquals("One", root.getPage().get(1).getRedirect().getTitle());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void predicateMayNotBeNull() throws Throwable {
+      new PagePrefilter(null);
+   }
+}
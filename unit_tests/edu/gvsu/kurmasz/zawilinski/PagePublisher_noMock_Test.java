@@ -0,0 +1,187 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PagePublisher_noMock_Test {
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   private static InputStream manyPages(int n) {
+      return SampleDumps.stream(SampleDumps.dump(SampleDumps.numberedPages(n)));
+   }
+
+   // Records the calls it receives; requests initial pages when it subscribes.
+   private static class Recorder implements PagePublisher.Subscriber {
+      final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+      final long initial;
+      volatile PagePublisher.Subscription subscription;
+
+      Recorder(long initial) {
+         this.initial = initial;
+      }
+
+      public void onSubscribe(PagePublisher.Subscription subscription) {
+         this.subscription = subscription;
+         if (initial > 0) {
+            subscription.request(initial);
+         }
+      }
+
+      public void onNext(PageType page) {
+         events.add(page.getTitle());
+      }
+
+      public void onError(Throwable problem) {
+         events.add("error");
+      }
+
+      public void onComplete() {
+         events.add("complete");
+      }
+   }
+
+   @Test
+   public void allSubscribersReceiveEveryPage() throws Throwable {
+      PagePublisher publisher = new PagePublisher();
+      Recorder writer = new Recorder(Long.MAX_VALUE);
+      Recorder statistics = new Recorder(2);
+      publisher.subscribe(writer);
+      publisher.subscribe(statistics);
+      publisher.publish(getSample(), new Log(), PostFilter.KEEP_ALL);
+      assertEquals(3, writer.events.size());
+      assertEquals("Sample page 1", writer.events.get(0));
+      assertEquals("Sample page 2", writer.events.get(1));
+      assertEquals("complete", writer.events.get(2));
+      assertEquals(writer.events, statistics.events);
+   }
+
+   @Test
+   public void parseWaitsForTheSlowestSubscriber() throws Throwable {
+      final PagePublisher publisher = new PagePublisher();
+      Recorder fast = new Recorder(Long.MAX_VALUE);
+      Recorder slow = new Recorder(0);
+      publisher.subscribe(fast);
+      publisher.subscribe(slow);
+      Thread parser = new Thread() {
+         public void run() {
+            try {
+               publisher.publish(manyPages(50), new Log(), PostFilter.KEEP_ALL);
+            } catch (JAXBException e) {
+               // the subscribers see the error
+            } catch (Throwable t) {
+               throw new RuntimeException(t);
+            }
+         }
+      };
+      parser.start();
+      for (int requested = 1; requested <= 50; requested += 7) {
+         slow.subscription.request(7);
+         Thread.sleep(20);
+         assertTrue(fast.events.size() <= requested + 6);
+         assertTrue(fast.events.size() - slow.events.size() <= 1);
+      }
+      parser.join(5000);
+      assertFalse(parser.isAlive());
+      assertEquals(51, slow.events.size());
+      assertEquals("P50", slow.events.get(49));
+      assertEquals("complete", slow.events.get(50));
+   }
+
+   @Test
+   public void cancelledSubscribersReceiveNothingMore() throws Throwable {
+      PagePublisher publisher = new PagePublisher();
+      Recorder stays = new Recorder(Long.MAX_VALUE);
+      Recorder leaves = new Recorder(Long.MAX_VALUE) {
+         @Override
+         public void onNext(PageType page) {
+            super.onNext(page);
+            subscription.cancel();
+         }
+      };
+      publisher.subscribe(leaves);
+      publisher.subscribe(stays);
+      publisher.publish(manyPages(5), new Log(), PostFilter.KEEP_ALL);
+      assertEquals(1, leaves.events.size());
+      assertEquals(6, stays.events.size());
+   }
+
+   @Test
+   public void parseStopsWhenAllSubscribersCancel() throws Throwable {
+      PagePublisher publisher = new PagePublisher();
+      Recorder only = new Recorder(3) {
+         @Override
+         public void onNext(PageType page) {
+            super.onNext(page);
+            if (events.size() == 3) {
+               subscription.cancel();
+            }
+         }
+      };
+      publisher.subscribe(only);
+      publisher.publish(manyPages(100), new Log(), PostFilter.KEEP_ALL);
+      assertEquals(3, only.events.size());
+   }
+
+   @Test
+   public void subscribersThatThrowAreCancelled() throws Throwable {
+      PagePublisher publisher = new PagePublisher();
+      Recorder stays = new Recorder(Long.MAX_VALUE);
+      Recorder throwing = new Recorder(Long.MAX_VALUE) {
+         @Override
+         public void onNext(PageType page) {
+            throw new IllegalStateException("Expected");
+         }
+      };
+      publisher.subscribe(throwing);
+      publisher.subscribe(stays);
+      publisher.publish(getSample(), new Log(), PostFilter.KEEP_ALL);
+      assertEquals(Collections.singletonList("error"), throwing.events);
+      assertEquals(3, stays.events.size());
+   }
+
+   @Test
+   public void parseErrorsAreSentToSubscribers() throws Throwable {
+      PagePublisher publisher = new PagePublisher();
+      Recorder recorder = new Recorder(Long.MAX_VALUE);
+      publisher.subscribe(recorder);
+      try {
+         publisher.publish(SampleDumps.stream(SampleDumps.HEADER + "<page><title>Bad</title></pag>"),
+               new Log(), PostFilter.KEEP_ALL);
+         fail("Expected an exception");
+      } catch (Exception e) {
+         // expected
+      }
+      assertEquals(Collections.singletonList("error"), recorder.events);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void requestMustBePositive() throws Throwable {
+      PagePublisher publisher = new PagePublisher();
+      Recorder recorder = new Recorder(0);
+      publisher.subscribe(recorder);
+      recorder.subscription.request(0);
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void cantSubscribeAfterPublishing() throws Throwable {
+      PagePublisher publisher = new PagePublisher();
+      publisher.subscribe(new Recorder(Long.MAX_VALUE));
+      publisher.publish(getSample(), new Log(), PostFilter.KEEP_ALL);
+      publisher.subscribe(new Recorder(Long.MAX_VALUE));
+   }
+}
@@ -0,0 +1,162 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.apache.tools.bzip2.CBZip2OutputStream;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ParallelBzip2InputStreamTest {
+
+   // Text that compresses (somewhat) realistically:  random words with some long runs.
+   private static byte[] makeData(int size, long seed) {
+      Random random = new Random(seed);
+      String[] words = {"the", "page", "revision", "Polish", "==English==", "[[link]]", "{{template}}", "\n",
+            "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa", "&lt;", "zawilinski", "łódź"};
+      ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+      while (out.size() < size) {
+         byte[] word = words[random.nextInt(words.length)].getBytes();
+         out.write(word, 0, word.length);
+         out.write(' ');
+         if (random.nextInt(10) == 0) {
+            out.write(random.nextInt(256));
+         }
+      }
+      return Arrays.copyOf(out.toByteArray(), size);
+   }
+
+   // Compress with the 100k block size so that modest inputs have many blocks.
+   private static byte[] compress(byte[] data) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.write('B');
+      out.write('Z');
+      CBZip2OutputStream bz = new CBZip2OutputStream(out, 1);
+      bz.write(data);
+      bz.close();
+      return out.toByteArray();
+   }
+
+   private static byte[] readAll(InputStream in, int bufferSize) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[bufferSize];
+      int n;
+      while ((n = in.read(buffer, 0, buffer.length)) > 0) {
+         out.write(buffer, 0, n);
+      }
+      in.close();
+      return out.toByteArray();
+   }
+
+   private static byte[] concat(byte[]... arrays) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      for (byte[] a : arrays) {
+         out.write(a, 0, a.length);
+      }
+      return out.toByteArray();
+   }
+
+   @Test
+   public void decodesSingleBlock() throws Throwable {
+      byte[] data = "Hello, World!  Hello, World!".getBytes();
+      byte[] observed = readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(compress(data)), 2), 10);
+      assertArrayEquals(data, observed);
+   }
+
+   @Test
+   public void decodesManyBlocksInOrder() throws Throwable {
+      byte[] data = makeData(750000, 17);
+      byte[] compressed = compress(data);
+      for (int threads = 1; threads <= 4; threads++) {
+         byte[] observed = readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(compressed), threads),
+               4096);
+         assertArrayEquals("threads = " + threads, data, observed);
+      }
+   }
+
+   @Test
+   public void decodesLongRuns() throws Throwable {
+      byte[] data = new byte[300000];
+      Arrays.fill(data, 0, 1000, (byte) 'x');
+      Arrays.fill(data, 1000, 200000, (byte) 'y');
+      byte[] observed = readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(compress(data)), 3), 4096);
+      assertArrayEquals(data, observed);
+   }
+
+   @Test
+   public void singleByteReads() throws Throwable {
+      byte[] data = makeData(5000, 3);
+      InputStream in = new ParallelBzip2InputStream(new ByteArrayInputStream(compress(data)), 2);
+      for (byte b : data) {
+         assertEquals(b & 0xff, in.read());
+      }
+      assertEquals(-1, in.read());
+      in.close();
+   }
+
+   @Test
+   public void decodesMultistream() throws Throwable {
+      byte[] data1 = makeData(250000, 1);
+      byte[] data2 = makeData(10, 2);
+      byte[] data3 = makeData(150000, 3);
+      byte[] compressed = concat(compress(data1), compress(data2), compress(data3));
+      byte[] observed = readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(compressed), 3), 8192);
+      assertArrayEquals(concat(data1, data2, data3), observed);
+   }
+
+   @Test
+   public void emptyStream() throws Throwable {
+      // "BZh9", the end-of-stream magic number, and a zero CRC
+      byte[] empty = {'B', 'Z', 'h', '9', 0x17, 0x72, 0x45, 0x38, 0x50, (byte) 0x90, 0, 0, 0, 0};
+      byte[] observed = readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(empty), 2), 10);
+      assertEquals(0, observed.length);
+   }
+
+   @Test(expected = IOException.class)
+   public void rejectsNonBzip2Input() throws Throwable {
+      readAll(new ParallelBzip2InputStream(new ByteArrayInputStream("<mediawiki>".getBytes()), 2), 10);
+   }
+
+   @Test(expected = IOException.class)
+   public void detectsCorruptData() throws Throwable {
+      byte[] compressed = compress(makeData(50000, 5));
+      compressed[compressed.length / 2] ^= 0x10;
+      readAll(new ParallelBzip2InputStream(new ByteArrayInputStream(compressed), 2), 4096);
+   }
+
+   @Test
+   public void mergedSegmentsDecode() throws Throwable {
+      // Simulate a false magic number by splitting a real block's segment at an arbitrary bit.
+      byte[] data = makeData(20000, 9);
+      byte[] compressed = compress(data);
+      // "BZh1" followed by the 48-bit block magic
+      int bitStart = (4 + 6) * 8;
+      long bitEnd = (long) compressed.length * 8;
+      long split = bitStart + 1001;
+
+      int secondByte = (int) (split >>> 3);
+      ParallelBzip2InputStream.Segment first = new ParallelBzip2InputStream.Segment(0,
+            Arrays.copyOf(compressed, (int) ((split + 7) >>> 3)), bitStart, split);
+      ParallelBzip2InputStream.Segment second = new ParallelBzip2InputStream.Segment(secondByte,
+            Arrays.copyOfRange(compressed, secondByte, compressed.length), (int) (split & 7),
+            bitEnd - (long) secondByte * 8);
+
+      try {
+         first.decode(new Bzip2BlockDecoder());
+         fail("Truncated block should not decode");
+      } catch (IOException e) {
+         // expected
+      }
+      assertArrayEquals(data, first.merge(second).decode(new Bzip2BlockDecoder()));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void requiresAtLeastOneThread() throws Throwable {
+      new ParallelBzip2InputStream(new ByteArrayInputStream(new byte[0]), 0);
+   }
+}
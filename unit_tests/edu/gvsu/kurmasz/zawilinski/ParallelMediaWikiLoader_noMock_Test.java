@@ -0,0 +1,115 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.XMLFilter;
+
+import javax.xml.bind.JAXBException;
+import java.io.File;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class ParallelMediaWikiLoader_noMock_Test {
+
+   private File sample;
+
+   // Creates a new CharSubPrefilter for each piece
+   private static class Filters implements ParallelMediaWikiLoader.FilterFactory {
+      private PostFilter postFilter;
+      private boolean substitute;
+
+      private Filters(PostFilter postFilter, boolean substitute) {
+         this.postFilter = postFilter;
+         this.substitute = substitute;
+      }
+
+      public XMLFilter[] createPrefilters() {
+         return substitute ? new XMLFilter[]{new PreFilteredMediaWikiLoader_noMock_Test.CharSubPrefilter('e', '8')}
+               : new XMLFilter[0];
+      }
+
+      public PostFilter createPostFilter() {
+         return postFilter;
+      }
+   }
+
+   @Before
+   public void setUp() throws Throwable {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      String content = MappedDump_noMock_Test.read(input);
+      sample = MappedDump_noMock_Test.writeTempFile(content);
+   }
+
+   @After
+   public void tearDown() {
+      sample.delete();
+   }
+
+   @Test
+   public void loadsAllPagesInOrder() throws Throwable {
+      for (int threads = 1; threads <= 4; threads++) {
+         MediaWikiType root = ParallelMediaWikiLoader.load(sample, new Log(), threads,
+               new Filters(PostFilter.KEEP_ALL, false)).getValue();
+         SampleContentCheck.verifyMWSampleContent(root);
+      }
+   }
+
+   @Test
+   public void prefiltersAreApplied() throws Throwable {
+      MediaWikiType root = ParallelMediaWikiLoader.load(sample, new Log(), 3,
+            new Filters(PostFilter.KEEP_ALL, true)).getValue();
+      SampleContentCheck.verifyMWSampleContent_8fore(root);
+   }
+
+   @Test
+   public void postFilterIsApplied() throws Throwable {
+      MediaWikiType root = ParallelMediaWikiLoader.load(sample, new Log(), 3,
+            new Filters(PostFilter.KEEP_NONE, false)).getValue();
+      assertEquals(0, root.getPage().size());
+   }
+
+   @Test
+   public void handlerExceptionIsThrown() throws Throwable {
+      final JAXBException problem = new JAXBException("Expected");
+      try {
+         ParallelMediaWikiLoader.load(sample, new Log(), 2, new Filters(PostFilter.KEEP_ALL, false),
+               new PageHandler() {
+                  public void beginDocument(MediaWikiType root) {
+                  }
+
+                  public void handlePage(PageType page) throws JAXBException {
+                     throw problem;
+                  }
+
+                  public void endDocument(MediaWikiType root) {
+                  }
+               });
+         fail("Should have thrown an exception");
+      } catch (JAXBException e) {
+         assertSame(problem, e);
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void loadRequiresAtLeastOneThread() throws Throwable {
+      ParallelMediaWikiLoader.load(sample, new Log(), 0, new Filters(PostFilter.KEEP_ALL, false));
+   }
+
+   @Test
+   public void canLoadOnlyUncompressedFiles() throws Throwable {
+      assertTrue(ParallelMediaWikiLoader.canLoad(sample.getPath()));
+      assertFalse(ParallelMediaWikiLoader.canLoad("-"));
+      assertFalse(ParallelMediaWikiLoader.canLoad(sample.getPath() + ".doesNotExist"));
+      File compressed = File.createTempFile("ParallelTest", ".bz2");
+      compressed.deleteOnExit();
+      assertFalse(ParallelMediaWikiLoader.canLoad(compressed.getPath()));
+      compressed.delete();
+   }
+}
@@ -0,0 +1,158 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PipelinedMediaWikiLoader_noMock_Test {
+
+   // Collects the pages and verifies the order of the callbacks (which are made on the calling thread).
+   private static class CollectingHandler implements PageHandler {
+      private final Thread caller = Thread.currentThread();
+      private List<PageType> pages = new ArrayList<PageType>();
+      private MediaWikiType root;
+      private boolean ended = false;
+
+      public void beginDocument(MediaWikiType root) throws JAXBException {
+         assertNull("beginDocument called twice", this.root);
+         assertSame(caller, Thread.currentThread());
+         this.root = root;
+      }
+
+      public void handlePage(PageType page) throws JAXBException {
+         assertNotNull("beginDocument not called", root);
+         assertFalse(ended);
+         assertSame(caller, Thread.currentThread());
+         pages.add(page);
+      }
+
+      public void endDocument(MediaWikiType root) throws JAXBException {
+         assertSame(this.root, root);
+         ended = true;
+      }
+   }
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   // n pages, each with a text of about textLength characters
+   private static InputStream manyPages(int n, int textLength) throws Throwable {
+      StringBuilder text = new StringBuilder();
+      while (text.length() < textLength) {
+         text.append("Some text. ");
+      }
+      String[] pages = new String[n];
+      for (int i = 1; i <= n; i++) {
+         pages[i - 1] = SampleDumps.page("P" + i, i, i + text.toString());
+      }
+      return SampleDumps.stream(SampleDumps.dump(pages));
+   }
+
+   @Test
+   public void handlerReceivesAllPages() throws Throwable {
+      CollectingHandler handler = new CollectingHandler();
+      PipelinedMediaWikiLoader.StageStats[] stats = PipelinedMediaWikiLoader.load(getSample(), new Log(),
+            PostFilter.KEEP_ALL, handler);
+      assertTrue(handler.ended);
+      MediaWikiType root = handler.root;
+      root.getPage().clear();
+      root.getPage().addAll(handler.pages);
+      SampleContentCheck.verifyMWSampleContent(root);
+
+      assertEquals(3, stats.length);
+      assertEquals("read", stats[0].getName());
+      assertEquals(1, stats[0].getItems());
+      assertEquals("parse", stats[1].getName());
+      assertEquals(2, stats[1].getItems());
+      assertEquals("write", stats[2].getName());
+      assertEquals(2, stats[2].getItems());
+   }
+
+   @Test
+   public void prefiltersAreApplied() throws Throwable {
+      CollectingHandler handler = new CollectingHandler();
+      PipelinedMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_ALL, handler,
+            new PreFilteredMediaWikiLoader_noMock_Test.CharSubPrefilter('e', '8'));
+      MediaWikiType root = handler.root;
+      root.getPage().clear();
+      root.getPage().addAll(handler.pages);
+      SampleContentCheck.verifyMWSampleContent_8fore(root);
+   }
+
+   @Test
+   public void largeInputsArriveInOrder() throws Throwable {
+      CollectingHandler handler = new CollectingHandler();
+      PipelinedMediaWikiLoader.StageStats[] stats = PipelinedMediaWikiLoader.load(manyPages(500, 2000), new Log(),
+            PostFilter.KEEP_ALL, handler);
+      assertTrue(handler.ended);
+      assertEquals(500, handler.pages.size());
+      for (int i = 0; i < 500; i++) {
+         assertEquals("P" + (i + 1), handler.pages.get(i).getTitle());
+         assertTrue(Util.getText(handler.pages.get(i), 0).startsWith((i + 1) + "Some text."));
+      }
+      assertTrue(stats[0].getItems() > 10);
+      for (PipelinedMediaWikiLoader.StageStats stage : stats) {
+         assertTrue(stage.toString(), stage.getBusyNanos() >= 0 && stage.getIdleNanos() >= 0);
+      }
+   }
+
+   @Test
+   public void postFilterIsApplied() throws Throwable {
+      CollectingHandler handler = new CollectingHandler();
+      PipelinedMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_NONE, handler);
+      assertTrue(handler.ended);
+      assertEquals(0, handler.pages.size());
+   }
+
+   @Test
+   public void handlerExceptionIsThrown() throws Throwable {
+      final JAXBException problem = new JAXBException("Expected");
+      CollectingHandler handler = new CollectingHandler() {
+         @Override
+         public void handlePage(PageType page) throws JAXBException {
+            throw problem;
+         }
+      };
+      try {
+         PipelinedMediaWikiLoader.load(manyPages(500, 2000), new Log(), PostFilter.KEEP_ALL, handler);
+         fail("Expected JAXBException");
+      } catch (JAXBException e) {
+         assertSame(problem, e);
+      }
+   }
+
+   @Test
+   public void readExceptionIsThrown() throws Throwable {
+      final IOException problem = new IOException("Expected");
+      InputStream broken = new InputStream() {
+         private int count = 0;
+
+         @Override
+         public int read() throws IOException {
+            if (++count > 100) {
+               throw problem;
+            }
+            return ' ';
+         }
+      };
+      try {
+         PipelinedMediaWikiLoader.load(broken, new Log(), PostFilter.KEEP_ALL, new CollectingHandler());
+         fail("Expected IOException");
+      } catch (IOException e) {
+         assertSame(problem, e);
+      }
+   }
+}
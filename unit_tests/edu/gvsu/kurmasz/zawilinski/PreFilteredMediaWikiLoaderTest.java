@@ -2,6 +2,7 @@ package edu.gvsu.kurmasz.zawilinski;
 
 import edu.gvsu.kurmasz.warszawa.log.Log;
 import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
@@ -32,6 +33,12 @@ import static org.powermock.api.mockito.PowerMockito.*;
 @PrepareForTest({PreFilteredMediaWikiLoader.class, SAXParserFactory.class, MediaWikiLoader.class, InputSource.class})
 public class PreFilteredMediaWikiLoaderTest {
 
+   // The loaders share a JAXBContext and pool Unmarshallers.  Start each test without any.
+   @Before
+   public void resetPool() {
+      JAXBPool.reset();
+   }
+
 
    //
    // createSaxReader
@@ -0,0 +1,144 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RevisionPrefilter_noMock_Test {
+
+   // Records the metadata of each revision and keeps the revisions with the given ids.
+   private static class RecordingPredicate implements RevisionPrefilter.RevisionPredicate {
+      private List<String> calls = new ArrayList<String>();
+      private List<String> keep;
+
+      private RecordingPredicate(List<String> keep) {
+         this.keep = keep;
+      }
+
+      public boolean keepRevision(RevisionInfo r) {
+         calls.add(r.getId() + "|" + r.getTimestamp() + "|" + r.getUsername() + "|" + r.getContributorId() + "|"
+               + r.getIp() + "|" + r.isMinor());
+         return keep == null || keep.contains(r.getId());
+      }
+   }
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   private static MediaWikiType load(InputStream input, XMLFilter... filters) throws Throwable {
+      return PreFilteredMediaWikiLoader.load(new InputSource(input), new Log(), MediaWikiLoader.createUnmarshaller(),
+            filters).getValue();
+   }
+
+   private static List<String> revisionIds(MediaWikiType root) {
+      List<String> answer = new ArrayList<String>();
+      for (PageType page : root.getPage()) {
+         for (RevisionType revision : Util.getRevisions(page)) {
+            answer.add(revision.getId().toString());
+         }
+      }
+      return answer;
+   }
+
+   private static List<String> list(String... items) {
+      List<String> answer = new ArrayList<String>();
+      for (String item : items) {
+         answer.add(item);
+      }
+      return answer;
+   }
+
+   @Test
+   public void keptRevisionsAreUnchanged() throws Throwable {
+      RevisionPrefilter filter = new RevisionPrefilter(new RecordingPredicate(null));
+      SampleContentCheck.verifyMWSampleContent(load(getSample(), filter));
+      assertEquals(5, filter.getRevisionsKept());
+      assertEquals(0, filter.getRevisionsDiscarded());
+   }
+
+   @Test
+   public void predicateReceivesMetadata() throws Throwable {
+      RecordingPredicate predicate = new RecordingPredicate(null);
+      load(getSample(), new RevisionPrefilter(predicate));
+      assertEquals(list("3|2002-12-12T08:06:51Z|Sjc~enwiktionary|2|null|false",
+            "4|2002-12-12T08:11:20Z|Zachary Kurmas|42856|null|false",
+            "21|2009-08-10T05:21:17Z|Ivan Štambuk|42855|null|false",
+            "22|2009-08-10T22:00:17Z|Zachary Kurmas|42856|null|false",
+            "36|2009-08-10T22:00:17Z|Bugs Bunny|42857|null|false"), predicate.calls);
+   }
+
+   @Test
+   public void rejectedRevisionsAreRemoved() throws Throwable {
+      RevisionPrefilter filter = new RevisionPrefilter(new RecordingPredicate(list("4", "22")));
+      MediaWikiType root = load(getSample(), filter);
+      assertEquals(list("4", "22"), revisionIds(root));
+      assertEquals(2, root.getPage().size());
+      assertEquals("Content for rev 2 (pickles)", Util.getText(root.getPage().get(0), 0));
+      assertEquals("Content for rev 2 of page 2", Util.getText(root.getPage().get(1), 0));
+      assertEquals(2, filter.getRevisionsKept());
+      assertEquals(3, filter.getRevisionsDiscarded());
+   }
+
+   @Test
+   public void windowPredicate() throws Throwable {
+      long since = Util.parseTimestamp("2002-12-12T08:11:20Z");
+      long until = Util.parseTimestamp("2009-08-10T22:00:17Z");
+      MediaWikiType root = load(getSample(),
+            new RevisionPrefilter(new RevisionPrefilter.WindowPredicate(since, until, false)));
+      assertEquals(list("4", "21"), revisionIds(root));
+   }
+
+   @Test
+   public void anonymousAndMinorRevisions() throws Throwable {
+      String xml = "<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\" version=\"0.10\">\n" +
+            "<page><title>One</title><ns>0</ns><id>1</id>\n" +
+            "<revision><id>10</id><timestamp>2010-01-01T00:00:00Z</timestamp>" +
+            "<contributor><ip>10.0.0.1</ip></contributor><minor/><text>minor</text></revision>\n" +
+            "<revision><id>11</id><timestamp>2010-01-02T00:00:00Z</timestamp>" +
+            "<contributor><username>U</username><id>5</id></contributor><text>major</text></revision>\n" +
+            "</page></mediawiki>";
+      RecordingPredicate recorder = new RecordingPredicate(null);
+      load(new ByteArrayInputStream(xml.getBytes("UTF-8")), new RevisionPrefilter(recorder));
+      assertEquals(list("10|2010-01-01T00:00:00Z|null|null|10.0.0.1|true", "11|2010-01-02T00:00:00Z|U|5|null|false"),
+            recorder.calls);
+
+      MediaWikiType root = load(new ByteArrayInputStream(xml.getBytes("UTF-8")),
+            new RevisionPrefilter(new RevisionPrefilter.WindowPredicate(Long.MIN_VALUE, Long.MAX_VALUE, true)));
+      assertEquals(list("11"), revisionIds(root));
+      assertEquals("major", Util.getText(root.getPage().get(0), 0));
+   }
+
+   @Test
+   public void discardedTextNeverReachesLaterFilters() throws Throwable {
+      final StringBuilder seen = new StringBuilder();
+      TextPrefilter recorder = new TextSizePrefilter(TextSizePrefilter.UNLIMITED) {
+         @Override
+         protected void handleTextElementCharacters(char[] ch, int start, int length) throws org.xml.sax.SAXException {
+            seen.append(ch, start, length);
+            super.handleTextElementCharacters(ch, start, length);
+         }
+      };
+      load(getSample(), new RevisionPrefilter(new RecordingPredicate(list("36"))), recorder);
+      assertEquals("Content for rev 3 of page 2 (carrots)", seen.toString());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void predicateMayNotBeNull() throws Throwable {
+      new RevisionPrefilter(null);
+   }
+}
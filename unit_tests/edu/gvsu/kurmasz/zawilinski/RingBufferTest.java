@@ -0,0 +1,79 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+
+   private final PipelinedMediaWikiLoader.StageStats stage = new PipelinedMediaWikiLoader.StageStats("test", "items");
+
+   @Test(expected = IllegalArgumentException.class)
+   public void capacityMustBePowerOfTwo() throws Throwable {
+      new RingBuffer<String>(6);
+   }
+
+   @Test
+   public void holdsAtMostCapacityItems() throws Throwable {
+      RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+      assertNull(buffer.poll());
+      for (int round = 0; round < 3; round++) {
+         for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+         }
+         assertFalse(buffer.offer(4));
+         for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), buffer.poll());
+         }
+         assertNull(buffer.poll());
+      }
+   }
+
+   @Test
+   public void passesItemsBetweenThreadsInOrder() throws Throwable {
+      final RingBuffer<Integer> buffer = new RingBuffer<Integer>(8);
+      final PipelinedMediaWikiLoader.StageStats producerStage =
+            new PipelinedMediaWikiLoader.StageStats("producer", "items");
+      Thread producer = new Thread() {
+         public void run() {
+            try {
+               for (int i = 0; i < 100000; i++) {
+                  buffer.put(i, producerStage);
+               }
+            } catch (InterruptedIOException e) {
+               // the consumer will fail
+            }
+         }
+      };
+      producer.start();
+      for (int i = 0; i < 100000; i++) {
+         assertEquals(Integer.valueOf(i), buffer.take(stage));
+      }
+      producer.join();
+   }
+
+   @Test
+   public void abortWakesWaitingThreads() throws Throwable {
+      final RingBuffer<Integer> buffer = new RingBuffer<Integer>(2);
+      Thread aborter = new Thread() {
+         public void run() {
+            try {
+               Thread.sleep(50);
+            } catch (InterruptedException e) {
+               // abort now
+            }
+            buffer.abort();
+         }
+      };
+      aborter.start();
+      try {
+         buffer.take(stage);
+         fail("Expected InterruptedIOException");
+      } catch (InterruptedIOException e) {
+         // expected
+      }
+      aborter.join();
+   }
+}
@@ -2,9 +2,11 @@ package edu.gvsu.kurmasz.zawilinski;
 
 import edu.gvsu.kurmasz.zawilinski.mw.current.*;
 
-import javax.xml.datatype.XMLGregorianCalendar;
 import java.math.BigInteger;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.TimeZone;
 
 import static org.junit.Assert.assertEquals;
 
@@ -16,6 +18,13 @@ import static org.junit.Assert.assertEquals;
 
 public class SampleContentCheck {
 
+  // Timestamps are bound to milliseconds since the epoch
+  private static Calendar utc(long millis) {
+    Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+    calendar.setTimeInMillis(millis);
+    return calendar;
+  }
+
   public static void verifyMWSampleContent(MediaWikiType doc) {
     String[][] expected = {
         {"Content for rev 1", "Content for rev 2 (pickles)"},
@@ -53,7 +62,7 @@ public class SampleContentCheck {
       int revNum = 0;
       for (Object rawRev : page.getRevisionOrUpload()) {
         RevisionType rev = (RevisionType) (rawRev);
-        String observed = rev.getText().getValue();
+        String observed = Util.getText(rev);
         assertEquals("Checking page " + pageNum + " revision " + revNum,
             expected[pageNum][revNum], observed);
         revNum++;
@@ -70,7 +79,7 @@ public class SampleContentCheck {
       for (Object rawRev : page.getRevisionOrUpload()) {
         RevisionType rev = (RevisionType) (rawRev);
         //System.out.println("=>" + rev.getText().getValue() + "<==");
-        String observed = rev.getText().getValue().replaceAll("\n\\s*", "\n");
+        String observed = Util.getText(rev).replaceAll("\n\\s*", "\n");
         assertEquals("Checking page " + pageNum + " revision " + revNum,
             expected[pageNum][revNum], observed);
         revNum++;
@@ -113,13 +122,13 @@ public class SampleContentCheck {
     // page 1, revision 1
     RevisionType p1r1 = (RevisionType) p1revs.get(0);
     assertEquals(3, p1r1.getId().intValue());
-    XMLGregorianCalendar timestamp = p1r1.getTimestamp();
-    assertEquals(2002, timestamp.getYear());
-    assertEquals(12, timestamp.getMonth());
-    assertEquals(12, timestamp.getDay());
-    assertEquals(8, timestamp.getHour());
-    assertEquals(06, timestamp.getMinute());
-    assertEquals(51, timestamp.getSecond());
+    Calendar timestamp = utc(p1r1.getTimestamp());
+    assertEquals(2002, timestamp.get(Calendar.YEAR));
+    assertEquals(12, timestamp.get(Calendar.MONTH) + 1);
+    assertEquals(12, timestamp.get(Calendar.DAY_OF_MONTH));
+    assertEquals(8, timestamp.get(Calendar.HOUR_OF_DAY));
+    assertEquals(06, timestamp.get(Calendar.MINUTE));
+    assertEquals(51, timestamp.get(Calendar.SECOND));
 
     ContributorType contributor = p1r1.getContributor();
     assertEquals("Sjc~enwiktionary", contributor.getUsername());
@@ -131,13 +140,13 @@ public class SampleContentCheck {
     // page1 revision 2
     RevisionType p1r2 = (RevisionType) p1revs.get(1);
     assertEquals(4, p1r2.getId().intValue());
-    timestamp = p1r2.getTimestamp();
-    assertEquals(2002, timestamp.getYear());
-    assertEquals(12, timestamp.getMonth());
-    assertEquals(12, timestamp.getDay());
-    assertEquals(8, timestamp.getHour());
-    assertEquals(11, timestamp.getMinute());
-    assertEquals(20, timestamp.getSecond());
+    timestamp = utc(p1r2.getTimestamp());
+    assertEquals(2002, timestamp.get(Calendar.YEAR));
+    assertEquals(12, timestamp.get(Calendar.MONTH) + 1);
+    assertEquals(12, timestamp.get(Calendar.DAY_OF_MONTH));
+    assertEquals(8, timestamp.get(Calendar.HOUR_OF_DAY));
+    assertEquals(11, timestamp.get(Calendar.MINUTE));
+    assertEquals(20, timestamp.get(Calendar.SECOND));
 
     contributor = p1r2.getContributor();
     assertEquals("Zachary Kurmas", contributor.getUsername());
@@ -158,13 +167,13 @@ public class SampleContentCheck {
     // page 2, revision 1
     RevisionType p2r1 = (RevisionType) p2revs.get(0);
     assertEquals(21, p2r1.getId().intValue());
-    timestamp = p2r1.getTimestamp();
-    assertEquals(2009, timestamp.getYear());
-    assertEquals(8, timestamp.getMonth());
-    assertEquals(10, timestamp.getDay());
-    assertEquals(5, timestamp.getHour());
-    assertEquals(21, timestamp.getMinute());
-    assertEquals(17, timestamp.getSecond());
+    timestamp = utc(p2r1.getTimestamp());
+    assertEquals(2009, timestamp.get(Calendar.YEAR));
+    assertEquals(8, timestamp.get(Calendar.MONTH) + 1);
+    assertEquals(10, timestamp.get(Calendar.DAY_OF_MONTH));
+    assertEquals(5, timestamp.get(Calendar.HOUR_OF_DAY));
+    assertEquals(21, timestamp.get(Calendar.MINUTE));
+    assertEquals(17, timestamp.get(Calendar.SECOND));
 
     contributor = p2r1.getContributor();
     assertEquals("Ivan Štambuk", contributor.getUsername());
@@ -0,0 +1,55 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Builds small dumps for tests that need more (or different) pages than the sample resources contain.
+ */
+public class SampleDumps {
+
+   public static final String HEADER = "<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.10/\" "
+         + "version=\"0.10\" xml:lang=\"en\">\n";
+   public static final String FOOTER = "</mediawiki>\n";
+
+   private SampleDumps() {
+   }
+
+   // A page with one revision (with id 100 * id + i) for each of the given texts
+   public static String page(String title, long id, String... texts) {
+      StringBuilder sb = new StringBuilder("  <page>\n    <title>").append(title).append("</title>\n    <ns>0</ns>\n")
+            .append("    <id>").append(id).append("</id>\n");
+      for (int i = 0; i < texts.length; i++) {
+         sb.append("    <revision>\n      <id>").append(100 * id + i).append("</id>\n")
+               .append("      <text xml:space=\"preserve\">").append(texts[i]).append("</text>\n    </revision>\n");
+      }
+      return sb.append("  </page>\n").toString();
+   }
+
+   // Pages "P1" through "Pn" (with ids 1 through n), without revisions
+   public static String numberedPages(int n) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 1; i <= n; i++) {
+         sb.append("<page><title>P").append(i).append("</title><ns>0</ns><id>").append(i).append("</id></page>\n");
+      }
+      return sb.toString();
+   }
+
+   // A complete dump containing the given pages
+   public static String dump(String... pages) {
+      StringBuilder sb = new StringBuilder(HEADER);
+      for (String page : pages) {
+         sb.append(page);
+      }
+      return sb.append(FOOTER).toString();
+   }
+
+   public static InputStream stream(String content) {
+      try {
+         return new ByteArrayInputStream(content.getBytes("UTF-8"));
+      } catch (UnsupportedEncodingException e) {
+         throw new IllegalStateException("UTF-8 is always supported.", e);
+      }
+   }
+}
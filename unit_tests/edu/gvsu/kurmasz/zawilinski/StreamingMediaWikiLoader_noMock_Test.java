@@ -0,0 +1,118 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreamingMediaWikiLoader_noMock_Test {
+
+   // Collects the pages and verifies the order of the callbacks.
+   private static class CollectingHandler implements PageHandler {
+      private List<PageType> pages = new ArrayList<PageType>();
+      private MediaWikiType root;
+      private int pagesInTreeAtEnd = -1;
+      private boolean ended = false;
+
+      public void beginDocument(MediaWikiType root) throws JAXBException {
+         assertNull("beginDocument called twice", this.root);
+         assertEquals(0, root.getPage().size());
+         this.root = root;
+      }
+
+      public void handlePage(PageType page) throws JAXBException {
+         assertNotNull("beginDocument not called", root);
+         assertFalse(ended);
+         // pages already handled should have been removed from the tree
+         assertTrue(root.getPage().size() <= 1);
+         pages.add(page);
+      }
+
+      public void endDocument(MediaWikiType root) throws JAXBException {
+         assertSame(this.root, root);
+         pagesInTreeAtEnd = root.getPage().size();
+         ended = true;
+      }
+   }
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   @Test
+   public void handlerReceivesAllPagesAndTreeIsEmpty() throws Throwable {
+      CollectingHandler handler = new CollectingHandler();
+      JAXBElement<MediaWikiType> observed = StreamingMediaWikiLoader.load(getSample(), new Log(),
+            PostFilter.KEEP_ALL, handler);
+
+      assertTrue(handler.ended);
+      assertEquals(0, handler.pagesInTreeAtEnd);
+      assertEquals(0, observed.getValue().getPage().size());
+      assertSame(observed.getValue(), handler.root);
+
+      // Put the pages back so we can use the standard content check
+      MediaWikiType root = observed.getValue();
+      root.getPage().addAll(handler.pages);
+      SampleContentCheck.verifyMWSampleContent(root);
+   }
+
+   @Test
+   public void prefiltersAreApplied() throws Throwable {
+      CollectingHandler handler = new CollectingHandler();
+      JAXBElement<MediaWikiType> observed = StreamingMediaWikiLoader.load(getSample(), new Log(),
+            PostFilter.KEEP_ALL, handler, new PreFilteredMediaWikiLoader_noMock_Test.CharSubPrefilter('e', '8'));
+
+      MediaWikiType root = observed.getValue();
+      root.getPage().addAll(handler.pages);
+      SampleContentCheck.verifyMWSampleContent_8fore(root);
+   }
+
+   @Test
+   public void postFilterIsApplied() throws Throwable {
+      CollectingHandler handler = new CollectingHandler();
+      StreamingMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_NONE, handler);
+
+      assertNotNull(handler.root);
+      assertTrue(handler.ended);
+      assertEquals(0, handler.pages.size());
+   }
+
+   @Test
+   public void handlerExceptionIsThrownAsJAXBException() throws Throwable {
+      final JAXBException problem = new JAXBException("Expected");
+      PageHandler handler = new CollectingHandler() {
+         @Override
+         public void handlePage(PageType page) throws JAXBException {
+            throw problem;
+         }
+      };
+      try {
+         StreamingMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_ALL, handler);
+         fail("Should have thrown an exception");
+      } catch (JAXBException e) {
+         assertSame(problem, e);
+      }
+   }
+
+   @Test(expected = JAXBException.class)
+   public void loadThrowsExceptionIfUnparsableFile() throws Throwable {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current_broken.xml");
+      StreamingMediaWikiLoader.load(input, new Log(), PostFilter.KEEP_ALL, new CollectingHandler());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void loadRequiresHandler() throws Throwable {
+      StreamingMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_ALL, null);
+   }
+}
@@ -0,0 +1,116 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.PageType;
+import edu.gvsu.kurmasz.zawilinski.mw.current.RevisionType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBElement;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class TextArena_noMock_Test {
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   @Test
+   public void storedTextIsRecovered() throws Throwable {
+      TextArena arena = new TextArena();
+      StoredText text = arena.store("Hello, World!");
+      assertEquals("Hello, World!", text.toString());
+      assertEquals(13, text.length());
+      assertEquals(1, arena.getTextsStored());
+      assertEquals(13, arena.getBytesStored());
+   }
+
+   @Test
+   public void lengthCountsCharsNotBytes() throws Throwable {
+      TextArena arena = new TextArena();
+      String polish = "Zażółć gęślą jaźń";
+      StoredText text = arena.store(polish);
+      assertEquals(polish.length(), text.length());
+      assertEquals(polish, text.toString());
+      assertEquals(polish.getBytes("UTF-8").length, arena.getBytesStored());
+   }
+
+   @Test
+   public void encodedLengthMatchesGetBytes() throws Throwable {
+      String[] texts = {"abc", "Zażółć", "\u20ac100", "\ud83d\ude00 smile", "lone \ud83d surrogate", "\ude00"};
+      TextArena arena = new TextArena();
+      for (String text : texts) {
+         assertEquals(text, text.getBytes("UTF-8").length, TextArena.encodedLength(text));
+         assertEquals(text, new String(text.getBytes("UTF-8"), "UTF-8"), arena.store(text).toString());
+      }
+   }
+
+   @Test
+   public void emptyAndNullTextsAreNotStored() throws Throwable {
+      TextArena arena = new TextArena();
+      assertSame(StoredText.EMPTY, arena.store(""));
+      assertNull(arena.store(null));
+      assertEquals(0, arena.getTextsStored());
+      assertEquals(0, arena.getBytesAllocated());
+   }
+
+   @Test
+   public void newChunksAreAllocatedAsNeeded() throws Throwable {
+      TextArena arena = new TextArena(8);
+      StoredText a = arena.store("abcde");
+      StoredText b = arena.store("fgh");
+      StoredText c = arena.store("ijk");
+      StoredText big = arena.store("0123456789012");
+      assertEquals("abcde", a.toString());
+      assertEquals("fgh", b.toString());
+      assertEquals("ijk", c.toString());
+      assertEquals("0123456789012", big.toString());
+      // "abcde" and "fgh" share the first chunk; "ijk" starts the second; the big text gets its own.
+      assertEquals(8 + 8 + 13, arena.getBytesAllocated());
+      assertEquals(24, arena.getBytesStored());
+   }
+
+   @Test
+   public void storedTextsAreEqualIfContentIsEqual() throws Throwable {
+      TextArena arena = new TextArena();
+      assertEquals(StoredText.of("pickles"), arena.store("pickles"));
+      assertEquals(arena.store("pickles").hashCode(), StoredText.of("pickles").hashCode());
+      assertFalse(StoredText.of("pickles").equals(arena.store("carrots")));
+   }
+
+   @Test
+   public void documentLoadsIntoArena() throws Throwable {
+      TextArena arena = new TextArena();
+      JAXBElement<MediaWikiType> root = PostFilteredMediaWikiLoader.load(getSample(), new Log(), arena,
+            PostFilter.KEEP_ALL);
+      SampleContentCheck.verifyMWSampleContent(root.getValue());
+      assertEquals(5, arena.getTextsStored());
+      long bytes = 0;
+      for (PageType page : root.getValue().getPage()) {
+         for (RevisionType revision : Util.getRevisions(page)) {
+            bytes += Util.getText(revision).getBytes("UTF-8").length;
+         }
+      }
+      assertEquals(bytes, arena.getBytesStored());
+   }
+
+   @Test
+   public void documentInArenaCanBeWritten() throws Throwable {
+      TextArena arena = new TextArena();
+      JAXBElement<MediaWikiType> root = PostFilteredMediaWikiLoader.load(getSample(), new Log(), arena,
+            PostFilter.KEEP_ALL);
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      new WiktionaryWriter().write(root, output);
+
+      JAXBElement<MediaWikiType> reloaded = MediaWikiLoader.load(new ByteArrayInputStream(output.toByteArray()),
+            new Log());
+      SampleContentCheck.verifyMWSampleContent(reloaded.getValue());
+   }
+}
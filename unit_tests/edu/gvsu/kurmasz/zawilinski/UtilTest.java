@@ -53,7 +53,7 @@ public class UtilTest {
         TextType textType = mock(TextType.class);
         String sampleText = "Hello, World!";
 
-        when(textType.getValue()).thenReturn(sampleText);
+        when(textType.getValue()).thenReturn(StoredText.of(sampleText));
         when(revision.getText()).thenReturn(textType);
 
         assertEquals(sampleText, Util.getText(revision));
@@ -83,7 +83,7 @@ public class UtilTest {
         TextType textType = mock(TextType.class);
         String sampleText = "Hello, World!";
 
-        when(textType.getValue()).thenReturn(sampleText);
+        when(textType.getValue()).thenReturn(StoredText.of(sampleText));
         when(revision.getText()).thenReturn(textType);
 
         assertEquals(sampleText.length(), Util.getTextSize(revision));
@@ -105,17 +105,17 @@ public class UtilTest {
 
         RevisionType r1 = mock(RevisionType.class);
         TextType t1 = mock(TextType.class);
-        when(t1.getValue()).thenReturn("text 1");
+        when(t1.getValue()).thenReturn(StoredText.of("text 1"));
         when(r1.getText()).thenReturn(t1);
 
         RevisionType r2 = mock(RevisionType.class);
         TextType t2 = mock(TextType.class);
-        when(t2.getValue()).thenReturn("text 2 foo bar");
+        when(t2.getValue()).thenReturn(StoredText.of("text 2 foo bar"));
         when(r2.getText()).thenReturn(t2);
 
         RevisionType r3 = mock(RevisionType.class);
         TextType t3 = mock(TextType.class);
-        when(t3.getValue()).thenReturn("t3 32");
+        when(t3.getValue()).thenReturn(StoredText.of("t3 32"));
         when(r3.getText()).thenReturn(t3);
 
         List<Object> revs = new ArrayList<Object>();
@@ -144,17 +144,17 @@ public class UtilTest {
 
         RevisionType r1 = mock(RevisionType.class);
         TextType t1 = mock(TextType.class);
-        when(t1.getValue()).thenReturn("text 1");
+        when(t1.getValue()).thenReturn(StoredText.of("text 1"));
         when(r1.getText()).thenReturn(t1);
 
         RevisionType r2 = mock(RevisionType.class);
         TextType t2 = mock(TextType.class);
-        when(t2.getValue()).thenReturn("text 2 foo bar");
+        when(t2.getValue()).thenReturn(StoredText.of("text 2 foo bar"));
         when(r2.getText()).thenReturn(t2);
 
         RevisionType r3 = mock(RevisionType.class);
         TextType t3 = mock(TextType.class);
-        when(t3.getValue()).thenReturn("t3 32");
+        when(t3.getValue()).thenReturn(StoredText.of("t3 32"));
         when(r3.getText()).thenReturn(t3);
 
         List<Object> revs = new ArrayList<Object>();
@@ -188,7 +188,7 @@ public class UtilTest {
 
         Util.setText(r2, newText);
         verify(r2).getText();
-        verify(t2).setValue(newText);
+        verify(t2).setValue(StoredText.of(newText));
     }
 
     @Test
@@ -198,9 +198,47 @@ public class UtilTest {
         RevisionType rev = (RevisionType) root.getPage().get(1).getRevisionOrUpload().get(0);
         Util.setText(rev, newText);
 
-        assertEquals(newText, rev.getText().getValue());
+        assertEquals(newText, rev.getText().getValue().toString());
         assertEquals(newText, Util.getText(root.getPage().get(1),0));
     }
 
 
+
+    @Test
+    public void parseTimestampMatchesDatatypeConverter() throws Throwable {
+        String[] timestamps = {"1970-01-01T00:00:00Z", "2002-12-12T08:06:51Z", "2000-02-29T23:59:59Z",
+                "2009-08-10T22:00:17Z", "2100-03-01T12:00:00Z", "1969-12-31T23:59:59Z", "0400-03-01T00:00:00Z"};
+        for (String t : timestamps) {
+            assertEquals(t, javax.xml.bind.DatatypeConverter.parseDateTime(t).getTimeInMillis(),
+                    Util.parseTimestamp(t));
+        }
+        assertEquals(1039680411000L, Util.parseTimestamp("2002-12-12T08:06:51Z"));
+    }
+
+    @Test
+    public void parseTimestampAcceptsOtherForms() throws Throwable {
+        assertEquals(1039680411000L, Util.parseTimestamp("2002-12-12T09:06:51+01:00"));
+        assertEquals(1039680411500L, Util.parseTimestamp("2002-12-12T08:06:51.5Z"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseTimestampRejectsGarbage() throws Throwable {
+        Util.parseTimestamp("2002-12-12Tab:cd:efZ");
+    }
+
+    @Test
+    public void printTimestampIsInverseOfParseTimestamp() throws Throwable {
+        String[] timestamps = {"1970-01-01T00:00:00Z", "2002-12-12T08:06:51Z", "2000-02-29T23:59:59Z",
+                "2009-08-10T22:00:17Z", "2100-03-01T12:00:00Z", "1969-12-31T23:59:59Z", "0400-03-01T00:00:00Z"};
+        for (String t : timestamps) {
+            assertEquals(t, Util.printTimestamp(Util.parseTimestamp(t)));
+        }
+    }
+
+    @Test
+    public void printTimestampIncludesMillisecondsOnlyIfNeeded() throws Throwable {
+        assertEquals("2002-12-12T08:06:51.500Z", Util.printTimestamp(1039680411500L));
+        assertEquals("2002-12-12T08:06:51.007Z", Util.printTimestamp(1039680411007L));
+        assertEquals("1969-12-31T23:59:59.999Z", Util.printTimestamp(-1L));
+    }
 }
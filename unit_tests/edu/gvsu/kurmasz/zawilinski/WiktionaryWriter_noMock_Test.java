@@ -0,0 +1,155 @@
+package edu.gvsu.kurmasz.zawilinski;
+
+import edu.gvsu.kurmasz.warszawa.log.Log;
+import edu.gvsu.kurmasz.zawilinski.mw.current.MediaWikiType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class WiktionaryWriter_noMock_Test {
+
+   private InputStream getSample() {
+      InputStream input = this.getClass().getResourceAsStream("/mw_sample_current.xml");
+      Assert.assertNotNull("input", input);
+      return input;
+   }
+
+   private String batch(WiktionaryWriter writer, PostFilter postFilter) throws Throwable {
+      JAXBElement<MediaWikiType> root = PostFilteredMediaWikiLoader.load(getSample(), new Log(), postFilter);
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      writer.write(root, output);
+      return output.toString("UTF-8");
+   }
+
+   private String streamed(WiktionaryWriter writer, PostFilter postFilter) throws Throwable {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      StreamingMediaWikiLoader.load(getSample(), new Log(), postFilter, writer.streamTo(output));
+      return output.toString("UTF-8");
+   }
+
+   private byte[] batchBytes(WiktionaryWriter writer) throws Throwable {
+      JAXBElement<MediaWikiType> root = PostFilteredMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_ALL);
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      writer.write(root, output);
+      return output.toByteArray();
+   }
+
+   private byte[] streamedBytes(WiktionaryWriter writer) throws Throwable {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      StreamingMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_ALL, writer.streamTo(output));
+      return output.toByteArray();
+   }
+
+   // Records whether it has been closed, and (optionally) fails every write.
+   private static class RecordingStream extends ByteArrayOutputStream {
+      private boolean closed = false;
+      private final boolean fail;
+
+      RecordingStream(boolean fail) {
+         this.fail = fail;
+      }
+
+      @Override
+      public synchronized void write(byte[] b, int off, int len) {
+         if (fail) {
+            throw new IllegalStateException("Simulated write failure");
+         }
+         super.write(b, off, len);
+      }
+
+      @Override
+      public void close() throws IOException {
+         closed = true;
+      }
+   }
+
+   @Test
+   public void streamedOutputMatchesBatchOutput() throws Throwable {
+      WiktionaryWriter writer = new WiktionaryWriter();
+      assertEquals(batch(writer, PostFilter.KEEP_ALL), streamed(writer, PostFilter.KEEP_ALL));
+   }
+
+   @Test
+   public void streamedOutputMatchesBatchOutputWithoutFormatting() throws Throwable {
+      WiktionaryWriter writer = new WiktionaryWriter();
+      writer.setFormattedOutput(false);
+      assertEquals(batch(writer, PostFilter.KEEP_ALL), streamed(writer, PostFilter.KEEP_ALL));
+   }
+
+   @Test
+   public void streamedOutputMatchesBatchOutputWhenNoPagesKept() throws Throwable {
+      WiktionaryWriter writer = new WiktionaryWriter();
+      assertEquals(batch(writer, PostFilter.KEEP_NONE), streamed(writer, PostFilter.KEEP_NONE));
+   }
+
+   @Test
+   public void streamedOutputCanBeReloaded() throws Throwable {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      StreamingMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_ALL,
+            new WiktionaryWriter().streamTo(output));
+
+      JAXBElement<MediaWikiType> reloaded = MediaWikiLoader.load(new ByteArrayInputStream(output.toByteArray()),
+            new Log());
+      SampleContentCheck.verifyMWSampleContent(reloaded.getValue());
+   }
+
+   @Test
+   public void streamedOutputMatchesBatchOutputInOtherEncodings() throws Throwable {
+      for (String encoding : new String[]{"ISO-8859-1", "UTF-16", "UTF-16LE"}) {
+         WiktionaryWriter writer = new WiktionaryWriter();
+         writer.setProperty(Marshaller.JAXB_ENCODING, encoding);
+         assertArrayEquals(encoding, batchBytes(writer), streamedBytes(writer));
+      }
+   }
+
+   @Test
+   public void fileHandlerClosesOutputWhenDocumentEnds() throws Throwable {
+      RecordingStream output = new RecordingStream(false);
+      StreamingMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_ALL,
+            new WiktionaryWriter().streamTo(output, true));
+      assertTrue(output.closed);
+      assertArrayEquals(batchBytes(new WiktionaryWriter()), output.toByteArray());
+   }
+
+   @Test
+   public void fileHandlerClosesOutputWhenWriteFails() throws Throwable {
+      RecordingStream output = new RecordingStream(true);
+      try {
+         StreamingMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_ALL,
+               new WiktionaryWriter().streamTo(output, true));
+         fail("Expected the simulated failure");
+      } catch (IllegalStateException e) {
+         // expected
+      }
+      assertTrue(output.closed);
+   }
+
+   @Test
+   public void streamHandlerDoesNotCloseOutput() throws Throwable {
+      RecordingStream output = new RecordingStream(false);
+      StreamingMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_ALL,
+            new WiktionaryWriter().streamTo(output));
+      assertFalse(output.closed);
+   }
+
+   @Test
+   public void streamsToFile() throws Throwable {
+      File file = File.createTempFile("WiktionaryWriterTest", ".xml");
+      file.deleteOnExit();
+      StreamingMediaWikiLoader.load(getSample(), new Log(), PostFilter.KEEP_ALL,
+            new WiktionaryWriter().streamTo(file.getPath()));
+      assertEquals(batch(new WiktionaryWriter(), PostFilter.KEEP_ALL),
+            MappedDump_noMock_Test.read(new FileInputStream(file)));
+      file.delete();
+   }
+}